@@ -52,6 +52,10 @@ public class CobolParserFactory {
 		this.buildTrees = buildTrees;
 	}
 
+	public boolean isBuildingTrees() {
+		return buildTrees;
+	}
+
 	public CobolProject getProject() {
 		return project;
 	}
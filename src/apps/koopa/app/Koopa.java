@@ -68,6 +68,7 @@ public class Koopa extends JFrame implements Application {
 			koopa.setCopybookPaths(options.getCopybookPaths());
 			koopa.setTabLength(options.getTabLength());
 			koopa.setTabStops(options.getTabStops());
+			koopa.setMemoryMapping(options.isMemoryMapping());
 			koopa.setVisible(true);
 			if (other.size() == 1)
 				koopa.openFile(new File(other.get(0)).getAbsoluteFile());
@@ -385,6 +386,11 @@ public class Koopa extends JFrame implements Application {
 		updateMenus();
 	}
 
+	public void setMemoryMapping(boolean memoryMapping) {
+		overview.getCobolParserFactory().getProject()
+				.setDefaultMemoryMapping(memoryMapping);
+	}
+
 	public void setSourceFormat(SourceFormat format) {
 		overview.getCobolParserFactory().getProject().setDefaultFormat(format);
 		updateMenus();
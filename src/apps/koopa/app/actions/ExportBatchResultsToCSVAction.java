@@ -84,23 +84,12 @@ public class ExportBatchResultsToCSVAction extends AbstractAction implements
 			bw = new BufferedWriter(fw);
 			writer = new CSVWriter(bw);
 
-			final int columnCount = batchResults.getColumnCount();
-			final String[] entries = new String[columnCount];
-
 			// Header row.
-			for (int column = 0; column < columnCount; column++) {
-				entries[column] = batchResults.getColumnName(column);
-			}
-			writer.writeNext(entries);
+			writer.writeNext(getHeader(batchResults));
 
 			// Results.
-			for (int row = 0; row < batchResults.getRowCount(); row++) {
-				for (int column = 0; column < columnCount; column++) {
-					Object obj = batchResults.getValueAt(row, column);
-					entries[column] = obj == null ? "" : obj.toString();
-				}
-				writer.writeNext(entries);
-			}
+			for (int row = 0; row < batchResults.getRowCount(); row++)
+				writer.writeNext(getRow(batchResults, row));
 
 		} finally {
 			if (writer != null)
@@ -111,4 +100,32 @@ public class ExportBatchResultsToCSVAction extends AbstractAction implements
 				fw.close();
 		}
 	}
+
+	/**
+	 * The header row of an export of the given batch results.
+	 */
+	public static String[] getHeader(BatchResults batchResults) {
+		final int columnCount = batchResults.getColumnCount();
+		final String[] entries = new String[columnCount];
+
+		for (int column = 0; column < columnCount; column++)
+			entries[column] = batchResults.getColumnName(column);
+
+		return entries;
+	}
+
+	/**
+	 * The given row of an export of the given batch results.
+	 */
+	public static String[] getRow(BatchResults batchResults, int row) {
+		final int columnCount = batchResults.getColumnCount();
+		final String[] entries = new String[columnCount];
+
+		for (int column = 0; column < columnCount; column++) {
+			Object obj = batchResults.getValueAt(row, column);
+			entries[column] = obj == null ? "" : obj.toString();
+		}
+
+		return entries;
+	}
 }
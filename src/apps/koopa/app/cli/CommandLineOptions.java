@@ -13,6 +13,9 @@ public class CommandLineOptions {
 	private int tabLength = 1;
 	private TabStops tabStops = new TabStops();
 	private boolean preprocess = false;
+	private boolean memoryMapping = false;
+	private int numberOfThreads = 1;
+	private String incrementalState = null;
 	private List<String> copybookPaths = new LinkedList<>();
 	private List<String> other = new ArrayList<>();
 
@@ -27,6 +30,8 @@ public class CommandLineOptions {
 					format = SourceFormat.VARIABLE;
 				else if (option.equals("--preprocess"))
 					preprocess = true;
+				else if (option.equals("--memory-map"))
+					memoryMapping = true;
 				else
 					throw new IllegalArgumentException(
 							"Unknown option: " + option);
@@ -57,6 +62,23 @@ public class CommandLineOptions {
 
 					tabStops = new TabStops().fromString(args[i]);
 
+				} else if (option.equals("-threads")) {
+					i += 1;
+					if (i >= args.length)
+						throw new IllegalArgumentException(
+								"Missing number of threads.");
+
+					try {
+						numberOfThreads = Integer.parseInt(args[i]);
+					} catch (NumberFormatException e) {
+						throw new IllegalArgumentException(
+								"Number of threads must be a positive number.");
+					}
+
+					if (numberOfThreads <= 0)
+						throw new IllegalArgumentException(
+								"Number of threads must be a positive number.");
+
 				} else if (option.equals("-I")) {
 					i += 1;
 					if (i >= args.length)
@@ -65,6 +87,14 @@ public class CommandLineOptions {
 
 					copybookPaths.add(args[i]);
 
+				} else if (option.equals("-incremental")) {
+					i += 1;
+					if (i >= args.length)
+						throw new IllegalArgumentException(
+								"Missing incremental state file.");
+
+					incrementalState = args[i];
+
 				} else
 					throw new IllegalArgumentException(
 							"Unknown option: " + option);
@@ -90,6 +120,22 @@ public class CommandLineOptions {
 		return preprocess;
 	}
 
+	public boolean isMemoryMapping() {
+		return memoryMapping;
+	}
+
+	public int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+
+	/**
+	 * Where to keep state between incremental runs, or <code>null</code> for
+	 * a full run.
+	 */
+	public String getIncrementalState() {
+		return incrementalState;
+	}
+
 	public List<String> getCopybookPaths() {
 		return copybookPaths;
 	}
@@ -102,6 +148,7 @@ public class CommandLineOptions {
 		return "Usage: [--free-format | --variable-format] " //
 				+ "[--preprocess -I <copyboopath>] " //
 				+ "[-tab-length <number>] [-tab-stops <csv>] " //
+				+ "[-threads <number>] [--memory-map] " //
 				+ "[source]";
 	}
 }
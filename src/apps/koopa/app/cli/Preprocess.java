@@ -0,0 +1,190 @@
+package koopa.app.cli;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import koopa.app.ApplicationConfig;
+import koopa.cobol.CobolFiles;
+import koopa.cobol.CobolProject;
+import koopa.cobol.copybooks.CopybookGraph;
+import koopa.cobol.parser.CobolParser;
+import koopa.cobol.parser.Preprocessor;
+import koopa.cobol.util.CopybookPaths;
+import koopa.core.util.Encoding;
+
+/**
+ * Preprocesses sources without parsing them. The expanded sources get written
+ * to the target (a file, or a folder mirroring the source folder), and the
+ * copybooks used by each program can be written to a CSV file (cfr.
+ * {@linkplain CopybookGraph#write(Writer)}).
+ */
+public class Preprocess {
+
+	private static final int BAD_USAGE = -1;
+
+	private static final int IOEXCEPTION = -10;
+
+	public static void main(String[] args) {
+
+		final CommandLineOptions options;
+		try {
+			options = new CommandLineOptions(args);
+
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(BAD_USAGE);
+			return;
+		}
+
+		final List<String> other = options.getOther();
+		if (other.size() < 2 || other.size() > 3) {
+			System.err.println("Usage: [--free-format | --variable-format] "
+					+ "[-I <copybookpath>] [-threads <number>] "
+					+ "[--memory-map] <source> <target> [<graph.csv>]");
+			System.exit(BAD_USAGE);
+			return;
+		}
+
+		final CobolProject project = ApplicationConfig.getANewProject();
+		project.setDefaultFormat(options.getFormat());
+		project.setDefaultTabLength(options.getTabLength());
+		project.setDefaultTabStops(options.getTabStops());
+		project.setDefaultMemoryMapping(options.isMemoryMapping());
+		// There is no point to this without preprocessing.
+		project.setDefaultPreprocessing(true);
+
+		if (!options.getCopybookPaths().isEmpty()) {
+			if (!(project instanceof CopybookPaths)) {
+				System.err.println("Defined copybook paths, "
+						+ "but this project doesn't accept them: "
+						+ project.getClass());
+				System.exit(BAD_USAGE);
+				return;
+			}
+
+			for (String path : options.getCopybookPaths())
+				((CopybookPaths) project).addCopybookPath(new File(path));
+		}
+
+		final File source = new File(other.get(0));
+		final File target = new File(other.get(1));
+
+		final Map<File, File> targets = new LinkedHashMap<>();
+		if (source.isDirectory())
+			collect(source, target, targets);
+		else
+			targets.put(source, target);
+
+		final CopybookGraph graph = new CopybookGraph();
+		final int failures = preprocess(project, targets, graph,
+				options.getNumberOfThreads());
+
+		if (other.size() == 3) {
+			final File csv = new File(other.get(2));
+			try (Writer out = writer(csv)) {
+				graph.write(out);
+
+			} catch (IOException e) {
+				System.out.println("IOException while writing " + csv);
+				System.out.println(e.getMessage());
+				System.exit(IOEXCEPTION);
+			}
+		}
+
+		System.out.println("Preprocessed " + (targets.size() - failures)
+				+ " of " + targets.size() + " files. " + graph);
+
+		if (failures > 0)
+			System.exit(IOEXCEPTION);
+	}
+
+	/**
+	 * Preprocesses all files on the given number of threads, each with a
+	 * {@linkplain Preprocessor} of its own. Tells how many files failed.
+	 */
+	private static int preprocess(final CobolProject project,
+			final Map<File, File> targets, final CopybookGraph graph,
+			int numberOfThreads) {
+		CobolParser.freezeGrammars();
+
+		final List<File> files = new ArrayList<>(targets.keySet());
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger failures = new AtomicInteger();
+		final int workers = Math.max(1,
+				Math.min(numberOfThreads, files.size()));
+
+		final ForkJoinPool pool = new ForkJoinPool(workers);
+		try {
+			final List<ForkJoinTask<?>> tasks = new ArrayList<>(workers);
+
+			for (int w = 0; w < workers; w++)
+				tasks.add(pool.submit(() -> {
+					final Preprocessor preprocessor = new Preprocessor(
+							project.duplicate());
+					preprocessor.setCopybookGraph(graph);
+
+					while (true) {
+						final int index = next.getAndIncrement();
+						if (index >= files.size())
+							break;
+
+						final File file = files.get(index);
+						final File expanded = targets.get(file);
+
+						final File folder = expanded.getParentFile();
+						if (folder != null && !folder.exists())
+							folder.mkdirs();
+
+						try (Writer out = writer(expanded)) {
+							preprocessor.preprocess(file, out);
+
+						} catch (IOException e) {
+							System.out.println("IOException while processing "
+									+ file + ": " + e.getMessage());
+							failures.incrementAndGet();
+						}
+					}
+				}));
+
+			for (ForkJoinTask<?> task : tasks)
+				task.join();
+
+		} finally {
+			pool.shutdown();
+		}
+
+		return failures.get();
+	}
+
+	private static void collect(File source, File target,
+			Map<File, File> targets) {
+		final File[] files = source
+				.listFiles(CobolFiles.getFilenameFilter(false));
+
+		for (File fileInFolder : files) {
+			final File targetInFolder = new File(target,
+					fileInFolder.getName());
+
+			if (fileInFolder.isDirectory())
+				collect(fileInFolder, targetInFolder, targets);
+			else
+				targets.put(fileInFolder, targetInFolder);
+		}
+	}
+
+	private static Writer writer(File file) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(file), Encoding.getCharset()));
+	}
+}
@@ -0,0 +1,181 @@
+package koopa.app.cli;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import au.com.bytecode.opencsv.CSVWriter;
+import koopa.app.ApplicationConfig;
+import koopa.app.ApplicationSupport;
+import koopa.app.actions.ExportBatchResultsToCSVAction;
+import koopa.app.batchit.BatchResults;
+import koopa.cobol.CobolFiles;
+import koopa.cobol.CobolProject;
+import koopa.cobol.parser.BatchParser;
+import koopa.cobol.parser.BatchStatistics;
+import koopa.cobol.parser.IncrementalState;
+import koopa.cobol.util.CopybookPaths;
+
+/**
+ * Parses sources and writes a summary of the results to a CSV file, in the
+ * same format as {@linkplain ExportBatchResultsToCSVAction}. There is one row
+ * per file, sorted on the file's path.
+ * <p>
+ * With <code>-incremental &lt;state&gt;</code> the summaries get remembered in
+ * the given file (cfr. {@linkplain IncrementalState}). The next run then only
+ * reparses files which changed, or for which any of the copybooks they
+ * include changed, and reuses the rows of all others. The output is the same
+ * as that of a full run, save for the time it took to parse each file.
+ */
+public class ToCsv {
+
+	private static final int BAD_USAGE = -1;
+
+	private static final int IOEXCEPTION = -10;
+
+	public static void main(String[] args) {
+
+		final CommandLineOptions options;
+		try {
+			options = new CommandLineOptions(args);
+
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(BAD_USAGE);
+			return;
+		}
+
+		final List<String> other = options.getOther();
+		if (other.size() != 2) {
+			System.err.println("Usage: [--free-format | --variable-format] "
+					+ "[--preprocess -I <copybookpath>] [-threads <number>] "
+					+ "[--memory-map] [-incremental <state>] "
+					+ "<source> <target.csv>");
+			System.exit(BAD_USAGE);
+			return;
+		}
+
+		final CobolProject project = ApplicationConfig.getANewProject();
+		project.setDefaultFormat(options.getFormat());
+		project.setDefaultTabLength(options.getTabLength());
+		project.setDefaultTabStops(options.getTabStops());
+		project.setDefaultPreprocessing(options.isPreprocess());
+		project.setDefaultMemoryMapping(options.isMemoryMapping());
+
+		if (!options.getCopybookPaths().isEmpty()) {
+			if (!(project instanceof CopybookPaths)) {
+				System.err.println("Defined copybook paths, "
+						+ "but this project doesn't accept them: "
+						+ project.getClass());
+				System.exit(BAD_USAGE);
+				return;
+			}
+
+			for (String path : options.getCopybookPaths())
+				((CopybookPaths) project).addCopybookPath(new File(path));
+		}
+
+		final File source = new File(other.get(0));
+		final File target = new File(other.get(1));
+		final File stateFile = options.getIncrementalState() == null ? null
+				: new File(options.getIncrementalState());
+
+		try {
+			toCsv(project, source, target, stateFile,
+					options.getNumberOfThreads());
+
+		} catch (IOException e) {
+			System.out.println("IOException while writing " + target);
+			System.out.println(e.getMessage());
+			System.exit(IOEXCEPTION);
+		}
+	}
+
+	private static void toCsv(final CobolProject project, File source,
+			File target, File stateFile, int numberOfThreads)
+			throws IOException {
+
+		final List<File> files = new ArrayList<>();
+		walk(source, files);
+		Collections.sort(files);
+
+		// Only used for working out the rows, one at a time.
+		final BatchResults table = new BatchResults();
+		final List<String> columns = Arrays
+				.asList(ExportBatchResultsToCSVAction.getHeader(table));
+
+		final IncrementalState state = stateFile == null
+				? new IncrementalState(columns)
+				: IncrementalState.load(stateFile, columns);
+		state.retainAll(files);
+
+		final List<File> changed = new ArrayList<>();
+		for (File file : files)
+			if (!state.isUpToDate(file, project))
+				changed.add(file);
+
+		final BatchParser batch = new BatchParser(project);
+		batch.setNumberOfThreads(numberOfThreads);
+		// Tokens are needed for the coverage. Tracking them also means the
+		// whole source gets read, so we know about all copybooks.
+		batch.setKeepingTrackOfTokens(true);
+		batch.setBuildTrees(ApplicationSupport.getCustomColumnsNeedXPath());
+
+		final Map<File, String[]> rows = new ConcurrentHashMap<>();
+		final BatchStatistics statistics = batch.parse(changed, results -> {
+			final String[] row;
+			synchronized (table) {
+				table.add(results);
+				row = ExportBatchResultsToCSVAction.getRow(table, 0);
+				table.clear();
+			}
+
+			rows.put(results.getFile(), row);
+			state.update(results, project, Arrays.asList(row));
+		});
+
+		try (CSVWriter writer = new CSVWriter(
+				new BufferedWriter(new FileWriter(target)))) {
+			writer.writeNext(columns.toArray(new String[columns.size()]));
+
+			for (File file : files) {
+				final String[] row = rows.get(file);
+				if (row != null)
+					writer.writeNext(row);
+				else {
+					final List<String> summary = state.getSummary(file);
+					writer.writeNext(
+							summary.toArray(new String[summary.size()]));
+				}
+			}
+		}
+
+		if (stateFile != null)
+			state.save(stateFile);
+
+		System.out.println("Parsed " + changed.size() + " of " + files.size()
+				+ " files. " + statistics);
+	}
+
+	private static void walk(File file, List<File> targets) {
+		if (file == null || !file.exists())
+			return;
+
+		if (file.isDirectory()) {
+			for (File child : file.listFiles())
+				walk(child, targets);
+
+			return;
+		}
+
+		if (CobolFiles.isCobolFile(file))
+			targets.add(file);
+	}
+}
@@ -2,11 +2,17 @@ package koopa.app.cli;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import koopa.app.ApplicationConfig;
 import koopa.cobol.CobolFiles;
 import koopa.cobol.CobolProject;
+import koopa.cobol.parser.BatchParser;
+import koopa.cobol.parser.BatchStatistics;
 import koopa.cobol.parser.CobolParser;
 import koopa.cobol.parser.ParseResults;
 import koopa.cobol.sources.SourceFormat;
@@ -38,11 +44,15 @@ public class ToXml {
 
 		ToXml toXml = new ToXml(options.getFormat(), options.isPreprocess(),
 				options.getCopybookPaths());
+		toXml.setNumberOfThreads(options.getNumberOfThreads());
+		toXml.setMemoryMapping(options.isMemoryMapping());
 
 		List<String> other = options.getOther();
 		if (other.size() != 2) {
 			System.err.println("Usage: [--free-format] "
-					+ "[--preprocess -I <copybookpath>] <source> <target>");
+					+ "[--preprocess -I <copybookpath>] [-threads <number>] "
+					+ "[--memory-map] "
+					+ "<source> <target>");
 			System.exit(BAD_USAGE);
 			return;
 		}
@@ -52,7 +62,9 @@ public class ToXml {
 		toXml.process(source, target);
 	}
 
-	private final CobolParser parser;
+	private final CobolProject project;
+
+	private int numberOfThreads = 1;
 
 	public ToXml(SourceFormat format, boolean preprocessing,
 			List<String> copybookPaths) {
@@ -72,10 +84,15 @@ public class ToXml {
 		for (String path : copybookPaths)
 			((CopybookPaths) project).addCopybookPath(new File(path));
 
-		this.parser = new CobolParser();
-		this.parser.setProject(project);
-		// We need the tree to dump it.
-		this.parser.setBuildTrees(true);
+		this.project = project;
+	}
+
+	public void setNumberOfThreads(int numberOfThreads) {
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	public void setMemoryMapping(boolean memoryMapping) {
+		project.setDefaultMemoryMapping(memoryMapping);
 	}
 
 	private void process(File source, File target) {
@@ -83,32 +100,52 @@ public class ToXml {
 			toXml(source, target);
 
 		} else if (source.isDirectory()) {
-			File[] files = source
-					.listFiles(CobolFiles.getFilenameFilter(false));
+			final Map<File, File> targets = new HashMap<>();
+			collect(source, target, targets);
+
+			final BatchParser batch = new BatchParser(project);
+			batch.setNumberOfThreads(numberOfThreads);
+			batch.setBuildTrees(true);
+
+			// The workers only need to wait on each other when they write to
+			// the same XML file (e.g. for "A.cbl" and "A.cob").
+			final Map<File, Object> locks = new ConcurrentHashMap<>();
+
+			final BatchStatistics statistics = batch.parse(
+					new ArrayList<>(targets.keySet()), results -> {
+						final File file = results.getFile();
+						final File xml = xmlFileFor(targets.get(file));
+						synchronized (locks.computeIfAbsent(xml,
+								f -> new Object())) {
+							toXml(results, xml, "Processing " + file + "\n");
+						}
+					});
+
+			System.out.println(statistics);
+		}
+	}
 
-			for (File fileInFolder : files) {
-				System.out.println(fileInFolder.getPath());
-				process(fileInFolder, new File(target, fileInFolder.getName()));
-			}
+	private void collect(File source, File target, Map<File, File> targets) {
+		File[] files = source.listFiles(CobolFiles.getFilenameFilter(false));
+
+		for (File fileInFolder : files) {
+			final File targetInFolder = new File(target,
+					fileInFolder.getName());
+
+			if (fileInFolder.isDirectory())
+				collect(fileInFolder, targetInFolder, targets);
+			else
+				targets.put(fileInFolder, targetInFolder);
 		}
 	}
 
 	private void toXml(File source, File target) {
 		System.out.println("Processing " + source);
 
-		String targetPath = target.getPath();
-		int dot = targetPath.lastIndexOf('.');
-		if (dot < 0)
-			targetPath = targetPath + ".xml";
-		else
-			targetPath = targetPath.substring(0, dot) + ".xml";
-
-		target = new File(targetPath);
-		System.out.println("Writing XML to " + target);
-
-		File targetFolder = target.getParentFile();
-		if (targetFolder != null && !targetFolder.exists())
-			targetFolder.mkdirs();
+		final CobolParser parser = new CobolParser();
+		parser.setProject(project);
+		// We need the tree to dump it.
+		parser.setBuildTrees(true);
 
 		ParseResults results = null;
 
@@ -120,23 +157,55 @@ public class ToXml {
 			System.exit(IOEXCEPTION);
 		}
 
+		toXml(results, target, "");
+	}
+
+	private static File xmlFileFor(File target) {
+		final String targetPath = target.getPath();
+		final int dot = targetPath.lastIndexOf('.');
+		if (dot < 0)
+			return new File(targetPath + ".xml");
+		else
+			return new File(targetPath.substring(0, dot) + ".xml");
+	}
+
+	/**
+	 * Writes the tree for the given results to the given target. Everything
+	 * which gets reported along the way gets printed in one go, so that the
+	 * output for different files does not get mixed up when running with
+	 * several threads.
+	 */
+	private void toXml(ParseResults results, File target, String prefix) {
+		final File source = results.getFile();
+		final StringBuilder report = new StringBuilder(prefix);
+
+		target = xmlFileFor(target);
+		report.append("Writing XML to ").append(target).append('\n');
+
+		File targetFolder = target.getParentFile();
+		if (targetFolder != null && !targetFolder.exists())
+			targetFolder.mkdirs();
+
 		final Messages messages = results.getParse().getMessages();
 
 		if (messages.hasErrors())
 			for (Tuple<Token, String> error : messages.getErrors())
-				System.out.println(
-						"Error: " + error.getFirst() + " " + error.getSecond());
+				report.append("Error: ").append(error.getFirst()).append(' ')
+						.append(error.getSecond()).append('\n');
 
 		if (messages.hasWarnings())
 			for (Tuple<Token, String> warning : messages.getWarnings())
-				System.out.println("Warning: " + warning.getFirst() + " "
-						+ warning.getSecond());
+				report.append("Warning: ").append(warning.getFirst())
+						.append(' ').append(warning.getSecond()).append('\n');
 
 		if (!results.isValidInput()) {
-			System.out.println("Could not parse " + source);
+			report.append("Could not parse ").append(source);
+			System.out.println(report);
 			return;
 		}
 
+		System.out.print(report);
+
 		final Tree ast = results.getParse().getTarget(KoopaTreeBuilder.class)
 				.getTree();
 
@@ -283,7 +283,7 @@ public class GrammarView extends JPanel {
 
 					if (justSawDef)
 						ruleNameOffsets.put(token.getText(),
-								token.getStart().getPositionInFile());
+								token.getStartPositionInFile());
 
 					justSawDef = false;
 
@@ -302,7 +302,7 @@ public class GrammarView extends JPanel {
 				if (style == null)
 					style = getDefaultStyle(document);
 
-				document.insertString(token.getStart().getPositionInFile(),
+				document.insertString(token.getStartPositionInFile(),
 						token.getText(), style);
 			}
 		} catch (BadLocationException e) {
@@ -28,7 +28,7 @@ public class Highlights {
 		if (offset < 0)
 			return;
 
-		int delta = offset - token.getStart().getPositionInFile();
+		int delta = offset - token.getStartPositionInFile();
 		for (Range range : token.getRanges())
 			addHighlight(delta, range.getStart(), range.getEnd(), color);
 	}
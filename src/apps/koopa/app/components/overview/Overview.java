@@ -6,7 +6,6 @@ import java.awt.Point;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.File;
-import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -15,6 +14,7 @@ import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
 import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
 
 import org.jdesktop.swingx.JXTable;
 import org.jdesktop.swingx.decorator.HighlighterFactory;
@@ -31,6 +31,8 @@ import koopa.app.components.detailstable.DetailsTable;
 import koopa.app.components.misc.DecimalFormattingRenderer;
 import koopa.app.components.misc.StatusRenderer;
 import koopa.cobol.CobolFiles;
+import koopa.cobol.parser.BatchParser;
+import koopa.cobol.parser.BatchStatistics;
 import koopa.cobol.parser.ParseResults;
 import koopa.core.parsers.Messages;
 import koopa.core.targets.TokenTracker;
@@ -51,7 +53,9 @@ public class Overview extends JPanel implements ParsingProvider,
 
 	private boolean parsing = false;
 
-	private boolean quitParsing = false;
+	private volatile boolean quitParsing = false;
+
+	private volatile BatchParser batch = null;
 
 	public Overview(Application application) {
 		this.application = application;
@@ -187,43 +191,56 @@ public class Overview extends JPanel implements ParsingProvider,
 			progress.setMaximum(targets.size());
 			progress.setIndeterminate(false);
 
-			int count = 0;
-
-			int ok = 0;
-			int withWarning = 0;
-			int withError = 0;
+			final Counts counts = new Counts();
 
-			for (File target : targets) {
-				final ParseResults results = parse(target);
-				final Messages messages = results.getParse().getMessages();
+			batch = new BatchParser(factory.getProject());
+			batch.setKeepingTrackOfTokens(factory.isKeepingTrackOfTokens());
+			batch.setBuildTrees(factory.isBuildingTrees());
+			if (quitParsing)
+				batch.cancel();
+
+			// The sink gets called from the worker threads. Only the counting
+			// happens there; the UI gets updated on the event dispatch thread.
+			final BatchStatistics statistics = batch.parse(targets,
+					parseResults -> {
+						parseResults.getParse().getFlow()
+								.removeTarget(TokenTracker.class);
+
+						final int count;
+						final String summary;
+						synchronized (counts) {
+							counts.add(parseResults);
+							count = counts.count;
+							summary = counts.toString();
+						}
 
-				if (messages.hasErrors())
-					withError += 1;
-				else if (messages.hasWarnings())
-					withWarning += 1;
-				else
-					ok += 1;
+						SwingUtilities.invokeLater(() -> {
+							results.add(parseResults);
+							progress.setValue(count);
+							progress.setString("Parsing: " + summary);
+						});
+					});
 
-				progress.setValue(++count);
-				progress.setString("Parsing: " + ok + " ok, " + withWarning
-						+ " with warnings, " + withError + " in error");
+			final String summary;
+			synchronized (counts) {
+				summary = counts.toString();
+			}
 
-				if (quitParsing) {
+			final boolean aborted = quitParsing;
+			SwingUtilities.invokeLater(() -> {
+				if (aborted) {
 					progress.setValue(0);
-					break;
-				}
-			}
+					progress.setString("Parsing aborted: " + summary);
 
-			if (quitParsing)
-				progress.setString("Parsing aborted: " + ok + " ok, "
-						+ withWarning + " with warnings, " + withError
-						+ " in error");
-			else
-				progress.setString("Parsing done: " + ok + " ok, "
-						+ withWarning + " with warnings, " + withError
-						+ " in error");
+				} else
+					progress.setString("Parsing done: " + summary + " ("
+							+ String.format("%.1f",
+									statistics.getFilesPerSecond())
+							+ " files/s)");
+			});
 
 		} finally {
+			batch = null;
 			parsing = false;
 			application.doneWalkingAndParsing();
 		}
@@ -247,20 +264,29 @@ public class Overview extends JPanel implements ParsingProvider,
 		}
 	}
 
-	private ParseResults parse(File file) {
-		try {
-			final ParseResults parseResults = factory.getParser().parse(file);
-			results.add(parseResults);
-			parseResults.getParse().getFlow().removeTarget(TokenTracker.class);
-			return parseResults;
-
-		} catch (IOException e) {
-			ParseResults failed = new ParseResults(file);
-			failed.setValidInput(false);
-			failed.getParse().getMessages().error(null, e.getMessage());
-			results.add(failed);
-			e.printStackTrace();
-			return failed;
+	private static final class Counts {
+		private int count = 0;
+		private int ok = 0;
+		private int withWarning = 0;
+		private int withError = 0;
+
+		private void add(ParseResults parseResults) {
+			final Messages messages = parseResults.getParse().getMessages();
+
+			if (messages.hasErrors())
+				withError += 1;
+			else if (messages.hasWarnings())
+				withWarning += 1;
+			else
+				ok += 1;
+
+			count += 1;
+		}
+
+		@Override
+		public String toString() {
+			return ok + " ok, " + withWarning + " with warnings, " + withError
+					+ " in error";
 		}
 	}
 
@@ -286,6 +312,10 @@ public class Overview extends JPanel implements ParsingProvider,
 
 	public void quitParsing() {
 		quitParsing = true;
+
+		final BatchParser running = batch;
+		if (running != null)
+			running.cancel();
 	}
 
 	@Override
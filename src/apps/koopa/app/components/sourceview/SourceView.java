@@ -88,10 +88,10 @@ public class SourceView extends TextPanel {
 				if (offset < 0)
 					return;
 
-				final int delta = offset - token.getStart().getPositionInFile();
+				final int delta = offset - token.getStartPositionInFile();
 
-				final int start = token.getStart().getPositionInFile();
-				final int end = token.getEnd().getPositionInFile() + 1;
+				final int start = token.getStartPositionInFile();
+				final int end = token.getEndPositionInFile() + 1;
 				final int len = end - start;
 				highlighter.addHighlight(start + delta, start + delta + len,
 						warningPainter);
@@ -106,10 +106,10 @@ public class SourceView extends TextPanel {
 				if (offset < 0)
 					return;
 
-				final int delta = offset - token.getStart().getPositionInFile();
+				final int delta = offset - token.getStartPositionInFile();
 
-				final int start = token.getStart().getPositionInFile();
-				final int end = token.getEnd().getPositionInFile() + 1;
+				final int start = token.getStartPositionInFile();
+				final int end = token.getEndPositionInFile() + 1;
 				final int len = end - start;
 
 				highlighter.addHighlight(start + delta, start + delta + len,
@@ -22,7 +22,7 @@ public class CICSGrammar extends CICSBaseGrammar {
     protected CICSGrammar() {
     }
     
-    public static CICSGrammar instance() {
+    public static synchronized CICSGrammar instance() {
       if (INSTANCE == null)
         INSTANCE = new CICSGrammar();
         
@@ -99,6 +99,23 @@ public interface CobolProject {
 	 */
 	boolean isPreprocessing(File file);
 
+	/**
+	 * Should we be memory-mapping files by default, rather than reading them
+	 * through a {@linkplain java.io.Reader} ? This can pay off for very large
+	 * files.
+	 */
+	boolean isDefaultMemoryMapping();
+
+	/**
+	 * Define whether we should be memory-mapping files by default.
+	 */
+	void setDefaultMemoryMapping(boolean memoryMapping);
+
+	/**
+	 * Should we be memory-mapping this specific file ?
+	 */
+	boolean isMemoryMapping(File file);
+
 	/**
 	 * Get a copy of this CobolProject with the same settings.
 	 */
@@ -1,6 +1,7 @@
 package koopa.cobol;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.Reader;
 import java.util.List;
 
@@ -14,9 +15,12 @@ import koopa.cobol.sources.Replace;
 import koopa.cobol.sources.Replacing;
 import koopa.cobol.sources.SourceFormat;
 import koopa.core.sources.LineSplitter;
+import koopa.core.sources.MappedFileReader;
 import koopa.core.sources.Source;
 import koopa.core.sources.StackOfSources;
 import koopa.core.sources.TokenSeparator;
+import koopa.core.util.Encoding;
+import koopa.core.util.Files;
 import koopa.core.util.LineEndings;
 import koopa.core.util.TabStops;
 
@@ -25,6 +29,21 @@ public final class CobolTokens {
 	private CobolTokens() {
 	}
 
+	/**
+	 * Returns a {@linkplain Reader} for the given file. This will be a
+	 * {@linkplain MappedFileReader} if the project asks for memory-mapping,
+	 * and the file can be mapped. Either way the file gets decoded using
+	 * {@linkplain Encoding#getCharset()}, so that turning memory-mapping on or
+	 * off never changes what gets read.
+	 */
+	public static Reader getReader(File file, CobolProject project)
+			throws IOException {
+		if (project.isMemoryMapping(file) && MappedFileReader.canMap(file))
+			return new MappedFileReader(file, Encoding.getCharset());
+		else
+			return Files.getReader(file);
+	}
+
 	// TODO Expect project to be non-null ?
 	public static Source getNewSource(File file, Reader reader,
 			CobolProject project) {
@@ -120,4 +139,20 @@ public final class CobolTokens {
 	public static Source getNewSource(Reader reader, CobolProject project) {
 		return getNewSource(null, reader, project);
 	}
+
+	/**
+	 * Describes all settings which affect the token stream we build for the
+	 * given file: source format, tab length and stops, preprocessing, encoding
+	 * and line endings. Two runs over the same contents give the same tokens
+	 * when this doesn't change (copybooks aside).
+	 */
+	public static String describeSettings(File file, CobolProject project) {
+		return project.getDefaultFormat() //
+				+ "|" + project.getTabLength(file) //
+				+ "|" + project.getTabStops(file) //
+				+ "|" + project.isPreprocessing(file) //
+				+ "|" + Encoding.getCharset() //
+				+ "|" + LineEndings.encodeChoices(LineEndings.getChoices()) //
+				+ "|" + LineEndings.areSticky();
+	}
 }
@@ -0,0 +1,132 @@
+package koopa.cobol.copybooks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import koopa.cobol.sources.CopyInclude;
+import koopa.cobol.sources.CopybookLookup;
+
+/**
+ * Which programs pulled in which copybooks, as recorded by
+ * {@linkplain CopyInclude} (cfr. {@linkplain CopybookLookup}). Copybooks
+ * included by other copybooks count as being included by the program as well,
+ * so {@linkplain #getCopybooks(File)} covers everything a program depends on.
+ * <p>
+ * This is safe to fill from several threads at once.
+ */
+public class CopybookGraph {
+
+	/** Sorted on the program, so that output is stable between runs. */
+	private final Map<File, List<CopybookLookup>> lookups = new TreeMap<>();
+
+	/**
+	 * Record the copybooks looked up while preprocessing the given program.
+	 * This replaces anything recorded for it before.
+	 */
+	public synchronized void add(File program, List<CopybookLookup> lookups) {
+		this.lookups.put(program, new ArrayList<>(lookups));
+	}
+
+	public synchronized void remove(File program) {
+		lookups.remove(program);
+	}
+
+	public synchronized List<File> getPrograms() {
+		return new ArrayList<>(lookups.keySet());
+	}
+
+	public synchronized List<CopybookLookup> getLookups(File program) {
+		final List<CopybookLookup> list = lookups.get(program);
+		if (list == null)
+			return Collections.emptyList();
+		else
+			return Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * All copybooks which were found for the given program, in the order in
+	 * which they were first included.
+	 */
+	public synchronized Set<File> getCopybooks(File program) {
+		final Set<File> copybooks = new LinkedHashSet<>();
+		for (CopybookLookup lookup : getLookups(program))
+			if (lookup.getCopybook() != null)
+				copybooks.add(lookup.getCopybook());
+
+		return copybooks;
+	}
+
+	/**
+	 * All programs which depend on the given copybook, directly or through
+	 * another copybook.
+	 */
+	public synchronized List<File> getProgramsUsing(File copybook) {
+		final List<File> programs = new ArrayList<>();
+		for (Map.Entry<File, List<CopybookLookup>> entry : lookups.entrySet())
+			for (CopybookLookup lookup : entry.getValue())
+				if (copybook.equals(lookup.getCopybook())) {
+					programs.add(entry.getKey());
+					break;
+				}
+
+		return programs;
+	}
+
+	/**
+	 * Writes one line per COPY statement, as comma separated values: the
+	 * program, the file holding the COPY statement, the text and library names,
+	 * and the copybook which was found (or nothing if it was missing). The
+	 * first line is a header.
+	 */
+	public synchronized void write(Writer out) throws IOException {
+		out.write("Program,Included from,Text name,Library name,Copybook\n");
+
+		for (Map.Entry<File, List<CopybookLookup>> entry : lookups.entrySet()) {
+			final String program = csv(entry.getKey());
+			for (CopybookLookup lookup : entry.getValue()) {
+				out.write(program);
+				out.write(',');
+				out.write(csv(lookup.getIncludedFrom()));
+				out.write(',');
+				out.write(csv(lookup.getTextName()));
+				out.write(',');
+				out.write(csv(lookup.getLibraryName()));
+				out.write(',');
+				out.write(csv(lookup.getCopybook()));
+				out.write('\n');
+			}
+		}
+
+		out.flush();
+	}
+
+	private static String csv(Object value) {
+		if (value == null)
+			return "";
+
+		final String text = value.toString();
+		if (text.indexOf(',') < 0 && text.indexOf('"') < 0
+				&& text.indexOf('\n') < 0)
+			return text;
+
+		return '"' + text.replace("\"", "\"\"") + '"';
+	}
+
+	@Override
+	public synchronized String toString() {
+		int edges = 0;
+		for (List<CopybookLookup> list : lookups.values())
+			edges += list.size();
+
+		return "Copybook graph: " + lookups.size() + " programs, " + edges
+				+ " COPY statements";
+	}
+}
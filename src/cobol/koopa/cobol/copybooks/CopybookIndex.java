@@ -0,0 +1,188 @@
+package koopa.cobol.copybooks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import koopa.cobol.CobolFiles;
+import koopa.core.util.Files;
+
+/**
+ * Remembers the contents of the folders in which copybooks get looked up, so
+ * that finding a copybook by name does not mean listing a folder every time.
+ * <p>
+ * Matching follows the same rules as {@linkplain IsCopybookNamed}: a file
+ * whose name is an exact match always qualifies, and otherwise it must be a
+ * copybook (cfr. {@linkplain CobolFiles#isCopybook(String)}) whose name,
+ * minus the extension, matches. Both comparisons ignore case. When several
+ * files qualify, the first one in the listing wins. The copybook extensions
+ * are checked at lookup time, so changing them has immediate effect.
+ * <p>
+ * A folder gets scanned again when its last modification time changes, which
+ * happens whenever files get added, removed or renamed in it. This costs one
+ * check of the folder's attributes per lookup, which is a lot cheaper than
+ * listing it. You can also drop what is known through
+ * {@linkplain #refresh()} or {@linkplain #refresh(File)}.
+ * <p>
+ * This is safe to use from several threads at once.
+ */
+public class CopybookIndex {
+
+	private static final Logger LOGGER = Logger.getLogger("copybooks");
+
+	private final Map<File, Listing> listings = new ConcurrentHashMap<>();
+
+	private final AtomicLong lookups = new AtomicLong();
+	private final AtomicLong scans = new AtomicLong();
+
+	/**
+	 * Find the first file in the given folder which matches the given copybook
+	 * name. The file to be excluded, if any, is never returned.
+	 */
+	public File find(File folder, String textName, File exclude) {
+		lookups.incrementAndGet();
+
+		final Listing listing = getListing(folder);
+		final String name = listing.find(textName, exclude);
+
+		if (name == null)
+			return null;
+		else
+			return new File(folder, name);
+	}
+
+	private Listing getListing(File folder) {
+		final long lastModified = folder.lastModified();
+
+		Listing listing = listings.get(folder);
+		if (listing == null || listing.lastModified != lastModified) {
+			listing = new Listing(folder, lastModified);
+			listings.put(folder, listing);
+			scans.incrementAndGet();
+
+			if (LOGGER.isDebugEnabled())
+				LOGGER.debug("Indexed " + listing.names.length
+						+ " entries in " + folder);
+		}
+
+		return listing;
+	}
+
+	/**
+	 * Forget everything we know, so that all folders get scanned again.
+	 */
+	public void refresh() {
+		listings.clear();
+	}
+
+	/**
+	 * Forget what we know about the given folder, so that it gets scanned
+	 * again.
+	 */
+	public void refresh(File folder) {
+		listings.remove(folder);
+	}
+
+	/**
+	 * The number of lookups done so far.
+	 */
+	public long getLookups() {
+		return lookups.get();
+	}
+
+	/**
+	 * The number of times a folder had to be listed so far.
+	 */
+	public long getScans() {
+		return scans.get();
+	}
+
+	@Override
+	public String toString() {
+		return "copybook index, " + listings.size() + " folders, "
+				+ scans.get() + " scans / " + lookups.get() + " lookups";
+	}
+
+	private static String key(String name) {
+		return name.toUpperCase(Locale.ROOT);
+	}
+
+	/**
+	 * An immutable snapshot of a folder's contents.
+	 */
+	private static final class Listing {
+		private final File folder;
+		private final long lastModified;
+
+		/** All names in the folder, in the order they got listed. */
+		private final String[] names;
+
+		/** Indices into {@link #names}, keyed on the full name. */
+		private final Map<String, List<Integer>> byName;
+
+		/** Indices into {@link #names}, keyed on the name sans extension. */
+		private final Map<String, List<Integer>> byBaseName;
+
+		public Listing(File folder, long lastModified) {
+			this.folder = folder;
+			this.lastModified = lastModified;
+
+			final String[] list = folder.list();
+			this.names = list == null ? new String[0] : list;
+
+			this.byName = new HashMap<>();
+			this.byBaseName = new HashMap<>();
+			for (int i = 0; i < names.length; i++) {
+				add(byName, key(names[i]), i);
+				add(byBaseName, key(Files.getName(names[i])), i);
+			}
+		}
+
+		private static void add(Map<String, List<Integer>> map, String key,
+				int index) {
+			List<Integer> indices = map.get(key);
+			if (indices == null) {
+				indices = new ArrayList<>(1);
+				map.put(key, indices);
+			}
+			indices.add(index);
+		}
+
+		public String find(String textName, File exclude) {
+			final boolean excluding = exclude != null
+					&& folder.equals(exclude.getParentFile());
+
+			int best = Integer.MAX_VALUE;
+
+			for (int i : get(byName, key(textName)))
+				if (i < best && !isExcluded(i, excluding, exclude))
+					best = i;
+
+			for (int i : get(byBaseName, key(Files.getName(textName))))
+				if (i < best && CobolFiles.isCopybook(names[i])
+						&& !isExcluded(i, excluding, exclude))
+					best = i;
+
+			return best == Integer.MAX_VALUE ? null : names[best];
+		}
+
+		private boolean isExcluded(int index, boolean excluding, File exclude) {
+			return excluding && names[index].equalsIgnoreCase(exclude.getName());
+		}
+
+		private static List<Integer> get(Map<String, List<Integer>> map,
+				String key) {
+			final List<Integer> indices = map.get(key);
+			return indices == null ? Collections.<Integer> emptyList()
+					: indices;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package koopa.cobol.copybooks;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import koopa.core.util.Files;
+
+/**
+ * Looks for copybooks in the same places, and by the same rules, as the
+ * {@linkplain DefaultCopybookLocator}. But rather than listing every folder on
+ * every lookup it goes through a {@linkplain CopybookIndex}.
+ * <p>
+ * Locators which share an index also share what it knows. That's how projects
+ * which get duplicated avoid scanning the same folders again.
+ */
+public class IndexedCopybookLocator implements CopybookLocator {
+
+	private static final Logger LOGGER = Logger.getLogger("copybooks");
+
+	private final CopybookIndex index;
+
+	public IndexedCopybookLocator() {
+		this(new CopybookIndex());
+	}
+
+	public IndexedCopybookLocator(CopybookIndex index) {
+		this.index = index;
+	}
+
+	public CopybookIndex getIndex() {
+		return index;
+	}
+
+	@Override
+	public File locate(String textName, String libraryName, File sourceFile,
+			List<File> copybookPaths) {
+		// Unquote the copybook and library names if needed.
+		if (isLiteral(textName))
+			textName = textName.substring(1, textName.length() - 1);
+		if (libraryName != null && isLiteral(libraryName))
+			libraryName = libraryName.substring(1, libraryName.length() - 1);
+
+		// Where do we look for matching files ?
+		File match = null;
+		// We look in the current folder first, possibly offset by the library
+		// name.
+		if (sourceFile != null)
+			match = find(Files.offset(libraryName, sourceFile.getParentFile()),
+					textName, sourceFile);
+
+		// Then we try all copybook paths in order, again possibly offset by the
+		// library name.
+		if (match == null)
+			match = find(Files.offset(libraryName, copybookPaths), textName,
+					sourceFile);
+
+		if (LOGGER.isTraceEnabled())
+			if (match != null)
+				LOGGER.trace("Lookup of copybook " + textName + " in "
+						+ libraryName + " succeeded; found " + match);
+			else
+				LOGGER.trace("Lookup of copybook " + textName + " in "
+						+ libraryName + " failed: not found.");
+
+		return match;
+	}
+
+	private File find(List<File> folders, String textName, File sourceFile) {
+		for (File folder : folders) {
+			final File match = index.find(folder, textName, sourceFile);
+			if (match != null)
+				return match;
+		}
+
+		return null;
+	}
+
+	private boolean isLiteral(final String name) {
+		return (name.startsWith("\"") && name.endsWith("\""))
+				|| (name.startsWith("'") && name.endsWith("'"));
+	}
+}
@@ -273,7 +273,7 @@ public class CobolBaseGrammar extends CobolPreprocessingGrammar {
 						// mentioned by OSVS. It seems like a reasonable
 						// default.
 						if ((format == FIXED || format == VARIABLE)
-								&& token.getStart().getPositionInLine() < 11
+								&& token.getStartPositionInLine() < 11
 								&& END_OF_COMMENT_ENTRY_MARKERS
 										.contains(text)) {
 							stream.rewind(token);
@@ -21,7 +21,7 @@ public class CobolGrammar extends CobolBaseGrammar {
     protected CobolGrammar() {
     }
     
-    public static CobolGrammar instance() {
+    public static synchronized CobolGrammar instance() {
       if (INSTANCE == null)
         INSTANCE = new CobolGrammar();
         
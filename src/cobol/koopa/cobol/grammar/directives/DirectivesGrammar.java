@@ -30,7 +30,7 @@ public class DirectivesGrammar extends DirectivesBaseGrammar {
     protected DirectivesGrammar() {
     }
     
-    public static DirectivesGrammar instance() {
+    public static synchronized DirectivesGrammar instance() {
       if (INSTANCE == null)
         INSTANCE = new DirectivesGrammar();
         
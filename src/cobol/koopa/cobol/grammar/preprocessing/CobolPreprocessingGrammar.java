@@ -25,7 +25,7 @@ public class CobolPreprocessingGrammar extends CobolPreprocessingBaseGrammar {
     protected CobolPreprocessingGrammar() {
     }
     
-    public static CobolPreprocessingGrammar instance() {
+    public static synchronized CobolPreprocessingGrammar instance() {
       if (INSTANCE == null)
         INSTANCE = new CobolPreprocessingGrammar();
         
@@ -0,0 +1,179 @@
+package koopa.cobol.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import koopa.cobol.CobolProject;
+import koopa.core.parsers.Parse;
+
+/**
+ * Parses a batch of files on a pool of worker threads.
+ * <p>
+ * Each worker gets its own {@linkplain CobolParser}, set up with its own
+ * {@linkplain CobolProject#duplicate()} of the given project. The grammars
+ * themselves are shared, which is why they get frozen first (cfr.
+ * {@linkplain CobolParser#freezeGrammars()}).
+ * <p>
+ * Files are handed out largest first. That way the long running parses get
+ * started early, and we don't end up waiting on a single worker which picked
+ * up a huge file at the very end.
+ * <p>
+ * {@linkplain ParseResults} are passed to a {@linkplain Sink} as soon as they
+ * are available. This happens on the worker threads.
+ */
+public class BatchParser {
+
+	private static final Logger LOGGER = Logger.getLogger("parser.batch");
+
+	/**
+	 * Receives the {@linkplain ParseResults} of a {@linkplain BatchParser}.
+	 * This gets called from the worker threads, so implementations should be
+	 * thread safe.
+	 */
+	public interface Sink {
+		void parsed(ParseResults results);
+	}
+
+	private final CobolProject project;
+
+	private int numberOfThreads = Runtime.getRuntime().availableProcessors();
+
+	private boolean keepingTrackOfTokens = false;
+
+	private boolean buildTrees = false;
+
+	private volatile boolean cancelled = false;
+
+	public BatchParser(CobolProject project) {
+		this.project = project;
+	}
+
+	/**
+	 * Parse all given files, passing the results to the given sink. This
+	 * returns once all files have been parsed, or once the batch was
+	 * {@linkplain #cancel()}led.
+	 */
+	public BatchStatistics parse(List<File> files, final Sink sink) {
+		CobolParser.freezeGrammars();
+
+		final List<File> work = largestFirst(files);
+		final AtomicInteger next = new AtomicInteger();
+		final int workers = Math.max(1, Math.min(numberOfThreads,
+				work.size()));
+
+		final BatchStatistics statistics = new BatchStatistics(workers);
+
+		if (LOGGER.isInfoEnabled())
+			LOGGER.info("Parsing " + work.size() + " files on " + workers
+					+ " threads.");
+
+		final ForkJoinPool pool = new ForkJoinPool(workers);
+		try {
+			final List<ForkJoinTask<?>> tasks = new ArrayList<>(workers);
+
+			for (int w = 0; w < workers; w++) {
+				final int worker = w;
+				tasks.add(pool.submit(() -> {
+					final CobolParser parser = newParser();
+
+					while (!cancelled) {
+						final int index = next.getAndIncrement();
+						if (index >= work.size())
+							break;
+
+						final long start = System.nanoTime();
+						final ParseResults results = parse(parser,
+								work.get(index));
+						statistics.parsed(worker, results,
+								System.nanoTime() - start);
+
+						sink.parsed(results);
+					}
+				}));
+			}
+
+			for (ForkJoinTask<?> task : tasks)
+				task.join();
+
+		} finally {
+			pool.shutdown();
+			statistics.done();
+		}
+
+		if (LOGGER.isInfoEnabled())
+			LOGGER.info(statistics);
+
+		return statistics;
+	}
+
+	/**
+	 * Stop handing out new files to the workers. Parses which are already
+	 * running will still be completed. This is final: any later call to
+	 * {@linkplain #parse(List, Sink)} will return without parsing anything.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	private CobolParser newParser() {
+		final CobolParser parser = new CobolParser();
+		parser.setProject(project.duplicate());
+		parser.setKeepingTrackOfTokens(keepingTrackOfTokens);
+		parser.setBuildTrees(buildTrees);
+		return parser;
+	}
+
+	private ParseResults parse(CobolParser parser, File file) {
+		try {
+			return parser.parse(file);
+
+		} catch (IOException e) {
+			LOGGER.error("IOException while parsing " + file, e);
+
+			final ParseResults failed = new ParseResults(file);
+			failed.setValidInput(false);
+			failed.setParse(Parse.of(null));
+			failed.getParse().getMessages().error(null, e.getMessage());
+			return failed;
+		}
+	}
+
+	private static List<File> largestFirst(List<File> files) {
+		final List<File> sorted = new ArrayList<>(files);
+		Collections.sort(sorted,
+				(a, b) -> Long.compare(b.length(), a.length()));
+		return sorted;
+	}
+
+	public void setNumberOfThreads(int numberOfThreads) {
+		if (numberOfThreads <= 0)
+			throw new IllegalArgumentException(
+					"Number of threads must be a positive number.");
+
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	public int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+
+	public void setKeepingTrackOfTokens(boolean keepingTrackOfTokens) {
+		this.keepingTrackOfTokens = keepingTrackOfTokens;
+	}
+
+	public void setBuildTrees(boolean buildTrees) {
+		this.buildTrees = buildTrees;
+	}
+}
@@ -0,0 +1,109 @@
+package koopa.cobol.parser;
+
+/**
+ * Throughput figures for a run of a {@linkplain BatchParser}.
+ */
+public class BatchStatistics {
+
+	private final long start;
+	private long end = -1;
+
+	private final int[] files;
+	private final long[] lines;
+	private final long[] busy;
+
+	public BatchStatistics(int numberOfWorkers) {
+		this.start = System.nanoTime();
+
+		this.files = new int[numberOfWorkers];
+		this.lines = new long[numberOfWorkers];
+		this.busy = new long[numberOfWorkers];
+	}
+
+	/**
+	 * Each worker only ever updates its own slots, but we still synchronize
+	 * so that the figures can be read while the batch is running.
+	 */
+	synchronized void parsed(int worker, ParseResults results, long nanos) {
+		files[worker] += 1;
+		if (results.getNumberOfLines() > 0)
+			lines[worker] += results.getNumberOfLines();
+		busy[worker] += nanos;
+	}
+
+	synchronized void done() {
+		end = System.nanoTime();
+	}
+
+	public int getNumberOfWorkers() {
+		return files.length;
+	}
+
+	public synchronized int getNumberOfFiles() {
+		int total = 0;
+		for (int f : files)
+			total += f;
+		return total;
+	}
+
+	public synchronized long getNumberOfLines() {
+		long total = 0;
+		for (long l : lines)
+			total += l;
+		return total;
+	}
+
+	/**
+	 * Wall clock time, in milliseconds, from the start of the batch until it
+	 * was done (or until now, if it is still running).
+	 */
+	public synchronized long getElapsedTime() {
+		return ((end < 0 ? System.nanoTime() : end) - start) / 1000000L;
+	}
+
+	public double getFilesPerSecond() {
+		return perSecond(getNumberOfFiles());
+	}
+
+	public double getLinesPerSecond() {
+		return perSecond(getNumberOfLines());
+	}
+
+	private double perSecond(long count) {
+		final long elapsed = getElapsedTime();
+		return elapsed <= 0 ? 0.0 : (1000.0 * count) / elapsed;
+	}
+
+	public synchronized int getNumberOfFiles(int worker) {
+		return files[worker];
+	}
+
+	/**
+	 * The fraction of the elapsed time during which the given worker was
+	 * actually parsing.
+	 */
+	public synchronized double getUtilisation(int worker) {
+		final long elapsed = (end < 0 ? System.nanoTime() : end) - start;
+		return elapsed <= 0 ? 0.0 : ((double) busy[worker]) / elapsed;
+	}
+
+	@Override
+	public synchronized String toString() {
+		final StringBuilder b = new StringBuilder();
+		b.append(getNumberOfFiles()).append(" files, ")
+				.append(getNumberOfLines()).append(" lines in ")
+				.append(getElapsedTime()).append(" ms (")
+				.append(String.format("%.1f", getFilesPerSecond()))
+				.append(" files/s, ")
+				.append(String.format("%.0f", getLinesPerSecond()))
+				.append(" lines/s)");
+
+		for (int w = 0; w < files.length; w++)
+			b.append("\n  worker ").append(w).append(": ").append(files[w])
+					.append(" files, ")
+					.append(String.format("%.0f", 100 * getUtilisation(w)))
+					.append("% busy");
+
+		return b.toString();
+	}
+}
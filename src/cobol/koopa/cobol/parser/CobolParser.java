@@ -3,16 +3,23 @@ package koopa.cobol.parser;
 import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
 
 import org.apache.log4j.Logger;
 
 import koopa.cobol.CobolProject;
 import koopa.cobol.CobolTokens;
 import koopa.cobol.grammar.CobolGrammar;
+import koopa.cobol.grammar.directives.DirectivesGrammar;
+import koopa.cobol.sources.CopybookCache;
+import koopa.cobol.sources.CopybookTracker;
 import koopa.cobol.sources.LOCCount;
+import koopa.cobol.sources.TokenCache;
 import koopa.core.data.Data;
 import koopa.core.data.Position;
 import koopa.core.data.Token;
+import koopa.core.grammars.KoopaGrammar;
+import koopa.core.parsers.Memoization;
 import koopa.core.parsers.Messages;
 import koopa.core.parsers.Parse;
 import koopa.core.parsers.Stack.Frame;
@@ -22,7 +29,6 @@ import koopa.core.streams.BaseStream;
 import koopa.core.targets.NullTarget;
 import koopa.core.targets.TokenTracker;
 import koopa.core.trees.KoopaTreeBuilder;
-import koopa.core.util.Files;
 import koopa.core.util.Tuple;
 
 public class CobolParser {
@@ -33,15 +39,38 @@ public class CobolParser {
 
 	private boolean buildTrees = false;
 
+	private boolean memoizing = Memoization.shouldRun();
+
 	private CobolProject project = null;
 
+	private TokenCache tokenCache = TokenCache.getShared();
+
+	/**
+	 * Freezes all grammars used while parsing Cobol (cfr.
+	 * {@linkplain KoopaGrammar#freeze()}). This should be done before running
+	 * several {@linkplain CobolParser}s in parallel.
+	 */
+	public static void freezeGrammars() {
+		CobolGrammar.instance().freeze();
+		DirectivesGrammar.instance().freeze();
+	}
+
 	public ParseResults parse(File file) throws IOException {
 		if (LOGGER.isInfoEnabled())
 			LOGGER.info("Parsing " + file);
 
+		if (tokenCache != null) {
+			final Parse parse = getParseSetup(file);
+			try {
+				return parse(file, parse);
+			} finally {
+				parse.getFlow().getSource().close();
+			}
+		}
+
 		Reader reader = null;
 		try {
-			reader = Files.getReader(file);
+			reader = CobolTokens.getReader(file, project);
 			return parse(file, reader);
 
 		} finally {
@@ -72,6 +101,17 @@ public class CobolParser {
 		results.setParse(parse);
 
 		final Messages messages = parse.getMessages();
+		if (LOGGER.isDebugEnabled()) {
+			if (parse.getMemoization() != null)
+				LOGGER.debug(parse.getMemoization());
+
+			LOGGER.debug(parse.getLookahead());
+			LOGGER.debug(CopybookCache.getShared());
+
+			if (tokenCache != null)
+				LOGGER.debug(tokenCache);
+		}
+
 		if (LOGGER.isInfoEnabled()) {
 			LOGGER.info((accepts ? "Valid file: " : "Invalid file: ") + file);
 
@@ -121,6 +161,13 @@ public class CobolParser {
 		tail.rewind();
 		parse.done();
 
+		// Which copybooks went into this, for whoever tracks dependencies.
+		final CopybookTracker copybooks //
+				= parse.getSource(CopybookTracker.class);
+		if (copybooks != null)
+			results.setCopybookLookups(
+					new ArrayList<>(copybooks.getCopybookLookups()));
+
 		if (!accepts && messages.getErrorCount() == 0) {
 			String msg = "Failed to parse.";
 
@@ -145,17 +192,37 @@ public class CobolParser {
 		return results;
 	}
 
+	/**
+	 * Sets up a parse of the given file. If there is a {@linkplain TokenCache}
+	 * the preprocessed tokens will come from there when possible.
+	 */
 	public Parse getParseSetup(File file) throws IOException {
-		return getParseSetup(file, Files.getReader(file));
+		if (tokenCache == null)
+			return getParseSetup(file, CobolTokens.getReader(file, project));
+
+		return getParseSetup(tokenCache.getSource(file, project));
 	}
 
+	/**
+	 * Sets up a parse of whatever the reader gives. This never uses the
+	 * {@linkplain TokenCache}, as that text need not match what's in the
+	 * file (e.g. when it's being edited).
+	 */
 	public Parse getParseSetup(File file, Reader reader) throws IOException {
 		// Build the tokenisation stage.
-		final Source source = new LOCCount(
-				CobolTokens.getNewSource(file, reader, project));
+		return getParseSetup(CobolTokens.getNewSource(file, reader, project));
+	}
+
+	private Parse getParseSetup(Source tokens) {
+		final Source source = new LOCCount(tokens);
 
 		final Parse parse = Parse.of(source);
 
+		if (memoizing && parse.getMemoization() == null)
+			parse.setMemoization(new Memoization());
+		else if (!memoizing)
+			parse.setMemoization(null);
+
 		// Keep track of all tokens passing through here, if so requested.
 		TokenTracker tokenTracker = null;
 		if (keepingTrackOfTokens) {
@@ -181,6 +248,30 @@ public class CobolParser {
 		this.buildTrees = buildTrees;
 	}
 
+	/**
+	 * Whether or not to use packrat memoization while parsing. Cfr.
+	 * {@linkplain Memoization}.
+	 */
+	public void setMemoizing(boolean memoizing) {
+		this.memoizing = memoizing;
+	}
+
+	public boolean isMemoizing() {
+		return memoizing;
+	}
+
+	/**
+	 * Which {@linkplain TokenCache} to use when parsing files, if any. This
+	 * defaults to {@linkplain TokenCache#getShared()}.
+	 */
+	public void setTokenCache(TokenCache tokenCache) {
+		this.tokenCache = tokenCache;
+	}
+
+	public TokenCache getTokenCache() {
+		return tokenCache;
+	}
+
 	public void setProject(CobolProject project) {
 		this.project = project;
 	}
@@ -231,7 +322,7 @@ public class CobolParser {
 				if (first == null)
 					first = token;
 
-				if (token.getStart().compareTo(best) >= 0)
+				if (token.getStartPositionInFile() >= best.getPositionInFile())
 					return token;
 			}
 
@@ -0,0 +1,386 @@
+package koopa.cobol.parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+
+import koopa.cobol.CobolProject;
+import koopa.cobol.CobolTokens;
+import koopa.cobol.sources.CopyInclude;
+import koopa.cobol.sources.CopybookLookup;
+import koopa.core.util.Digests;
+
+/**
+ * Remembers, per program, what went into its last parse, and a summary of the
+ * outcome. That way a later run need only reparse the programs for which
+ * something changed, and can reuse the summaries of all others.
+ * <p>
+ * What went into a parse is the program's contents, the settings which affect
+ * its token stream (cfr.
+ * {@linkplain CobolTokens#describeSettings(File, CobolProject)}), and every
+ * copybook which got looked up while preprocessing it, including those
+ * pulled in by other copybooks (cfr. {@linkplain CopyInclude} and
+ * {@linkplain ParseResults#getCopybookLookups()}). A program is up to date
+ * when its contents and settings are unchanged, the project still locates
+ * the same copybooks, and none of those copybooks changed.
+ * <p>
+ * Summaries are rows of text, one value per column. A state is tied to the
+ * names of its columns; one which got saved with other columns is of no use,
+ * and loads as empty.
+ * <p>
+ * Hashes of files get computed at most once per state, so the same state
+ * should not be kept around across runs. This is safe to use from several
+ * threads at once.
+ */
+public class IncrementalState {
+
+	private static final Logger LOGGER = Logger.getLogger("parser.incremental");
+
+	/**
+	 * Change this whenever the layout of the state file changes. Older files
+	 * then load as empty.
+	 */
+	private static final int VERSION = 1;
+
+	private static final int MAGIC = 0x4B4F4953; // "KOIS"
+
+	/**
+	 * Load the state saved in the given file. If there is no such file, or it
+	 * was saved for other columns, this returns an empty state.
+	 */
+	public static IncrementalState load(File file, List<String> columns)
+			throws IOException {
+		final IncrementalState state = new IncrementalState(columns);
+
+		if (!file.isFile())
+			return state;
+
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)))) {
+
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				LOGGER.info("Ignoring incremental state from another version: "
+						+ file);
+				return state;
+			}
+
+			if (!columns.equals(readStrings(in))) {
+				LOGGER.info("Ignoring incremental state for other columns: "
+						+ file);
+				return state;
+			}
+
+			final int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				final File program = readFile(in);
+				final String settings = readString(in);
+				final String hash = readString(in);
+
+				final int lookupCount = in.readInt();
+				final List<CopybookLookup> lookups = new ArrayList<>(
+						lookupCount);
+				final List<String> hashes = new ArrayList<>(lookupCount);
+				for (int j = 0; j < lookupCount; j++) {
+					lookups.add(new CopybookLookup(readString(in),
+							readString(in), readFile(in), readFile(in),
+							readFile(in)));
+					hashes.add(readString(in));
+				}
+
+				final List<String> summary = readStrings(in);
+
+				state.entries.put(program, new Entry(settings, hash, lookups,
+						hashes, summary));
+			}
+
+		} catch (EOFException e) {
+			LOGGER.warn("Ignoring truncated incremental state: " + file);
+			state.entries.clear();
+		}
+
+		return state;
+	}
+
+	private final List<String> columns;
+
+	/** Sorted on the program, so that saved states are stable. */
+	private final Map<File, Entry> entries = new TreeMap<>();
+
+	private final Map<File, String> hashes = new HashMap<>();
+
+	public IncrementalState(List<String> columns) {
+		this.columns = new ArrayList<>(columns);
+	}
+
+	public List<String> getColumns() {
+		return Collections.unmodifiableList(columns);
+	}
+
+	/**
+	 * Saves this state to the given file. The file only gets replaced once
+	 * everything has been written.
+	 */
+	public synchronized void save(File file) throws IOException {
+		final File folder = file.getAbsoluteFile().getParentFile();
+		folder.mkdirs();
+
+		File temp = File.createTempFile("koopa", ".part", folder);
+		try {
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				writeStrings(out, columns);
+
+				out.writeInt(entries.size());
+				for (Map.Entry<File, Entry> e : entries.entrySet()) {
+					final Entry entry = e.getValue();
+					writeFile(out, e.getKey());
+					writeString(out, entry.settings);
+					writeString(out, entry.hash);
+
+					out.writeInt(entry.lookups.size());
+					for (int i = 0; i < entry.lookups.size(); i++) {
+						final CopybookLookup lookup = entry.lookups.get(i);
+						writeString(out, lookup.getTextName());
+						writeString(out, lookup.getLibraryName());
+						writeFile(out, lookup.getRelativeTo());
+						writeFile(out, lookup.getCopybook());
+						writeFile(out, lookup.getIncludedFrom());
+						writeString(out, entry.copybookHashes.get(i));
+					}
+
+					writeStrings(out, entry.summary);
+				}
+			}
+
+			Files.move(temp.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+			temp = null;
+
+		} finally {
+			if (temp != null)
+				temp.delete();
+		}
+	}
+
+	/**
+	 * Whether the summary we have for the given program is still valid, i.e.
+	 * whether it can skip being parsed.
+	 */
+	public boolean isUpToDate(File program, CobolProject project) {
+		final Entry entry;
+		synchronized (this) {
+			entry = entries.get(program);
+		}
+
+		if (entry == null)
+			return false;
+
+		if (!entry.settings
+				.equals(CobolTokens.describeSettings(program, project)))
+			return false;
+
+		try {
+			if (!entry.hash.equals(hash(program)))
+				return false;
+
+			for (int i = 0; i < entry.lookups.size(); i++) {
+				final CopybookLookup lookup = entry.lookups.get(i);
+
+				if (!lookup.locatesSameCopybook(project))
+					return false;
+
+				if (lookup.getCopybook() != null && !entry.copybookHashes
+						.get(i).equals(hash(lookup.getCopybook())))
+					return false;
+			}
+
+		} catch (IOException e) {
+			// Something went missing. A new parse will tell what's wrong.
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Record the outcome of parsing a program, replacing anything we had for
+	 * it before. The summary should hold one value for each column.
+	 */
+	public void update(ParseResults results, CobolProject project,
+			List<String> summary) {
+		if (summary.size() != columns.size())
+			throw new IllegalArgumentException("Expected " + columns.size()
+					+ " values, got " + summary.size() + ".");
+
+		final File program = results.getFile();
+		final List<CopybookLookup> lookups = new ArrayList<>(
+				results.getCopybookLookups());
+
+		Entry entry = null;
+		try {
+			final List<String> copybookHashes = new ArrayList<>(
+					lookups.size());
+			for (CopybookLookup lookup : lookups)
+				copybookHashes.add(lookup.getCopybook() == null ? ""
+						: hash(lookup.getCopybook()));
+
+			entry = new Entry(CobolTokens.describeSettings(program, project),
+					hash(program), lookups, copybookHashes,
+					new ArrayList<>(summary));
+
+		} catch (IOException e) {
+			// No entry, so this will simply get parsed again next time.
+			LOGGER.warn("Could not hash the sources of " + program, e);
+		}
+
+		synchronized (this) {
+			if (entry == null)
+				entries.remove(program);
+			else
+				entries.put(program, entry);
+		}
+	}
+
+	/**
+	 * The summary recorded for the given program, or <code>null</code> if
+	 * there is none.
+	 */
+	public synchronized List<String> getSummary(File program) {
+		final Entry entry = entries.get(program);
+		if (entry == null)
+			return null;
+		else
+			return Collections.unmodifiableList(entry.summary);
+	}
+
+	/**
+	 * Forget about all programs except the given ones. Use this to get rid of
+	 * programs which no longer exist.
+	 */
+	public synchronized void retainAll(Collection<File> programs) {
+		final Set<File> keep = new HashSet<>(programs);
+		entries.keySet().retainAll(keep);
+	}
+
+	public synchronized List<File> getPrograms() {
+		return new ArrayList<>(entries.keySet());
+	}
+
+	/**
+	 * The hash of the given file's contents, as it was when first asked for.
+	 * Many programs share the same copybooks, so this saves rereading those.
+	 * It also means that a file which changes halfway through a run will
+	 * still look changed on the next one.
+	 */
+	private String hash(File file) throws IOException {
+		synchronized (this) {
+			final String hash = hashes.get(file);
+			if (hash != null)
+				return hash;
+		}
+
+		final String hash = Digests.sha256(file);
+
+		synchronized (this) {
+			final String earlier = hashes.get(file);
+			if (earlier != null)
+				return earlier;
+
+			hashes.put(file, hash);
+			return hash;
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Incremental state: " + entries.size() + " programs";
+	}
+
+	private static final class Entry {
+		private final String settings;
+		private final String hash;
+		private final List<CopybookLookup> lookups;
+		private final List<String> copybookHashes;
+		private final List<String> summary;
+
+		public Entry(String settings, String hash,
+				List<CopybookLookup> lookups, List<String> copybookHashes,
+				List<String> summary) {
+			this.settings = settings;
+			this.hash = hash;
+			this.lookups = lookups;
+			this.copybookHashes = copybookHashes;
+			this.summary = summary;
+		}
+	}
+
+	private static void writeStrings(DataOutputStream out, List<String> list)
+			throws IOException {
+		out.writeInt(list.size());
+		for (String s : list)
+			writeString(out, s);
+	}
+
+	private static List<String> readStrings(DataInputStream in)
+			throws IOException {
+		final int count = in.readInt();
+		final List<String> list = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+			list.add(readString(in));
+
+		return list;
+	}
+
+	private static void writeString(DataOutputStream out, String s)
+			throws IOException {
+		if (s == null)
+			out.writeInt(-1);
+		else {
+			final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		final int length = in.readInt();
+		if (length < 0)
+			return null;
+
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeFile(DataOutputStream out, File file)
+			throws IOException {
+		writeString(out, file == null ? null : file.getPath());
+	}
+
+	private static File readFile(DataInputStream in) throws IOException {
+		final String path = readString(in);
+		return path == null ? null : new File(path);
+	}
+}
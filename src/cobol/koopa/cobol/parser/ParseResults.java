@@ -1,7 +1,10 @@
 package koopa.cobol.parser;
 
 import java.io.File;
+import java.util.Collections;
+import java.util.List;
 
+import koopa.cobol.sources.CopybookLookup;
 import koopa.core.parsers.Parse;
 
 public class ParseResults {
@@ -16,6 +19,8 @@ public class ParseResults {
 	private int numberOfLinesWithComments = -1;
 	private long time = -1;
 
+	private List<CopybookLookup> copybookLookups = Collections.emptyList();
+
 	public ParseResults(File file) {
 		this.file = file;
 		this.validInput = false;
@@ -41,6 +46,7 @@ public class ParseResults {
 		copy.numberOfLinesWithCode = numberOfLinesWithCode;
 		copy.numberOfLinesWithComments = numberOfLinesWithComments;
 		copy.time = time;
+		copy.copybookLookups = copybookLookups;
 		return copy;
 	}
 
@@ -83,4 +89,17 @@ public class ParseResults {
 	public Parse getParse() {
 		return parse;
 	}
+
+	public void setCopybookLookups(List<CopybookLookup> copybookLookups) {
+		this.copybookLookups = copybookLookups;
+	}
+
+	/**
+	 * All copybooks which were looked up for this file, in order. This is
+	 * only complete if the parse read its source to the end (as it does when
+	 * keeping track of tokens).
+	 */
+	public List<CopybookLookup> getCopybookLookups() {
+		return copybookLookups;
+	}
 }
@@ -0,0 +1,182 @@
+package koopa.cobol.parser;
+
+import static koopa.core.data.tags.SyntacticTag.END_OF_LINE;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import koopa.cobol.CobolProject;
+import koopa.cobol.CobolTokens;
+import koopa.cobol.copybooks.CopybookGraph;
+import koopa.cobol.sources.CopyInclude;
+import koopa.cobol.sources.CopybookLookup;
+import koopa.core.data.Data;
+import koopa.core.data.Token;
+import koopa.core.sources.Source;
+import koopa.core.trees.Tree;
+
+/**
+ * Runs only the source stages of {@linkplain CobolTokens}, without parsing,
+ * and writes out the expanded source as it goes. Nothing gets held on to
+ * beyond what the source stages need themselves, so this works for sources of
+ * any size.
+ * <p>
+ * In the expanded source COPY and REPLACE statements which got handled are
+ * blanked out, copybooks are included in their place, and replacements have
+ * been applied. Included lines start on a line of their own, and text which
+ * followed a COPY statement keeps its original column, so that fixed format
+ * sources stay in their areas.
+ * <p>
+ * Any copybooks which get looked up can be recorded in a
+ * {@linkplain CopybookGraph}.
+ */
+public class Preprocessor {
+
+	private static final Logger LOGGER = Logger.getLogger("parser.preprocessor");
+
+	private final CobolProject project;
+
+	private CopybookGraph graph = null;
+
+	public Preprocessor(CobolProject project) {
+		this.project = project;
+	}
+
+	/**
+	 * Where to record the copybooks used by each file, if anywhere.
+	 */
+	public void setCopybookGraph(CopybookGraph graph) {
+		this.graph = graph;
+	}
+
+	public CopybookGraph getCopybookGraph() {
+		return graph;
+	}
+
+	/**
+	 * Preprocess the given file, writing the expanded source to the given
+	 * writer. This returns all copybooks which were looked up, in order.
+	 */
+	public List<CopybookLookup> preprocess(File file, Writer out)
+			throws IOException {
+		if (LOGGER.isInfoEnabled())
+			LOGGER.info("Preprocessing " + file);
+
+		final Reader reader = CobolTokens.getReader(file, project);
+		try {
+			return preprocess(file, reader, out);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Preprocess whatever the reader gives, as if it were the given file,
+	 * writing the expanded source to the given writer. This returns all
+	 * copybooks which were looked up, in order.
+	 */
+	public List<CopybookLookup> preprocess(File file, Reader reader,
+			Writer out) throws IOException {
+		final Source source = CobolTokens.getNewSource(file, reader, project);
+		try {
+			final ExpandedSource expanded = new ExpandedSource(out);
+
+			Data d;
+			while ((d = source.next()) != null)
+				if (d instanceof Token)
+					expanded.write((Token) d);
+				else if (d instanceof Tree)
+					expanded.blank((Tree) d);
+
+			out.flush();
+
+		} finally {
+			source.close();
+		}
+
+		final CopyInclude copyInclude = source.getSource(CopyInclude.class);
+		final List<CopybookLookup> lookups = copyInclude == null
+				? Collections.<CopybookLookup> emptyList()
+				: copyInclude.getCopybookLookups();
+
+		if (graph != null && file != null)
+			graph.add(file, lookups);
+
+		return lookups;
+	}
+
+	/**
+	 * Writes out tokens, keeping track of the column we're at.
+	 */
+	private static final class ExpandedSource {
+		private final Writer out;
+
+		/** How many characters have been written on the current line. */
+		private int column = 0;
+
+		public ExpandedSource(Writer out) {
+			this.out = out;
+		}
+
+		public void write(Token token) throws IOException {
+			final int positionInLine = token.getStartPositionInLine();
+			final boolean endOfLine = token.hasTag(END_OF_LINE);
+
+			if (!endOfLine) {
+				if (positionInLine == 1 && column > 0)
+					// This starts a line in some other source (e.g. a copybook
+					// included halfway through a line).
+					newLine();
+
+				else if (column == 0 && positionInLine > 1)
+					// This is what follows some lines which got included into
+					// the middle of another one. It should keep its original
+					// column.
+					pad(positionInLine - 1);
+			}
+
+			text(token.getText(), endOfLine);
+		}
+
+		public void blank(Tree statement) throws IOException {
+			for (Token token : statement.allTokens()) {
+				if (token.hasTag(END_OF_LINE)) {
+					text(token.getText(), true);
+					continue;
+				}
+
+				// Statements need not hold on to their whitespace, so we go
+				// by the positions of their tokens.
+				pad(token.getStartPositionInLine() - 1);
+				pad(column + token.getLength());
+			}
+		}
+
+		private void text(String text, boolean endOfLine) throws IOException {
+			out.write(text);
+
+			if (endOfLine)
+				column = 0;
+			else
+				column += text.length();
+		}
+
+		private void newLine() throws IOException {
+			out.write('\n');
+			column = 0;
+		}
+
+		private void pad(int toColumn) throws IOException {
+			while (column < toColumn) {
+				out.write(' ');
+				column += 1;
+			}
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package koopa.cobol.parser.preprocessing.replacing;
+
+import static koopa.core.data.tags.AreaTag.COMMENT;
+import static koopa.core.data.tags.AreaTag.PROGRAM_TEXT_AREA;
+import static koopa.core.data.tags.AreaTag.SKIPPED;
+import static koopa.core.data.tags.SyntacticTag.END_OF_LINE;
+import static koopa.core.data.tags.SyntacticTag.SEPARATOR;
+import static koopa.core.data.tags.SyntacticTag.WHITESPACE;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import koopa.core.data.Data;
+import koopa.core.data.Token;
+import koopa.core.sources.Source;
+
+/**
+ * The library text-words following a given point in a {@linkplain Source},
+ * read only as far as anyone has asked for them.
+ * <p>
+ * This is what lets all {@linkplain ReplacingPhrase}s which get tried at the
+ * same spot share the work of reading ahead. Once one of them matches it
+ * should {@linkplain #consume(int)} the words it matched. If none of them do,
+ * {@linkplain #rewind()} puts everything back.
+ */
+public class LibraryText {
+
+	private final Source library;
+
+	/** Every token we took from the library, in order. */
+	private final List<Token> seen = new ArrayList<>();
+
+	private final List<List<Token>> words = new ArrayList<>();
+	private final List<String> texts = new ArrayList<>();
+
+	/** The size of {@link #seen} right after reading each of the words. */
+	private final List<Integer> ends = new ArrayList<>();
+
+	private boolean exhausted = false;
+
+	public LibraryText(Source library) {
+		this.library = library;
+	}
+
+	/**
+	 * The tokens making up the text-word at the given index, or
+	 * <code>null</code> if there is no such word.
+	 */
+	public List<Token> getTokens(int index) {
+		return readUpTo(index) ? words.get(index) : null;
+	}
+
+	/**
+	 * The text of the text-word at the given index, or <code>null</code> if
+	 * there is no such word.
+	 */
+	public String getText(int index) {
+		return readUpTo(index) ? texts.get(index) : null;
+	}
+
+	/**
+	 * Take the given number of text-words out of the library, and put back
+	 * anything we read beyond them. This returns all tokens which were taken.
+	 */
+	public List<Token> consume(int count) {
+		final int end = count == 0 ? 0 : ends.get(count - 1);
+		putBack(end);
+
+		final List<Token> taken = new ArrayList<>(seen);
+		seen.clear();
+		return taken;
+	}
+
+	/**
+	 * Put back everything we read, and not yet consumed.
+	 */
+	public void rewind() {
+		putBack(0);
+	}
+
+	private void putBack(int end) {
+		for (int i = seen.size() - 1; i >= end; i--)
+			library.unshift(seen.remove(i));
+
+		words.clear();
+		texts.clear();
+		ends.clear();
+		exhausted = true;
+	}
+
+	private boolean readUpTo(int index) {
+		while (words.size() <= index) {
+			if (exhausted)
+				return false;
+
+			skipToNonBlankProgramText();
+			final List<Token> word = nonBlankProgramText();
+
+			if (word == null) {
+				exhausted = true;
+				return false;
+			}
+
+			words.add(word);
+			texts.add(text(word));
+			ends.add(seen.size());
+		}
+
+		return true;
+	}
+
+	private List<Token> nonBlankProgramText() {
+		List<Token> textWord = null;
+		boolean buildingDummyOperand = false;
+
+		while (true) {
+			final Data data = library.next();
+
+			if (data == null)
+				return textWord;
+
+			// If we find non-Tokens in the data stream we assume they're there
+			// for a good reason and let them indicate the end of the text word.
+			if (!(data instanceof Token)) {
+				library.unshift(data);
+				return textWord;
+			}
+
+			final Token t = (Token) data;
+
+			if (!isProgramText(t)) {
+				seen.add(t);
+				continue;
+			}
+
+			if (isBlank(t)) {
+				library.unshift(t);
+				return textWord;
+			}
+
+			if (t.hasTag(SEPARATOR)) {
+				if (textWord == null || buildingDummyOperand) {
+
+					seen.add(t);
+					if (textWord == null) {
+						textWord = new LinkedList<>();
+					}
+
+					//Check if we are looking at a dummy operand
+					if (":".equals(t.getText())) {
+						if (!buildingDummyOperand) {
+							buildingDummyOperand = true;
+							textWord.add(t);
+							continue;
+						}
+					}
+					// SEP while building a word => complete word and ignore
+					// SEP.
+
+					textWord.add(t);
+
+					return textWord;
+
+				} else {
+					// SEP while not building a word => return SEP.
+					library.unshift(t);
+					return textWord;
+				}
+
+			} else {
+				seen.add(t);
+
+				if (textWord == null)
+					textWord = new LinkedList<>();
+
+				textWord.add(t);
+			}
+		}
+	}
+
+	private void skipToNonBlankProgramText() {
+		while (true) {
+			final Data d = library.next();
+
+			if (d == null)
+				return;
+
+			if (!(d instanceof Token)) {
+				library.unshift(d);
+				return;
+			}
+
+			final Token t = (Token) d;
+
+			if (isProgramText(t) && !isBlank(t)) {
+				library.unshift(t);
+				return;
+			} else
+				seen.add(t);
+		}
+	}
+
+	private static boolean isProgramText(Token t) {
+		return t.hasAnyTag(PROGRAM_TEXT_AREA, SKIPPED) && !t.hasAnyTag(COMMENT);
+	}
+
+	private static boolean isBlank(Token t) {
+		return isProgramText(t)
+				&& t.hasAnyTag(COMMENT, END_OF_LINE, WHITESPACE);
+	}
+
+	private static String text(List<Token> word) {
+		if (word.size() == 1)
+			return word.get(0).getText();
+
+		final StringBuilder text = new StringBuilder();
+		for (Token token : word)
+			text.append(token.getText());
+
+		return text.toString();
+	}
+}
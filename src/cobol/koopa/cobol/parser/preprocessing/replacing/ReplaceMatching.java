@@ -1,14 +1,12 @@
 package koopa.cobol.parser.preprocessing.replacing;
 
-import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.Stack;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 
 import koopa.core.data.Data;
 import koopa.core.data.Token;
-import koopa.core.sources.Source;
 
 public class ReplaceMatching extends ReplacingPhrase {
 
@@ -21,18 +19,16 @@ public class ReplaceMatching extends ReplacingPhrase {
 	}
 
 	@Override
-	public boolean appliedTo(Source library,
+	public boolean appliedTo(LibraryText library,
 			LinkedList<Data> newTokens) {
 		boolean matchOccurred = true;
-		Stack<Token> seenWhileMatching = new Stack<>();
 
 		if (LOGGER.isTraceEnabled())
 			LOGGER.trace("Trying " + this);
 
-		Iterator<String> it = replacing.getTextWords().iterator();
-		while (it.hasNext()) {
-			final String libraryTextWord = text(
-					nextTextWord(library, seenWhileMatching));
+		final List<String> textWords = replacing.getTextWords();
+		for (int i = 0; i < textWords.size(); i++) {
+			final String libraryTextWord = library.getText(i);
 
 			if (libraryTextWord == null) {
 				if (LOGGER.isTraceEnabled())
@@ -42,16 +38,13 @@ public class ReplaceMatching extends ReplacingPhrase {
 				break;
 			}
 
-			final String textWord = it.next();
+			final String textWord = textWords.get(i);
 			if (LOGGER.isTraceEnabled()) {
 				LOGGER.trace("  TESTING " + textWord);
 				LOGGER.trace("    AGAINST " + libraryTextWord);
 			}
 
-			final String text = textWord;
-			final String libraryText = libraryTextWord;
-
-			if (!text.equalsIgnoreCase(libraryText)) {
+			if (!textWord.equalsIgnoreCase(libraryTextWord)) {
 				matchOccurred = false;
 				break;
 			}
@@ -72,23 +65,29 @@ public class ReplaceMatching extends ReplacingPhrase {
 				LOGGER.debug("  Replaced with " + by);
 			}
 
+			final List<Token> seenWhileMatching //
+					= library.consume(textWords.size());
+
 			// The output should include any whitespace we skipped while
 			// matching.
-			if (!seenWhileMatching.isEmpty())
-				for (Token token : seenWhileMatching)
-					if (isNewline(token) || isConsideredSingleSpace(token))
-						newTokens.add(token);
-					else
-						break;
+			for (Token token : seenWhileMatching)
+				if (isNewline(token) || isConsideredSingleSpace(token))
+					newTokens.add(token);
+				else
+					break;
 
 			newTokens.addAll(by.getTokens());
-
-		} else
-			unshiftStack(library, seenWhileMatching);
+		}
 
 		return matchOccurred;
 	}
 
+	@Override
+	public String getFirstTextWord() {
+		final List<String> textWords = replacing.getTextWords();
+		return textWords.isEmpty() ? null : textWords.get(0);
+	}
+
 	@Override
 	public String toString() {
 		return "REPLACING MATCHING " + replacing + " BY " + by;
@@ -3,7 +3,6 @@ package koopa.cobol.parser.preprocessing.replacing;
 import java.util.LinkedList;
 
 import koopa.core.data.Data;
-import koopa.core.sources.Source;
 
 /**
  * This class is an implementation of {@linkplain ReplacingPhrase} which will
@@ -16,7 +15,7 @@ public class ReplaceNone extends ReplacingPhrase {
 	}
 
 	@Override
-	public boolean appliedTo(Source source, LinkedList<Data> newTokens) {
+	public boolean appliedTo(LibraryText library, LinkedList<Data> newTokens) {
 		return false;
 	}
 }
@@ -4,7 +4,6 @@ import static koopa.cobol.parser.preprocessing.replacing.ReplacingPhraseOperand.
 
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Stack;
 
 import org.apache.log4j.Logger;
 
@@ -12,7 +11,6 @@ import koopa.core.data.Data;
 import koopa.core.data.Token;
 import koopa.core.data.Tokens;
 import koopa.core.data.tags.AreaTag;
-import koopa.core.sources.Source;
 
 public class ReplaceTrailing extends ReplacingPhrase {
 
@@ -47,11 +45,10 @@ public class ReplaceTrailing extends ReplacingPhrase {
 	}
 
 	@Override
-	public boolean appliedTo(Source library,
+	public boolean appliedTo(LibraryText library,
 			LinkedList<Data> newTokens) {
 
-		final Stack<Token> seen = new Stack<>();
-		final List<Token> next = nextTextWord(library, seen);
+		final List<Token> next = library.getTokens(0);
 
 		if (LOGGER.isTraceEnabled()) {
 			LOGGER.trace("Trying " + this);
@@ -59,11 +56,13 @@ public class ReplaceTrailing extends ReplacingPhrase {
 		}
 
 		if (next != null) {
-			final String text = text(next).toUpperCase();
+			final String text = library.getText(0).toUpperCase();
 			if (text.endsWith(pattern)) {
 				if (LOGGER.isTraceEnabled())
 					LOGGER.trace("  We have a match.");
 
+				library.consume(1);
+
 				final Token head = Tokens.subtoken(Tokens.join(next), 0,
 						text.length() - patternLength);
 
@@ -89,8 +88,6 @@ public class ReplaceTrailing extends ReplacingPhrase {
 			}
 		}
 
-		unshiftStack(library, seen);
-
 		return false;
 	}
 
@@ -0,0 +1,151 @@
+package koopa.cobol.parser.preprocessing.replacing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import koopa.core.data.Data;
+
+/**
+ * A list of {@linkplain ReplacingPhrase}s, indexed on the first text-word
+ * they need to see (cfr. {@linkplain ReplacingPhrase#getFirstTextWord()}).
+ * That way, at any point in the library text, only the phrases which stand a
+ * chance get tried. Those which can't be indexed like that (e.g. LEADING and
+ * TRAILING phrases, which match on part of a word) get tried everywhere.
+ * <p>
+ * Candidates are still tried in the order in which they were given, and the
+ * first one to match wins, exactly as if all phrases had been tried one by
+ * one.
+ */
+public class ReplacingIndex {
+
+	private static final int[] NONE = new int[0];
+
+	private final List<ReplacingPhrase> phrases;
+
+	/** Indices of phrases, keyed on their first text-word. */
+	private final Map<String, int[]> byFirstTextWord = new HashMap<>();
+
+	/** Indices of phrases which must be tried everywhere. */
+	private final int[] unindexed;
+
+	public ReplacingIndex(List<ReplacingPhrase> phrases) {
+		this.phrases = new ArrayList<>(phrases);
+
+		final Map<String, List<Integer>> indexed = new HashMap<>();
+		final List<Integer> everywhere = new ArrayList<>();
+
+		for (int i = 0; i < this.phrases.size(); i++) {
+			final String first = this.phrases.get(i).getFirstTextWord();
+
+			if (first == null) {
+				everywhere.add(i);
+				continue;
+			}
+
+			final String key = key(first);
+			List<Integer> indices = indexed.get(key);
+			if (indices == null) {
+				indices = new ArrayList<>(1);
+				indexed.put(key, indices);
+			}
+			indices.add(i);
+		}
+
+		for (Map.Entry<String, List<Integer>> entry : indexed.entrySet())
+			byFirstTextWord.put(entry.getKey(), toArray(entry.getValue()));
+
+		this.unindexed = toArray(everywhere);
+	}
+
+	public List<ReplacingPhrase> getPhrases() {
+		return phrases;
+	}
+
+	/**
+	 * Try the phrases which may match the given library text, in order, until
+	 * one does. If none do, the library text is left alone.
+	 */
+	public boolean appliedTo(LibraryText library, LinkedList<Data> newTokens) {
+		final int[] indexed;
+		if (byFirstTextWord.isEmpty())
+			indexed = NONE;
+		else {
+			final String first = library.getText(0);
+			if (first == null)
+				indexed = NONE;
+			else {
+				final int[] candidates = byFirstTextWord.get(key(first));
+				indexed = candidates == null ? NONE : candidates;
+			}
+		}
+
+		// Merge both lists of candidates, so that they get tried in their
+		// original order.
+		int i = 0;
+		int j = 0;
+		while (i < indexed.length || j < unindexed.length) {
+			final int next;
+			if (j == unindexed.length
+					|| (i < indexed.length && indexed[i] < unindexed[j]))
+				next = indexed[i++];
+			else
+				next = unindexed[j++];
+
+			if (phrases.get(next).appliedTo(library, newTokens))
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Strings which are equal when ignoring case, in the sense of
+	 * {@linkplain String#equalsIgnoreCase(String)}, get the same key. Text
+	 * which is already in upper case (as most program text is) is its own key.
+	 */
+	private static String key(String text) {
+		final int length = text.length();
+
+		int i = 0;
+		while (i < length) {
+			final int c = text.codePointAt(i);
+			if (fold(c) != c)
+				break;
+			i += Character.charCount(c);
+		}
+
+		if (i == length)
+			return text;
+
+		final StringBuilder key = new StringBuilder(length);
+		key.append(text, 0, i);
+		while (i < length) {
+			final int c = text.codePointAt(i);
+			key.appendCodePoint(fold(c));
+			i += Character.charCount(c);
+		}
+
+		return key.toString();
+	}
+
+	private static int fold(int c) {
+		return Character.toUpperCase(
+				Character.toLowerCase(Character.toUpperCase(c)));
+	}
+
+	private static int[] toArray(List<Integer> indices) {
+		final int[] array = new int[indices.size()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = indices.get(i);
+
+		return array;
+	}
+
+	@Override
+	public String toString() {
+		return phrases.toString();
+	}
+}
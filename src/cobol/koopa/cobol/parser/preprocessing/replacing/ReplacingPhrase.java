@@ -1,16 +1,8 @@
 package koopa.cobol.parser.preprocessing.replacing;
 
-import static koopa.core.data.tags.AreaTag.COMMENT;
-import static koopa.core.data.tags.AreaTag.PROGRAM_TEXT_AREA;
-import static koopa.core.data.tags.AreaTag.SKIPPED;
-import static koopa.core.data.tags.SyntacticTag.END_OF_LINE;
-import static koopa.core.data.tags.SyntacticTag.SEPARATOR;
-import static koopa.core.data.tags.SyntacticTag.WHITESPACE;
 import static koopa.core.trees.jaxen.Jaxen.getMatch;
 
 import java.util.LinkedList;
-import java.util.List;
-import java.util.Stack;
 
 import koopa.core.data.Data;
 import koopa.core.data.Token;
@@ -51,121 +43,40 @@ public abstract class ReplacingPhrase {
 		return by;
 	}
 
-	public abstract boolean appliedTo(Source source,
-			LinkedList<Data> newTokens);
-
-	protected List<Token> nextTextWord(Source library,
-			Stack<Token> seen) {
-		skipToNonBlankProgramText(library, seen);
-		return nonBlankProgramText(library, seen);
-	}
-
-	private List<Token> nonBlankProgramText(Source library,
-			Stack<Token> seen) {
-
-		List<Token> textWord = null;
-		boolean buildingDummyOperand = false;
-
-		while (true) {
-			final Data data = library.next();
-
-			if (data == null)
-				return textWord;
-
-			// If we find non-Tokens in the data stream we assume they're there
-			// for a good reason and let them indicate the end of the text word.
-			if (!(data instanceof Token)) {
-				library.unshift(data);
-				return textWord;
-			}
-
-			final Token t = (Token) data;
-
-			if (!isProgramText(t)) {
-				seen.add(t);
-				continue;
-			}
-
-			if (isBlank(t)) {
-				library.unshift(t);
-				return textWord;
-			}
-
-			if (t.hasTag(SEPARATOR)) {
-				if (textWord == null || buildingDummyOperand) {
-
-					seen.add(t);
-					if (textWord == null) {
-						textWord = new LinkedList<>();
-					}
-
-					//Check if we are looking at a dummy operand
-					if (":".equals(t.getText())) {
-						if (!buildingDummyOperand) {
-							buildingDummyOperand = true;
-							textWord.add(t);
-							continue;
-						}
-					}
-					// SEP while building a word => complete word and ignore
-					// SEP.
-
-					textWord.add(t);
-
-					return textWord;
-
-				} else {
-					// SEP while not building a word => return SEP.
-					library.unshift(t);
-					return textWord;
-				}
-
-			} else {
-				seen.add(t);
+	/**
+	 * Try to apply this phrase to the library text which comes next in the
+	 * given source. If it matches, the matched text gets taken from the
+	 * source, and the replacement gets added to the list of new tokens.
+	 * Otherwise the source is left as it was.
+	 */
+	public boolean appliedTo(Source source, LinkedList<Data> newTokens) {
+		final LibraryText library = new LibraryText(source);
 
-				if (textWord == null)
-					textWord = new LinkedList<>();
-
-				textWord.add(t);
-			}
-		}
-	}
-
-	private void skipToNonBlankProgramText(Source library,
-			Stack<Token> seen) {
-		while (true) {
-			final Data d = library.next();
-
-			if (d == null)
-				return;
-
-			if (!(d instanceof Token)) {
-				library.unshift(d);
-				return;
-			}
-
-			final Token t = (Token) d;
-
-			if (isProgramText(t) && !isBlank(t)) {
-				library.unshift(t);
-				return;
-			} else
-				seen.add(t);
-		}
-	}
+		if (appliedTo(library, newTokens))
+			return true;
 
-	private boolean isProgramText(Token t) {
-		return t.hasAnyTag(PROGRAM_TEXT_AREA, SKIPPED) && !t.hasAnyTag(COMMENT);
+		library.rewind();
+		return false;
 	}
 
-	private boolean isBlank(Token t) {
-		return isProgramText(t)
-				&& t.hasAnyTag(COMMENT, END_OF_LINE, WHITESPACE);
-	}
+	/**
+	 * Try to apply this phrase to the given library text. If it matches, this
+	 * should {@linkplain LibraryText#consume(int)} what was matched, and add
+	 * the replacement to the list of new tokens. If it doesn't, this should
+	 * leave the library text alone, so that other phrases can have a go.
+	 */
+	public abstract boolean appliedTo(LibraryText library,
+			LinkedList<Data> newTokens);
 
-	protected void unshiftStack(Source library, Stack<Token> seen) {
-		while (!seen.isEmpty())
-			library.unshift(seen.pop());
+	/**
+	 * The text-word which library text must start with for this phrase to
+	 * have a chance of matching, if there is one. Phrases which return
+	 * <code>null</code> here will get tried on every text-word.
+	 * <p>
+	 * This gets compared to library text-words without regard for case.
+	 */
+	public String getFirstTextWord() {
+		return null;
 	}
 
 	public static boolean isConsideredSingleSpace(Data tw) {
@@ -201,17 +112,6 @@ public abstract class ReplacingPhrase {
 		return "\n".equals(text) || "\r\n".equals(text);
 	}
 
-	protected String text(List<Token> words) {
-		if (words == null || words.isEmpty())
-			return null;
-
-		String text = "";
-		for (Token token : words)
-			text += token.getText();
-
-		return text;
-	}
-
 	@Override
 	public String toString() {
 		return replacing + " BY " + by;
@@ -23,6 +23,7 @@ public class BasicCobolProject implements CobolProject {
 	private int defaultTabLength = 1;
 	private TabStops tabStops = new TabStops();
 	private boolean defaultPreprocessing = false;
+	private boolean defaultMemoryMapping = false;
 
 	@Override
 	public CobolProject duplicate() {
@@ -36,6 +37,7 @@ public class BasicCobolProject implements CobolProject {
 		project.defaultTabLength = defaultTabLength;
 		project.tabStops = tabStops.duplicate();
 		project.defaultPreprocessing = defaultPreprocessing;
+		project.defaultMemoryMapping = defaultMemoryMapping;
 	}
 
 	@Override
@@ -117,4 +119,19 @@ public class BasicCobolProject implements CobolProject {
 	public boolean isPreprocessing(File file) {
 		return isDefaultPreprocessing();
 	}
+
+	@Override
+	public void setDefaultMemoryMapping(boolean memoryMapping) {
+		this.defaultMemoryMapping = memoryMapping;
+	}
+
+	@Override
+	public boolean isDefaultMemoryMapping() {
+		return this.defaultMemoryMapping;
+	}
+
+	@Override
+	public boolean isMemoryMapping(File file) {
+		return isDefaultMemoryMapping();
+	}
 }
@@ -4,6 +4,7 @@ import static koopa.cobol.data.tags.CobolTag.SOURCE_FORMAT_DIRECTIVE;
 import static koopa.cobol.data.tags.CobolTag.SOURCE_LISTING_DIRECTIVE;
 import static koopa.core.data.tags.AreaTag.COMPILER_DIRECTIVE;
 import static koopa.core.data.tags.AreaTag.PROGRAM_TEXT_AREA;
+import static koopa.core.data.tags.SyntacticTag.END_OF_LINE;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -17,28 +18,49 @@ import koopa.core.data.tags.SyntacticTag;
 import koopa.core.parsers.Parse;
 import koopa.core.parsers.ParserCombinator;
 import koopa.core.sources.ChainingSource;
-import koopa.core.sources.ListSource;
+import koopa.core.sources.RingBufferSource;
 import koopa.core.sources.Source;
 import koopa.core.sources.Sources;
 import koopa.core.sources.TagAll;
 import koopa.core.sources.TokenSeparator;
 import koopa.core.trees.KoopaTreeBuilder;
 import koopa.core.trees.Tree;
-
+import koopa.core.util.RingBuffer;
+
+/**
+ * Picks out the lines holding compiler directives, tags them as such, and
+ * applies any change in source format they call for.
+ * <p>
+ * Most lines are not directives, so before running a line through the
+ * {@linkplain DirectivesGrammar} we ask the {@linkplain DirectiveFilter}
+ * whether that's even worth trying. This can be turned off by setting the
+ * <code>koopa.directives.filter</code> system property to <code>false</code>.
+ */
 public class CompilerDirectives extends ChainingSource
 		implements Source {
 
 	private static final Logger LOGGER //
 			= Logger.getLogger("source.cobol.compiler_directives");
 
+	private static final boolean FILTERING = !"false".equalsIgnoreCase(
+			System.getProperty("koopa.directives.filter"));
+
 	private final DirectivesGrammar grammar;
 
 	private SourceFormat format;
 
-	private final LinkedList<Data> pending = new LinkedList<>();
+	/**
+	 * The line we're working on. Once it has been tagged, all of it is ready
+	 * to be passed on. Every line gets read into this same buffer, and tagged
+	 * in place, so lines never need to be copied.
+	 */
+	private final RingBuffer<Data> line = new RingBuffer<>();
 
 	private List<Tree> handled = new LinkedList<>();
 
+	private int linesParsed = 0;
+	private int linesSkipped = 0;
+
 	public CompilerDirectives(Source source, SourceFormat initialFormat) {
 		super(source);
 
@@ -49,34 +71,40 @@ public class CompilerDirectives extends ChainingSource
 	@Override
 	protected Data nxt1() {
 		while (true) {
-			if (!pending.isEmpty())
-				return pending.removeFirst();
+			if (!line.isEmpty())
+				return line.removeFirst();
 
 			// Grab line from source.
-			final LinkedList<Data> line = Sources.getLine(source);
-			if (line == null)
+			if (!Sources.getLine(source, line))
 				return null;
 
 			// Check if it contains a compiler directive.
-			final Tree directive = tryToParseCompilerDirective(line);
+			final Tree directive = tryToParseCompilerDirective();
 			if (directive == null) {
 				// If not, mark it all with the current active source format,
 				// and start returning that.
-				return nextFrom(tagged(line, format));
+				tagged(format);
 
 			} else {
 				// If there is one, handle it, and start returning the result.
 				if (LOGGER.isTraceEnabled())
 					LOGGER.trace("Found a compiler directive in: " + line);
 
-				return nextFrom(handleCompilerDirective(directive, line));
+				handleCompilerDirective(directive);
 			}
 		}
 	}
 
-	private Tree tryToParseCompilerDirective(LinkedList<Data> line) {
-		// TODO Speed: can we reuse the sources?
-		final ListSource lineSource = new ListSource(line);
+	private Tree tryToParseCompilerDirective() {
+		if (FILTERING && !mightBeDirective()) {
+			linesSkipped += 1;
+			return null;
+		}
+
+		linesParsed += 1;
+
+		final RingBufferSource lineSource //
+				= new RingBufferSource(line, 0, line.size());
 		// TODO Program-Area splits ?
 		// TODO Make TagAll (work on) a Source of Data ?
 		final TagAll tagAll //
@@ -96,8 +124,33 @@ public class CompilerDirectives extends ChainingSource
 		return accepts ? treeBuilder.getTree() : null;
 	}
 
-	private LinkedList<Data> handleCompilerDirective(Tree directive,
-			LinkedList<Data> line) {
+	/**
+	 * We only look at lines made up of a single token of text, which is what
+	 * we normally get. Anything else goes to the grammar.
+	 */
+	private boolean mightBeDirective() {
+		Token text = null;
+
+		for (int i = 0; i < line.size(); i++) {
+			final Data d = line.get(i);
+			if (!(d instanceof Token))
+				return true;
+
+			final Token t = (Token) d;
+			if (t.hasTag(END_OF_LINE))
+				continue;
+
+			if (text != null)
+				return true;
+
+			text = t;
+		}
+
+		return text != null && DirectiveFilter.mightBeDirective(
+				text.getText(), text.getStartPositionInLine(), format);
+	}
+
+	private void handleCompilerDirective(Tree directive) {
 
 		handled.add(directive);
 
@@ -109,9 +162,10 @@ public class CompilerDirectives extends ChainingSource
 			if (LOGGER.isTraceEnabled())
 				LOGGER.trace("ISO SOURCE FORMAT " + declaredFormat);
 			if (declaredFormat != null)
-				return sourceformatDirective(line, declaredFormat);
+				sourceformatDirective(declaredFormat);
 			else
-				return compilerDirective(line);
+				compilerDirective();
+			return;
 		}
 
 		final Tree mfSet = directive.getDescendant("mf", "set");
@@ -132,58 +186,65 @@ public class CompilerDirectives extends ChainingSource
 				LOGGER.trace("MF SET SOURCEFORMAT " + newFormat);
 
 			if (newFormat != null)
-				return sourceformatDirective(line, newFormat);
+				sourceformatDirective(newFormat);
 			else
-				return compilerDirective(line);
+				compilerDirective();
+			return;
 		}
 
 		if (directive.hasChild("listing"))
-			return sourceListingDirective(line);
-
-		return compilerDirective(line);
+			sourceListingDirective();
+		else
+			compilerDirective();
 	}
 
-	private LinkedList<Data> sourceformatDirective(LinkedList<Data> line,
-			SourceFormat newFormat) {
-		return tagged(line, newFormat, //
+	private void sourceformatDirective(SourceFormat newFormat) {
+		tagged(newFormat, //
 				COMPILER_DIRECTIVE, SOURCE_FORMAT_DIRECTIVE);
 	}
 
-	private LinkedList<Data> compilerDirective(LinkedList<Data> line) {
-		return tagged(line, format, COMPILER_DIRECTIVE);
+	private void compilerDirective() {
+		tagged(format, COMPILER_DIRECTIVE);
 	}
 
-	private LinkedList<Data> sourceListingDirective(LinkedList<Data> line) {
-		return tagged(line, format, //
+	private void sourceListingDirective() {
+		tagged(format, //
 				COMPILER_DIRECTIVE, SOURCE_LISTING_DIRECTIVE);
 	}
 
-	private LinkedList<Data> tagged(LinkedList<Data> data,
-			SourceFormat newFormat, Object... tags) {
-
-		final LinkedList<Data> tagged = new LinkedList<>();
-
-		for (Data d : data)
+	/**
+	 * Tags all tokens in the line, in place.
+	 */
+	private void tagged(SourceFormat newFormat, Object... tags) {
+		for (int i = 0; i < line.size(); i++) {
+			final Data d = line.get(i);
 			if (d instanceof Token) {
 				final Token t = (Token) d;
 				if (t.hasTag(SyntacticTag.END_OF_LINE))
-					tagged.add(t.withTags(newFormat));
+					line.set(i, t.withTags(newFormat));
 				else
-					tagged.add(t.withTags(format).withTags(tags));
-			} else
-				tagged.add(d);
+					line.set(i, t.withTags(format).withTags(tags));
+			}
+		}
 
 		format = newFormat;
+	}
 
-		return tagged;
+	public List<Tree> getHandledDirectives() {
+		return handled;
 	}
 
-	private Data nextFrom(LinkedList<Data> data) {
-		pending.addAll(data);
-		return pending.removeFirst();
+	/**
+	 * The number of lines which got run through the directives grammar.
+	 */
+	public int getLinesParsed() {
+		return linesParsed;
 	}
 
-	public List<Tree> getHandledDirectives() {
-		return handled;
+	/**
+	 * The number of lines which the {@linkplain DirectiveFilter} ruled out.
+	 */
+	public int getLinesSkipped() {
+		return linesSkipped;
 	}
 }
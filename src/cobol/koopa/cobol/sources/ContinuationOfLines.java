@@ -26,13 +26,28 @@ import koopa.core.sources.Source;
 import koopa.core.sources.Sources;
 import koopa.core.sources.TokenSeparationLogic;
 import koopa.core.util.Iterators;
-
+import koopa.core.util.RingBuffer;
+
+/**
+ * Joins continued lines, so that the tokens which got split over them come out
+ * whole.
+ * <p>
+ * Most lines are neither continued nor continuing. Those get passed on as they
+ * are, straight from a buffer, without any of the work which continuations
+ * need. We only fall back to that once a line holds an incomplete token, or
+ * the next source line has a continuation indicator. The fast path can be
+ * turned off by setting the <code>koopa.continuations.fastpath</code> system
+ * property to <code>false</code>.
+ */
 public class ContinuationOfLines extends ChainingSource
 		implements Source {
 
 	private static final Logger LOGGER //
 			= Logger.getLogger("source.cobol.continuations");
 
+	private static final boolean FAST_PATH = !"false".equalsIgnoreCase(
+			System.getProperty("koopa.continuations.fastpath"));
+
 	/**
 	 * This is a tag which may be applied to fixed indicators to show that they
 	 * have been handled. This is needed as in the case of
@@ -48,6 +63,15 @@ public class ContinuationOfLines extends ChainingSource
 
 	private final LinkedList<LinkedList<Data>> pendingLines = new LinkedList<>();
 
+	/**
+	 * Whole lines which were read for the fast path, but which haven't been
+	 * passed on yet. The first {@linkplain #passable} of these are known not
+	 * to need any work.
+	 */
+	private final RingBuffer<Data> ahead = new RingBuffer<>();
+
+	private int passable = 0;
+
 	public ContinuationOfLines(Source source) {
 		super(source);
 	}
@@ -55,16 +79,99 @@ public class ContinuationOfLines extends ChainingSource
 	@Override
 	protected Data nxt1() {
 		while (true) {
+			if (passable > 0) {
+				passable -= 1;
+				return ahead.removeFirst();
+			}
+
 			if (!pending.isEmpty())
 				return withoutInternalStatus(pending.removeFirst());
 
+			if (FAST_PATH && pendingLines.isEmpty()) {
+				final int end = lineEnd(0);
+
+				// No more lines ?
+				if (end == 0)
+					return null;
+
+				if (needsNoWork(end)) {
+					passable = end;
+					continue;
+				}
+
+				// It's not that simple. Everything we read ahead goes through
+				// the full process instead.
+				moveAheadToPendingLines();
+			}
+
 			final LinkedList<Data> line = getLogicalLine();
 			if (line == null)
 				return null;
 
 			pending.addAll(line);
+		}
+	}
+
+	/**
+	 * Whether the line at the front of {@linkplain #ahead}, which ends at the
+	 * given index, can be passed on as is. This is the same test as in
+	 * {@linkplain #getLogicalLine()}: it must be blank, or hold no incomplete
+	 * token and not be continued by the next non-blank line.
+	 */
+	private boolean needsNoWork(int end) {
+		if (isBlank(0, end))
+			return true;
+
+		if (hasIncompleteToken(0, end))
+			return false;
+
+		int start = end;
+		while (true) {
+			final int next = lineEnd(start);
+
+			// No next line, so nothing to continue with.
+			if (next == start)
+				return true;
+
+			if (!isBlank(start, next))
+				return !isFixedContinuationIndicator(
+						findFixedIndicator(start, next));
 
-			return withoutInternalStatus(pending.removeFirst());
+			start = next;
+		}
+	}
+
+	/**
+	 * Where the line in {@linkplain #ahead} which starts at the given index
+	 * ends (i.e. just past its end of line). If that line hasn't been read yet
+	 * it will be. If there is no such line this returns the index itself.
+	 */
+	private int lineEnd(int start) {
+		if (start == ahead.size() && !Sources.getLine(source, ahead))
+			return start;
+
+		for (int i = start; i < ahead.size(); i++)
+			if (isEndOfLine(ahead.get(i)))
+				return i + 1;
+
+		return ahead.size();
+	}
+
+	private void moveAheadToPendingLines() {
+		LinkedList<Data> line = null;
+
+		while (!ahead.isEmpty()) {
+			final Data d = ahead.removeFirst();
+
+			if (line == null) {
+				line = new LinkedList<>();
+				pendingLines.add(line);
+			}
+
+			line.add(d);
+
+			if (isEndOfLine(d))
+				line = null;
 		}
 	}
 
@@ -664,6 +771,14 @@ public class ContinuationOfLines extends ChainingSource
 		return false;
 	}
 
+	private boolean hasIncompleteToken(int start, int end) {
+		for (int i = end - 1; i >= start; i--)
+			if (isIncompleteToken(ahead.get(i)))
+				return true;
+
+		return false;
+	}
+
 	private Token findFixedIndicator(LinkedList<Data> line) {
 		if (line == null)
 			return null;
@@ -675,6 +790,14 @@ public class ContinuationOfLines extends ChainingSource
 		return null;
 	}
 
+	private Token findFixedIndicator(int start, int end) {
+		for (int i = start; i < end; i++)
+			if (isFixedIndicator(ahead.get(i)))
+				return (Token) ahead.get(i);
+
+		return null;
+	}
+
 	private Token findLastProgramTextOtherThenEOLN(LinkedList<Data> line) {
 		final Iterator<Data> i = Iterators.descendingIterator(line);
 		while (i.hasNext()) {
@@ -695,18 +818,35 @@ public class ContinuationOfLines extends ChainingSource
 
 	private boolean isBlank(LinkedList<Data> line) {
 		for (Data d : line)
-			if (d instanceof Token) {
-				final Token t = (Token) d;
-				// TODO Refer to Grammar methods for this.
-				// TODO Add a Grammar.isBlank(Token) ?
-				if (t.hasTag(PROGRAM_TEXT_AREA) && !t.hasTag(COMMENT)
-						&& t.getText().trim().length() > 0)
-					return false;
-			}
+			if (isNonBlankProgramText(d))
+				return false;
+
+		return true;
+	}
+
+	private boolean isBlank(int start, int end) {
+		for (int i = start; i < end; i++)
+			if (isNonBlankProgramText(ahead.get(i)))
+				return false;
 
 		return true;
 	}
 
+	private boolean isNonBlankProgramText(Data d) {
+		if (!(d instanceof Token))
+			return false;
+
+		final Token t = (Token) d;
+		// TODO Refer to Grammar methods for this.
+		// TODO Add a Grammar.isBlank(Token) ?
+		return t.hasTag(PROGRAM_TEXT_AREA) && !t.hasTag(COMMENT)
+				&& t.getText().trim().length() > 0;
+	}
+
+	private boolean isEndOfLine(Data d) {
+		return d instanceof Token && ((Token) d).hasTag(END_OF_LINE);
+	}
+
 	private boolean isIncompleteToken(Data d) {
 		if (d == null || !(d instanceof Token))
 			return false;
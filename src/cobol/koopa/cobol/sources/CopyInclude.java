@@ -5,8 +5,8 @@ import static koopa.core.trees.jaxen.Jaxen.getAllText;
 import static koopa.core.trees.jaxen.Jaxen.getMatches;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -24,18 +24,20 @@ import koopa.core.data.tags.AreaTag;
 import koopa.core.data.tags.SyntacticTag;
 import koopa.core.parsers.Parse;
 import koopa.core.sources.AsReplacing;
+import koopa.core.sources.BasicSource;
 import koopa.core.sources.ChainingSource;
 import koopa.core.sources.LineSplitter;
 import koopa.core.sources.ListSource;
+import koopa.core.sources.RingBufferSource;
 import koopa.core.sources.Source;
 import koopa.core.sources.Sources;
 import koopa.core.sources.StackOfSources;
 import koopa.core.trees.KoopaTreeBuilder;
 import koopa.core.trees.Tree;
-import koopa.core.util.LineEndings;
+import koopa.core.util.RingBuffer;
 
 public class CopyInclude extends ChainingSource
-		implements Source {
+		implements CopybookTracker {
 
 	private static final Logger LOGGER //
 			= Logger.getLogger("source.cobol.copy_include");
@@ -44,7 +46,12 @@ public class CopyInclude extends ChainingSource
 	private final CobolProject project;
 	private StackOfSources inputStack;
 
-	private final LinkedList<Data> pending = new LinkedList<>();
+	/**
+	 * The line we're working on. Once we've looked for a COPY statement in
+	 * it, all of it is ready to be passed on. Every line gets read into this
+	 * same buffer, so lines never need to be copied.
+	 */
+	private final RingBuffer<Data> line = new RingBuffer<>();
 
 	/**
 	 * All COPY statements which got handled are tracked here, in syntax tree
@@ -52,6 +59,11 @@ public class CopyInclude extends ChainingSource
 	 */
 	private List<Tree> handledCopyStatements = new LinkedList<>();
 
+	/**
+	 * Every attempt at locating a copybook, whether it succeeded or not.
+	 */
+	private final List<CopybookLookup> copybookLookups = new LinkedList<>();
+
 	public CopyInclude(Source source, CobolPreprocessingGrammar grammar,
 			CobolProject project, StackOfSources stack) {
 		super(source);
@@ -64,76 +76,71 @@ public class CopyInclude extends ChainingSource
 	@Override
 	protected Data nxt1() {
 		while (true) {
-			if (!pending.isEmpty())
-				return pending.removeFirst();
+			if (!line.isEmpty())
+				return line.removeFirst();
 
 			// Grab line from source.
-			final LinkedList<Data> line = Sources.getLine(source);
-			if (line == null)
+			if (!Sources.getLine(source, line))
 				return null;
 
-			// pending = line, up to first 'COPY'.
-			anythingUpToCopyBecomesPending(line);
+			// Anything up to the first 'COPY' can be passed on as is.
+			final int start = findCopy();
 
-			if (line.isEmpty()) {
+			if (start < 0)
 				// No COPY was found.
-				return pending.removeFirst();
-
-			} else {
-				// We have a COPY statement. For sure ?
-
-				// Let's grab all the data for the COPY statement.
-				final LinkedList<Data> copyStatement = getCopyStatement(line);
-
-				if (copyStatement == null) {
-					// We didn't get any data, which means the COPY statement
-					// couldn't be detected in full. So we just make all data
-					// seen so far pending, and carry on.
-					pending.addAll(line);
-					return pending.removeFirst();
-				}
+				continue;
+
+			// We have a COPY statement. For sure ?
+
+			// Let's find the end of the COPY statement.
+			final int end = getCopyStatement(start);
+
+			if (end < 0)
+				// We didn't get any data, which means the COPY statement
+				// couldn't be detected in full. So we just pass on all data
+				// seen so far, and carry on.
+				continue;
+
+			// TODO Resolve any continuations.
+
+			// We should have a COPY statement. Right ? Let's try getting the
+			// syntax tree.
+			final Tree copy = parseCopyStatement(start, end);
+			if (copy == null) {
+				// We didn't get a syntax tree for some reason. The COPY
+				// statement was probably mall-formed. So we just pass on all
+				// other data seen so far, and carry on.
+				line.remove(start, end);
+				continue;
+			}
 
-				// TODO Resolve any continuations.
-
-				// We should have a COPY statement. Right ? Let's try getting
-				// the syntax tree.
-				final Tree copy = parseCopyStatement(copyStatement);
-				if (copy == null) {
-					// We didn't get a syntax tree for some reason. The COPY
-					// statement was probably mall-formed. So we just make all
-					// data seen so far pending, and carry on.
-					pending.addAll(line);
-					return pending.removeFirst();
-				}
+			// We now definitely have a COPY statement. Let's try setting
+			// everything up.
+			final boolean handlingIt = handleCopyStatement(copy, end);
 
-				// We now definitely have a COPY statement. Let's try setting
-				// everything up.
-				final boolean handlingIt = handleCopyStatement(copy,
-						copyStatement, line);
-
-				if (!handlingIt) {
-					// For some reason the COPY statement could not be handled.
-					// So we just make all data seen so far pending, and carry
-					// on.
-					pending.addAll(copyStatement);
-					pending.addAll(line);
-					return pending.removeFirst();
-				} else
-					pending.add(copy);
+			if (handlingIt) {
+				// The statement gets replaced by its syntax tree. Whatever
+				// followed it now sits on the input stack.
+				line.remove(start, line.size());
+				line.addLast(copy);
 			}
+
+			// If the COPY statement could not be handled, for some reason, we
+			// just pass on all data seen so far, and carry on.
 		}
 	}
 
-	private void anythingUpToCopyBecomesPending(LinkedList<Data> line) {
+	/**
+	 * Where the first COPY statement in the line might start, or
+	 * <code>-1</code> if there's none.
+	 */
+	private int findCopy() {
 		// "A COPY statement shall be preceded by a space except when it is
 		// the first statement in a compilation group."
 		boolean canStartCopyHere = true;
 
-		while (true) {
-			if (line.isEmpty())
-				return;
-
-			final Data d = line.getFirst();
+		for (int i = 0; i < line.size(); i++) {
+			final Data d = line.get(i);
 
 			if (d instanceof Token) {
 				final Token t = (Token) d;
@@ -143,128 +150,92 @@ public class CopyInclude extends ChainingSource
 				if (canStartCopyHere && t.hasTag(AreaTag.PROGRAM_TEXT_AREA)
 						&& "copy".equalsIgnoreCase(t.getText())) {
 					// Did we really ? E.g. no COPY100, or COPY-FOO ?
-					if (isSpace(line, 1)) {
+					if (isSpace(i + 1)) {
 						if (LOGGER.isTraceEnabled())
 							LOGGER.trace(
 									"Possible start of a COPY statement: " + t);
 
 						// OK then !
-						return;
+						return i;
 					}
 				}
 
 				// Are we at a space ?
 				canStartCopyHere = (t.getText().trim().length() == 0);
 			}
-
-			line.removeFirst();
-			pending.add(d);
 		}
+
+		return -1;
 	}
 
-	private LinkedList<Data> getCopyStatement(LinkedList<Data> line) {
-		LinkedList<Data> copy = new LinkedList<>();
+	/**
+	 * Finds the end of the COPY statement starting at the given index, reading
+	 * more lines as needed. Returns the index just past its closing dot, or
+	 * <code>-1</code> if we ran out of data before finding it.
+	 */
+	private int getCopyStatement(int start) {
+		int i = start;
 
 		while (true) {
 			// Do we need to read another line ?
-			if (line.isEmpty()) {
-				// Yes, we do.
-				final LinkedList<Data> nextLine = Sources.getLine(source);
-
-				// Did we get another line ?
-				if (nextLine != null) {
-					// Yes, we did.
-					line.addAll(nextLine);
-
-				} else {
-					// Nope. So the COPY statement is incomplete.
-					// We rewind all tokens by adding them back to the line.
-					while (!copy.isEmpty())
-						line.addFirst(copy.removeLast());
-					// And return null.
-					return null;
-				}
-			}
+			if (i >= line.size() && !Sources.getLine(source, line))
+				// There is none. So the COPY statement is incomplete.
+				return -1;
 
 			// Are we at the start of a pseudo-literal ?
-			if (atPseudoLiteral(line)) {
-				// Yes, we are. Let's grab all data for that pseudo-literal.
-				final LinkedList<Data> pseudoLiteral = getPseudoLiteral(line);
-				if (pseudoLiteral != null) {
-					// The entire pseudo-literal becomes part of the COPY
-					// statement.
-					copy.addAll(pseudoLiteral);
-
-				} else {
+			if (atPseudoLiteral(i)) {
+				// Yes, we are. The entire pseudo-literal becomes part of the
+				// COPY statement.
+				i = getPseudoLiteral(i);
+
+				if (i < 0)
 					// Woops. Seems we couldn't grab the full pseudo-literal.
 					// Which leaves the COPY statement incomplete.
-					// We rewind all tokens by adding them back to the line.
-					while (!copy.isEmpty())
-						line.addFirst(copy.removeLast());
-					// And return null.
-					return null;
-				}
+					return -1;
 
 			} else {
-				// We're not inside a pseudo-literal. So we can take the next
-				// item and add it to the copy statement.
-				final Data d = line.removeFirst();
-				copy.add(d);
+				// We're not inside a pseudo-literal. So the next item is part
+				// of the COPY statement.
+				final Data d = line.get(i++);
 
 				// Once we find a dot, we're done.
 				if (d instanceof Token && ".".equals(((Token) d).getText()))
-					return copy;
+					return i;
 			}
 		}
 	}
 
-	private boolean atPseudoLiteral(LinkedList<Data> line) {
-		return isEqualsSign(line, 0) && isEqualsSign(line, 1);
+	private boolean atPseudoLiteral(int index) {
+		return isEqualsSign(index) && isEqualsSign(index + 1);
 	}
 
-	private LinkedList<Data> getPseudoLiteral(LinkedList<Data> line) {
-		LinkedList<Data> pseudoLiteral = new LinkedList<>();
-
-		pseudoLiteral.add(line.removeFirst());
-		pseudoLiteral.add(line.removeFirst());
+	/**
+	 * Finds the end of the pseudo-literal starting at the given index, reading
+	 * more lines as needed. Returns the index just past it, or <code>-1</code>
+	 * if we ran out of data before finding it.
+	 */
+	private int getPseudoLiteral(int start) {
+		int i = start + 2;
 
 		while (true) {
 			// Do we need more data ?
-			if (line.isEmpty()) {
-				// Yes, we do.
-				final LinkedList<Data> nextLine = Sources.getLine(source);
-
-				// Did we get another line ?
-				if (nextLine != null) {
-					// Yes, we did.
-					line.addAll(nextLine);
-
-				} else {
-					// Nope. So the pseudo-literal is incomplete.
-					// We rewind all tokens by adding them back to the line.
-					while (!pseudoLiteral.isEmpty())
-						line.addFirst(pseudoLiteral.removeLast());
-					// And return null.
-					return null;
-				}
-			}
+			if (i >= line.size() && !Sources.getLine(source, line))
+				// There is none. So the pseudo-literal is incomplete.
+				return -1;
 
-			if (atEndOfPseudoLiteral(line)) {
-				pseudoLiteral.add(line.removeFirst());
-				pseudoLiteral.add(line.removeFirst());
-				return pseudoLiteral;
-			}
+			if (atEndOfPseudoLiteral(i))
+				return i + 2;
 
-			pseudoLiteral.add(line.removeFirst());
+			i += 1;
 		}
 	}
 
-	private boolean atEndOfPseudoLiteral(LinkedList<Data> line) {
-		return isEqualsSign(line, 0) && isEqualsSign(line, 1)
-				&& !isEqualsSign(line, 2);
+	private boolean atEndOfPseudoLiteral(int index) {
+		return isEqualsSign(index) && isEqualsSign(index + 1)
+				&& !isEqualsSign(index + 2);
 	}
 
-	private boolean isEqualsSign(LinkedList<Data> line, int index) {
+	private boolean isEqualsSign(int index) {
 		if (index >= line.size())
 			return false;
 
@@ -274,7 +245,7 @@ public class CopyInclude extends ChainingSource
 				&& ((Token) a).getText().equals("=");
 	}
 
-	private boolean isSpace(LinkedList<Data> line, int index) {
+	private boolean isSpace(int index) {
 		while (index < line.size()) {
 			final Data d = line.get(index);
 
@@ -287,9 +258,9 @@ public class CopyInclude extends ChainingSource
 		return true;
 	}
 
-	private Tree parseCopyStatement(LinkedList<Data> copyStatement) {
-		final ListSource copyStatementSource //
-				= new ListSource(copyStatement);
+	private Tree parseCopyStatement(int start, int end) {
+		final RingBufferSource copyStatementSource //
+				= new RingBufferSource(line, start, end);
 
 		// There may be continuations which need to be resolved before we can
 		// parse it.
@@ -306,12 +277,10 @@ public class CopyInclude extends ChainingSource
 
 	/**
 	 * Tries to set up handling of the COPY statement. Tells whether it
-	 * succeeded in doing so, or not.
-	 * 
-	 * @param line
+	 * succeeded in doing so, or not. Whatever follows the statement, starting
+	 * at the given index in the line, gets included after the copybook.
 	 */
-	private boolean handleCopyStatement(Tree copy,
-			LinkedList<Data> copyStatement, LinkedList<Data> line) {
+	private boolean handleCopyStatement(Tree copy, int end) {
 
 		if (LOGGER.isDebugEnabled())
 			LOGGER.debug("Processing a COPY statement");
@@ -341,6 +310,9 @@ public class CopyInclude extends ChainingSource
 		}
 
 		final File copybook = project.locateCopybook(textName, libraryName, file);
+		copybookLookups.add(new CopybookLookup(textName, libraryName, file,
+				copybook, includedFrom(copy)));
+
 		if (copybook == null) {
 			LOGGER.error("Missing copybook " + textName + " in " + libraryName);
 			return false;
@@ -349,12 +321,13 @@ public class CopyInclude extends ChainingSource
 		if (LOGGER.isDebugEnabled())
 			LOGGER.debug("Found copybook at " + copybook);
 
-		final FileReader copybookReader;
+		final List<Data> copybookLines;
 		try {
-			copybookReader = new FileReader(copybook); // lgtm[java/input-resource-leak]
+			copybookLines = CopybookCache.getShared().getLines(copybook,
+					project);
 
 		} catch (IOException e) {
-			LOGGER.error("IOException while opening copybook " + copy);
+			LOGGER.error("IOException while reading copybook " + copy);
 			return false;
 		}
 
@@ -363,21 +336,25 @@ public class CopyInclude extends ChainingSource
 
 		// We now have to set up the sources, such that the copybook gets
 		// included correctly. We have three sets of data hanging around:
-		// * The list of pending tokens.
+		// * The tokens in the line ahead of the COPY statement.
 		// * The tokens in the copybook.
 		// * The remainder of the line following the COPY statement.
 		//
 		// Given that we're using a stack of sources as the main input we have
 		// to push these sources in reverse order so that the tokens will appear
-		// in the right order. We can leave the pending tokens out though, as
-		// they be next in line to be read from here anyway.
+		// in the right order. We can leave the tokens ahead of the statement
+		// out though, as they be next in line to be read from here anyway.
 		//
 		// If there are replacements to be activated, we have to make sure we
 		// mark where they start and stop in the token stream.
 
 		// This sets up the remainder of the line.
-		if (!line.isEmpty()) {
-			final ListSource remainderOfLine = new ListSource(line);
+		if (end < line.size()) {
+			final List<Data> remainder = new ArrayList<>(line.size() - end);
+			for (int i = end; i < line.size(); i++)
+				remainder.add(line.get(i));
+
+			final ListSource remainderOfLine = new ListSource(remainder);
 			inputStack.push(remainderOfLine);
 		}
 
@@ -388,14 +365,14 @@ public class CopyInclude extends ChainingSource
 			inputStack.push(turnOffReplacements);
 		}
 
-		// This sets up the copybook as a source.
-		final List<List<Character>> lineEndings = LineEndings.getChoices();
-		final LineSplitter lineSplitter //
-				= new LineSplitter(copybook, copybookReader, lineEndings);
+		// This sets up the copybook as a source. Its lines may be shared with
+		// other inclusions of the same copybook. But as the next stage makes
+		// copies of them, that is not a problem.
+		final CopybookLines lines = new CopybookLines(copybookLines);
 		// This marks all tokens coming from the copybook as being replacements
 		// for the COPY statement.
 		final AsReplacing asReplacing //
-				= new AsReplacing(lineSplitter, replaced(copy));
+				= new AsReplacing(lines, replaced(copy));
 		inputStack.push(asReplacing);
 
 		// Mark the start of any REPLACING instructions.
@@ -413,6 +390,14 @@ public class CopyInclude extends ChainingSource
 		return true;
 	}
 
+	private static File includedFrom(Tree copy) {
+		final Token start = copy.getStartToken();
+		if (start == null || start.getResource() == null)
+			return null;
+		else
+			return new File(start.getResource().getName());
+	}
+
 	private Replaced replaced(Tree copy) {
 		final Position start = copy.getStartPosition();
 		assert (start != null);
@@ -446,4 +431,34 @@ public class CopyInclude extends ChainingSource
 	public List<Tree> getHandledDirectives() {
 		return handledCopyStatements;
 	}
+
+	@Override
+	public List<CopybookLookup> getCopybookLookups() {
+		return copybookLookups;
+	}
+
+	/**
+	 * Replays the lines of a copybook, as given by the
+	 * {@linkplain CopybookCache}.
+	 */
+	private static final class CopybookLines extends BasicSource {
+		private final List<Data> lines;
+		private int index = 0;
+
+		public CopybookLines(List<Data> lines) {
+			this.lines = lines;
+		}
+
+		@Override
+		protected Data nxt1() {
+			if (index < lines.size())
+				return lines.get(index++);
+			else
+				return null;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
 }
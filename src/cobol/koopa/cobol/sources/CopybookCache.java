@@ -0,0 +1,239 @@
+package koopa.cobol.sources;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import koopa.cobol.CobolProject;
+import koopa.cobol.CobolTokens;
+import koopa.core.data.Data;
+import koopa.core.data.Token;
+import koopa.core.sources.LineSplitter;
+import koopa.core.util.Encoding;
+import koopa.core.util.LineEndings;
+
+/**
+ * Holds on to the lines of copybooks, as split by a
+ * {@linkplain LineSplitter}, so that a copybook which gets included many
+ * times (by many programs) only needs reading once.
+ * <p>
+ * Entries are keyed on the canonical path of the copybook, its last
+ * modification time and length, and the encoding and line endings in use. So
+ * changing the copybook, or any of those settings, means it gets read again.
+ * <p>
+ * Everything after line splitting (source formats, tab stops, REPLACING, ...)
+ * is still applied per inclusion, which is why nothing else needs to go into
+ * the key. The tokens handed out here are shared, and must not be changed.
+ * <p>
+ * There is one {@linkplain #getShared()} instance, which is safe to use from
+ * several threads at once. Its memory use is bounded by a budget, set through
+ * the <code>koopa.copybooks.cache</code> system property (in bytes, defaulting
+ * to 64MB). When it goes over budget the least recently used copybooks get
+ * evicted first. A budget of zero turns caching off.
+ */
+public class CopybookCache {
+
+	private static final Logger LOGGER //
+			= Logger.getLogger("source.cobol.copybook_cache");
+
+	private static final long DEFAULT_BUDGET //
+			= Long.getLong("koopa.copybooks.cache", 64L * 1024 * 1024);
+
+	private static final CopybookCache SHARED //
+			= new CopybookCache(DEFAULT_BUDGET);
+
+	/**
+	 * A rough estimate of what every token costs us, on top of its text.
+	 */
+	private static final int BYTES_PER_TOKEN = 64;
+
+	public static CopybookCache getShared() {
+		return SHARED;
+	}
+
+	private final long budget;
+
+	/** In access order, so that the eldest entry is the least recently used. */
+	private final Map<Key, Entry> entries //
+			= new LinkedHashMap<>(16, 0.75f, true);
+
+	private long bytes = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	public CopybookCache(long budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Get the lines making up the given copybook, reading it if we don't have
+	 * it yet.
+	 */
+	public List<Data> getLines(File copybook, CobolProject project)
+			throws IOException {
+		final Key key = new Key(copybook);
+
+		synchronized (this) {
+			final Entry entry = entries.get(key);
+			if (entry != null) {
+				hits += 1;
+				return entry.lines;
+			}
+
+			misses += 1;
+		}
+
+		// Reading is done outside the lock. Worst case two threads read the
+		// same copybook at the same time, and the last one wins.
+		final Entry entry = read(copybook, project);
+
+		if (budget > 0 && entry.bytes <= budget)
+			store(key, entry);
+
+		return entry.lines;
+	}
+
+	private static Entry read(File copybook, CobolProject project)
+			throws IOException {
+		final Reader reader = CobolTokens.getReader(copybook, project);
+		final LineSplitter splitter = new LineSplitter(copybook, reader,
+				LineEndings.getChoices());
+
+		try {
+			final List<Data> lines = new ArrayList<>();
+			long bytes = 0;
+
+			Data d;
+			while ((d = splitter.next()) != null) {
+				lines.add(d);
+				bytes += BYTES_PER_TOKEN;
+				if (d instanceof Token)
+					bytes += 2 * ((Token) d).getLength();
+			}
+
+			return new Entry(Collections.unmodifiableList(lines), bytes);
+
+		} finally {
+			splitter.close();
+		}
+	}
+
+	private synchronized void store(Key key, Entry entry) {
+		final Entry previous = entries.put(key, entry);
+		if (previous != null)
+			bytes -= previous.bytes;
+
+		bytes += entry.bytes;
+
+		final Iterator<Entry> eldest = entries.values().iterator();
+		while (bytes > budget && eldest.hasNext()) {
+			bytes -= eldest.next().bytes;
+			eldest.remove();
+			evictions += 1;
+		}
+
+		if (LOGGER.isDebugEnabled())
+			LOGGER.debug(this);
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	/**
+	 * An estimate of the memory held by this cache.
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "copybook cache, " + entries.size() + " copybooks, " + bytes
+				+ " of " + budget + " bytes, " + hits + " hits / "
+				+ (hits + misses) + " lookups, " + evictions + " evictions";
+	}
+
+	private static final class Entry {
+		private final List<Data> lines;
+		private final long bytes;
+
+		private Entry(List<Data> lines, long bytes) {
+			this.lines = lines;
+			this.bytes = bytes;
+		}
+	}
+
+	private static final class Key {
+		private final String path;
+		private final long lastModified;
+		private final long length;
+		private final String charset;
+		private final String lineEndings;
+		private final boolean sticky;
+
+		private Key(File file) throws IOException {
+			this.path = file.getCanonicalPath();
+			this.lastModified = file.lastModified();
+			this.length = file.length();
+			this.charset = Encoding.getCharset().name();
+			this.lineEndings = LineEndings
+					.encodeChoices(LineEndings.getChoices());
+			this.sticky = LineEndings.areSticky();
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = path.hashCode();
+			hash = 31 * hash + Long.hashCode(lastModified);
+			hash = 31 * hash + Long.hashCode(length);
+			hash = 31 * hash + charset.hashCode();
+			hash = 31 * hash + lineEndings.hashCode();
+			return 31 * hash + (sticky ? 1 : 0);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this)
+				return true;
+
+			if (!(obj instanceof Key))
+				return false;
+
+			final Key other = (Key) obj;
+			return path.equals(other.path)
+					&& lastModified == other.lastModified
+					&& length == other.length
+					&& charset.equals(other.charset)
+					&& lineEndings.equals(other.lineEndings)
+					&& sticky == other.sticky;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package koopa.cobol.sources;
+
+import java.io.File;
+
+import koopa.cobol.CobolProject;
+
+/**
+ * Records one attempt by {@linkplain CopyInclude} at locating a copybook: what
+ * was asked of {@linkplain CobolProject#locateCopybook(String, String, File)},
+ * and what it answered.
+ * <p>
+ * Together these describe which copybooks went into the preprocessing of a
+ * file, and why. Asking the project again tells whether that would still be
+ * the case.
+ */
+public final class CopybookLookup {
+
+	private final String textName;
+	private final String libraryName;
+	private final File relativeTo;
+	private final File copybook;
+	private final File includedFrom;
+
+	public CopybookLookup(String textName, String libraryName, File relativeTo,
+			File copybook) {
+		this(textName, libraryName, relativeTo, copybook, null);
+	}
+
+	public CopybookLookup(String textName, String libraryName, File relativeTo,
+			File copybook, File includedFrom) {
+		this.textName = textName;
+		this.libraryName = libraryName;
+		this.relativeTo = relativeTo;
+		this.copybook = copybook;
+		this.includedFrom = includedFrom;
+	}
+
+	public String getTextName() {
+		return textName;
+	}
+
+	public String getLibraryName() {
+		return libraryName;
+	}
+
+	/**
+	 * The file which the copybook was looked up for. May be
+	 * <code>null</code>.
+	 */
+	public File getRelativeTo() {
+		return relativeTo;
+	}
+
+	/**
+	 * The copybook which was found, or <code>null</code> if it was missing.
+	 */
+	public File getCopybook() {
+		return copybook;
+	}
+
+	/**
+	 * The file holding the COPY statement, if known. For nested copybooks this
+	 * is the copybook doing the including, rather than the program.
+	 */
+	public File getIncludedFrom() {
+		return includedFrom;
+	}
+
+	/**
+	 * Whether the given project would still locate the same copybook.
+	 */
+	public boolean locatesSameCopybook(CobolProject project) {
+		final File located = project.locateCopybook(textName, libraryName,
+				relativeTo);
+
+		if (copybook == null)
+			return located == null;
+		else
+			return copybook.equals(located);
+	}
+
+	@Override
+	public String toString() {
+		return textName + (libraryName == null ? "" : " in " + libraryName)
+				+ " -> " + copybook;
+	}
+}
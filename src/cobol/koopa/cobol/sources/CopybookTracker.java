@@ -0,0 +1,20 @@
+package koopa.cobol.sources;
+
+import java.util.List;
+
+import koopa.core.sources.Source;
+
+/**
+ * A {@linkplain Source} which knows which copybooks went into its stream. This
+ * is {@linkplain CopyInclude} itself, or whatever stands in for it (e.g. a
+ * stream replayed by the {@linkplain TokenCache}).
+ */
+public interface CopybookTracker extends Source {
+
+	/**
+	 * All copybooks looked up so far, in order, including the ones which
+	 * turned out to be missing. This is only complete once the source has been
+	 * read to its end.
+	 */
+	List<CopybookLookup> getCopybookLookups();
+}
@@ -0,0 +1,128 @@
+package koopa.cobol.sources;
+
+import koopa.cobol.grammar.directives.DirectivesGrammar;
+
+/**
+ * A quick look at the raw text of a line, to find out whether it could
+ * possibly hold a compiler directive. Only lines which pass get handed to the
+ * {@linkplain DirectivesGrammar}, which has the final say.
+ * <p>
+ * This errs on the side of caution. Every line the grammar accepts must pass
+ * here, but many lines which pass will still turn out not to be directives.
+ * What it does is look at the words which start a line, where a word is
+ * anything between spaces or tabs. It keeps going while those words start in
+ * the sequence number area (columns 1 to 6), so that a sequence number in
+ * front of a directive doesn't hide it. A line passes when one of those words:
+ * <ul>
+ * <li>holds an ISO directive indicator (<code>&gt;&gt;</code>),</li>
+ * <li>is a Micro Focus <code>$</code> indicator, in column 1 for free format
+ * or column 7 otherwise,</li>
+ * <li>starts with <code>-INC</code>, <code>++</code>, <code>*CBL</code> or
+ * <code>*CONTROL</code>,</li>
+ * <li>or starts with one of the keywords which open an IBM or listing
+ * directive (<code>BASIS</code>, <code>CBL</code>, <code>PROCESS</code>,
+ * <code>DELETE</code>, <code>INSERT</code>, <code>ENTER</code>,
+ * <code>READY</code>, <code>RESET</code>, <code>EJECT</code>,
+ * <code>SKIP</code>, <code>TITLE</code>).</li>
+ * </ul>
+ * All of this ignores case. If you add a new kind of directive to the grammar,
+ * you must teach it here as well.
+ */
+public final class DirectiveFilter {
+
+	private static final String[] KEYWORDS = { "BASIS", "CBL", "PROCESS",
+			"DELETE", "INSERT", "ENTER", "READY", "RESET", "EJECT", "SKIP",
+			"TITLE" };
+
+	private static final String[] PREFIXES = { "-INC", "++", "*CBL",
+			"*CONTROL" };
+
+	/** The last column of the sequence number area. */
+	private static final int SEQUENCE_NUMBER_AREA = 6;
+
+	private DirectiveFilter() {
+	}
+
+	/**
+	 * Could the given text hold a compiler directive ?
+	 *
+	 * @param text
+	 *            The text of the line.
+	 * @param column
+	 *            The column at which that text starts (one-based).
+	 * @param format
+	 *            The source format which is active for the line.
+	 */
+	public static boolean mightBeDirective(String text, int column,
+			SourceFormat format) {
+
+		final int length = text.length();
+		int position = 0;
+
+		while (true) {
+			while (position < length && isWhitespace(text.charAt(position)))
+				position += 1;
+
+			if (position == length)
+				return false;
+
+			final int start = position;
+			while (position < length && !isWhitespace(text.charAt(position)))
+				position += 1;
+
+			final int startColumn = column + start;
+			if (isCandidate(text, start, position, startColumn, format))
+				return true;
+
+			if (startColumn > SEQUENCE_NUMBER_AREA)
+				return false;
+		}
+	}
+
+	private static boolean isCandidate(String text, int start, int end,
+			int column, SourceFormat format) {
+
+		final char first = text.charAt(start);
+
+		if (first == '$')
+			return column == (format == SourceFormat.FREE ? 1 : 7);
+
+		for (int i = start; i < end - 1; i++)
+			if (text.charAt(i) == '>' && text.charAt(i + 1) == '>')
+				return true;
+
+		for (String prefix : PREFIXES)
+			if (startsWith(text, start, end, prefix))
+				return true;
+
+		for (String keyword : KEYWORDS)
+			if (startsWith(text, start, end, keyword)
+					&& !continuesWord(text, start + keyword.length(), end))
+				return true;
+
+		return false;
+	}
+
+	private static boolean startsWith(String text, int start, int end,
+			String prefix) {
+		return end - start >= prefix.length()
+				&& text.regionMatches(true, start, prefix, 0, prefix.length());
+	}
+
+	/**
+	 * Whether the character at the given position would get glued onto the
+	 * word before it. This must match the way words get split up by
+	 * {@linkplain koopa.core.sources.TokenSeparationLogic}.
+	 */
+	private static boolean continuesWord(String text, int position, int end) {
+		if (position >= end)
+			return false;
+
+		final char c = text.charAt(position);
+		return ('a' <= c && c <= 'z') || ('A' <= c && c <= 'Z') || c == '-';
+	}
+
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t';
+	}
+}
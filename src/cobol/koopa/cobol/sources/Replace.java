@@ -16,11 +16,12 @@ import koopa.core.data.Token;
 import koopa.core.data.tags.SyntacticTag;
 import koopa.core.parsers.Parse;
 import koopa.core.sources.ChainingSource;
-import koopa.core.sources.ListSource;
+import koopa.core.sources.RingBufferSource;
 import koopa.core.sources.Source;
 import koopa.core.sources.Sources;
 import koopa.core.trees.KoopaTreeBuilder;
 import koopa.core.trees.Tree;
+import koopa.core.util.RingBuffer;
 
 // TODO Extract common stuff with CopyInclude ?
 public class Replace extends ChainingSource
@@ -31,7 +32,12 @@ public class Replace extends ChainingSource
 
 	private final CobolPreprocessingGrammar grammar;
 
-	private final LinkedList<Data> pending = new LinkedList<>();
+	/**
+	 * The line we're working on. Once we've looked for a REPLACE statement in
+	 * it, all of it is ready to be passed on. Every line gets read into this
+	 * same buffer, so lines never need to be copied.
+	 */
+	private final RingBuffer<Data> line = new RingBuffer<>();
 
 	/**
 	 * All REPLACE statements which got handled are tracked here, in syntax tree
@@ -48,73 +54,73 @@ public class Replace extends ChainingSource
 	@Override
 	protected Data nxt1() {
 		while (true) {
-			if (!pending.isEmpty())
-				return pending.removeFirst();
+			if (!line.isEmpty())
+				return line.removeFirst();
 
 			// Grab line from source.
-			final LinkedList<Data> line = Sources.getLine(source);
-			if (line == null)
+			if (!Sources.getLine(source, line))
 				return null;
 
-			// pending = line, up to first 'REPLACE'.
-			anythingUpToReplaceBecomesPending(line);
+			// Anything up to the first 'REPLACE' can be passed on as is.
+			final int start = findReplace();
 
-			if (line.isEmpty()) {
+			if (start < 0)
 				// No REPLACE was found.
-				return pending.removeFirst();
-
-			} else {
-				// We have a REPLACE statement. For sure ?
-
-				// Let's grab all the data for the REPLACE statement.
-				final LinkedList<Data> replaceStatement = getReplaceStatement(
-						line);
-
-				if (replaceStatement == null) {
-					// We didn't get any data, which means the REPLACE statement
-					// couldn't be detected in full. So we just make all data
-					// seen so far pending, and carry on.
-					pending.addAll(line);
-					return pending.removeFirst();
-				}
+				continue;
+
+			// We have a REPLACE statement. For sure ?
+
+			// Let's find the end of the REPLACE statement.
+			final int end = getReplaceStatement(start);
+
+			if (end < 0)
+				// We didn't get any data, which means the REPLACE statement
+				// couldn't be detected in full. So we just pass on all data
+				// seen so far, and carry on.
+				continue;
+
+			// We should have a REPLACE statement. Right ? Let's try getting
+			// the syntax tree.
+			final Tree replace = parseReplaceStatement(start, end);
+			if (replace == null) {
+				// We didn't get a syntax tree for some reason. The REPLACE
+				// statement was probably mall-formed. So we just pass on all
+				// other data seen so far, and carry on.
+				line.remove(start, end);
+				continue;
+			}
 
-				// We should have a REPLACE statement. Right ? Let's try getting
-				// the syntax tree.
-				final Tree replace = parseReplaceStatement(replaceStatement);
-				if (replace == null) {
-					// We didn't get a syntax tree for some reason. The REPLACE
-					// statement was probably mall-formed. So we just make all
-					// data seen so far pending, and carry on.
-					pending.addAll(line);
-					return pending.removeFirst();
-				}
+			// We now definitely have a REPLACE statement. Let's try setting
+			// everything up.
+			final ReplacementData data = handleReplaceStatement(replace);
 
-				// We now definitely have a REPLACE statement. Let's try setting
-				// everything up.
-				final boolean handlingIt = handleReplaceStatement(replace,
-						replaceStatement, line);
-
-				if (!handlingIt) {
-					// For some reason the REPLACE statement could not be
-					// handled. So we just make all data seen so far pending,
-					// and carry on.
-					pending.addAll(line);
-					return pending.removeFirst();
-				}
+			if (data == null) {
+				// For some reason the REPLACE statement could not be handled.
+				// So we just pass on all other data seen so far, and carry on.
+				line.remove(start, end);
+				continue;
 			}
+
+			// The statement gets replaced by its syntax tree, followed by
+			// the replacement data. It holds at least the REPLACE and the
+			// closing dot, so that's room enough for both.
+			line.set(start, replace);
+			line.set(start + 1, data);
+			line.remove(start + 2, end);
 		}
 	}
 
-	private void anythingUpToReplaceBecomesPending(LinkedList<Data> line) {
+	/**
+	 * Where the first REPLACE statement in the line might start, or
+	 * <code>-1</code> if there's none.
+	 */
+	private int findReplace() {
 		// "A REPLACE statement shall be preceded by a space except when it is
 		// the first statement in a compilation group."
 		boolean canStartReplaceHere = true;
 
-		while (true) {
-			if (line.isEmpty())
-				return;
-
-			final Data d = line.getFirst();
+		for (int i = 0; i < line.size(); i++) {
+			final Data d = line.get(i);
 
 			if (d instanceof Token) {
 				final Token t = (Token) d;
@@ -123,128 +129,92 @@ public class Replace extends ChainingSource
 				if (canStartReplaceHere
 						&& "replace".equalsIgnoreCase(t.getText())) {
 					// Are we really ? E.g. no REPLACE100, or REPLACE-FOO ?
-					if (isSpace(line, 1)) {
+					if (isSpace(i + 1)) {
 						if (LOGGER.isTraceEnabled())
 							LOGGER.trace(
 									"Possible start of a REPLACE statement: "
 											+ t);
 
-						return;
+						return i;
 					}
 				}
 
 				// Are we at a space ?
 				canStartReplaceHere = (t.getText().trim().length() == 0);
 			}
-
-			line.removeFirst();
-			pending.add(d);
 		}
+
+		return -1;
 	}
 
-	private LinkedList<Data> getReplaceStatement(LinkedList<Data> line) {
-		LinkedList<Data> replace = new LinkedList<>();
+	/**
+	 * Finds the end of the REPLACE statement starting at the given index,
+	 * reading more lines as needed. Returns the index just past its closing
+	 * dot, or <code>-1</code> if we ran out of data before finding it.
+	 */
+	private int getReplaceStatement(int start) {
+		int i = start;
 
 		while (true) {
 			// Do we need to read another line ?
-			if (line.isEmpty()) {
-				// Yes, we do.
-				final LinkedList<Data> nextLine = Sources.getLine(source);
-
-				// Did we get another line ?
-				if (nextLine != null) {
-					// Yes, we did.
-					line.addAll(nextLine);
-
-				} else {
-					// Nope. So the REPLACE statement is incomplete.
-					// We rewind all tokens by adding them back to the line.
-					while (!replace.isEmpty())
-						line.addFirst(replace.removeLast());
-					// And return null.
-					return null;
-				}
-			}
+			if (i >= line.size() && !Sources.getLine(source, line))
+				// There is none. So the REPLACE statement is incomplete.
+				return -1;
 
 			// Are we at the start of a pseudo-literal ?
-			if (atPseudoLiteral(line)) {
-				// Yes, we are. Let's grab all data for that pseudo-literal.
-				final LinkedList<Data> pseudoLiteral = getPseudoLiteral(line);
-				if (pseudoLiteral != null) {
-					// The entire pseudo-literal becomes part of the REPLACE
-					// statement.
-					replace.addAll(pseudoLiteral);
-
-				} else {
+			if (atPseudoLiteral(i)) {
+				// Yes, we are. The entire pseudo-literal becomes part of the
+				// REPLACE statement.
+				i = getPseudoLiteral(i);
+
+				if (i < 0)
 					// Woops. Seems we couldn't grab the full pseudo-literal.
 					// Which leaves the REPLACE statement incomplete.
-					// We rewind all tokens by adding them back to the line.
-					while (!replace.isEmpty())
-						line.addFirst(replace.removeLast());
-					// And return null.
-					return null;
-				}
+					return -1;
 
 			} else {
-				// We're not inside a pseudo-literal. So we can take the next
-				// item and add it to the REPLACE statement.
-				final Data d = line.removeFirst();
-				replace.add(d);
+				// We're not inside a pseudo-literal. So the next item is part
+				// of the REPLACE statement.
+				final Data d = line.get(i++);
 
 				// Once we find a dot, we're done.
 				if (d instanceof Token && ".".equals(((Token) d).getText()))
-					return replace;
+					return i;
 			}
 		}
 	}
 
-	private boolean atPseudoLiteral(LinkedList<Data> line) {
-		return isEqualsSign(line, 0) && isEqualsSign(line, 1);
+	private boolean atPseudoLiteral(int index) {
+		return isEqualsSign(index) && isEqualsSign(index + 1);
 	}
 
-	private LinkedList<Data> getPseudoLiteral(LinkedList<Data> line) {
-		LinkedList<Data> pseudoLiteral = new LinkedList<>();
-
-		pseudoLiteral.add(line.removeFirst());
-		pseudoLiteral.add(line.removeFirst());
+	/**
+	 * Finds the end of the pseudo-literal starting at the given index, reading
+	 * more lines as needed. Returns the index just past it, or <code>-1</code>
+	 * if we ran out of data before finding it.
+	 */
+	private int getPseudoLiteral(int start) {
+		int i = start + 2;
 
 		while (true) {
 			// Do we need more data ?
-			if (line.isEmpty()) {
-				// Yes, we do.
-				final LinkedList<Data> nextLine = Sources.getLine(source);
-
-				// Did we get another line ?
-				if (nextLine != null) {
-					// Yes, we did.
-					line.addAll(nextLine);
-
-				} else {
-					// Nope. So the pseudo-literal is incomplete.
-					// We rewind all tokens by adding them back to the line.
-					while (!pseudoLiteral.isEmpty())
-						line.addFirst(pseudoLiteral.removeLast());
-					// And return null.
-					return null;
-				}
-			}
+			if (i >= line.size() && !Sources.getLine(source, line))
+				// There is none. So the pseudo-literal is incomplete.
+				return -1;
 
-			if (atEndOfPseudoLiteral(line)) {
-				pseudoLiteral.add(line.removeFirst());
-				pseudoLiteral.add(line.removeFirst());
-				return pseudoLiteral;
-			}
+			if (atEndOfPseudoLiteral(i))
+				return i + 2;
 
-			pseudoLiteral.add(line.removeFirst());
+			i += 1;
 		}
 	}
 
-	private boolean atEndOfPseudoLiteral(LinkedList<Data> line) {
-		return isEqualsSign(line, 0) && isEqualsSign(line, 1)
-				&& !isEqualsSign(line, 2);
+	private boolean atEndOfPseudoLiteral(int index) {
+		return isEqualsSign(index) && isEqualsSign(index + 1)
+				&& !isEqualsSign(index + 2);
 	}
 
-	private boolean isEqualsSign(LinkedList<Data> line, int index) {
+	private boolean isEqualsSign(int index) {
 		if (index >= line.size())
 			return false;
 
@@ -254,7 +224,7 @@ public class Replace extends ChainingSource
 				&& ((Token) a).getText().equals("=");
 	}
 
-	private boolean isSpace(LinkedList<Data> line, int index) {
+	private boolean isSpace(int index) {
 		while (index < line.size()) {
 			final Data d = line.get(index);
 
@@ -267,9 +237,9 @@ public class Replace extends ChainingSource
 		return true;
 	}
 
-	private Tree parseReplaceStatement(LinkedList<Data> replaceStatement) {
-		final ListSource replaceStatementSource //
-				= new ListSource(replaceStatement);
+	private Tree parseReplaceStatement(int start, int end) {
+		final RingBufferSource replaceStatementSource //
+				= new RingBufferSource(line, start, end);
 
 		final KoopaTreeBuilder treeBuilder = new KoopaTreeBuilder(grammar);
 
@@ -280,11 +250,11 @@ public class Replace extends ChainingSource
 	}
 
 	/**
-	 * Tries to set up handling of the REPLACE statement. Tells whether it
-	 * succeeded in doing so, or not.
+	 * Tries to set up handling of the REPLACE statement. Returns the data
+	 * which tells the next stage what to do, or <code>null</code> if it could
+	 * not be handled.
 	 */
-	private boolean handleReplaceStatement(Tree replace,
-			LinkedList<Data> replaceStatement, LinkedList<Data> line) {
+	private ReplacementData handleReplaceStatement(Tree replace) {
 
 		if (replace.hasChild("off")) {
 			final boolean last //
@@ -297,14 +267,9 @@ public class Replace extends ChainingSource
 			final ReplacementData data = new ReplacementData(false, !last,
 					null);
 
-			pending.add(replace);
-			pending.add(data);
-			if (!line.isEmpty())
-				pending.addAll(line);
-
 			handledReplaceStatements.add(replace);
 
-			return true;
+			return data;
 
 		} else if (replace.hasChild("replacing")) {
 			final boolean also //
@@ -320,14 +285,9 @@ public class Replace extends ChainingSource
 			final ReplacementData data = new ReplacementData(true, !also,
 					replacements);
 
-			pending.add(replace);
-			pending.add(data);
-			if (!line.isEmpty())
-				pending.addAll(line);
-
 			handledReplaceStatements.add(replace);
 
-			return true;
+			return data;
 
 		} else {
 			// Something strange is afoot. Like someone messing with the
@@ -336,7 +296,7 @@ public class Replace extends ChainingSource
 			LOGGER.error("Processing an unkown REPLACE statement: "
 					+ replace.getAllText());
 
-			return false;
+			return null;
 		}
 	}
 
@@ -5,6 +5,8 @@ import java.util.List;
 
 import org.apache.log4j.Logger;
 
+import koopa.cobol.parser.preprocessing.replacing.LibraryText;
+import koopa.cobol.parser.preprocessing.replacing.ReplacingIndex;
 import koopa.cobol.parser.preprocessing.replacing.ReplacingPhrase;
 import koopa.core.data.Data;
 import koopa.core.data.Token;
@@ -23,9 +25,11 @@ public class Replacing extends ChainingSource
 
 	/**
 	 * The list of all active {@linkplain ReplacingPhrase}s. It is sorted in
-	 * order of precedence, with the highest precedence appearing first.
+	 * order of precedence, with the highest precedence appearing first. Each
+	 * set of phrases is held in a {@linkplain ReplacingIndex}, so that we only
+	 * need to try those which stand a chance of matching.
 	 */
-	private LinkedList<List<ReplacingPhrase>> replacements = new LinkedList<>();
+	private LinkedList<ReplacingIndex> replacements = new LinkedList<>();
 
 	/**
 	 * This is a list of {@link Token}s which have been substituted in for a
@@ -112,19 +116,29 @@ public class Replacing extends ChainingSource
 			// Repositioning the token stream to start with the leftmost token.
 			source.unshift(leftmost);
 
-			// There may be multiple sets of replacement directives which are
-			// active, thanks to the complexity of the REPLACE statement. We try
-			// them all in order of precedence.
-			for (List<ReplacingPhrase> r : replacements) {
-
-				// "Starting with the first text-word for comparison and first
-				// pseudo-text-1, text-1, word-1, literal-3, or
-				// partial-word-1 that was specified in the REPLACING phrase,
-				// the entire REPLACING phrase operand that precedes the
-				// reserved word BY is compared to an equivalent number of
-				// contiguous library text-words."
-				for (ReplacingPhrase replacingPhrase : r) {
-					if (replacingPhrase.appliedTo(source, replacementTokens)) {
+			if (!replacements.isEmpty()) {
+				// The library text gets read only once, no matter how many
+				// phrases want to look at it.
+				final LibraryText library = new LibraryText(source);
+
+				// There may be multiple sets of replacement directives which
+				// are active, thanks to the complexity of the REPLACE
+				// statement. We try them all in order of precedence.
+				for (ReplacingIndex r : replacements) {
+
+					// "Starting with the first text-word for comparison and
+					// first pseudo-text-1, text-1, word-1, literal-3, or
+					// partial-word-1 that was specified in the REPLACING
+					// phrase, the entire REPLACING phrase operand that
+					// precedes the reserved word BY is compared to an
+					// equivalent number of contiguous library text-words."
+
+					// "If no match occurs, the comparison is repeated with
+					// each next successive pseudo-text-1, text-1, word-1,
+					// literal-3, or partial-word-1, if any, in the REPLACING
+					// phrase until either a match is found or there is no next
+					// successive REPLACING operand."
+					if (r.appliedTo(library, replacementTokens)) {
 						// "When a match occurs between partial-word-1 and the
 						// library text-word, the library text-word is placed
 						// into the resultant text with the matched characters
@@ -132,21 +146,17 @@ public class Replacing extends ChainingSource
 						// partial-word-2 consists of zero text-words."
 
 						// "The library text-word immediately following the
-						// rightmost text-word that participated in the match is
-						// then considered as the leftmost text-word. The
+						// rightmost text-word that participated in the match
+						// is then considered as the leftmost text-word. The
 						// comparison cycle starts again with the first
 						// pseudo-text-1, text-1, word-1, literal-3, or
 						// partial-word-1 specified in the REPLACING phrase."
 
 						continue replacing;
 					}
-
-					// "If no match occurs, the comparison is repeated with each
-					// next successive pseudo-text-1, text-1, word-1, literal-3,
-					// or partial-word-1, if any, in the REPLACING phrase until
-					// either a match is found or there is no next successive
-					// REPLACING operand."
 				}
+
+				library.rewind();
 			}
 
 			// "When all the REPLACING phrase operands have been compared and no
@@ -167,7 +177,7 @@ public class Replacing extends ChainingSource
 	private void pushReplacements(List<ReplacingPhrase> r) {
 		assert (r != null);
 
-		replacements.addFirst(r);
+		replacements.addFirst(new ReplacingIndex(r));
 	}
 
 	private void clearReplacements() {
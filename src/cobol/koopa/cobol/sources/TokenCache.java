@@ -0,0 +1,432 @@
+package koopa.cobol.sources;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import koopa.cobol.CobolProject;
+import koopa.cobol.CobolTokens;
+import koopa.core.data.BinaryTokens;
+import koopa.core.data.Data;
+import koopa.core.sources.ChainingSource;
+import koopa.core.sources.ListSource;
+import koopa.core.sources.Source;
+import koopa.core.util.Digests;
+import koopa.core.util.Encoding;
+
+/**
+ * Keeps the fully preprocessed token streams, as produced by
+ * {@linkplain CobolTokens#getNewSource(File, Reader, CobolProject)}, on disk,
+ * so that parsing an unchanged file again can skip all of the preprocessing.
+ * <p>
+ * Entries are keyed on a hash of the file's path and contents, and of all
+ * project settings which affect preprocessing (source format, tab length and
+ * stops, preprocessing, encoding and line endings). Each entry also records
+ * which copybooks got looked up (cfr. {@linkplain CopybookLookup}), with a
+ * hash of their contents. An entry is only used when the project still
+ * locates the same copybooks, and none of them changed.
+ * <p>
+ * This is opt-in. The shared instance (cfr. {@linkplain #getShared()}) only
+ * exists when the <code>koopa.tokens.cache</code> system property names the
+ * folder to keep entries in. Setting <code>koopa.tokens.cache.validate</code>
+ * to <code>true</code> makes every hit get checked against a fresh run.
+ * Mismatches get logged, and the fresh tokens win.
+ * <p>
+ * Either way the source which gets returned is a {@linkplain CopybookTracker},
+ * so the copybooks a program depends on are known even when nothing got
+ * preprocessed.
+ * <p>
+ * Streams which hold data other than tokens and trees of tokens (cfr.
+ * {@linkplain BinaryTokens}) do not get cached.
+ */
+public class TokenCache {
+
+	private static final Logger LOGGER //
+			= Logger.getLogger("source.cobol.token_cache");
+
+	/**
+	 * Change this whenever the layout of the entries, or the output of the
+	 * preprocessing stages, changes. Old entries then simply stop being found.
+	 */
+	private static final int VERSION = 2;
+
+	private static final int MAGIC = 0x4B4F5450; // "KOTP"
+
+	private static final TokenCache SHARED;
+	static {
+		final String folder = System.getProperty("koopa.tokens.cache");
+		final boolean validating = "true".equalsIgnoreCase(
+				System.getProperty("koopa.tokens.cache.validate"));
+
+		if (folder == null || folder.trim().isEmpty())
+			SHARED = null;
+		else
+			SHARED = new TokenCache(new File(folder), validating);
+	}
+
+	/**
+	 * The cache set up through the <code>koopa.tokens.cache</code> system
+	 * property, or <code>null</code> if that wasn't set.
+	 */
+	public static TokenCache getShared() {
+		return SHARED;
+	}
+
+	private final File folder;
+	private final boolean validating;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long stores = 0;
+	private long mismatches = 0;
+
+	public TokenCache(File folder, boolean validating) {
+		this.folder = folder;
+		this.validating = validating;
+	}
+
+	public File getFolder() {
+		return folder;
+	}
+
+	public boolean isValidating() {
+		return validating;
+	}
+
+	/**
+	 * Get the preprocessed tokens for the given file. These come straight from
+	 * the cache if we can. If we can't the file gets preprocessed as usual, and
+	 * the result gets stored for next time once the source has been read to
+	 * its end (or closed).
+	 */
+	public Source getSource(File file, CobolProject project)
+			throws IOException {
+		final byte[] contents = Files.readAllBytes(file.toPath());
+		final String key = key(file, contents, project);
+		final File entry = new File(folder, key + ".tokens");
+
+		final Replay cached = load(entry, project);
+
+		if (cached == null) {
+			synchronized (this) {
+				misses += 1;
+			}
+
+			if (LOGGER.isDebugEnabled())
+				LOGGER.debug("Token cache miss for " + file);
+
+			return new Recording(fresh(file, contents, project), entry);
+		}
+
+		synchronized (this) {
+			hits += 1;
+		}
+
+		if (LOGGER.isDebugEnabled())
+			LOGGER.debug("Token cache hit for " + file);
+
+		if (!validating)
+			return cached;
+
+		final Source source = fresh(file, contents, project);
+		final List<Data> data = drain(source);
+		final List<CopybookLookup> lookups = getLookups(source);
+		source.close();
+
+		if (!sameAs(drain(cached), data, file)) {
+			synchronized (this) {
+				mismatches += 1;
+			}
+
+			store(entry, lookups, data);
+		}
+
+		return new Replay(data, lookups);
+	}
+
+	private static Source fresh(File file, byte[] contents,
+			CobolProject project) {
+		// We already have the contents, so there is no need to read the file
+		// again.
+		final Reader reader = new StringReader(
+				new String(contents, Encoding.getCharset()));
+		return CobolTokens.getNewSource(file, reader, project);
+	}
+
+	private static List<Data> drain(Source source) {
+		final List<Data> data = new ArrayList<>();
+		Data d;
+		while ((d = source.next()) != null)
+			data.add(d);
+
+		return data;
+	}
+
+	private static List<CopybookLookup> getLookups(Source source) {
+		final CopybookTracker tracker = source.getSource(CopybookTracker.class);
+		if (tracker == null)
+			return new LinkedList<>();
+		else
+			return tracker.getCopybookLookups();
+	}
+
+	/**
+	 * Compares both streams by their serialized form, which covers everything
+	 * the cache holds on to. Logs where they first differ.
+	 */
+	private static boolean sameAs(List<Data> cached, List<Data> fresh,
+			File file) throws IOException {
+		if (Arrays.equals(encode(cached), encode(fresh)))
+			return true;
+
+		final int size = Math.min(cached.size(), fresh.size());
+		int i = 0;
+		while (i < size && Arrays.equals(encode(cached.subList(i, i + 1)),
+				encode(fresh.subList(i, i + 1))))
+			i += 1;
+
+		LOGGER.warn("Token cache mismatch for " + file + " at data #" + i
+				+ ": cached " + (i < cached.size() ? cached.get(i) : "nothing")
+				+ ", fresh " + (i < fresh.size() ? fresh.get(i) : "nothing"));
+
+		return false;
+	}
+
+	private static byte[] encode(List<Data> data) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		BinaryTokens.write(data, bytes);
+		return bytes.toByteArray();
+	}
+
+	private Replay load(File entry, CobolProject project) {
+		if (!entry.isFile())
+			return null;
+
+		try {
+			final ByteBuffer in = ByteBuffer
+					.wrap(Files.readAllBytes(entry.toPath()));
+
+			if (in.getInt() != MAGIC || in.getInt() != VERSION)
+				return null;
+
+			final int count = in.getInt();
+			final List<CopybookLookup> lookups = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				final CopybookLookup lookup = new CopybookLookup( //
+						readString(in), readString(in), readFile(in),
+						readFile(in), readFile(in));
+				final String hash = readString(in);
+
+				if (!lookup.locatesSameCopybook(project))
+					return null;
+
+				if (lookup.getCopybook() != null && !hash
+						.equals(Digests.sha256(lookup.getCopybook())))
+					return null;
+
+				lookups.add(lookup);
+			}
+
+			return new Replay(BinaryTokens.read(in), lookups);
+
+		} catch (IOException | BufferUnderflowException e) {
+			LOGGER.warn("Could not read token cache entry " + entry, e);
+			return null;
+		}
+	}
+
+	private void store(File entry, List<CopybookLookup> lookups,
+			List<Data> data) {
+		File temp = null;
+		try {
+			// Copybook hashes go first, so that a failure there doesn't leave
+			// a half-written file behind.
+			final List<String> hashes = new ArrayList<>(lookups.size());
+			for (CopybookLookup lookup : lookups)
+				hashes.add(lookup.getCopybook() == null ? ""
+						: Digests.sha256(lookup.getCopybook()));
+
+			folder.mkdirs();
+			temp = File.createTempFile("koopa", ".part", folder);
+
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+
+				out.writeInt(lookups.size());
+				for (int i = 0; i < lookups.size(); i++) {
+					final CopybookLookup lookup = lookups.get(i);
+					writeString(out, lookup.getTextName());
+					writeString(out, lookup.getLibraryName());
+					writeFile(out, lookup.getRelativeTo());
+					writeFile(out, lookup.getCopybook());
+					writeFile(out, lookup.getIncludedFrom());
+					writeString(out, hashes.get(i));
+				}
+
+				BinaryTokens.write(data, out);
+			}
+
+			Files.move(temp.toPath(), entry.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+			temp = null;
+
+			synchronized (this) {
+				stores += 1;
+			}
+
+		} catch (IOException e) {
+			// Most likely some data which can't be cached. Not a problem; we
+			// just won't have a cache entry.
+			if (LOGGER.isDebugEnabled())
+				LOGGER.debug("Could not write token cache entry " + entry, e);
+
+		} finally {
+			if (temp != null)
+				temp.delete();
+		}
+	}
+
+	private static String key(File file, byte[] contents,
+			CobolProject project) {
+		final MessageDigest digest = Digests.sha256();
+		Digests.update(digest, "" + VERSION);
+		Digests.update(digest, file.getPath());
+		digest.update(contents);
+		Digests.update(digest, CobolTokens.describeSettings(file, project));
+		return Digests.hex(digest.digest());
+	}
+
+	private static void writeString(DataOutputStream out, String s)
+			throws IOException {
+		if (s == null)
+			out.writeInt(-1);
+		else {
+			final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static String readString(ByteBuffer in) {
+		final int length = in.getInt();
+		if (length < 0)
+			return null;
+
+		final byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeFile(DataOutputStream out, File file)
+			throws IOException {
+		writeString(out, file == null ? null : file.getPath());
+	}
+
+	private static File readFile(ByteBuffer in) {
+		final String path = readString(in);
+		return path == null ? null : new File(path);
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getStores() {
+		return stores;
+	}
+
+	public synchronized long getMismatches() {
+		return mismatches;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Token cache in " + folder + ": " + hits + " hits, " + misses
+				+ " misses, " + stores + " stores, " + mismatches
+				+ " mismatches" + (validating ? " (validating)" : "");
+	}
+
+	/**
+	 * Replays a stream from the cache, along with the copybooks which went
+	 * into it.
+	 */
+	private static final class Replay extends ListSource
+			implements CopybookTracker {
+		private final List<CopybookLookup> lookups;
+
+		public Replay(List<Data> data, List<CopybookLookup> lookups) {
+			super(data);
+			this.lookups = lookups;
+		}
+
+		@Override
+		public List<CopybookLookup> getCopybookLookups() {
+			return lookups;
+		}
+	}
+
+	/**
+	 * Passes on everything from a fresh run, while holding on to it. Once the
+	 * end is reached, all of it gets stored.
+	 */
+	private final class Recording extends ChainingSource {
+		private final File entry;
+		private List<Data> recorded = new ArrayList<>();
+
+		public Recording(Source source, File entry) {
+			super(source);
+			this.entry = entry;
+		}
+
+		@Override
+		protected Data nxt1() {
+			final Data d = source.next();
+
+			if (recorded == null)
+				return d;
+
+			if (d != null)
+				recorded.add(d);
+			else {
+				store(entry, getLookups(source), recorded);
+				recorded = null;
+			}
+
+			return d;
+		}
+
+		@Override
+		public void close() {
+			// A parse may well stop before reaching the end. We still want
+			// the whole stream in the cache.
+			if (recorded != null)
+				while (nxt1() != null)
+					;
+
+			super.close();
+		}
+	}
+}
@@ -0,0 +1,493 @@
+package koopa.core.data;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import koopa.core.data.markers.Start;
+import koopa.core.trees.Tree;
+
+/**
+ * Writes and reads streams of {@linkplain Data} in a compact binary form.
+ * <p>
+ * What can be written are {@linkplain Token}s (with their text, positions,
+ * tags and what they are replacing), and {@linkplain Tree}s built from
+ * {@linkplain Start} markers and tokens. Tags must be enum constants or
+ * strings. Anything else gets refused with a
+ * {@linkplain NotSerializableException}. Whether a token was skipped during a
+ * parse is not written, as that's not a property of the token stream.
+ * <p>
+ * Strings, resources, tag sets and replacements are written once, when first
+ * used, and referred to by index after that. Reading them back gives tokens
+ * which are equal in every respect to the ones which got written, and which
+ * share their tag sets and resources in the same way.
+ */
+public final class BinaryTokens {
+
+	private static final int TOKEN = 1;
+	private static final int TOKEN_WITH_RANGES = 2;
+	private static final int NODE = 3;
+	private static final int LEAF = 4;
+	private static final int END = 0;
+
+	private static final int ENUM_TAG = 1;
+	private static final int STRING_TAG = 2;
+	private static final int NULL_TAG = 3;
+
+	private BinaryTokens() {
+	}
+
+	/**
+	 * Write all given data, followed by an end marker.
+	 */
+	public static void write(List<? extends Data> data, OutputStream out)
+			throws IOException {
+		final Writer writer = new Writer();
+		for (Data d : data)
+			writer.data(d);
+
+		writer.varInt(END);
+		writer.writeTo(out);
+	}
+
+	/**
+	 * Read back everything up to the end marker written by
+	 * {@linkplain #write(List, OutputStream)}, starting at the buffer's current
+	 * position. The buffer is left positioned right after the end marker.
+	 */
+	public static List<Data> read(ByteBuffer buffer) throws IOException {
+		final Reader reader = new Reader(buffer);
+		final List<Data> data = new ArrayList<>();
+
+		try {
+			Data d;
+			while ((d = reader.data()) != null)
+				data.add(d);
+
+		} catch (BufferUnderflowException e) {
+			throw new EOFException("Data ended before the end marker.");
+		}
+
+		return data;
+	}
+
+	private static final class Writer {
+		private byte[] bytes = new byte[8192];
+		private int size = 0;
+
+		private final Map<String, Integer> strings = new HashMap<>();
+		private final Map<TagSet, Integer> tagSets = new IdentityHashMap<>();
+		private final Map<Replaced, Integer> replaced = new IdentityHashMap<>();
+
+		public void writeTo(OutputStream out) throws IOException {
+			out.write(bytes, 0, size);
+		}
+
+		public void varInt(int value) {
+			if (size + 5 > bytes.length)
+				bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+
+			while ((value & ~0x7F) != 0) {
+				bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			bytes[size++] = (byte) value;
+		}
+
+		private void signedVarInt(int value) {
+			varInt((value << 1) ^ (value >> 31));
+		}
+
+		private void raw(byte[] data) {
+			if (size + data.length > bytes.length)
+				bytes = Arrays.copyOf(bytes,
+						Math.max(2 * bytes.length, size + data.length));
+
+			System.arraycopy(data, 0, bytes, size, data.length);
+			size += data.length;
+		}
+
+		public void data(Data d) throws IOException {
+			if (d instanceof Token)
+				token((Token) d);
+
+			else if (d instanceof Tree)
+				tree((Tree) d);
+
+			else
+				throw new NotSerializableException(String.valueOf(d));
+		}
+
+		private void token(Token t) throws IOException {
+			if (t.getRangeCount() == 1 && t.getPackedStart() != Positions.NONE) {
+				varInt(TOKEN);
+				string(t.getText());
+				resource(t.getResource());
+				packed(t.getPackedStart());
+				packed(t.getPackedEnd());
+
+			} else {
+				varInt(TOKEN_WITH_RANGES);
+				string(t.getText());
+				final List<Range> ranges = t.getRanges();
+				varInt(ranges.size());
+				for (Range range : ranges) {
+					position(range.getStart());
+					position(range.getEnd());
+				}
+			}
+
+			tags(t.getTagSet());
+			replaced(t.getReplaced());
+		}
+
+		private void tree(Tree t) throws IOException {
+			final Data data = t.getData();
+
+			if (data instanceof Start) {
+				final Start start = (Start) data;
+				varInt(NODE);
+				string(start.getNamespace());
+				string(start.getName());
+
+				varInt(t.getChildCount());
+				for (int i = 0; i < t.getChildCount(); i++)
+					tree(t.getChild(i));
+
+			} else if (data instanceof Token && !t.hasChildren()) {
+				varInt(LEAF);
+				token((Token) data);
+
+			} else
+				throw new NotSerializableException(String.valueOf(t));
+		}
+
+		private void string(String s) throws IOException {
+			if (s == null) {
+				varInt(0);
+				return;
+			}
+
+			final Integer index = strings.get(s);
+			if (index != null) {
+				varInt(index);
+				return;
+			}
+
+			final int newIndex = strings.size() + 1;
+			strings.put(s, newIndex);
+			varInt(newIndex);
+
+			final byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+			varInt(utf8.length);
+			raw(utf8);
+		}
+
+		private void resource(Resource resource) throws IOException {
+			string(resource == null ? null : resource.getName());
+		}
+
+		private void packed(long packed) throws IOException {
+			varInt(Positions.getPositionInFile(packed));
+			varInt(Positions.getLinenumber(packed));
+			varInt(Positions.getPositionInLine(packed));
+		}
+
+		private void position(Position p) throws IOException {
+			resource(p.getResource());
+			signedVarInt(p.getPositionInFile());
+			signedVarInt(p.getLinenumber());
+			signedVarInt(p.getPositionInLine());
+		}
+
+		private void tags(TagSet tags) throws IOException {
+			final Integer index = tagSets.get(tags);
+			if (index != null) {
+				varInt(index);
+				return;
+			}
+
+			final int newIndex = tagSets.size() + 1;
+			tagSets.put(tags, newIndex);
+			varInt(newIndex);
+
+			varInt(tags.size());
+			for (Object tag : tags)
+				tag(tag);
+		}
+
+		private void tag(Object tag) throws IOException {
+			if (tag == null)
+				varInt(NULL_TAG);
+
+			else if (tag instanceof Enum) {
+				varInt(ENUM_TAG);
+				string(((Enum<?>) tag).getDeclaringClass().getName());
+				string(((Enum<?>) tag).name());
+
+			} else if (tag instanceof String) {
+				varInt(STRING_TAG);
+				string((String) tag);
+
+			} else
+				throw new NotSerializableException(
+						"tag " + tag + " of " + tag.getClass());
+		}
+
+		private void replaced(Replaced r) throws IOException {
+			if (r == null) {
+				varInt(0);
+				return;
+			}
+
+			final Integer index = replaced.get(r);
+			if (index != null) {
+				varInt(index);
+				return;
+			}
+
+			final int newIndex = replaced.size() + 1;
+			replaced.put(r, newIndex);
+			varInt(newIndex);
+			position(r.getStart());
+			position(r.getEnd());
+			replaced(r.getContext());
+		}
+	}
+
+	private static final class Reader {
+		private final ByteBuffer in;
+
+		private final List<String> strings = new ArrayList<>();
+		private final List<TagSet> tagSets = new ArrayList<>();
+		private final List<Replaced> replaced = new ArrayList<>();
+		private final Map<String, Object> enums = new HashMap<>();
+
+		private String lastName = null;
+		private Resource lastResource = null;
+
+		public Reader(ByteBuffer in) {
+			this.in = in;
+		}
+
+		private int varInt() throws IOException {
+			int value = 0;
+			for (int shift = 0; shift < 32; shift += 7) {
+				final int b = in.get() & 0xFF;
+				value |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0)
+					return value;
+			}
+
+			throw new StreamCorruptedException("Bad varint.");
+		}
+
+		private int signedVarInt() throws IOException {
+			final int value = varInt();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		public Data data() throws IOException {
+			final int kind = varInt();
+			switch (kind) {
+			case END:
+				return null;
+			case TOKEN:
+			case TOKEN_WITH_RANGES:
+				return token(kind);
+			case NODE:
+			case LEAF:
+				return tree(kind);
+			default:
+				throw new StreamCorruptedException("Unknown kind: " + kind);
+			}
+		}
+
+		private Token token(int kind) throws IOException {
+			final String text = string();
+
+			if (kind == TOKEN) {
+				final Resource resource = resource();
+				final long start = packed();
+				final long end = packed();
+				final TagSet tags = tags();
+				final Replaced r = replaced();
+				return new Token(text, resource, start, end, tags, r);
+
+			} else {
+				final int count = varInt();
+				final List<Range> ranges = new ArrayList<>(count);
+				for (int i = 0; i < count; i++)
+					ranges.add(new Range(position(), position()));
+
+				final TagSet tags = tags();
+				final Replaced r = replaced();
+				return new Token(text, ranges, tags, r);
+			}
+		}
+
+		private Tree tree(int kind) throws IOException {
+			if (kind == LEAF) {
+				final int tokenKind = varInt();
+				if (tokenKind != TOKEN && tokenKind != TOKEN_WITH_RANGES)
+					throw new StreamCorruptedException(
+							"Expected a token, got: " + tokenKind);
+
+				return new Tree(token(tokenKind));
+			}
+
+			final String namespace = string();
+			final String name = string();
+			final Tree tree = new Tree(Start.on(namespace, name));
+
+			final int count = varInt();
+			for (int i = 0; i < count; i++) {
+				final int childKind = varInt();
+				if (childKind != NODE && childKind != LEAF)
+					throw new StreamCorruptedException(
+							"Expected a tree, got: " + childKind);
+
+				tree.addChild(tree(childKind));
+			}
+
+			return tree;
+		}
+
+		private String string() throws IOException {
+			final int index = varInt();
+			if (index == 0)
+				return null;
+
+			if (index <= strings.size())
+				return strings.get(index - 1);
+
+			if (index != strings.size() + 1)
+				throw new StreamCorruptedException("Bad string: " + index);
+
+			final byte[] bytes = new byte[varInt()];
+			in.get(bytes);
+
+			final String s = new String(bytes, StandardCharsets.UTF_8);
+			strings.add(s);
+			return s;
+		}
+
+		private Resource resource() throws IOException {
+			// Strings come from our table, so comparing them by identity is
+			// enough. Most tokens are in the same resource as the previous one.
+			final String name = string();
+			if (name != lastName) {
+				lastName = name;
+				lastResource = Resource.named(name);
+			}
+
+			return lastResource;
+		}
+
+		private long packed() throws IOException {
+			final int positionInFile = varInt();
+			final int linenumber = varInt();
+			final int positionInLine = varInt();
+			return Positions.pack(positionInFile, linenumber, positionInLine);
+		}
+
+		private Position position() throws IOException {
+			final Resource resource = resource();
+			final int positionInFile = signedVarInt();
+			final int linenumber = signedVarInt();
+			final int positionInLine = signedVarInt();
+			return new Position(resource, positionInFile, linenumber,
+					positionInLine);
+		}
+
+		private TagSet tags() throws IOException {
+			final int index = varInt();
+			if (index <= tagSets.size())
+				return tagSets.get(index - 1);
+
+			if (index != tagSets.size() + 1)
+				throw new StreamCorruptedException("Bad tag set: " + index);
+
+			final int count = varInt();
+			final Object[] tags = new Object[count];
+			for (int i = 0; i < count; i++)
+				tags[i] = tag();
+
+			final TagSet set = TagSet.of(tags);
+			tagSets.add(set);
+			return set;
+		}
+
+		private Object tag() throws IOException {
+			final int kind = varInt();
+			switch (kind) {
+			case NULL_TAG:
+				return null;
+			case STRING_TAG:
+				return string();
+			case ENUM_TAG:
+				return enumTag(string(), string());
+			default:
+				throw new StreamCorruptedException("Unknown tag: " + kind);
+			}
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private Object enumTag(String className, String name)
+				throws IOException {
+			final String key = className + "." + name;
+
+			Object tag = enums.get(key);
+			if (tag == null) {
+				try {
+					final Class clazz = Class.forName(className);
+					tag = Enum.valueOf(clazz, name);
+
+				} catch (ClassNotFoundException | IllegalArgumentException e) {
+					throw new StreamCorruptedException(
+							"Unknown tag: " + key);
+				}
+
+				enums.put(key, tag);
+			}
+
+			return tag;
+		}
+
+		private Replaced replaced() throws IOException {
+			final int index = varInt();
+
+			if (index == 0)
+				return null;
+
+			if (index <= replaced.size())
+				return replaced.get(index - 1);
+
+			if (index != replaced.size() + 1)
+				throw new StreamCorruptedException("Bad replacement: " + index);
+
+			// Reserve our slot before reading the context, which may well
+			// define more replacements of its own.
+			replaced.add(null);
+
+			final Position start = position();
+			final Position end = position();
+			final Replaced context = replaced();
+
+			final Replaced r = new Replaced(start, end, context);
+			replaced.set(index - 1, r);
+			return r;
+		}
+	}
+}
@@ -1,7 +1,5 @@
 package koopa.core.data;
 
-import koopa.core.util.Files;
-
 /**
  * Representation of a position in a file. This tracks both overall position in
  * the file, as well as a position relative to a linenumber. All values are
@@ -11,34 +9,41 @@ import koopa.core.util.Files;
  */
 public final class Position implements Comparable<Position> {
 
-	public static final Position ZERO = new Position(null, 0, 0, 0);
+	public static final Position ZERO = new Position((String) null, 0, 0, 0);
 
-	private final String resourceName;
-	private final String toStringPrefix;
+	private final Resource resource;
 	private final int linenumber;
 	private final int positionInFile;
 	private final int positionInLine;
 
 	public Position(int positionInFile, int linenumber, int positionInLine) {
-		this(null, positionInFile, linenumber, positionInLine);
+		this((String) null, positionInFile, linenumber, positionInLine);
 	}
 
 	public Position(String filename, int positionInFile, int linenumber,
 			int positionInLine) {
-		this.resourceName = filename;
-
-		if (resourceName == null)
-			this.toStringPrefix = "";
-		else
-			this.toStringPrefix = Files.getFilename(resourceName);
+		this(Resource.named(filename), positionInFile, linenumber,
+				positionInLine);
+	}
 
+	/**
+	 * <b>NOTE</b> This is package scoped on purpose, so that
+	 * <code>new Position(null, ...)</code> is not ambiguous to clients.
+	 */
+	Position(Resource resource, int positionInFile, int linenumber,
+			int positionInLine) {
+		this.resource = resource;
 		this.positionInFile = positionInFile;
 		this.linenumber = linenumber;
 		this.positionInLine = positionInLine;
 	}
 
 	public String getResourceName() {
-		return resourceName;
+		return resource == null ? null : resource.getName();
+	}
+
+	public Resource getResource() {
+		return resource;
 	}
 
 	public int getLinenumber() {
@@ -54,13 +59,14 @@ public final class Position implements Comparable<Position> {
 	}
 
 	public Position offsetBy(int offset) {
-		return new Position(resourceName, positionInFile + offset, linenumber,
+		return new Position(resource, positionInFile + offset, linenumber,
 				positionInLine + offset);
 	}
 
 	@Override
 	public String toString() {
-		return toStringPrefix + ":" +  linenumber + ":" + positionInLine;
+		return (resource == null ? "" : resource.getShortName()) + ":"
+				+ linenumber + ":" + positionInLine;
 	}
 
 	@Override
@@ -74,7 +80,8 @@ public final class Position implements Comparable<Position> {
 			return false;
 
 		Position other = (Position) obj;
-		if (resourceName != null && !resourceName.equals(other.resourceName))
+		// Resources are interned, so identity is enough here.
+		if (resource != null && resource != other.resource)
 			return false;
 
 		return positionInFile == other.positionInFile;
@@ -0,0 +1,71 @@
+package koopa.core.data;
+
+/**
+ * Helpers for working with positions packed into a single <code>long</code>,
+ * rather than held in a {@linkplain Position} object.
+ * <p>
+ * A packed position holds the position in the file (30 bits), the linenumber
+ * (20 bits) and the position in the line (13 bits). Positions which do not fit
+ * this can not be packed, and get {@linkplain #NONE} instead. The resource a
+ * position refers to is not part of this. That gets tracked separately (cfr.
+ * {@linkplain Resource}).
+ */
+public final class Positions {
+
+	private Positions() {
+	}
+
+	/**
+	 * Marks a position which could not be packed.
+	 */
+	public static final long NONE = -1L;
+
+	private static final int LINE_SHIFT = 13;
+	private static final int FILE_SHIFT = 33;
+
+	private static final int MAX_POSITION_IN_LINE = (1 << 13) - 1;
+	private static final int MAX_LINENUMBER = (1 << 20) - 1;
+	private static final int MAX_POSITION_IN_FILE = (1 << 30) - 1;
+
+	public static long pack(int positionInFile, int linenumber,
+			int positionInLine) {
+		if (positionInFile < 0 || positionInFile > MAX_POSITION_IN_FILE
+				|| linenumber < 0 || linenumber > MAX_LINENUMBER
+				|| positionInLine < 0 || positionInLine > MAX_POSITION_IN_LINE)
+			return NONE;
+
+		return ((long) positionInFile << FILE_SHIFT)
+				| ((long) linenumber << LINE_SHIFT) | positionInLine;
+	}
+
+	public static long pack(Position position) {
+		return pack(position.getPositionInFile(), position.getLinenumber(),
+				position.getPositionInLine());
+	}
+
+	public static int getPositionInFile(long packed) {
+		return (int) (packed >>> FILE_SHIFT);
+	}
+
+	public static int getLinenumber(long packed) {
+		return (int) (packed >>> LINE_SHIFT) & MAX_LINENUMBER;
+	}
+
+	public static int getPositionInLine(long packed) {
+		return (int) packed & MAX_POSITION_IN_LINE;
+	}
+
+	/**
+	 * Equivalent to {@linkplain Position#offsetBy(int)}. Answers
+	 * {@linkplain #NONE} if the result can not be packed.
+	 */
+	public static long offsetBy(long packed, int offset) {
+		return pack(getPositionInFile(packed) + offset, getLinenumber(packed),
+				getPositionInLine(packed) + offset);
+	}
+
+	public static Position toPosition(Resource resource, long packed) {
+		return new Position(resource, getPositionInFile(packed),
+				getLinenumber(packed), getPositionInLine(packed));
+	}
+}
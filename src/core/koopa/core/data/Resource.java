@@ -0,0 +1,59 @@
+package koopa.core.data;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import koopa.core.util.Files;
+
+/**
+ * Identifies the resource (typically a file) which {@linkplain Position}s
+ * refer to.
+ * <p>
+ * Resources are interned by name, so that all positions in the same resource
+ * share a single instance, rather than each holding on to their own copies of
+ * its name and short name.
+ */
+public final class Resource {
+
+	private static final ConcurrentHashMap<String, Resource> RESOURCES = new ConcurrentHashMap<>();
+
+	private final String name;
+	private final String shortName;
+
+	private Resource(String name) {
+		this.name = name;
+		this.shortName = Files.getFilename(name);
+	}
+
+	/**
+	 * Returns the resource with the given name, or <code>null</code> if the
+	 * name is <code>null</code>.
+	 */
+	public static Resource named(String name) {
+		if (name == null)
+			return null;
+
+		final Resource resource = RESOURCES.get(name);
+		if (resource != null)
+			return resource;
+
+		final Resource created = new Resource(name);
+		final Resource existing = RESOURCES.putIfAbsent(name, created);
+		return existing == null ? created : existing;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * The filename part of the name, without any path information.
+	 */
+	public String getShortName() {
+		return shortName;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,374 @@
+package koopa.core.data;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An immutable set of tags, as carried by a {@linkplain Token}.
+ * <p>
+ * Every tag which is ever used gets assigned a fixed index, and a TagSet is
+ * nothing more than a bitset over those indices. Testing for a tag is then a
+ * single bit test. TagSets are interned, so that all tokens with the same tags
+ * share the same instance, and adding or removing tags which are already
+ * there (or not) costs no allocation at all.
+ * <p>
+ * In practice there are only a few dozen distinct tags (mostly enum constants),
+ * which means most sets fit in a single <code>long</code>.
+ * <p>
+ * Tags are registered for the life of the JVM, which is only reasonable when
+ * they come from a small, fixed vocabulary. Enum constants always qualify.
+ * Any other kind of tag (e.g. a String) is accepted up to a limit, set by the
+ * <code>koopa.tags.limit</code> system property (default: 1024). Going over
+ * that limit means tags are being made up on the fly, say per file, which
+ * would leak. That gets refused with an {@linkplain IllegalStateException}.
+ */
+public final class TagSet extends AbstractSet<Object> {
+
+	/**
+	 * <code>null</code> is a valid tag, but {@linkplain ConcurrentHashMap}
+	 * does not accept it as a key.
+	 */
+	private static final Object NULL = new Object() {
+		@Override
+		public String toString() {
+			return "null";
+		}
+	};
+
+	private static final ConcurrentHashMap<Object, Integer> INDICES = new ConcurrentHashMap<>();
+	private static volatile Object[] TAGS = new Object[64];
+	private static int NUMBER_OF_TAGS = 0;
+
+	private static final int LIMIT = Integer.getInteger("koopa.tags.limit",
+			1024);
+	private static int NUMBER_OF_NON_ENUM_TAGS = 0;
+
+	private static final ConcurrentHashMap<TagSet, TagSet> INTERNED = new ConcurrentHashMap<>();
+
+	public static final TagSet EMPTY = intern(new TagSet(new long[0]));
+
+	private final long[] bits;
+	private final int size;
+	private final int hashCode;
+
+	/**
+	 * The results of adding or removing a single tag, per tag index. These get
+	 * filled in as needed, and are <code>null</code> until then.
+	 * <p>
+	 * Growing a cache races with other threads doing the same, so an entry
+	 * may get lost. That only means it gets computed again later, and
+	 * interning makes sure that gives the same instance. The arrays themselves
+	 * are always safely published.
+	 */
+	private volatile AtomicReferenceArray<TagSet> adding = null;
+	private volatile AtomicReferenceArray<TagSet> removing = null;
+
+	private TagSet(long[] bits) {
+		this.bits = bits;
+
+		int size = 0;
+		int hashCode = 0;
+		for (int word = 0; word < bits.length; word++) {
+			size += Long.bitCount(bits[word]);
+
+			long b = bits[word];
+			while (b != 0) {
+				final int bit = Long.numberOfTrailingZeros(b);
+				final Object tag = TAGS[word * 64 + bit];
+				hashCode += tag == NULL ? 0 : tag.hashCode();
+				b &= b - 1;
+			}
+		}
+
+		this.size = size;
+		this.hashCode = hashCode;
+	}
+
+	/**
+	 * Returns the interned set holding exactly the given tags.
+	 */
+	public static TagSet of(Object... tags) {
+		return EMPTY.with(tags);
+	}
+
+	/**
+	 * Returns the interned set holding exactly the given tags.
+	 */
+	public static TagSet of(Iterable<?> tags) {
+		if (tags instanceof TagSet)
+			return (TagSet) tags;
+
+		long[] bits = EMPTY.bits;
+		for (Object tag : tags)
+			bits = set(bits, register(tag));
+
+		return intern(bits);
+	}
+
+	/**
+	 * Returns the set holding these tags as well as the given ones. This
+	 * answers <code>this</code> if all given tags are already here.
+	 */
+	public TagSet with(Object... tags) {
+		TagSet set = this;
+		for (Object tag : tags)
+			set = set.with(register(tag));
+
+		return set;
+	}
+
+	private TagSet with(int index) {
+		if (isSet(bits, index))
+			return this;
+
+		final TagSet cached = cached(adding, index);
+		if (cached != null)
+			return cached;
+
+		final TagSet result = intern(set(bits.clone(), index));
+		adding = cache(adding, index, result);
+		return result;
+	}
+
+	/**
+	 * Returns the set holding these tags, minus the given ones. This answers
+	 * <code>this</code> if none of the given tags are here.
+	 */
+	public TagSet without(Object... tags) {
+		TagSet set = this;
+		for (Object tag : tags)
+			set = set.without(indexOf(tag));
+
+		return set;
+	}
+
+	private TagSet without(int index) {
+		if (index < 0 || !isSet(bits, index))
+			return this;
+
+		final TagSet cached = cached(removing, index);
+		if (cached != null)
+			return cached;
+
+		final long[] copy = bits.clone();
+		copy[index >> 6] &= ~(1L << index);
+		final TagSet result = intern(copy);
+		removing = cache(removing, index, result);
+		return result;
+	}
+
+	/**
+	 * Returns the set holding these tags, minus the old one, and with the
+	 * addition of the new one.
+	 */
+	public TagSet replacing(Object oldTag, Object newTag) {
+		return without(oldTag).with(newTag);
+	}
+
+	@Override
+	public boolean contains(Object tag) {
+		final int index = indexOf(tag);
+		return index >= 0 && isSet(bits, index);
+	}
+
+	/**
+	 * Whether or not this set has <b>all</b> given tags.
+	 */
+	public boolean containsAll(Object... tags) {
+		for (Object tag : tags)
+			if (!contains(tag))
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Whether or not this set has <b>any</b> of the given tags.
+	 */
+	public boolean containsAny(Object... tags) {
+		for (Object tag : tags)
+			if (contains(tag))
+				return true;
+
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Iterates the tags in the order in which they were first seen by any
+	 * TagSet.
+	 */
+	@Override
+	public Iterator<Object> iterator() {
+		return new Iterator<Object>() {
+			private int index = nextIndex(0);
+
+			@Override
+			public boolean hasNext() {
+				return index >= 0;
+			}
+
+			@Override
+			public Object next() {
+				if (index < 0)
+					throw new NoSuchElementException();
+
+				final Object tag = TAGS[index];
+				index = nextIndex(index + 1);
+				return tag == NULL ? null : tag;
+			}
+		};
+	}
+
+	private int nextIndex(int from) {
+		int word = from >> 6;
+		if (word >= bits.length)
+			return -1;
+
+		long b = bits[word] & (-1L << from);
+		while (true) {
+			if (b != 0)
+				return word * 64 + Long.numberOfTrailingZeros(b);
+
+			word += 1;
+			if (word >= bits.length)
+				return -1;
+
+			b = bits[word];
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this)
+			return true;
+
+		if (obj instanceof TagSet)
+			return Arrays.equals(bits, ((TagSet) obj).bits);
+
+		return super.equals(obj);
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static TagSet cached(AtomicReferenceArray<TagSet> cache,
+			int index) {
+		if (cache == null || index >= cache.length())
+			return null;
+
+		return cache.get(index);
+	}
+
+	/**
+	 * Stores the result for the given index, answering the cache to be used
+	 * from now on. This is either the given one, or a larger copy of it.
+	 */
+	private static AtomicReferenceArray<TagSet> cache(
+			AtomicReferenceArray<TagSet> cache, int index, TagSet result) {
+		if (cache == null || index >= cache.length()) {
+			final AtomicReferenceArray<TagSet> grown = new AtomicReferenceArray<>(
+					Math.max(index + 1, NUMBER_OF_TAGS));
+			for (int i = 0; cache != null && i < cache.length(); i++)
+				grown.set(i, cache.get(i));
+
+			cache = grown;
+		}
+
+		cache.set(index, result);
+		return cache;
+	}
+
+	private static boolean isSet(long[] bits, int index) {
+		final int word = index >> 6;
+		return word < bits.length && (bits[word] & (1L << index)) != 0;
+	}
+
+	private static long[] set(long[] bits, int index) {
+		final int word = index >> 6;
+		if (word >= bits.length)
+			bits = Arrays.copyOf(bits, word + 1);
+
+		bits[word] |= 1L << index;
+		return bits;
+	}
+
+	/**
+	 * Answers the canonical TagSet for the given bits. Trailing empty words
+	 * get trimmed first, so that equal sets have equal arrays.
+	 */
+	private static TagSet intern(long[] bits) {
+		int length = bits.length;
+		while (length > 0 && bits[length - 1] == 0)
+			length -= 1;
+
+		if (length < bits.length)
+			bits = Arrays.copyOf(bits, length);
+
+		return intern(new TagSet(bits));
+	}
+
+	private static TagSet intern(TagSet set) {
+		final TagSet interned = INTERNED.putIfAbsent(set, set);
+		return interned == null ? set : interned;
+	}
+
+	private static int indexOf(Object tag) {
+		final Integer index = INDICES.get(tag == null ? NULL : tag);
+		return index == null ? -1 : index;
+	}
+
+	private static int register(Object tag) {
+		final int index = indexOf(tag);
+		if (index >= 0)
+			return index;
+
+		return registerNew(tag == null ? NULL : tag);
+	}
+
+	private static synchronized int registerNew(Object tag) {
+		final Integer known = INDICES.get(tag);
+		if (known != null)
+			return known;
+
+		if (!(tag instanceof Enum) && tag != NULL) {
+			if (NUMBER_OF_NON_ENUM_TAGS >= LIMIT)
+				throw new IllegalStateException("Refusing to register tag "
+						+ tag + ", as there are already " + LIMIT
+						+ " tags which are not enum constants. "
+						+ "Tags should come from a fixed set.");
+
+			NUMBER_OF_NON_ENUM_TAGS += 1;
+		}
+
+		final int index = NUMBER_OF_TAGS++;
+
+		// We publish the tag before its index, so that anyone who finds the
+		// index will also find the tag.
+		Object[] tags = TAGS;
+		if (index >= tags.length)
+			tags = Arrays.copyOf(tags, 2 * tags.length);
+		tags[index] = tag;
+		TAGS = tags;
+
+		INDICES.put(tag, index);
+		return index;
+	}
+}
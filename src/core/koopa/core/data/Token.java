@@ -1,11 +1,10 @@
 package koopa.core.data;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import koopa.core.targets.HoldingTarget;
 
@@ -22,7 +21,25 @@ public class Token implements Data {
 	private final String text;
 
 	/**
-	 * Which {@linkplain Range}s make up this token ?
+	 * Which resource do this token's positions refer to ?
+	 */
+	private final Resource resource;
+
+	/**
+	 * Where does this token start and end ? These are packed positions (cfr.
+	 * {@linkplain Positions}), and {@linkplain Position} objects only get
+	 * created when asked for. When either position can not be packed, or when
+	 * the token consists of several {@linkplain Range}s, these are
+	 * {@linkplain Positions#NONE}, and we use {@linkplain #ranges} instead.
+	 */
+	private final long start;
+	private final long end;
+
+	/**
+	 * Which {@linkplain Range}s make up this token ? This is only set when
+	 * {@linkplain #start} and {@linkplain #end} can not describe this token on
+	 * their own. Most tokens consist of a single range, with positions which
+	 * can be packed.
 	 * <p>
 	 * <b>Unmodifiable, and always based on a copy of any provided list of
 	 * ranges !</b>
@@ -32,9 +49,9 @@ public class Token implements Data {
 	/**
 	 * Which tags does this token carry ?
 	 * <p>
-	 * <b>Unmodifiable !</b>
+	 * <b>Interned, and therefore shared between tokens !</b>
 	 */
-	private final Set<Object> tags;
+	private final TagSet tags;
 
 	private final Replaced replaced;
 
@@ -69,6 +86,43 @@ public class Token implements Data {
 	 * <code>(end.getResourceName())</code> are both null, or are equal.
 	 */
 	public Token(String text, Position start, Position end, Object... tags) {
+		this(text, start, end, TagSet.of(tags), null);
+	}
+
+	/**
+	 * Creates a new token from the given text, packed boundaries (cfr.
+	 * {@linkplain Positions}) and tags. Both boundaries must be valid packed
+	 * positions.
+	 */
+	public Token(String text, Resource resource, long start, long end,
+			Object... tags) {
+		this(text, resource, start, end, TagSet.of(tags), null);
+	}
+
+	/**
+	 * <b>NOTE</b> This is package scoped on purpose. Intended for use by
+	 * {@linkplain Tokens} only.
+	 */
+	Token(String text, Resource resource, long start, long end, TagSet tags,
+			Replaced replacing) {
+		assert (start != Positions.NONE);
+		assert (end != Positions.NONE);
+
+		this.text = text;
+		this.resource = resource;
+		this.start = start;
+		this.end = end;
+		this.ranges = null;
+		this.tags = tags;
+		this.replaced = replacing;
+	}
+
+	/**
+	 * <b>NOTE</b> This is package scoped on purpose. Intended for use by
+	 * {@linkplain Tokens} only.
+	 */
+	Token(String text, Position start, Position end, TagSet tags,
+			Replaced replacing) {
 		assert (start != null);
 		assert (end != null);
 		assert (start.getResourceName() == null && end.getResourceName() == null
@@ -76,34 +130,60 @@ public class Token implements Data {
 						.equals(end.getResourceName()));
 
 		this.text = text;
+		this.resource = start.getResource();
 
-		final List<Range> ranges = new ArrayList<>(1);
-		ranges.add(new Range(start, end));
+		final long packedStart = Positions.pack(start);
+		final long packedEnd = Positions.pack(end);
 
-		this.ranges = Collections.unmodifiableList(ranges);
-		this.tags = Collections
-				.unmodifiableSet(new HashSet<>(Arrays.asList(tags)));
+		if (packedStart != Positions.NONE && packedEnd != Positions.NONE) {
+			this.start = packedStart;
+			this.end = packedEnd;
+			this.ranges = null;
 
-		this.replaced = null;
+		} else {
+			this.start = Positions.NONE;
+			this.end = Positions.NONE;
+			this.ranges = Collections.singletonList(new Range(start, end));
+		}
+
+		this.tags = tags;
+		this.replaced = replacing;
 	}
 
 	/**
 	 * <b>NOTE</b> This is package scoped on purpose. Intended for use by
 	 * {@linkplain Tokens} only.
 	 */
-	Token(String text, List<Range> ranges, Set<Object> tags,
-			Replaced replacing) {
+	Token(String text, List<Range> ranges, TagSet tags, Replaced replacing) {
 		assert (ranges != null);
 		assert (ranges.size() > 0);
 
 		this.text = text;
-
-		final List<Range> rangesCopy = new ArrayList<>();
-		rangesCopy.addAll(ranges);
-
-		this.ranges = Collections.unmodifiableList(rangesCopy);
-		this.tags = Collections.unmodifiableSet(tags);
-
+		this.resource = ranges.get(0).getStart().getResource();
+
+		final long packedStart;
+		final long packedEnd;
+		if (ranges.size() == 1) {
+			packedStart = Positions.pack(ranges.get(0).getStart());
+			packedEnd = Positions.pack(ranges.get(0).getEnd());
+		} else {
+			packedStart = Positions.NONE;
+			packedEnd = Positions.NONE;
+		}
+
+		if (packedStart != Positions.NONE && packedEnd != Positions.NONE) {
+			this.start = packedStart;
+			this.end = packedEnd;
+			this.ranges = null;
+
+		} else {
+			this.start = Positions.NONE;
+			this.end = Positions.NONE;
+			this.ranges = Collections
+					.unmodifiableList(new ArrayList<>(ranges));
+		}
+
+		this.tags = tags;
 		this.replaced = replacing;
 	}
 
@@ -124,24 +204,24 @@ public class Token implements Data {
 	 * {@linkplain Tokens#join(List, Object...)} method instead.
 	 */
 	Token(List<Token> tokens, Object... tags) {
-		StringBuffer buffer = new StringBuffer();
+		this(textOf(tokens), rangesOf(tokens), TagSet.of(tags), null);
+	}
+
+	private static String textOf(List<Token> tokens) {
+		final StringBuilder buffer = new StringBuilder();
 
 		for (Token token : tokens)
 			buffer.append(token.getText());
 
-		this.text = buffer.toString();
+		return buffer.toString();
+	}
 
+	private static List<Range> rangesOf(List<Token> tokens) {
 		final List<Range> ranges = new ArrayList<>();
 		for (Token token : tokens)
-			ranges.addAll(token.ranges);
-
-		assert (ranges.size() > 0);
-
-		this.ranges = Collections.unmodifiableList(ranges);
-		this.tags = Collections
-				.unmodifiableSet(new HashSet<>(Arrays.asList(tags)));
+			ranges.addAll(token.getRanges());
 
-		this.replaced = null;
+		return ranges;
 	}
 
 	/**
@@ -153,11 +233,27 @@ public class Token implements Data {
 		assert (replacing != null);
 
 		this.text = token.text;
+		this.resource = token.resource;
+		this.start = token.start;
+		this.end = token.end;
 		this.ranges = token.ranges;
 		this.tags = token.tags;
 		this.replaced = replacing;
 	}
 
+	/**
+	 * Create a copy of one token, with different tags.
+	 */
+	private Token(Token token, TagSet tags) {
+		this.text = token.text;
+		this.resource = token.resource;
+		this.start = token.start;
+		this.end = token.end;
+		this.ranges = token.ranges;
+		this.tags = tags;
+		this.replaced = token.replaced;
+	}
+
 	public String getText() {
 		return this.text;
 	}
@@ -171,17 +267,94 @@ public class Token implements Data {
 	}
 
 	public Position getStart() {
-		return ranges.get(0).getStart();
+		if (ranges == null)
+			return Positions.toPosition(resource, start);
+		else
+			return ranges.get(0).getStart();
 	}
 
 	public Position getEnd() {
-		return ranges.get(ranges.size() - 1).getEnd();
+		if (ranges == null)
+			return Positions.toPosition(resource, end);
+		else
+			return ranges.get(ranges.size() - 1).getEnd();
+	}
+
+	/**
+	 * Equivalent to <code>getStart().getPositionInFile()</code>, but without
+	 * creating a {@linkplain Position}.
+	 */
+	public int getStartPositionInFile() {
+		if (ranges == null)
+			return Positions.getPositionInFile(start);
+		else
+			return getStart().getPositionInFile();
 	}
 
+	/**
+	 * Equivalent to <code>getEnd().getPositionInFile()</code>, but without
+	 * creating a {@linkplain Position}.
+	 */
+	public int getEndPositionInFile() {
+		if (ranges == null)
+			return Positions.getPositionInFile(end);
+		else
+			return getEnd().getPositionInFile();
+	}
+
+	/**
+	 * Equivalent to <code>getStart().getPositionInLine()</code>, but without
+	 * creating a {@linkplain Position}.
+	 */
+	public int getStartPositionInLine() {
+		if (ranges == null)
+			return Positions.getPositionInLine(start);
+		else
+			return getStart().getPositionInLine();
+	}
+
+	/**
+	 * Equivalent to <code>getEnd().getPositionInLine()</code>, but without
+	 * creating a {@linkplain Position}.
+	 */
+	public int getEndPositionInLine() {
+		if (ranges == null)
+			return Positions.getPositionInLine(end);
+		else
+			return getEnd().getPositionInLine();
+	}
+
+	public Resource getResource() {
+		return resource;
+	}
+
+	/**
+	 * The packed start position (cfr. {@linkplain Positions}) of a token made
+	 * up of a single range. Answers {@linkplain Positions#NONE} otherwise.
+	 */
+	long getPackedStart() {
+		return start;
+	}
+
+	/**
+	 * The packed end position (cfr. {@linkplain Positions}) of a token made
+	 * up of a single range. Answers {@linkplain Positions#NONE} otherwise.
+	 */
+	long getPackedEnd() {
+		return end;
+	}
+
+	/**
+	 * The tags carried by this token, as an (immutable) {@linkplain TagSet}.
+	 */
 	public Set<Object> getTags() {
 		return tags;
 	}
 
+	TagSet getTagSet() {
+		return tags;
+	}
+
 	public boolean hasTag(Object tag) {
 		return tags.contains(tag);
 	}
@@ -190,30 +363,41 @@ public class Token implements Data {
 	 * Whether or not this token has <b>all</b> given tags.
 	 */
 	public boolean hasTags(Object... tags) {
-		for (Object tag : tags)
-			if (!hasTag(tag))
-				return false;
-
-		return true;
+		return this.tags.containsAll(tags);
 	}
 
 	/**
 	 * Whether or not this token has <b>any</b> of the given tags.
 	 */
 	public boolean hasAnyTag(Object... tags) {
-		for (Object tag : tags)
-			if (hasTag(tag))
-				return true;
-
-		return false;
+		return this.tags.containsAny(tags);
 	}
 
 	public int tagCount() {
 		return tags.size();
 	}
 
+	/**
+	 * The {@linkplain Range}s making up this token.
+	 * <p>
+	 * Most tokens hold a single range in packed form, in which case this builds
+	 * a new list, range and positions on every call. Hot code should prefer
+	 * {@linkplain #getRangeCount()}, {@linkplain #getStartPositionInFile()} and
+	 * friends, which work on the packed form directly.
+	 */
 	public List<Range> getRanges() {
-		return ranges;
+		if (ranges == null)
+			return Collections.singletonList(new Range(getStart(), getEnd()));
+		else
+			return ranges;
+	}
+
+	/**
+	 * The number of {@linkplain Range}s making up this token. This is
+	 * equivalent to, but cheaper than, <code>getRanges().size()</code>.
+	 */
+	public int getRangeCount() {
+		return ranges == null ? 1 : ranges.size();
 	}
 
 	/**
@@ -222,15 +406,7 @@ public class Token implements Data {
 	 * returns <code>this</code> instead.
 	 */
 	public Token withTags(Object... additionalTags) {
-		if (additionalTags.length == 0)
-			return this;
-
-		if (hasTags(additionalTags))
-			return this;
-
-		Set<Object> newTags = new HashSet<>(tags);
-		newTags.addAll(Arrays.asList(additionalTags));
-		return new Token(text, ranges, newTags, replaced);
+		return withTagSet(tags.with(additionalTags));
 	}
 
 	/**
@@ -239,15 +415,7 @@ public class Token implements Data {
 	 * here, returns <code>this</code> instead.
 	 */
 	public Token withoutTags(Object... theseTags) {
-		if (theseTags.length == 0)
-			return this;
-
-		if (!hasAnyTag(theseTags))
-			return this;
-
-		Set<Object> newTags = new HashSet<>(tags);
-		newTags.removeAll(Arrays.asList(theseTags));
-		return new Token(text, ranges, newTags, replaced);
+		return withTagSet(tags.without(theseTags));
 	}
 
 	/**
@@ -255,10 +423,14 @@ public class Token implements Data {
 	 * present), and with the addition of the other.
 	 */
 	public Token replacingTag(Object oldTag, Object newTag) {
-		Set<Object> newTags = new HashSet<>(tags);
-		newTags.remove(oldTag);
-		newTags.add(newTag);
-		return new Token(text, ranges, newTags, replaced);
+		return new Token(this, tags.replacing(oldTag, newTag));
+	}
+
+	private Token withTagSet(TagSet newTags) {
+		if (newTags == tags)
+			return this;
+		else
+			return new Token(this, newTags);
 	}
 
 	/**
@@ -306,8 +478,8 @@ public class Token implements Data {
 
 	// ========================================================================
 
-	private static int hashCounter = 0;
-	private final int HASHCODE = hashCounter++;
+	private static final AtomicInteger hashCounter = new AtomicInteger();
+	private final int HASHCODE = hashCounter.getAndIncrement();
 
 	/**
 	 * For {@linkplain Token} instances, equality boils down to object identity.
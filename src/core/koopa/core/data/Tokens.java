@@ -37,15 +37,33 @@ public final class Tokens {
 
 		// Empty token ?
 		if (beginIndex == lengthOfToken) {
-			List<Range> ranges = new ArrayList<>(1);
+			final long packedEnd = token.getPackedEnd();
+			if (packedEnd != Positions.NONE)
+				return new Token("", token.getResource(), packedEnd, packedEnd,
+						token.getTagSet(), token.getReplaced());
+
 			Position end = token.getEnd();
-			ranges.add(new Range(end, end));
-			return new Token("", ranges, token.getTags(), token.getReplaced());
+			return new Token("", end, end, token.getTagSet(),
+					token.getReplaced());
 		}
 
 		int index = beginIndex;
 		String text = token.getText().substring(index);
 
+		// Single range with packed positions ? Then we can work this out
+		// without creating any Positions or Ranges.
+		final long packedStart = token.getPackedStart();
+		if (packedStart != Positions.NONE) {
+			final long packedEnd = token.getPackedEnd();
+			final int lengthOfRange = Positions.getPositionInFile(packedEnd)
+					- Positions.getPositionInFile(packedStart) + 1;
+
+			final long start = Positions.offsetBy(packedStart, index);
+			if (index < lengthOfRange && start != Positions.NONE)
+				return new Token(text, token.getResource(), start, packedEnd,
+						token.getTagSet(), token.getReplaced());
+		}
+
 		List<Range> ranges = new ArrayList<>();
 		for (Range range : token.getRanges()) {
 			if (index == 0) {
@@ -74,7 +92,7 @@ public final class Tokens {
 		assert (!ranges.isEmpty());
 
 		final Token sub = new Token(text, ranges,
-				token.getTags(), token.getReplaced());
+				token.getTagSet(), token.getReplaced());
 
 		return sub;
 	}
@@ -107,6 +125,28 @@ public final class Tokens {
 
 		text = text.substring(begin, end);
 
+		// Single range with packed positions ? Then we can work this out
+		// without creating any Positions or Ranges.
+		final long packedStart = token.getPackedStart();
+		if (packedStart != Positions.NONE) {
+			final long packedEnd = token.getPackedEnd();
+			final int lengthOfRange = Positions.getPositionInFile(packedEnd)
+					- Positions.getPositionInFile(packedStart) + 1;
+
+			if (begin <= lengthOfRange) {
+				final long start = begin > 0
+						? Positions.offsetBy(packedStart, begin)
+						: packedStart;
+				final long stop = end < lengthOfRange
+						? Positions.offsetBy(packedStart, end - 1)
+						: packedEnd;
+
+				if (start != Positions.NONE && stop != Positions.NONE)
+					return new Token(text, token.getResource(), start, stop,
+							token.getTagSet(), token.getReplaced());
+			}
+		}
+
 		List<Range> ranges = new ArrayList<>();
 		for (Range range : token.getRanges()) {
 			if (end < 0) {
@@ -150,7 +190,7 @@ public final class Tokens {
 		assert (!ranges.isEmpty());
 
 		final Token sub = new Token(text, ranges,
-				token.getTags(), token.getReplaced());
+				token.getTagSet(), token.getReplaced());
 
 		return sub;
 	}
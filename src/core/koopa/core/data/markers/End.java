@@ -1,7 +1,7 @@
 package koopa.core.data.markers;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import koopa.core.data.Marker;
 
@@ -14,7 +14,7 @@ import koopa.core.data.Marker;
  */
 public final class End extends Marker {
 
-	private static Map<String, End> markers = new HashMap<>();
+	private static Map<String, End> markers = new ConcurrentHashMap<>();
 
 	private final String namespace;
 	private final String name;
@@ -30,9 +30,11 @@ public final class End extends Marker {
 	public static End on(String namespace, String name) {
 		String key = namespace + ":" + name;
 
-		if (!markers.containsKey(key))
-			markers.put(key, new End(namespace, name));
+		final End marker = markers.get(key);
+		if (marker != null)
+			return marker;
 
+		markers.putIfAbsent(key, new End(namespace, name));
 		return markers.get(key);
 	}
 
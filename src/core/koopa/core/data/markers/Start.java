@@ -1,7 +1,7 @@
 package koopa.core.data.markers;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import koopa.core.data.Marker;
 
@@ -14,7 +14,7 @@ import koopa.core.data.Marker;
  */
 public final class Start extends Marker {
 
-	private static Map<String, Start> markers = new HashMap<>();
+	private static Map<String, Start> markers = new ConcurrentHashMap<>();
 
 	private final String namespace;
 	private final String name;
@@ -30,9 +30,11 @@ public final class Start extends Marker {
 	public static Start on(String namespace, String name) {
 		final String key = namespace + ":" + name;
 
-		if (!markers.containsKey(key))
-			markers.put(key, new Start(namespace, name));
+		final Start marker = markers.get(key);
+		if (marker != null)
+			return marker;
 
+		markers.putIfAbsent(key, new Start(namespace, name));
 		return markers.get(key);
 	}
 
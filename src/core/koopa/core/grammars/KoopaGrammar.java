@@ -2,8 +2,14 @@ package koopa.core.grammars;
 
 import static koopa.core.grammars.combinators.Scoped.Visibility.PUBLIC;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.Map;
+import java.util.Set;
 
 import koopa.core.grammars.combinators.Dispatched;
 import koopa.core.grammars.combinators.MatchAny;
@@ -53,9 +59,70 @@ import koopa.core.parsers.combinators.WithOption;
  */
 public abstract class KoopaGrammar extends Grammar {
 
+	private volatile boolean frozen = false;
+
 	public KoopaGrammar() {
 	}
 
+	/**
+	 * Resolve all rules in this grammar, and do all work up front which would
+	 * otherwise be done lazily during parsing (e.g. the setting up of dispatch
+	 * tables). After this the grammar no longer changes, which makes it safe
+	 * to share between any number of parsing threads.
+	 * <p>
+	 * Rules are found by looking for all non-private methods, declared by
+	 * subclasses of {@linkplain KoopaGrammar}, which take no arguments and
+	 * return a {@linkplain ParserCombinator}. Rules of other grammars which
+	 * can be reached from these get prepared along the way.
+	 */
+	public synchronized void freeze() {
+		if (frozen)
+			return;
+
+		final LinkedList<ParserCombinator> pending = new LinkedList<>();
+
+		for (Class<?> c = getClass(); c != KoopaGrammar.class; c = c
+				.getSuperclass()) {
+			for (Method method : c.getDeclaredMethods()) {
+				if (method.getParameterTypes().length > 0
+						|| Modifier.isStatic(method.getModifiers())
+						|| Modifier.isPrivate(method.getModifiers())
+						|| !ParserCombinator.class
+								.isAssignableFrom(method.getReturnType()))
+					continue;
+
+				try {
+					method.setAccessible(true);
+					pending.add((ParserCombinator) method.invoke(this));
+
+				} catch (IllegalAccessException
+						| InvocationTargetException e) {
+					throw new IllegalStateException(
+							"Could not resolve rule " + method.getName(), e);
+				}
+			}
+		}
+
+		final Set<ParserCombinator> seen = new HashSet<>();
+		while (!pending.isEmpty()) {
+			final ParserCombinator parser = pending.removeFirst();
+			if (parser == null || !seen.add(parser))
+				continue;
+
+			parser.prepare();
+			parser.addAllChildrenTo(pending);
+		}
+
+		frozen = true;
+	}
+
+	/**
+	 * Whether or not {@linkplain #freeze()} has been called on this grammar.
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
 	protected FutureParser scoped(final String name) {
 		return scoped(name, PUBLIC, true);
 	}
@@ -1,5 +1,6 @@
 package koopa.core.grammars.combinators;
 
+import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 
@@ -68,6 +69,11 @@ public class Dispatched extends WithKeyword {
 		return true;
 	}
 
+	@Override
+	public void addAllChildrenTo(Collection<ParserCombinator> children) {
+		children.addAll(lookupTable.values());
+	}
+
 	@Override
 	public String toString() {
 		return SYMBOL;
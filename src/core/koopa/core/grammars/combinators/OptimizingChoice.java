@@ -1,5 +1,7 @@
 package koopa.core.grammars.combinators;
 
+import java.util.Collection;
+
 import org.apache.log4j.Logger;
 
 import koopa.core.grammars.Grammar;
@@ -19,7 +21,7 @@ public class OptimizingChoice extends Choice {
 	private static final Logger LOGGER = Logger.getLogger("optimization");
 
 	private final Grammar grammar;
-	private boolean optimizerRan = false;
+	private volatile boolean optimizerRan = false;
 	private ParserCombinator optimized = null;
 
 	public OptimizingChoice(Grammar grammar, ParserCombinator... parsers) {
@@ -29,52 +31,8 @@ public class OptimizingChoice extends Choice {
 
 	@Override
 	public boolean matches(Parse parse) {
-		if (!optimizerRan) {
-			optimizerRan = true;
-
-			final int count = Optimizer
-					.countLeadingParsersAllowingLookahead(parsers);
-
-			if (count == parsers.length) {
-				// Best case: all alternatives allow lookahead, so a single
-				// dispatch table will do.
-
-				if (LOGGER.isTraceEnabled()) {
-					final Scoped scope = parse.getStack().getScope();
-					LOGGER.trace("choice in "
-							+ (scope == null ? "??" : scope.getName())
-							+ " : full dispatch of " + parsers.length
-							+ " alternatives.");
-				}
-
-				optimized = Optimizer.dispatched(grammar, parsers);
-
-			} else if (count > 2) {
-				// No point setting up dispatch for a single alternative.
-				// But not much point for just two cases either.
-				// Not sure what a good minimum is, but lets say three or more.
-
-				if (LOGGER.isTraceEnabled()) {
-					final Scoped scope = parse.getStack().getScope();
-					LOGGER.trace("choice in "
-							+ (scope == null ? "??" : scope.getName())
-							+ " : dispatching first " + count + " of "
-							+ parsers.length + " alternatives.");
-				}
-
-				// We'll replace the leading parsers with a single dispatch.
-
-				final ParserCombinator[] reduced //
-						= new ParserCombinator[parsers.length - count + 1];
-				reduced[0] = Optimizer.dispatched(grammar, parsers, 0, count);
-				for (int i = 1; i < reduced.length; i++)
-					reduced[i] = parsers[count + i - 1];
-				optimized = new Choice(reduced);
-			}
-
-			// TODO Is it worth looking for other sets of alternatives in the
-			// parsers ?
-		}
+		if (!optimizerRan)
+			optimize(parse.getStack().getScope());
 
 		if (optimized != null)
 			return optimized.accepts(parse);
@@ -82,6 +40,72 @@ public class OptimizingChoice extends Choice {
 			return super.matches(parse);
 	}
 
+	@Override
+	public void prepare() {
+		if (!optimizerRan)
+			optimize(null);
+	}
+
+	@Override
+	public void addAllChildrenTo(Collection<ParserCombinator> children) {
+		super.addAllChildrenTo(children);
+
+		if (optimizerRan && optimized != null)
+			children.add(optimized);
+	}
+
+	/**
+	 * This is synchronized so that grammars which are shared between threads
+	 * only ever get optimized once. The result gets published by setting
+	 * {@link #optimizerRan}.
+	 */
+	private synchronized void optimize(Scoped scope) {
+		if (optimizerRan)
+			return;
+
+		final int count = Optimizer.countLeadingParsersAllowingLookahead(parsers);
+
+		if (count == parsers.length) {
+			// Best case: all alternatives allow lookahead, so a single
+			// dispatch table will do.
+
+			if (LOGGER.isTraceEnabled()) {
+				LOGGER.trace("choice in "
+						+ (scope == null ? "??" : scope.getName())
+						+ " : full dispatch of " + parsers.length
+						+ " alternatives.");
+			}
+
+			optimized = Optimizer.dispatched(grammar, parsers);
+
+		} else if (count > 2) {
+			// No point setting up dispatch for a single alternative.
+			// But not much point for just two cases either.
+			// Not sure what a good minimum is, but lets say three or more.
+
+			if (LOGGER.isTraceEnabled()) {
+				LOGGER.trace("choice in "
+						+ (scope == null ? "??" : scope.getName())
+						+ " : dispatching first " + count + " of "
+						+ parsers.length + " alternatives.");
+			}
+
+			// We'll replace the leading parsers with a single dispatch.
+
+			final ParserCombinator[] reduced //
+					= new ParserCombinator[parsers.length - count + 1];
+			reduced[0] = Optimizer.dispatched(grammar, parsers, 0, count);
+			for (int i = 1; i < reduced.length; i++)
+				reduced[i] = parsers[count + i - 1];
+			optimized = new Choice(reduced);
+		}
+
+		// TODO Is it worth looking for other sets of alternatives in the
+		// parsers ?
+
+		optimizerRan = true;
+	}
+
 	@Override
 	public String toString() {
 		return optimized == null ? super.toString() : optimized.toString();
@@ -1,5 +1,7 @@
 package koopa.core.grammars.combinators;
 
+import java.util.Collection;
+
 import org.apache.log4j.Logger;
 
 import koopa.core.grammars.Grammar;
@@ -23,7 +25,7 @@ public class OptimizingPermuted extends Permuted {
 	private static final Logger LOGGER = Logger.getLogger("optimization");
 
 	private final Grammar grammar;
-	private boolean optimizerRan = false;
+	private volatile boolean optimizerRan = false;
 	private ParserCombinator optimized = null;
 
 	public OptimizingPermuted(Grammar grammar, ParserCombinator... parsers) {
@@ -33,63 +35,8 @@ public class OptimizingPermuted extends Permuted {
 
 	@Override
 	public boolean matches(Parse parse) {
-		if (!optimizerRan) {
-			optimizerRan = true;
-
-			int count = Optimizer.countLeadingParsersAllowingLookahead(parsers);
-			if (count == parsers.length) {
-				// Best case: all alternatives allow lookahead, so a single
-				// dispatch table will do. We need to combine this with Once and
-				// Counting to make sure any alternative is not applied twice.
-
-				if (LOGGER.isTraceEnabled()) {
-					final Scoped scope = parse.getStack().getScope();
-					LOGGER.trace("permutation in "
-							+ (scope == null ? "??" : scope.getName())
-							+ " : full dispatch of " + parsers.length
-							+ " alternatives.");
-				}
-
-				final ParserCombinator[] onces = new ParserCombinator[parsers.length];
-				for (int i = 0; i < parsers.length; i++)
-					onces[i] = new Once(parsers[i]);
-
-				final Dispatched dispatched = Optimizer.dispatched(grammar,
-						onces);
-				final Plus star = new Plus(dispatched);
-				optimized = new Counting(star);
-
-			} else if (count > 2) {
-				// No point setting up dispatch for a single alternative.
-				// But not much point for just two cases either.
-				// Not sure what a good minimum is, but lets say three or more.
-
-				if (LOGGER.isTraceEnabled()) {
-					final Scoped scope = parse.getStack().getScope();
-					LOGGER.trace("permutation in "
-							+ (scope == null ? "??" : scope.getName())
-							+ " : dispatching first " + count + " of "
-							+ parsers.length + " alternatives.");
-				}
-
-				// We'll replace the leading parsers with a single dispatch.
-
-				final ParserCombinator[] onces = new ParserCombinator[parsers.length];
-				for (int i = 0; i < parsers.length; i++)
-					onces[i] = new Once(parsers[i]);
-
-				final ParserCombinator[] reduced = new ParserCombinator[onces.length
-						- count + 1];
-				reduced[0] = Optimizer.dispatched(grammar, onces, 0, count);
-				for (int i = 1; i < reduced.length; i++)
-					reduced[i] = parsers[count + i - 1];
-				final Plus star = new Plus(new Choice(reduced));
-				optimized = new Counting(star);
-			}
-
-			// TODO Is it worth looking for other sets of alternatives in the
-			// parsers ?
-		}
+		if (!optimizerRan)
+			optimize(parse.getStack().getScope());
 
 		if (optimized != null)
 			return optimized.accepts(parse);
@@ -97,6 +44,84 @@ public class OptimizingPermuted extends Permuted {
 			return super.matches(parse);
 	}
 
+	@Override
+	public void prepare() {
+		if (!optimizerRan)
+			optimize(null);
+	}
+
+	@Override
+	public void addAllChildrenTo(Collection<ParserCombinator> children) {
+		super.addAllChildrenTo(children);
+
+		if (optimizerRan && optimized != null)
+			children.add(optimized);
+	}
+
+	/**
+	 * This is synchronized so that grammars which are shared between threads
+	 * only ever get optimized once. The result gets published by setting
+	 * {@link #optimizerRan}.
+	 */
+	private synchronized void optimize(Scoped scope) {
+		if (optimizerRan)
+			return;
+
+		int count = Optimizer.countLeadingParsersAllowingLookahead(parsers);
+		if (count == parsers.length) {
+			// Best case: all alternatives allow lookahead, so a single
+			// dispatch table will do. We need to combine this with Once and
+			// Counting to make sure any alternative is not applied twice.
+
+			if (LOGGER.isTraceEnabled()) {
+				LOGGER.trace("permutation in "
+						+ (scope == null ? "??" : scope.getName())
+						+ " : full dispatch of " + parsers.length
+						+ " alternatives.");
+			}
+
+			final ParserCombinator[] onces = new ParserCombinator[parsers.length];
+			for (int i = 0; i < parsers.length; i++)
+				onces[i] = new Once(parsers[i]);
+
+			final Dispatched dispatched = Optimizer.dispatched(grammar,
+					onces);
+			final Plus star = new Plus(dispatched);
+			optimized = new Counting(star);
+
+		} else if (count > 2) {
+			// No point setting up dispatch for a single alternative.
+			// But not much point for just two cases either.
+			// Not sure what a good minimum is, but lets say three or more.
+
+			if (LOGGER.isTraceEnabled()) {
+				LOGGER.trace("permutation in "
+						+ (scope == null ? "??" : scope.getName())
+						+ " : dispatching first " + count + " of "
+						+ parsers.length + " alternatives.");
+			}
+
+			// We'll replace the leading parsers with a single dispatch.
+
+			final ParserCombinator[] onces = new ParserCombinator[parsers.length];
+			for (int i = 0; i < parsers.length; i++)
+				onces[i] = new Once(parsers[i]);
+
+			final ParserCombinator[] reduced = new ParserCombinator[onces.length
+					- count + 1];
+			reduced[0] = Optimizer.dispatched(grammar, onces, 0, count);
+			for (int i = 1; i < reduced.length; i++)
+				reduced[i] = parsers[count + i - 1];
+			final Plus star = new Plus(new Choice(reduced));
+			optimized = new Counting(star);
+		}
+
+		// TODO Is it worth looking for other sets of alternatives in the
+		// parsers ?
+
+		optimizerRan = true;
+	}
+
 	@Override
 	public String toString() {
 		return optimized == null ? super.toString() : optimized.toString();
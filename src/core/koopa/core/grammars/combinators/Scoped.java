@@ -11,9 +11,15 @@ import koopa.core.data.markers.End;
 import koopa.core.data.markers.Start;
 import koopa.core.grammars.Grammar;
 import koopa.core.parsers.FutureParser;
+import koopa.core.parsers.Memoization;
+import koopa.core.parsers.Memoization.Result;
 import koopa.core.parsers.Parse;
+import koopa.core.parsers.Stack;
+import koopa.core.parsers.Stack.KeywordScope;
 import koopa.core.parsers.Stream;
 import koopa.core.streams.BaseStream;
+import koopa.core.streams.BaseStream.Latch;
+import koopa.core.streams.BaseStream.Recording;
 import koopa.core.targets.HoldingTarget;
 
 public class Scoped extends FutureParser {
@@ -65,11 +71,9 @@ public class Scoped extends FutureParser {
 			final BaseStream baseStream = parse.getFlow().getBaseStream();
 			final HoldingTarget target = baseStream.getTarget();
 			final Token t = target.peekAtLastToken();
-			if (t != null) {
-				final Position start = t.getStart();
-				if (parse.getFinalPosition().compareTo(start) < 0)
-					parse.setFinalMatch(start, parse.getStack().getHead());
-			}
+			if (t != null && parse.getFinalPosition()
+					.getPositionInFile() < t.getStartPositionInFile())
+				parse.setFinalMatch(t.getStart(), parse.getStack().getHead());
 		}
 
 		return accepts;
@@ -77,6 +81,65 @@ public class Scoped extends FutureParser {
 
 	@Override
 	public boolean matches(Parse parse) {
+		final Memoization memoization = parse.getMemoization();
+
+		if (memoization == null || !memoization.appliesTo(parse))
+			return matchesUnmemoized(parse);
+
+		final BaseStream baseStream = parse.getFlow().getBaseStream();
+		final int position = baseStream.getPosition();
+		final Stack stack = parse.getStack();
+		final KeywordScope scope = stack.getKeywordScope();
+
+		final Result known = memoization.lookup(this, scope, position);
+		if (known != null && replay(parse, baseStream, known))
+			return known.accepts();
+
+		final Latch latch = baseStream.latch();
+		final int contextQueries = stack.getContextQueries();
+		final boolean accepts = matchesUnmemoized(parse);
+
+		// If the rule looked further up the stack than the keywords in scope,
+		// its result may not hold anywhere else.
+		if (stack.getContextQueries() != contextQueries)
+			return accepts;
+
+		if (!accepts)
+			memoization.storeMismatch(this, scope, position,
+					parse.getFinalPosition(), parse.getFinalFrame());
+
+		else {
+			final Recording recording = baseStream.recordSince(latch);
+			if (recording != null)
+				memoization.storeMatch(this, scope, position, recording,
+						parse.getFinalPosition(), parse.getFinalFrame());
+		}
+
+		return accepts;
+	}
+
+	/**
+	 * Try to reproduce a known result. Answers <code>false</code> if the
+	 * result could not be reproduced, in which case we should run the rule
+	 * after all.
+	 */
+	private boolean replay(Parse parse, BaseStream baseStream, Result known) {
+		if (known.accepts() && !baseStream.replay(known.getRecording()))
+			return false;
+
+		if (parse.getTrace().isEnabled())
+			parse.getTrace().add(toString() + " : "
+					+ (known.accepts() ? "yes" : "no") + " (memoized)");
+
+		final Position finalPosition = known.getFinalPosition();
+		if (finalPosition != null
+				&& parse.getFinalPosition().compareTo(finalPosition) < 0)
+			parse.setFinalMatch(finalPosition, known.getFinalFrame());
+
+		return true;
+	}
+
+	private boolean matchesUnmemoized(Parse parse) {
 		final Stream stream = parse.getStream();
 
 		if (parse.getTrace().isEnabled())
@@ -34,7 +34,7 @@ public class TestRange extends GrammaticalCombinator {
 
 		final Token t = (Token) d;
 
-		final int startOfToken = t.getStart().getPositionInLine();
+		final int startOfToken = t.getStartPositionInLine();
 		if (begin >= 0 && startOfToken < begin) {
 			if (parse.getTrace().isEnabled())
 				parse.getTrace().add(toString() + " : no, begins at "
@@ -43,7 +43,7 @@ public class TestRange extends GrammaticalCombinator {
 			return false;
 		}
 
-		final int endOfToken = t.getEnd().getPositionInLine();
+		final int endOfToken = t.getEndPositionInLine();
 		if (end >= 0 && endOfToken > end) {
 			if (parse.getTrace().isEnabled())
 				parse.getTrace().add(toString() + " : no, ends at " + endOfToken
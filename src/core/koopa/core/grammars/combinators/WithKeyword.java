@@ -2,11 +2,11 @@ package koopa.core.grammars.combinators;
 
 import koopa.core.data.Data;
 import koopa.core.grammars.Grammar;
+import koopa.core.parsers.Lookahead;
 import koopa.core.parsers.Parse;
 import koopa.core.parsers.ParserCombinator;
 import koopa.core.parsers.Stream;
 import koopa.core.streams.Streams;
-import koopa.core.util.Memo;
 
 /**
  * This {@linkplain ParserCombinator} provides the basis for others which want
@@ -42,18 +42,22 @@ public abstract class WithKeyword extends GrammaticalCombinator {
 	 * This returns the keyword at this point in the parse, restoring the state
 	 * of the parse to the starting point afterwards.
 	 * <p>
-	 * We memoize the keywords which were found so that we can reused them if we
-	 * get asked for them again at some later point.
+	 * We remember the keywords which were found in the
+	 * {@linkplain Parse#getLookahead()}, so that we can reuse them if we get
+	 * asked for them again at some later point.
 	 */
 	private String getKeyword(Parse parse) {
-		final Memo memo = Memo.forSubject("kw-" + parse.hashCode());
-
 		final Stream stream = parse.getStream();
 		final Data peek = stream.peek();
 
-		final String memoizedKeyword = memo.get(peek, String.class);
-		if (memoizedKeyword != null)
-			return memoizedKeyword;
+		final Lookahead lookahead = parse.getLookahead();
+		final int position = stream.getBaseStream().getPosition();
+
+		if (peek != null) {
+			final String knownKeyword = lookahead.get(position, peek);
+			if (knownKeyword != null)
+				return knownKeyword;
+		}
 
 		stream.bookmark();
 		final boolean accepts = parser.accepts(parse);
@@ -66,7 +70,9 @@ public abstract class WithKeyword extends GrammaticalCombinator {
 					Streams.getProgramTextFromBookmark(grammar, stream));
 
 		stream.rewind();
-		memo.put(peek, keyword);
+		if (peek != null)
+			lookahead.put(position, peek, keyword);
+
 		return keyword;
 	}
 
@@ -1,5 +1,6 @@
 package koopa.core.grammars.combinators;
 
+import java.util.Collection;
 import java.util.Set;
 
 import koopa.core.data.markers.End;
@@ -68,6 +69,11 @@ public class WrappedAs extends ParserCombinator {
 		return parser.canMatchEmptyInputs();
 	}
 
+	@Override
+	public void addAllChildrenTo(Collection<ParserCombinator> children) {
+		children.add(parser);
+	}
+
 	@Override
 	public boolean isMatching(String n) {
 		return name.equals(n);
@@ -1,5 +1,6 @@
 package koopa.core.parsers;
 
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -13,7 +14,7 @@ import java.util.Set;
 public class FutureParser extends ParserCombinator {
 
 	protected ParserCombinator parser = null;
-	private Set<String> allKeywords;
+	private volatile Set<String> allKeywords;
 
 	public void setParser(ParserCombinator parser) {
 		assert (this.parser == null);
@@ -47,13 +48,33 @@ public class FutureParser extends ParserCombinator {
 		return getAllKeywordsInScope().contains(word);
 	}
 
+	@Override
+	public boolean hasKeywordsInScope() {
+		return !getAllKeywordsInScope().isEmpty();
+	}
+
 	private Set<String> getAllKeywordsInScope() {
-		if (allKeywords == null) {
-			allKeywords = new HashSet<>();
-			parser.addAllKeywordsInScopeTo(allKeywords);
+		Set<String> keywords = allKeywords;
+
+		if (keywords == null) {
+			// Worst case another thread does the same work concurrently, but
+			// we'll only ever publish a complete set.
+			keywords = new HashSet<>();
+			parser.addAllKeywordsInScopeTo(keywords);
+			allKeywords = keywords;
 		}
 
-		return allKeywords;
+		return keywords;
+	}
+
+	@Override
+	public void addAllChildrenTo(Collection<ParserCombinator> children) {
+		children.add(parser);
+	}
+
+	@Override
+	public void prepare() {
+		getAllKeywordsInScope();
 	}
 
 	@Override
@@ -0,0 +1,108 @@
+package koopa.core.parsers;
+
+import java.util.Arrays;
+
+import koopa.core.data.Data;
+import koopa.core.grammars.Grammar;
+import koopa.core.grammars.combinators.WithKeyword;
+import koopa.core.streams.BaseStream;
+
+/**
+ * Remembers, for a {@linkplain Parse}, which {@linkplain Grammar#keyword()}
+ * was found at recent positions in its {@linkplain BaseStream}. This is what
+ * lets {@linkplain WithKeyword} parsers (like the dispatch tables behind an
+ * optimized choice) which get tried at the same spot over and over again skip
+ * redoing that work.
+ * <p>
+ * Entries are keyed on the position in the {@linkplain BaseStream}, and are
+ * only used when the {@linkplain Data} at that position is still the exact
+ * one which was seen when they got stored. There is a fixed number of slots,
+ * so a new entry may push out an older one. Whenever the stream commits all
+ * its data, entries before that point get dropped.
+ * <p>
+ * Every {@linkplain Parse} has its own, so there is nothing here to be shared
+ * between threads.
+ */
+public class Lookahead {
+
+	/** Must be a power of two. */
+	private static final int SLOTS = 64;
+
+	private final int[] positions = new int[SLOTS];
+	private final Data[] data = new Data[SLOTS];
+	private final String[] keywords = new String[SLOTS];
+
+	/** The lowest position we may still be holding on to. */
+	private int lowest = Integer.MAX_VALUE;
+
+	private int hits = 0;
+	private int misses = 0;
+
+	public Lookahead() {
+		Arrays.fill(positions, -1);
+	}
+
+	/**
+	 * The keyword which was stored for the given data at the given position,
+	 * if any. Otherwise this returns <code>null</code>.
+	 */
+	public String get(int position, Data peek) {
+		final int slot = position & (SLOTS - 1);
+
+		if (positions[slot] == position && data[slot] == peek) {
+			hits += 1;
+			return keywords[slot];
+
+		} else {
+			misses += 1;
+			return null;
+		}
+	}
+
+	public void put(int position, Data peek, String keyword) {
+		final int slot = position & (SLOTS - 1);
+
+		positions[slot] = position;
+		data[slot] = peek;
+		keywords[slot] = keyword;
+
+		if (position < lowest)
+			lowest = position;
+	}
+
+	/**
+	 * Drop all entries for positions before the given one.
+	 */
+	public void forgetBefore(int position) {
+		if (lowest >= position)
+			return;
+
+		lowest = Integer.MAX_VALUE;
+		for (int slot = 0; slot < SLOTS; slot++) {
+			if (positions[slot] < 0)
+				continue;
+
+			if (positions[slot] < position) {
+				positions[slot] = -1;
+				data[slot] = null;
+				keywords[slot] = null;
+
+			} else if (positions[slot] < lowest)
+				lowest = positions[slot];
+		}
+	}
+
+	public int getHits() {
+		return hits;
+	}
+
+	public int getMisses() {
+		return misses;
+	}
+
+	@Override
+	public String toString() {
+		return "lookahead, " + hits + " hits / " + (hits + misses)
+				+ " lookups";
+	}
+}
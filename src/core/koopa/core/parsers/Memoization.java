@@ -0,0 +1,282 @@
+package koopa.core.parsers;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+
+import koopa.core.data.Position;
+import koopa.core.grammars.combinators.Scoped;
+import koopa.core.parsers.Stack.Frame;
+import koopa.core.parsers.Stack.KeywordScope;
+import koopa.core.streams.BaseStream;
+import koopa.core.streams.BaseStream.Recording;
+
+/**
+ * This is the memo table for packrat parsing. It remembers, for a
+ * {@linkplain Scoped} rule and the position in the {@linkplain BaseStream} it
+ * started from, whether that rule matched or not, and if so what it added to
+ * the stream. A {@linkplain Scoped} rule which gets tried again at the same
+ * position (which happens a lot after backtracking) can then replay that
+ * result rather than doing all the work again.
+ * <p>
+ * This is opt-in. Either set it on a {@linkplain Parse} explicitly, or set the
+ * <code>koopa.memoize</code> system property to <code>true</code> to have one
+ * set up for every {@linkplain Parse}.
+ * <p>
+ * Whether or not a word is a keyword depends on the rules enclosing the one
+ * being matched. That's why results are also keyed on the
+ * {@linkplain KeywordScope} of the {@linkplain Stack}. Rules which look at
+ * the stack in any other way (cfr. {@linkplain Stack#getContextQueries()})
+ * don't get their results stored at all.
+ * <p>
+ * Memory use is bounded by a budget, expressed in the number of
+ * {@linkplain koopa.core.data.Data} references held by the table. Whenever
+ * the {@linkplain BaseStream} commits all its data, entries before that
+ * position are of no more use and get dropped. When the budget is exceeded,
+ * entries for the earliest positions get evicted first.
+ */
+public class Memoization {
+
+	private static final Logger LOGGER = Logger.getLogger("memoization");
+
+	private static final boolean SHOULD_RUN;
+	private static final int DEFAULT_BUDGET;
+	static {
+		SHOULD_RUN = "true".equalsIgnoreCase( //
+				System.getProperty("koopa.memoize", "false"));
+
+		DEFAULT_BUDGET = Integer.getInteger("koopa.memoize.budget", 1000000);
+
+		if (SHOULD_RUN && LOGGER.isInfoEnabled())
+			LOGGER.info("Memoization has been turned on, with a budget of "
+					+ DEFAULT_BUDGET + ".");
+	}
+
+	public static boolean shouldRun() {
+		return SHOULD_RUN;
+	}
+
+	/**
+	 * The result of trying a rule at a given position.
+	 */
+	public static final class Result {
+		private final boolean accepts;
+		private final Recording recording;
+		private final Position finalPosition;
+		private final Frame finalFrame;
+
+		private Result(boolean accepts, Recording recording,
+				Position finalPosition, Frame finalFrame) {
+			this.accepts = accepts;
+			this.recording = recording;
+			this.finalPosition = finalPosition;
+			this.finalFrame = finalFrame;
+		}
+
+		public boolean accepts() {
+			return accepts;
+		}
+
+		public Recording getRecording() {
+			return recording;
+		}
+
+		public Position getFinalPosition() {
+			return finalPosition;
+		}
+
+		public Frame getFinalFrame() {
+			return finalFrame;
+		}
+
+		private int size() {
+			return 1 + (recording == null ? 0 : recording.size());
+		}
+	}
+
+	/**
+	 * Per rule name: number of lookups, number of hits.
+	 */
+	private final Map<String, int[]> counters = new HashMap<>();
+
+	/**
+	 * What results get stored under: a rule, and the keywords in scope when it
+	 * was tried.
+	 */
+	private static final class Key {
+		private final Scoped rule;
+		private final KeywordScope scope;
+
+		private Key(Scoped rule, KeywordScope scope) {
+			this.rule = rule;
+			this.scope = scope;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(rule) + scope.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+
+			final Key other = (Key) obj;
+			return rule == other.rule && scope.equals(other.scope);
+		}
+	}
+
+	/**
+	 * Per position: the results for all rules tried at that position.
+	 */
+	private final TreeMap<Integer, Map<Key, Result>> table = new TreeMap<>();
+
+	private final int budget;
+	private int size = 0;
+	private int evictions = 0;
+
+	public Memoization() {
+		this(DEFAULT_BUDGET);
+	}
+
+	public Memoization(int budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Can the memo table be used in the current state of the given
+	 * {@linkplain Parse} ?
+	 * <p>
+	 * Results are only valid when there are no limiters on the stream, and no
+	 * options are in effect, as those can change what a rule will match.
+	 */
+	public boolean appliesTo(Parse parse) {
+		return parse.getStream() == parse.getFlow().getBaseStream()
+				&& !parse.hasOptionsSet();
+	}
+
+	/**
+	 * Look for a known result for the given rule at the given position, with
+	 * the given keywords in scope. Answers <code>null</code> if there is none.
+	 */
+	public Result lookup(Scoped rule, KeywordScope scope, int position) {
+		final int[] counter = countersFor(rule);
+		counter[0] += 1;
+
+		final Map<Key, Result> results = table.get(position);
+		if (results == null)
+			return null;
+
+		final Result result = results.get(new Key(rule, scope));
+		if (result != null)
+			counter[1] += 1;
+
+		return result;
+	}
+
+	public void storeMatch(Scoped rule, KeywordScope scope, int position,
+			Recording recording, Position finalPosition, Frame finalFrame) {
+		store(new Key(rule, scope), position,
+				new Result(true, recording, finalPosition, finalFrame));
+	}
+
+	public void storeMismatch(Scoped rule, KeywordScope scope, int position,
+			Position finalPosition, Frame finalFrame) {
+		store(new Key(rule, scope), position,
+				new Result(false, null, finalPosition, finalFrame));
+	}
+
+	private void store(Key key, int position, Result result) {
+		Map<Key, Result> results = table.get(position);
+		if (results == null) {
+			results = new HashMap<>();
+			table.put(position, results);
+		}
+
+		final Result previous = results.put(key, result);
+		if (previous != null)
+			size -= previous.size();
+		size += result.size();
+
+		while (size > budget && !table.isEmpty())
+			evict(table.pollFirstEntry().getValue());
+	}
+
+	/**
+	 * Drop all results for positions before the given one. These can no
+	 * longer be of use once the stream has committed up to that position.
+	 */
+	public void forgetBefore(int position) {
+		while (!table.isEmpty() && table.firstKey() < position)
+			evict(table.pollFirstEntry().getValue());
+	}
+
+	private void evict(Map<Key, Result> results) {
+		for (Result result : results.values()) {
+			size -= result.size();
+			evictions += 1;
+		}
+	}
+
+	private int[] countersFor(Scoped rule) {
+		int[] counter = counters.get(rule.getName());
+		if (counter == null) {
+			counter = new int[2];
+			counters.put(rule.getName(), counter);
+		}
+		return counter;
+	}
+
+	// ------------------------------------------------------------------------
+
+	public Set<String> getRuleNames() {
+		return Collections.unmodifiableSet(counters.keySet());
+	}
+
+	public int getLookups(String ruleName) {
+		final int[] counter = counters.get(ruleName);
+		return counter == null ? 0 : counter[0];
+	}
+
+	public int getHits(String ruleName) {
+		final int[] counter = counters.get(ruleName);
+		return counter == null ? 0 : counter[1];
+	}
+
+	/**
+	 * The fraction of lookups for the given rule which could be answered from
+	 * the memo table.
+	 */
+	public double getHitRate(String ruleName) {
+		final int lookups = getLookups(ruleName);
+		return lookups == 0 ? 0.0 : ((double) getHits(ruleName)) / lookups;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder b = new StringBuilder();
+		b.append("memoization, size ").append(size).append(" of ")
+				.append(budget).append(", ").append(evictions)
+				.append(" evictions");
+
+		for (String name : new TreeMap<>(counters).keySet())
+			b.append("\n  ").append(name).append(": ")
+					.append(getHits(name)).append(" hits / ")
+					.append(getLookups(name)).append(" lookups");
+
+		return b.toString();
+	}
+}
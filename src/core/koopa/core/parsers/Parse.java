@@ -2,6 +2,7 @@ package koopa.core.parsers;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import koopa.core.data.Position;
 import koopa.core.parsers.Stack.Frame;
@@ -23,11 +24,12 @@ public class Parse {
 
 	private Set<Opt> options = new HashSet<>();
 
+	private Memoization memoization = null;
+
+	private final Lookahead lookahead = new Lookahead();
+
 	private Parse() {
-		this.stack = new Stack();
-		this.trace = new Trace();
-		this.messages = new Messages();
-		this.flow = new Flow(this);
+		this(new Trace(), new Messages());
 	}
 
 	private Parse(Trace trace, Messages messages) {
@@ -35,6 +37,9 @@ public class Parse {
 		this.trace = trace;
 		this.messages = messages;
 		this.flow = new Flow(this);
+
+		if (Memoization.shouldRun())
+			this.memoization = new Memoization();
 	}
 
 	public Parse ofNested(Source source) {
@@ -97,6 +102,10 @@ public class Parse {
 		return options.contains(opt);
 	}
 
+	public boolean hasOptionsSet() {
+		return !options.isEmpty();
+	}
+
 	public void set(Opt opt, boolean on) {
 		if (on)
 			options.add(opt);
@@ -104,6 +113,25 @@ public class Parse {
 			options.remove(opt);
 	}
 
+	/**
+	 * The packrat memo table for this parse, if any. Cfr.
+	 * {@linkplain Memoization}.
+	 */
+	public Memoization getMemoization() {
+		return memoization;
+	}
+
+	public void setMemoization(Memoization memoization) {
+		this.memoization = memoization;
+	}
+
+	/**
+	 * The keywords found so far by lookahead. Cfr. {@linkplain Lookahead}.
+	 */
+	public Lookahead getLookahead() {
+		return lookahead;
+	}
+
 	public Position getFinalPosition() {
 		return finalPosition;
 	}
@@ -119,8 +147,8 @@ public class Parse {
 
 	// ========================================================================
 
-	private static int hashCounter = 0;
-	private final int HASHCODE = hashCounter++;
+	private static final AtomicInteger hashCounter = new AtomicInteger();
+	private final int HASHCODE = hashCounter.getAndIncrement();
 
 	/**
 	 * For {@linkplain Parse} instances, equality boils down to object identity.
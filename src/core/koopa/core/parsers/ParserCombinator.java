@@ -1,6 +1,8 @@
 package koopa.core.parsers;
 
+import java.util.Collection;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import koopa.core.grammars.Grammar;
 
@@ -104,6 +106,16 @@ public abstract class ParserCombinator {
 		return false;
 	}
 
+	/**
+	 * Whether or not there is any word for which
+	 * {@linkplain #isKeywordInScope(String)} would return <code>true</code>.
+	 * <p>
+	 * By default this returns <code>false</code>.
+	 */
+	public boolean hasKeywordsInScope() {
+		return false;
+	}
+
 	/**
 	 * Is this parser matching a rule with the given name ?
 	 * <p>
@@ -113,10 +125,32 @@ public abstract class ParserCombinator {
 		return false;
 	}
 
+	// ------------------------------------------------------------------------
+	// Support for freezing grammars...
+
+	/**
+	 * Add all parsers this one delegates to to the given collection.
+	 * <p>
+	 * By default this leaves the collection untouched.
+	 */
+	public void addAllChildrenTo(Collection<ParserCombinator> children) {
+	}
+
+	/**
+	 * Do any work up front which would otherwise get done lazily, on first
+	 * use. Once this has been called the parser should no longer change, so
+	 * that it can be shared safely between parses running on different
+	 * threads.
+	 * <p>
+	 * By default there is nothing to do.
+	 */
+	public void prepare() {
+	}
+
 	// ========================================================================
 
-	private static int hashCounter = 0;
-	private final int HASHCODE = hashCounter++;
+	private static final AtomicInteger hashCounter = new AtomicInteger();
+	private final int HASHCODE = hashCounter.getAndIncrement();
 
 	/**
 	 * For {@linkplain ParserCombinator} instances, equality boils down to
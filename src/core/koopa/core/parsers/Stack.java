@@ -1,58 +1,150 @@
 package koopa.core.parsers;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import koopa.core.grammars.Grammar;
 import koopa.core.grammars.combinators.Scoped;
 
+/**
+ * The stack of {@linkplain ParserCombinator}s which are currently matching.
+ * <p>
+ * This is backed by an array, so that pushing and popping don't allocate
+ * anything. {@linkplain Frame}s are only created when someone asks for one
+ * (e.g. {@linkplain #getHead()}), and are reused for as long as the part of
+ * the stack they describe stays the same.
+ * <p>
+ * We also keep track, for every depth, of the nearest parser which has any say
+ * in what is a keyword. That way {@linkplain #isKeyword(String)} and
+ * {@linkplain #getKeywordScope()} only need to look at those, rather than at
+ * every frame.
+ */
 public class Stack {
 
-	private Frame head;
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * The parsers on the stack, from the base up. Index zero is the base, and
+	 * holds <code>null</code>. Entries above {@linkplain #top} are left in
+	 * place after popping, so that pushing the same parser again doesn't
+	 * invalidate anything.
+	 */
+	private ParserCombinator[] parsers = new ParserCombinator[INITIAL_CAPACITY];
+
+	/** Index of the head of the stack. */
+	private int top = 0;
+
+	/**
+	 * Snapshots of the stack, per depth. Only those up to and including
+	 * {@linkplain #framed} are valid.
+	 */
+	private Frame[] frames = new Frame[INITIAL_CAPACITY];
+
+	private int framed = 0;
+
+	/**
+	 * For every depth, the nearest depth at or below it whose parser has a say
+	 * in what is a keyword, or zero if there is none. Only those up to and
+	 * including {@linkplain #linked} are valid.
+	 */
+	private int[] links = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The {@linkplain KeywordScope}s for those depths in {@linkplain #links}
+	 * which point to themselves, as far as we needed them already.
+	 */
+	private KeywordScope[] scopes = new KeywordScope[INITIAL_CAPACITY];
+
+	private int linked = 0;
+
+	/**
+	 * How often the stack was asked something which depends on more than just
+	 * the keywords in scope. Cfr. {@linkplain #getContextQueries()}.
+	 */
+	private int contextQueries = 0;
 
 	public Stack() {
-		head = new Frame(null, null);
+		frames[0] = new Frame(null, null);
 	}
 
 	public boolean isEmpty() {
-		return head.parser == null;
+		return top == 0;
 	}
 
 	public Frame getHead() {
-		return head;
+		return frameAt(top);
 	}
 
+	/**
+	 * Make the given frame the head of this stack. Whatever it shares with the
+	 * current stack is left alone.
+	 */
 	public void setHead(Frame head) {
-		this.head = head;
+		final int depth = head.depth;
+		ensureCapacity(depth);
+
+		for (Frame f = head; f != null; f = f.up) {
+			final int d = f.depth;
+			if (d <= framed && frames[d] == f)
+				break;
+
+			if (parsers[d] != f.parser) {
+				parsers[d] = f.parser;
+				if (linked >= d)
+					linked = d - 1;
+			}
+
+			frames[d] = f;
+		}
+
+		framed = depth;
+		top = depth;
 	}
 
 	public void push(ParserCombinator parser) {
-		head = head.push(parser);
+		final int depth = top + 1;
+		ensureCapacity(depth);
+
+		if (parsers[depth] != parser) {
+			parsers[depth] = parser;
+			if (framed >= depth)
+				framed = depth - 1;
+			if (linked >= depth)
+				linked = depth - 1;
+		}
+
+		top = depth;
 	}
 
 	public ParserCombinator peek() {
-		return head.parser;
+		return parsers[top];
 	}
 
 	public ParserCombinator pop() {
-		ParserCombinator p = head.parser;
-		head = head.pop();
-		return p;
+		assert (top > 0);
+		return parsers[top--];
+	}
+
+	/**
+	 * The number of parsers on this stack.
+	 */
+	public int depth() {
+		return top;
 	}
 
 	public Scoped getScope() {
-		Frame h = head;
-		while (h.parser != null)
-			if (h.parser instanceof Scoped)
-				return (Scoped) h.parser;
-			else
-				h = h.up;
-		
+		for (int d = top; d > 0; d--)
+			if (parsers[d] instanceof Scoped)
+				return (Scoped) parsers[d];
+
 		return null;
 	}
-	
+
 	/**
 	 * Whether or not this stack can say that the given word is a keyword.
 	 * <p>
@@ -60,13 +152,10 @@ public class Stack {
 	 * {@linkplain Grammar#comparableText(String)} already.
 	 */
 	public boolean isKeyword(String word) {
-		Frame f = head;
-
-		while (f != null) {
-			ParserCombinator p = f.parser;
+		link();
 
-			if (p == null)
-				return false;
+		for (int d = links[top]; d > 0; d = links[d - 1]) {
+			ParserCombinator p = parsers[d];
 
 			while (true) {
 				if (!p.allowsKeywords())
@@ -80,27 +169,181 @@ public class Stack {
 				else
 					break;
 			}
-
-			f = f.up();
 		}
 
 		return false;
 	}
 
+	/**
+	 * Get the parsers which {@linkplain #isKeyword(String)} would consult, as
+	 * far as they have any keywords to tell about. Two stacks with equal
+	 * keyword scopes will agree on what is and isn't a keyword.
+	 */
+	public KeywordScope getKeywordScope() {
+		link();
+		return scopeAt(links[top]);
+	}
+
+	private KeywordScope scopeAt(int depth) {
+		if (depth == 0)
+			return KeywordScope.NONE;
+
+		if (scopes[depth] != null)
+			return scopes[depth];
+
+		final List<ParserCombinator> own = new ArrayList<>(2);
+		boolean blocked = false;
+
+		ParserCombinator p = parsers[depth];
+		while (true) {
+			if (!p.allowsKeywords()) {
+				blocked = true;
+				break;
+			}
+
+			if (p.hasKeywordsInScope())
+				own.add(p);
+
+			if (p instanceof FutureParser)
+				p = ((FutureParser) p).parser;
+			else
+				break;
+		}
+
+		final ParserCombinator[] below = blocked ? KeywordScope.NONE.parsers
+				: scopeAt(links[depth - 1]).parsers;
+
+		final ParserCombinator[] all = new ParserCombinator[own.size()
+				+ below.length];
+		for (int i = 0; i < own.size(); i++)
+			all[i] = own.get(i);
+		System.arraycopy(below, 0, all, own.size(), below.length);
+
+		return scopes[depth] = new KeywordScope(all);
+	}
+
+	/**
+	 * Brings {@linkplain #links} up to date with the current stack.
+	 */
+	private void link() {
+		for (int d = linked + 1; d <= top; d++) {
+			links[d] = hasSayInKeywords(parsers[d]) ? d : links[d - 1];
+			scopes[d] = null;
+		}
+
+		if (linked < top)
+			linked = top;
+	}
+
+	private static boolean hasSayInKeywords(ParserCombinator p) {
+		while (true) {
+			if (!p.allowsKeywords() || p.hasKeywordsInScope())
+				return true;
+
+			if (p instanceof FutureParser)
+				p = ((FutureParser) p).parser;
+			else
+				return false;
+		}
+	}
+
+	private Frame frameAt(int depth) {
+		for (int d = framed + 1; d <= depth; d++)
+			frames[d] = new Frame(frames[d - 1], parsers[d]);
+
+		if (framed < depth)
+			framed = depth;
+
+		return frames[depth];
+	}
+
+	private void ensureCapacity(int depth) {
+		if (depth < parsers.length)
+			return;
+
+		final int capacity = Math.max(2 * parsers.length, depth + 1);
+		parsers = Arrays.copyOf(parsers, capacity);
+		frames = Arrays.copyOf(frames, capacity);
+		links = Arrays.copyOf(links, capacity);
+		scopes = Arrays.copyOf(scopes, capacity);
+	}
+
+	/**
+	 * The result of {@linkplain Stack#getKeywordScope()}.
+	 */
+	public static final class KeywordScope {
+		private static final KeywordScope NONE = new KeywordScope(
+				new ParserCombinator[0]);
+
+		private final ParserCombinator[] parsers;
+		private final int hashCode;
+
+		private KeywordScope(ParserCombinator[] parsers) {
+			this.parsers = parsers;
+
+			int hashCode = 1;
+			for (ParserCombinator p : parsers)
+				hashCode = 31 * hashCode + System.identityHashCode(p);
+			this.hashCode = hashCode;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this)
+				return true;
+
+			if (!(obj instanceof KeywordScope))
+				return false;
+
+			final KeywordScope other = (KeywordScope) obj;
+			if (other.hashCode != hashCode
+					|| other.parsers.length != parsers.length)
+				return false;
+
+			for (int i = 0; i < parsers.length; i++)
+				if (parsers[i] != other.parsers[i])
+					return false;
+
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return Arrays.toString(parsers);
+		}
+	}
+
+	/**
+	 * The number of questions asked of this stack so far, which depend on more
+	 * than the {@linkplain #getKeywordScope()}, such as
+	 * {@linkplain #isMatching(String...)} and {@linkplain #find(Class)}. When
+	 * this changes while matching some rule, the result of that rule depended
+	 * on where in the stack it got applied.
+	 */
+	public int getContextQueries() {
+		return contextQueries;
+	}
+
 	/**
 	 * Whether or not this stack is matching the given rules in the given order.
 	 * Earlier rules names should appear closer to the head of the stack.
 	 */
 	public boolean isMatching(String... ruleNames) {
-		Frame f = head;
+		contextQueries += 1;
+		int d = top;
 
 		for (int i = 0; i < ruleNames.length; i++) {
 			String name = ruleNames[i];
 
-			while (f.parser != null && !f.parser.isMatching(name))
-				f = f.up;
+			while (d > 0 && !parsers[d].isMatching(name))
+				d -= 1;
 
-			if (f.parser == null)
+			if (d == 0)
 				return false;
 		}
 
@@ -108,12 +351,17 @@ public class Stack {
 	}
 
 	/**
-	 * Walk the {@link #up()} chain of {@linkplain Frame}s, starting at the
-	 * {@link #head}, to find the first one which has a {@link #parser} of the
-	 * given type.
+	 * Find the {@linkplain Frame} nearest to the head of the stack which has a
+	 * parser of the given type.
 	 */
 	public Frame find(Class<?> clazz) {
-		return head.find(clazz);
+		contextQueries += 1;
+
+		for (int d = top; d > 0; d--)
+			if (clazz.isInstance(parsers[d]))
+				return frameAt(d);
+
+		return null;
 	}
 
 	@Override
@@ -122,11 +370,9 @@ public class Stack {
 			return "___";
 
 		StringBuilder b = new StringBuilder();
-		Frame h = head;
-		while (h.parser != null) {
-			b.append(h.parser.toString());
+		for (int d = top; d > 0; d--) {
+			b.append(parsers[d].toString());
 			b.append(" < ");
-			h = h.up;
 		}
 
 		b.append("___");
@@ -139,13 +385,12 @@ public class Stack {
 		/** "Up" = towards the root of the stack. */
 		private final Frame up;
 
+		private final int depth;
+
 		public Frame(Frame up, ParserCombinator parser) {
 			this.up = up;
 			this.parser = parser;
-		}
-
-		private Frame push(ParserCombinator p) {
-			return new Frame(this, p);
+			this.depth = up == null ? 0 : up.depth + 1;
 		}
 
 		public Frame pop() {
@@ -213,17 +458,15 @@ public class Stack {
 		}
 
 		public int depth() {
-			if (up == null)
-				return 0;
-			else
-				return 1 + up.depth();
+			return depth;
 		}
 
 		public Frame getFrameUpBy(int offset) {
-			if (offset == 0)
-				return this;
-			else
-				return up.getFrameUpBy(offset - 1);
+			Frame f = this;
+			for (int i = 0; i < offset; i++)
+				f = f.up;
+
+			return f;
 		}
 	}
 
@@ -232,6 +475,7 @@ public class Stack {
 	 * stack and their associated keywords.
 	 */
 	public void traceKeywords(PrintStream out) {
+		final Frame head = getHead();
 		Frame f = head;
 		while (f != null) {
 			Set<String> keywords = f.getAllKeywords();
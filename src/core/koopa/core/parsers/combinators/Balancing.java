@@ -1,5 +1,6 @@
 package koopa.core.parsers.combinators;
 
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.Stack;
 
@@ -80,6 +81,16 @@ public class Balancing extends UnaryParserDecorator {
 		}
 	}
 
+	@Override
+	public void addAllChildrenTo(Collection<ParserCombinator> children) {
+		super.addAllChildrenTo(children);
+
+		for (Pair pair : pairs) {
+			children.add(pair.open);
+			children.add(pair.close);
+		}
+	}
+
 	@Override
 	public String toString() {
 		return "%balancing <" + pairs.length + " pairs> ...";
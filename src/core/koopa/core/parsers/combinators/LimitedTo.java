@@ -1,5 +1,7 @@
 package koopa.core.parsers.combinators;
 
+import java.util.Collection;
+
 import koopa.core.parsers.Parse;
 import koopa.core.parsers.ParserCombinator;
 import koopa.core.streams.LimitedStream;
@@ -35,6 +37,12 @@ public class LimitedTo extends UnaryParserDecorator {
 		}
 	}
 
+	@Override
+	public void addAllChildrenTo(Collection<ParserCombinator> children) {
+		super.addAllChildrenTo(children);
+		children.add(limiter);
+	}
+
 	@Override
 	public String toString() {
 		return "%limit " + parser + " %by " + limiter;
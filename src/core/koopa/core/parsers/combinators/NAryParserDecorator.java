@@ -1,5 +1,7 @@
 package koopa.core.parsers.combinators;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Set;
 
 import koopa.core.parsers.ParserCombinator;
@@ -59,4 +61,9 @@ public abstract class NAryParserDecorator extends ParserCombinator {
 
 		return false;
 	}
-}
\ No newline at end of file
+
+	@Override
+	public void addAllChildrenTo(Collection<ParserCombinator> children) {
+		children.addAll(Arrays.asList(parsers));
+	}
+}
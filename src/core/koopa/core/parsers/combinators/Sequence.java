@@ -1,5 +1,7 @@
 package koopa.core.parsers.combinators;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Set;
 
 import koopa.core.parsers.Parse;
@@ -62,6 +64,11 @@ public class Sequence extends ParserCombinator {
 		return true;
 	}
 
+	@Override
+	public void addAllChildrenTo(Collection<ParserCombinator> children) {
+		children.addAll(Arrays.asList(parsers));
+	}
+
 	@Override
 	public String toString() {
 		return "(...)";
@@ -1,5 +1,6 @@
 package koopa.core.parsers.combinators;
 
+import java.util.Collection;
 import java.util.Set;
 
 import koopa.core.parsers.ParserCombinator;
@@ -47,4 +48,9 @@ public abstract class UnaryParserDecorator extends ParserCombinator {
 	public boolean canMatchEmptyInputs() {
 		return parser.canMatchEmptyInputs();
 	}
+
+	@Override
+	public void addAllChildrenTo(Collection<ParserCombinator> children) {
+		children.add(parser);
+	}
 }
\ No newline at end of file
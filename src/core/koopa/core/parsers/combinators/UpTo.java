@@ -1,5 +1,7 @@
 package koopa.core.parsers.combinators;
 
+import java.util.Collection;
+
 import koopa.core.parsers.Parse;
 import koopa.core.parsers.ParserCombinator;
 import koopa.core.parsers.Stream;
@@ -76,6 +78,12 @@ public class UpTo extends UnaryParserDecorator {
 		return atLimiter;
 	}
 
+	@Override
+	public void addAllChildrenTo(Collection<ParserCombinator> children) {
+		super.addAllChildrenTo(children);
+		children.add(limiter);
+	}
+
 	@Override
 	public String toString() {
 		return "%match (" + parser.toString() + ") %upto ...";
@@ -1,8 +1,7 @@
 package koopa.core.sources;
 
-import java.util.LinkedList;
-
 import koopa.core.data.Data;
+import koopa.core.util.RingBuffer;
 
 /**
  * Base for implementing a {@linkplain Source}. It takes care of the undo
@@ -10,7 +9,26 @@ import koopa.core.data.Data;
  */
 public abstract class BasicSource implements Source {
 
-	private final LinkedList<Data> unseen = new LinkedList<>();
+	/**
+	 * Tracks, per concrete class, whether it overrides
+	 * {@linkplain #unshift(Data)}. Those which do must see every piece of data
+	 * go through it, which rules out the bulk path in
+	 * {@linkplain #unshift(Data[], int, int)}.
+	 */
+	private static final ClassValue<Boolean> OVERRIDES_UNSHIFT //
+			= new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			try {
+				return type.getMethod("unshift", Data.class)
+						.getDeclaringClass() != BasicSource.class;
+			} catch (NoSuchMethodException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	};
+
+	private final RingBuffer<Data> unseen = new RingBuffer<>();
 
 	/**
 	 * Returns the next piece of data, or <code>null</code> if there is no more.
@@ -34,6 +52,25 @@ public abstract class BasicSource implements Source {
 			this.unseen.addFirst(packet);
 	}
 
+	/**
+	 * Return a whole run of data to this source in one go. Afterwards
+	 * <code>data[from]</code> will be the first to be read again, followed by
+	 * the rest up to (but not including) <code>data[to]</code>. This is the
+	 * same as {@linkplain #unshift(Data)}ing them one by one, starting from
+	 * the last one, except that none of them may be <code>null</code>.
+	 * <p>
+	 * When a subclass overrides {@linkplain #unshift(Data)} this does exactly
+	 * that, so the override still gets to see every piece of data.
+	 */
+	public final void unshift(Data[] data, int from, int to) {
+		if (OVERRIDES_UNSHIFT.get(getClass())) {
+			for (int i = to - 1; i >= from; i--)
+				unshift(data[i]);
+
+		} else
+			unseen.addAllFirst(data, from, to);
+	}
+
 	@Override
 	@SuppressWarnings("unchecked")
 	public <S extends Source> S getSource(Class<S> clazz) {
@@ -2,17 +2,19 @@ package koopa.core.sources;
 
 import static koopa.core.data.tags.SyntacticTag.END_OF_LINE;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.PushbackReader;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.log4j.Logger;
 
 import koopa.core.data.Data;
 import koopa.core.data.Position;
+import koopa.core.data.Positions;
+import koopa.core.data.Resource;
 import koopa.core.data.Token;
 import koopa.core.data.tags.SyntacticTag;
 import koopa.core.util.LineEndings;
@@ -27,27 +29,49 @@ import koopa.core.util.LineEndings;
  * <p>
  * If the client does not specify line endings, this will use
  * {@linkplain LineEndings#getDefaults()} instead.
+ * <p>
+ * The input gets read in large chunks into a character buffer, which is then
+ * scanned for line endings. The buffer grows when a single line does not fit
+ * in it.
  */
 public class LineSplitter extends BasicSource implements Source {
 	private static final Logger LOGGER = Logger
 			.getLogger("source.linesplitter");
 
+	private static final int CHUNK_SIZE = 32 * 1024;
+
 	private File file = null;
 	private final String resourceName;
-	private PushbackReader reader = null;
-	private final char[] lookahead;
-
-	private final List<List<Character>> lineEndings;
+	private final Resource resource;
+	private Reader reader = null;
+
+	/**
+	 * Characters read from the input. Those in <code>[mark, limit)</code> have
+	 * not been turned into tokens yet.
+	 */
+	private char[] chars = new char[CHUNK_SIZE];
+	private int mark = 0;
+	private int limit = 0;
+	private boolean exhausted = false;
+
+	private final char[][] lineEndings;
 	private final boolean stickyEndings;
-	private List<Character> detectedLineEnding;
+	private char[] detectedLineEnding;
+
+	/**
+	 * The first characters of any line ending we're looking for. Anything else
+	 * can be skipped without further checks.
+	 */
+	private char[] candidates;
 
 	private int linenumber = 1;
 	private int positionInFile = 1;
 	private int positionInLine = 1;
 
-	private Position start = null;
-	private Position end = null;
-	private StringBuffer buffer = null;
+	private int startInFile;
+	private int startInLine;
+	private int endInFile;
+	private int endInLine;
 
 	public LineSplitter(Reader reader) {
 		this((String) null, reader, LineEndings.getDefaults());
@@ -81,62 +105,56 @@ public class LineSplitter extends BasicSource implements Source {
 
 		assert (reader != null);
 		assert (lineEndings != null && !lineEndings.isEmpty());
-		final int max = maxLengthOfLineEnding(lineEndings);
-		assert (max > 0);
+		assert (maxLengthOfLineEnding(lineEndings) > 0);
 
 		this.resourceName = resourceName;
-
-		final BufferedReader br;
-		if (reader instanceof BufferedReader)
-			br = (BufferedReader) reader;
-		else
-			br = new BufferedReader(reader);
-		this.reader = new PushbackReader(br, max);
-
-		this.lookahead = new char[max];
+		this.resource = Resource.named(resourceName);
+		this.reader = reader;
 
 		this.stickyEndings = LineEndings.areSticky();
-		this.lineEndings = lineEndings;
+		this.lineEndings = toCharArrays(lineEndings);
 
-		this.buffer = new StringBuffer();
+		this.candidates = new char[this.lineEndings.length];
+		for (int i = 0; i < this.lineEndings.length; i++)
+			this.candidates[i] = this.lineEndings[i][0];
 	}
 
 	@Override
 	public Data nxt1() {
 		try {
-			if (atEndOfFile())
+			if (!available(1))
 				return null;
 
-			buffer.setLength(0);
-
-			final int len = atLineEnding();
+			final int len = lineEndingAt(0);
 			if (len > 0) {
-				// Read line ending, whose length we know.
+				// Line ending, whose length we know.
 
 				markStart();
-				reader.read(lookahead, 0, len);
-				buffer.append(lookahead, 0, len);
 				advance(len);
 				markEnd();
-				newLine();
 
-				final Token lineEnding = produceToken(buffer.toString(),
-						END_OF_LINE);
+				final Token lineEnding = produceToken(len, END_OF_LINE);
+				newLine();
 				return lineEnding;
 
 			} else {
-				// Read line of unknown length;
+				// Line of unknown length. We scan up to the next line ending,
+				// or the end of the input.
+
+				int length = 1;
+				scan: while (available(length + 1)) {
+					final int buffered = limit - mark;
+					for (; length < buffered; length++)
+						if (isCandidate(chars[mark + length])
+								&& lineEndingAt(length) > 0)
+							break scan;
+				}
 
 				markStart();
-				while (!atEndOfFile() && atLineEnding() <= 0) {
-					int c = reader.read();
-					buffer.append((char) c);
-					advance();
-				}
+				advance(length);
 				markEnd();
 
-				final Token line = produceToken(buffer.toString());
-				return line;
+				return produceToken(length);
 			}
 
 		} catch (IOException e) {
@@ -146,64 +164,89 @@ public class LineSplitter extends BasicSource implements Source {
 		}
 	}
 
-	private int atLineEnding() throws IOException {
+	/**
+	 * Returns the length of the line ending found at the given offset from
+	 * the {@linkplain #mark}, or <code>-1</code> if there is none.
+	 */
+	private int lineEndingAt(int offset) throws IOException {
 		if (detectedLineEnding != null && stickyEndings) {
-			if (atLineEnding(detectedLineEnding))
-				return detectedLineEnding.size();
+			if (lineEndingAt(offset, detectedLineEnding))
+				return detectedLineEnding.length;
 			else
 				return -1;
 
 		} else {
-			for (List<Character> possibleLineEnding : lineEndings)
-				if (atLineEnding(possibleLineEnding)) {
+			for (char[] possibleLineEnding : lineEndings)
+				if (lineEndingAt(offset, possibleLineEnding)) {
 					if (stickyEndings) {
 						detectedLineEnding = possibleLineEnding;
+						candidates = new char[] { possibleLineEnding[0] };
 
 						if (LOGGER.isTraceEnabled())
 							LOGGER.trace("Detected line ending: "
 									+ LineEndings.encodeLineEnding(
-											detectedLineEnding)
+											toCharacters(detectedLineEnding))
 									+ ". Stickying.");
 					}
 
-					return possibleLineEnding.size();
+					return possibleLineEnding.length;
 				}
 
 			return -1;
 		}
 	}
 
-	private boolean atLineEnding(List<Character> list) throws IOException {
-		int len = 0;
-
-		for (char expected : list) {
-			lookahead[len] = (char) reader.read();
+	private boolean lineEndingAt(int offset, char[] lineEnding)
+			throws IOException {
+		if (!available(offset + lineEnding.length))
+			return false;
 
-			if (lookahead[len] == -1) {
-				reader.unread(lookahead, 0, len);
+		final int at = mark + offset;
+		for (int i = 0; i < lineEnding.length; i++)
+			if (chars[at + i] != lineEnding[i])
 				return false;
-			}
 
-			len += 1;
+		return true;
+	}
+
+	private boolean isCandidate(char c) {
+		for (int i = 0; i < candidates.length; i++)
+			if (candidates[i] == c)
+				return true;
+
+		return false;
+	}
 
-			if (lookahead[len - 1] != expected) {
-				reader.unread(lookahead, 0, len);
+	/**
+	 * Makes sure there are at least <code>count</code> characters in the
+	 * buffer, starting from the {@linkplain #mark}. Answers false if the input
+	 * runs out before that.
+	 * <p>
+	 * This may move the buffered characters around, so any indices into the
+	 * buffer should be taken relative to the {@linkplain #mark}.
+	 */
+	private boolean available(int count) throws IOException {
+		while (limit - mark < count) {
+			if (exhausted || reader == null)
 				return false;
+
+			if (mark > 0) {
+				System.arraycopy(chars, mark, chars, 0, limit - mark);
+				limit -= mark;
+				mark = 0;
 			}
-		}
 
-		reader.unread(lookahead, 0, len);
-		return true;
-	}
+			if (limit == chars.length)
+				chars = Arrays.copyOf(chars, 2 * chars.length);
 
-	private boolean atEndOfFile() throws IOException {
-		final int c = reader.read();
-		if (c == -1)
-			return true;
-		else {
-			reader.unread(c);
-			return false;
+			final int read = reader.read(chars, limit, chars.length - limit);
+			if (read < 0)
+				exhausted = true;
+			else
+				limit += read;
 		}
+
+		return true;
 	}
 
 	private void newLine() {
@@ -211,28 +254,42 @@ public class LineSplitter extends BasicSource implements Source {
 		positionInLine = 1;
 	}
 
-	private void advance() {
-		positionInLine += 1;
-		positionInFile += 1;
-	}
-
 	private void advance(int len) {
 		positionInLine += len;
 		positionInFile += len;
 	}
 
 	private void markStart() {
-		start = new Position(resourceName, positionInFile, linenumber,
-				positionInLine);
+		startInFile = positionInFile;
+		startInLine = positionInLine;
 	}
 
 	private void markEnd() {
-		end = new Position(resourceName, positionInFile - 1, linenumber,
-				positionInLine - 1);
+		endInFile = positionInFile - 1;
+		endInLine = positionInLine - 1;
 	}
 
-	private Token produceToken(String text, Object... tags) {
-		return new Token(text, start, end, tags);
+	/**
+	 * Tokens never span more than one line, so the start and end of a token
+	 * share the current linenumber.
+	 */
+	private Token produceToken(int length, Object... tags) {
+		final String text = new String(chars, mark, length);
+		mark += length;
+
+		final long start = Positions.pack(startInFile, linenumber,
+				startInLine);
+		final long end = Positions.pack(endInFile, linenumber, endInLine);
+
+		if (start != Positions.NONE && end != Positions.NONE)
+			return new Token(text, resource, start, end, tags);
+
+		// Positions too large to be packed.
+		return new Token(text,
+				new Position(resourceName, startInFile, linenumber,
+						startInLine),
+				new Position(resourceName, endInFile, linenumber, endInLine),
+				tags);
 	}
 
 	@Override
@@ -259,6 +316,31 @@ public class LineSplitter extends BasicSource implements Source {
 		return max;
 	}
 
+	private static char[][] toCharArrays(List<List<Character>> lineEndings) {
+		final List<char[]> arrays = new ArrayList<>(lineEndings.size());
+
+		for (List<Character> list : lineEndings) {
+			// An empty line ending would match anywhere without consuming
+			// anything, so we ignore those.
+			if (list.isEmpty())
+				continue;
+
+			final char[] array = new char[list.size()];
+			for (int i = 0; i < array.length; i++)
+				array[i] = list.get(i);
+			arrays.add(array);
+		}
+
+		return arrays.toArray(new char[arrays.size()][]);
+	}
+
+	private static List<Character> toCharacters(char[] lineEnding) {
+		final List<Character> list = new ArrayList<>(lineEnding.length);
+		for (char c : lineEnding)
+			list.add(c);
+		return list;
+	}
+
 	public File getFile() {
 		return file;
 	}
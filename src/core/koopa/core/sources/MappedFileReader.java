@@ -0,0 +1,211 @@
+package koopa.core.sources;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import org.apache.log4j.Logger;
+
+import koopa.core.util.Encoding;
+
+/**
+ * A {@linkplain Reader} over a memory-mapped file.
+ * <p>
+ * The file gets mapped as a whole, but is only decoded as characters get
+ * asked for. When this feeds a {@linkplain LineSplitter} the decoded
+ * characters go straight into its buffer, so the file's full text never
+ * exists as a separate Java String.
+ * <p>
+ * Files larger than {@linkplain Integer#MAX_VALUE} bytes can not be mapped in
+ * one go (cfr. {@linkplain #canMap(File)}). Use a regular reader for those.
+ * <p>
+ * The mapping gets released when the reader is {@linkplain #close()}d, rather
+ * than whenever the garbage collector gets around to it. That matters when
+ * parsing a large batch of files, which may map the same copybooks over and
+ * over.
+ */
+public class MappedFileReader extends Reader {
+
+	private static final Logger LOGGER = Logger.getLogger("source.mapped");
+
+	private final File file;
+	private MappedByteBuffer bytes;
+	private final CharsetDecoder decoder;
+	private boolean flushed = false;
+
+	/**
+	 * Holds the second half of a surrogate pair, when there was only room for
+	 * the first half.
+	 */
+	private int pending = -1;
+
+	public MappedFileReader(File file) throws IOException {
+		this(file, Encoding.getCharset());
+	}
+
+	public MappedFileReader(File file, Charset charset) throws IOException {
+		if (!canMap(file))
+			throw new IOException("Can not map " + file + ".");
+
+		this.file = file;
+		this.bytes = map(file);
+
+		// Same as what an InputStreamReader does.
+		this.decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	/**
+	 * The mapping stays valid after the channel is closed, so we don't hold on
+	 * to any file handles.
+	 */
+	private static MappedByteBuffer map(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+				FileChannel channel = raf.getChannel()) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+		}
+	}
+
+	public static boolean canMap(File file) {
+		return file != null && file.isFile()
+				&& file.length() <= Integer.MAX_VALUE;
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (bytes == null)
+			throw new IOException("Reader for " + file + " has been closed.");
+
+		if (len == 0)
+			return 0;
+
+		if (pending >= 0) {
+			cbuf[off] = (char) pending;
+			pending = -1;
+			return 1;
+		}
+
+		if (flushed)
+			return -1;
+
+		final int read = decode(CharBuffer.wrap(cbuf, off, len)) - off;
+		if (read > 0 || flushed)
+			return read > 0 ? read : -1;
+
+		// There wasn't enough room to decode even a single code point, so we
+		// decode it on the side.
+		final char[] pair = new char[2];
+		final int decoded = decode(CharBuffer.wrap(pair));
+		if (decoded == 0)
+			return -1;
+
+		cbuf[off] = pair[0];
+		if (decoded > 1)
+			pending = pair[1];
+		return 1;
+	}
+
+	/**
+	 * Decodes as much as will fit into the given buffer. Returns the final
+	 * position of that buffer.
+	 */
+	private int decode(CharBuffer chars) throws IOException {
+		CoderResult result = decoder.decode(bytes, chars, true);
+		if (result.isUnderflow() && !bytes.hasRemaining()) {
+			result = decoder.flush(chars);
+			if (result.isUnderflow())
+				flushed = true;
+		}
+
+		if (result.isError())
+			result.throwException();
+
+		return chars.position();
+	}
+
+	@Override
+	public void close() {
+		if (bytes == null)
+			return;
+
+		final MappedByteBuffer mapped = bytes;
+		bytes = null;
+		unmap(mapped);
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * There is no public API for unmapping a buffer. On Java 9 and later
+	 * <code>sun.misc.Unsafe</code> has an <code>invokeCleaner</code> method
+	 * for it, while on Java 8 we have to go through the buffer's own cleaner.
+	 * If neither is available we leave it to the garbage collector.
+	 */
+	private static final Unmapper UNMAPPER = findUnmapper();
+
+	private static void unmap(MappedByteBuffer buffer) {
+		if (UNMAPPER == null)
+			return;
+
+		try {
+			UNMAPPER.unmap(buffer);
+
+		} catch (Exception e) {
+			if (LOGGER.isDebugEnabled())
+				LOGGER.debug("Could not unmap buffer.", e);
+		}
+	}
+
+	private interface Unmapper {
+		void unmap(ByteBuffer buffer) throws Exception;
+	}
+
+	private static Unmapper findUnmapper() {
+		try {
+			final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			final Method invokeCleaner = unsafeClass
+					.getMethod("invokeCleaner", ByteBuffer.class);
+			final Field theUnsafe = unsafeClass
+					.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			final Object unsafe = theUnsafe.get(null);
+
+			return buffer -> invokeCleaner.invoke(unsafe, buffer);
+
+		} catch (Exception e) {
+			// Not on Java 9 or later. Try the Java 8 way.
+		}
+
+		try {
+			final Method cleaner = Class.forName("sun.nio.ch.DirectBuffer")
+					.getMethod("cleaner");
+			final Method clean = Class.forName("sun.misc.Cleaner")
+					.getMethod("clean");
+
+			return buffer -> clean.invoke(cleaner.invoke(buffer));
+
+		} catch (Exception e) {
+			if (LOGGER.isDebugEnabled())
+				LOGGER.debug("Can not unmap buffers on this JVM.", e);
+
+			return null;
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+}
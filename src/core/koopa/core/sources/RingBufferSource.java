@@ -0,0 +1,38 @@
+package koopa.core.sources;
+
+import koopa.core.data.Data;
+import koopa.core.util.RingBuffer;
+
+/**
+ * Reads part of a {@linkplain RingBuffer} as a {@linkplain Source}, without
+ * copying it. The buffer should not change while this is being read.
+ */
+public class RingBufferSource extends BasicSource {
+
+	private final RingBuffer<Data> buffer;
+	private final int to;
+	private int index;
+
+	/**
+	 * Reads the buffer from the first index up to (but not including) the
+	 * second.
+	 */
+	public RingBufferSource(RingBuffer<Data> buffer, int from, int to) {
+		this.buffer = buffer;
+		this.index = from;
+		this.to = to;
+	}
+
+	@Override
+	protected Data nxt1() {
+		if (index < to)
+			return buffer.get(index++);
+		else
+			return null;
+	}
+
+	@Override
+	public void close() {
+		index = to;
+	}
+}
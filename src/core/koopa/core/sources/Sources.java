@@ -6,6 +6,7 @@ import java.util.LinkedList;
 
 import koopa.core.data.Data;
 import koopa.core.data.Token;
+import koopa.core.util.RingBuffer;
 
 public final class Sources {
 
@@ -30,4 +31,27 @@ public final class Sources {
 				return line;
 		}
 	}
+
+	/**
+	 * Reads the next line, like {@linkplain #getLine(Source)} does, but adds
+	 * it to the back of the given buffer rather than to a list of its own.
+	 * That way a stage can hold on to a single buffer for all lines. Tells
+	 * whether there was anything left to read.
+	 */
+	public static boolean getLine(Source source, RingBuffer<Data> buffer) {
+		boolean read = false;
+
+		while (true) {
+			final Data d = source.next();
+
+			if (d == null)
+				return read;
+
+			read = true;
+			buffer.addLast(d);
+
+			if (d instanceof Token && ((Token) d).hasTag(END_OF_LINE))
+				return true;
+		}
+	}
 }
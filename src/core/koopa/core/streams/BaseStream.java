@@ -3,6 +3,7 @@ package koopa.core.streams;
 import static koopa.core.util.Iterators.emptyIterator;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
@@ -12,6 +13,7 @@ import koopa.core.data.Token;
 import koopa.core.data.markers.Start;
 import koopa.core.parsers.Parse;
 import koopa.core.parsers.Stream;
+import koopa.core.sources.BasicSource;
 import koopa.core.sources.Source;
 import koopa.core.targets.HoldingTarget;
 import koopa.core.targets.Target;
@@ -65,11 +67,24 @@ public class BaseStream implements Stream {
 	 */
 	private int nextActiveBookmark;
 
+	/**
+	 * How many non-{@linkplain Marker} {@linkplain Data} have been taken from
+	 * the {@linkplain #source} so far, and not given back. Or put differently:
+	 * the position of the next {@linkplain Data} to be read.
+	 */
+	private int position = 0;
+
 	/**
 	 * The {@linkplain Parse} this stream is part of.
 	 */
 	private Parse parse = null;
 
+	/**
+	 * Scratch space for {@linkplain #rewindTo(int)}, which we hold on to so
+	 * that rewinding does not have to allocate.
+	 */
+	private Data[] rewound = new Data[16];
+
 	public BaseStream(Source source, Target target) {
 		assert (source != null);
 		assert (target != null);
@@ -101,6 +116,7 @@ public class BaseStream implements Stream {
 			}
 
 			pendingData.push(d);
+			position += 1;
 			return d;
 		}
 	}
@@ -123,6 +139,7 @@ public class BaseStream implements Stream {
 				((Token) d).setSkipped(true);
 
 			pendingData.push(d);
+			position += 1;
 			return d;
 		}
 	}
@@ -178,23 +195,13 @@ public class BaseStream implements Stream {
 	public void rewind(Data data) {
 		while (true) {
 			final Data d = pendingData.pop();
-
-			if (d == null)
-				return;
-
 			assert (!(d instanceof Marker));
 
 			// TODO We're dropping everything up to the mentioned item. Ok ?
-			if (d != data)
-				continue;
-
-			if (d instanceof Token)
-				((Token) d).setSkipped(false);
-
-			if (!(d instanceof Marker))
+			if (retract(d) && d == data) {
 				source.unshift(d);
-
-			break;
+				break;
+			}
 		}
 	}
 
@@ -267,19 +274,43 @@ public class BaseStream implements Stream {
 		}
 	}
 
-	private void rewindTo(int position) {
-		while (pendingData.size() > position) {
-			final Data d = pendingData.pop();
+	private void rewindTo(int size) {
+		final int count = pendingData.size() - size;
+		if (count <= 0)
+			return;
 
-			// Dropping all markers.
-			if (d instanceof Marker)
-				continue;
+		rewound = pendingData.pop(count, rewound);
 
-			if (d instanceof Token)
-				((Token) d).setSkipped(false);
+		// Dropping all markers, and compacting what's left in place.
+		int unshifted = 0;
+		for (int i = 0; i < count; i++)
+			if (retract(rewound[i]))
+				rewound[unshifted++] = rewound[i];
 
-			source.unshift(d);
-		}
+		if (source instanceof BasicSource)
+			((BasicSource) source).unshift(rewound, 0, unshifted);
+		else
+			for (int i = unshifted - 1; i >= 0; i--)
+				source.unshift(rewound[i]);
+
+		Arrays.fill(rewound, 0, count, null);
+	}
+
+	/**
+	 * Does the bookkeeping for data which was taken back out of the
+	 * {@linkplain #pendingData}. Answers whether it was data from the
+	 * {@linkplain #source} (as opposed to a {@linkplain Marker}), in which
+	 * case it counts as no longer having been read.
+	 */
+	private boolean retract(Data d) {
+		if (d instanceof Marker)
+			return false;
+
+		if (d instanceof Token)
+			((Token) d).setSkipped(false);
+
+		position -= 1;
+		return true;
 	}
 
 	/** {@inheritDoc} */
@@ -291,6 +322,13 @@ public class BaseStream implements Stream {
 		else {
 			assert (delayed.isEmpty());
 			pendingData.shiftAllToNextTarget();
+
+			if (parse != null) {
+				if (parse.getMemoization() != null)
+					parse.getMemoization().forgetBefore(position);
+
+				parse.getLookahead().forgetBefore(position);
+			}
 		}
 	}
 
@@ -310,6 +348,180 @@ public class BaseStream implements Stream {
 		return pendingData;
 	}
 
+	/**
+	 * The position of the next {@linkplain Data} to be read from the
+	 * {@linkplain Source}, counted as the number of non-{@linkplain Marker}
+	 * data read before it.
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	// ========================================================================
+	// Support for memoization...
+
+	/**
+	 * Latch the current state of this stream, so that we can later ask for a
+	 * {@linkplain Recording} of everything which happened since. Cfr.
+	 * {@linkplain #recordSince(Latch)}.
+	 */
+	public Latch latch() {
+		return new Latch(pendingData.size(), delayed);
+	}
+
+	/**
+	 * Capture everything which was added to this stream since the given
+	 * {@linkplain Latch} was taken, in a way that it can be
+	 * {@linkplain #replay(Recording)}ed later on, from another context.
+	 * <p>
+	 * This answers <code>null</code> if the stream changed in a way which we
+	 * can not faithfully replay.
+	 */
+	public Recording recordSince(Latch latch) {
+		final int size = pendingData.size() - latch.pendingSize;
+		if (size < 0)
+			return null;
+
+		final Data[] slice = pendingData.tail(size);
+
+		// Up to the first marker or unskipped token we can only have seen
+		// skipped tokens. Anything after that must have been preceded by the
+		// delayed markers getting inserted. That is where the markers which
+		// were delayed at the time of the latch will have ended up (if they
+		// were inserted at all).
+		int flushedAt = 0;
+		while (flushedAt < size && slice[flushedAt] instanceof Token
+				&& ((Token) slice[flushedAt]).isSkipped())
+			flushedAt += 1;
+
+		final Marker[] before = latch.delayed;
+		final List<Data> data = new ArrayList<>(size);
+		final List<Marker> after = new ArrayList<>();
+
+		if (flushedAt < size) {
+			for (int i = 0; i < before.length; i++)
+				if (flushedAt + i >= size || slice[flushedAt + i] != before[i])
+					return null;
+
+			for (int i = 0; i < size; i++)
+				if (i < flushedAt || i >= flushedAt + before.length)
+					data.add(slice[i]);
+
+			after.addAll(delayed);
+
+		} else {
+			flushedAt = -1;
+
+			if (delayed.size() < before.length)
+				return null;
+
+			for (int i = 0; i < before.length; i++)
+				if (delayed.get(i) != before[i])
+					return null;
+
+			data.addAll(Arrays.asList(slice));
+			after.addAll(delayed.subList(before.length, delayed.size()));
+		}
+
+		return new Recording(data, flushedAt, after);
+	}
+
+	/**
+	 * Replays a {@linkplain Recording} made by
+	 * {@linkplain #recordSince(Latch)}. This consumes the same
+	 * {@linkplain Data} from the {@linkplain Source} as the original did, and
+	 * inserts the same {@linkplain Marker}s in between.
+	 * <p>
+	 * If the {@linkplain Source} turns out to give us different data the
+	 * stream gets restored, and this answers <code>false</code>.
+	 */
+	public boolean replay(Recording recording) {
+		final int pendingSize = pendingData.size();
+		final Marker[] markers = delayed.toArray(new Marker[delayed.size()]);
+
+		final Data[] data = recording.data;
+		for (int i = 0; i < data.length; i++) {
+			if (i == recording.flushedAt)
+				insertDelayedMarkers();
+
+			final Data d = data[i];
+			if (d instanceof Marker) {
+				pendingData.push(d);
+				continue;
+			}
+
+			final Data next = source.next();
+			if (next != d) {
+				if (next != null)
+					source.unshift(next);
+
+				rewindTo(pendingSize);
+				delayed.clear();
+				delayed.addAll(Arrays.asList(markers));
+				return false;
+			}
+
+			if (d instanceof Token)
+				((Token) d).setSkipped(recording.skipped[i]);
+
+			pendingData.push(d);
+			position += 1;
+		}
+
+		if (recording.flushedAt == data.length)
+			insertDelayedMarkers();
+
+		for (Marker marker : recording.delayed)
+			delayed.add(marker);
+
+		return true;
+	}
+
+	/**
+	 * The state of a {@linkplain BaseStream} at some point in time. Cfr.
+	 * {@linkplain BaseStream#latch()}.
+	 */
+	public static final class Latch {
+		private final int pendingSize;
+		private final Marker[] delayed;
+
+		private Latch(int pendingSize, List<Marker> delayed) {
+			this.pendingSize = pendingSize;
+			this.delayed = delayed.toArray(new Marker[delayed.size()]);
+		}
+	}
+
+	/**
+	 * Everything which got added to a {@linkplain BaseStream} in between a
+	 * {@linkplain Latch} and some later point. Cfr.
+	 * {@linkplain BaseStream#recordSince(Latch)}.
+	 */
+	public static final class Recording {
+		private final Data[] data;
+		private final boolean[] skipped;
+		private final int flushedAt;
+		private final Marker[] delayed;
+
+		private Recording(List<Data> data, int flushedAt,
+				List<Marker> delayed) {
+			this.data = data.toArray(new Data[data.size()]);
+			this.skipped = new boolean[this.data.length];
+			for (int i = 0; i < this.data.length; i++)
+				this.skipped[i] = this.data[i] instanceof Token
+						&& ((Token) this.data[i]).isSkipped();
+
+			this.flushedAt = flushedAt;
+			this.delayed = delayed.toArray(new Marker[delayed.size()]);
+		}
+
+		/**
+		 * How much {@linkplain Data} this recording is holding on to.
+		 */
+		public int size() {
+			return data.length + delayed.length;
+		}
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public Iterator<Data> backToBookmarkIterator() {
@@ -3,11 +3,10 @@ package koopa.core.targets;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 
 import koopa.core.data.Data;
 import koopa.core.data.Token;
-import koopa.core.util.Iterators;
+import koopa.core.util.RingBuffer;
 
 /**
  * This is a {@linkplain Target} which will refrain from forwarding its
@@ -16,6 +15,10 @@ import koopa.core.util.Iterators;
  * <p>
  * In addition to the delay, you can also retract the data which was pushed up
  * to the point of the last {@link #shiftAllToNextTarget()}.
+ * <p>
+ * The data is held in a {@linkplain RingBuffer}, so that positions in it are
+ * plain indices, and taking back a whole run of data (cfr.
+ * {@linkplain #pop(int, Data[])}) comes down to a single array copy.
  */
 public class HoldingTarget implements Target {
 
@@ -23,7 +26,7 @@ public class HoldingTarget implements Target {
 	private final Target target;
 
 	/** The {@linkplain Data} we're holding on to. */
-	private final LinkedList<Data> queue;
+	private final RingBuffer<Data> queue;
 
 	private final List<RawObserver> rawObservers;
 
@@ -35,7 +38,7 @@ public class HoldingTarget implements Target {
 	public HoldingTarget(Target target) {
 		assert (target != null);
 		this.target = target;
-		this.queue = new LinkedList<>();
+		this.queue = new RingBuffer<>();
 		this.rawObservers = new LinkedList<>();
 		this.observers = new LinkedList<>();
 	}
@@ -69,14 +72,10 @@ public class HoldingTarget implements Target {
 	}
 
 	public Token peekAtLastToken() {
-		ListIterator<Data> it = queue.listIterator(queue.size());
-
-		while (it.hasPrevious()) {
-			final Data d = it.previous();
-			if (d instanceof Token) {
-				final Token t = (Token) d;
-				return t;
-			}
+		for (int i = queue.size() - 1; i >= 0; i--) {
+			final Data d = queue.get(i);
+			if (d instanceof Token)
+				return (Token) d;
 		}
 
 		return null;
@@ -120,6 +119,31 @@ public class HoldingTarget implements Target {
 		return last;
 	}
 
+	/**
+	 * Undoes the latest so many {@link #push(Data)}es, returning the data which
+	 * was pushed, in the order in which it was pushed. The given array is used
+	 * to hold the result if it is large enough. If not, a new one is allocated.
+	 * <p>
+	 * Observers still get told about every single piece of data being popped,
+	 * same as for {@linkplain #pop()}. It is only when there is no one to tell
+	 * that the data gets taken back in bulk.
+	 */
+	public Data[] pop(int count, Data[] into) {
+		assert (count <= queue.size());
+
+		if (into == null || into.length < count)
+			into = new Data[count];
+
+		if (rawObservers.isEmpty() && observers.isEmpty())
+			queue.removeLast(count, into);
+
+		else
+			for (int i = count - 1; i >= 0; i--)
+				into[i] = pop();
+
+		return into;
+	}
+
 	/**
 	 * This will {@linkplain Target#push(Data)} all data which is being held
 	 * {@link TokenTracker} the {@link #target}.
@@ -148,7 +172,7 @@ public class HoldingTarget implements Target {
 	 * reverse order.
 	 */
 	public Iterator<Data> descendingIterator() {
-		return Iterators.descendingIterator(queue);
+		return queue.descendingIterator();
 	}
 
 	/**
@@ -156,7 +180,19 @@ public class HoldingTarget implements Target {
 	 * starting at the given index.
 	 */
 	public Iterator<Data> listIterator(int index) {
-		return Iterators.listIterator(queue, index);
+		return queue.iterator(index);
+	}
+
+	/**
+	 * Get a copy of the last so many {@linkplain Data} being held, in the
+	 * order in which they were pushed.
+	 */
+	public Data[] tail(int count) {
+		assert (count <= queue.size());
+
+		final Data[] tail = new Data[count];
+		queue.copyLast(count, tail);
+		return tail;
 	}
 
 	// ========================================================================
@@ -202,7 +238,7 @@ public class HoldingTarget implements Target {
 	public void removeObserver(Observer observer) {
 		observers.remove(observer);
 	}
-	
+
 	@Override
 	public String toString() {
 		return queue.toString();
@@ -43,12 +43,12 @@ public class TokenTracker implements Target {
 			int mid = (left + right) >> 1;
 
 			Token t = tokens.get(mid);
-			if (position < t.getStart().getPositionInFile()) {
+			if (position < t.getStartPositionInFile()) {
 				right = mid - 1;
 				continue;
 			}
 
-			if (position > t.getEnd().getPositionInFile()) {
+			if (position > t.getEndPositionInFile()) {
 				left = mid + 1;
 				continue;
 			}
@@ -61,8 +61,8 @@ public class TokenTracker implements Target {
 
 		Token t = tokens.get(left);
 
-		if (position >= t.getStart().getPositionInFile()
-				&& position <= t.getEnd().getPositionInFile())
+		if (position >= t.getStartPositionInFile()
+				&& position <= t.getEndPositionInFile())
 			return t;
 
 		return null;
@@ -0,0 +1,58 @@
+package koopa.core.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 digests, as hex strings, for telling whether content changed.
+ */
+public final class Digests {
+
+	private Digests() {
+	}
+
+	public static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-256.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static String sha256(byte[] bytes) {
+		final MessageDigest digest = sha256();
+		digest.update(bytes);
+		return hex(digest.digest());
+	}
+
+	public static String sha256(File file) throws IOException {
+		return sha256(java.nio.file.Files.readAllBytes(file.toPath()));
+	}
+
+	/**
+	 * Adds the given text to the digest, prefixed by its length, so that
+	 * consecutive values can not run into each other.
+	 */
+	public static void update(MessageDigest digest, String text) {
+		final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		digest.update((byte) (bytes.length >>> 24));
+		digest.update((byte) (bytes.length >>> 16));
+		digest.update((byte) (bytes.length >>> 8));
+		digest.update((byte) bytes.length);
+		digest.update(bytes);
+	}
+
+	public static String hex(byte[] bytes) {
+		final StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+			hex.append(Character.forDigit(b & 0xF, 16));
+		}
+
+		return hex.toString();
+	}
+}
@@ -0,0 +1,350 @@
+package koopa.core.util;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A growable, array backed, double-ended queue which also allows for indexed
+ * access.
+ * <p>
+ * This is what {@linkplain java.util.ArrayDeque} would be if it let you look
+ * at (and remove) elements in the middle. It also allows moving whole runs of
+ * elements in and out in one go, which comes down to (at most) two
+ * {@linkplain System#arraycopy(Object, int, Object, int, int)} calls.
+ * <p>
+ * Capacity is always a power of two, and it never shrinks.
+ */
+public final class RingBuffer<T> {
+
+	private static final Object[] NO_ELEMENTS = new Object[0];
+
+	private static final int MINIMUM_CAPACITY = 16;
+
+	private Object[] elements = NO_ELEMENTS;
+
+	/** Index of the first element in {@linkplain #elements}. */
+	private int head = 0;
+
+	private int size = 0;
+
+	/** Counts structural changes, so that iterators can fail fast. */
+	private int modifications = 0;
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Get the element at the given index, counting from the front.
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int index) {
+		checkIndex(index);
+		return (T) elements[slot(index)];
+	}
+
+	/**
+	 * Replace the element at the given index, counting from the front.
+	 */
+	public void set(int index, T element) {
+		checkIndex(index);
+		elements[slot(index)] = element;
+	}
+
+	public T getFirst() {
+		if (size == 0)
+			throw new NoSuchElementException();
+
+		return get(0);
+	}
+
+	public T getLast() {
+		if (size == 0)
+			throw new NoSuchElementException();
+
+		return get(size - 1);
+	}
+
+	public void addFirst(T element) {
+		ensureCapacity(size + 1);
+		head = (head - 1) & (elements.length - 1);
+		elements[head] = element;
+		size += 1;
+		modifications += 1;
+	}
+
+	public void addLast(T element) {
+		ensureCapacity(size + 1);
+		elements[slot(size)] = element;
+		size += 1;
+		modifications += 1;
+	}
+
+	/**
+	 * Adds the elements <code>from[start]</code> up to (but not including)
+	 * <code>from[end]</code> to the front of this buffer, in that order. Or put
+	 * differently: afterwards <code>from[start]</code> will be the first
+	 * element.
+	 */
+	public void addAllFirst(T[] from, int start, int end) {
+		final int count = end - start;
+		if (count <= 0)
+			return;
+
+		ensureCapacity(size + count);
+		head = (head - count) & (elements.length - 1);
+		copyIn(from, start, head, count);
+		size += count;
+		modifications += 1;
+	}
+
+	public T removeFirst() {
+		if (size == 0)
+			throw new NoSuchElementException();
+
+		@SuppressWarnings("unchecked")
+		final T first = (T) elements[head];
+		elements[head] = null;
+		head = (head + 1) & (elements.length - 1);
+		size -= 1;
+		modifications += 1;
+		return first;
+	}
+
+	public T removeLast() {
+		if (size == 0)
+			throw new NoSuchElementException();
+
+		final int last = slot(size - 1);
+		@SuppressWarnings("unchecked")
+		final T element = (T) elements[last];
+		elements[last] = null;
+		size -= 1;
+		modifications += 1;
+		return element;
+	}
+
+	/**
+	 * Removes the last so many elements, copying them into the given array
+	 * (starting at index zero) in the order in which they were held.
+	 */
+	public void removeLast(int count, T[] into) {
+		copyLast(count, into);
+
+		final int start = slot(size - count);
+		final int firstRun = Math.min(count, elements.length - start);
+		Arrays.fill(elements, start, start + firstRun, null);
+		Arrays.fill(elements, 0, count - firstRun, null);
+
+		size -= count;
+		modifications += 1;
+	}
+
+	/**
+	 * Copies the last so many elements into the given array (starting at index
+	 * zero) in the order in which they are held.
+	 */
+	public void copyLast(int count, T[] into) {
+		if (count < 0 || count > size)
+			throw new IndexOutOfBoundsException(count + " of " + size);
+
+		copyOut(slot(size - count), into, 0, count);
+	}
+
+	/**
+	 * Removes the element at the given index, shifting whichever side of the
+	 * buffer is shortest.
+	 */
+	@SuppressWarnings("unchecked")
+	public T remove(int index) {
+		checkIndex(index);
+
+		final T element = (T) elements[slot(index)];
+
+		if (index < size / 2) {
+			for (int i = index; i > 0; i--)
+				elements[slot(i)] = elements[slot(i - 1)];
+
+			elements[head] = null;
+			head = (head + 1) & (elements.length - 1);
+
+		} else {
+			for (int i = index; i < size - 1; i++)
+				elements[slot(i)] = elements[slot(i + 1)];
+
+			elements[slot(size - 1)] = null;
+		}
+
+		size -= 1;
+		modifications += 1;
+		return element;
+	}
+
+	/**
+	 * Removes the elements from the first index up to (but not including) the
+	 * second, shifting whatever follows them.
+	 */
+	public void remove(int from, int to) {
+		if (from < 0 || to > size || from > to)
+			throw new IndexOutOfBoundsException(
+					from + " to " + to + " of " + size);
+
+		final int count = to - from;
+		if (count == 0)
+			return;
+
+		for (int i = from; i + count < size; i++)
+			elements[slot(i)] = elements[slot(i + count)];
+
+		for (int i = size - count; i < size; i++)
+			elements[slot(i)] = null;
+
+		size -= count;
+		modifications += 1;
+	}
+
+	public void clear() {
+		Arrays.fill(elements, null);
+		head = 0;
+		size = 0;
+		modifications += 1;
+	}
+
+	/**
+	 * Iterates from the given index up to the back of this buffer.
+	 */
+	public Iterator<T> iterator(final int from) {
+		return new Iterator<T>() {
+			private int index = from;
+			private final int expected = modifications;
+
+			@Override
+			public boolean hasNext() {
+				return index < size;
+			}
+
+			@Override
+			public T next() {
+				if (modifications != expected)
+					throw new ConcurrentModificationException();
+
+				if (index >= size)
+					throw new NoSuchElementException();
+
+				return get(index++);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Iterates from the back of this buffer to the front. This iterator
+	 * supports {@linkplain Iterator#remove()}.
+	 */
+	public Iterator<T> descendingIterator() {
+		return new Iterator<T>() {
+			private int index = size - 1;
+			private int last = -1;
+			private int expected = modifications;
+
+			@Override
+			public boolean hasNext() {
+				return index >= 0;
+			}
+
+			@Override
+			public T next() {
+				if (modifications != expected)
+					throw new ConcurrentModificationException();
+
+				if (index < 0)
+					throw new NoSuchElementException();
+
+				last = index;
+				return get(index--);
+			}
+
+			@Override
+			public void remove() {
+				if (last < 0)
+					throw new IllegalStateException();
+
+				if (modifications != expected)
+					throw new ConcurrentModificationException();
+
+				RingBuffer.this.remove(last);
+				expected = modifications;
+				last = -1;
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0)
+				builder.append(", ");
+			builder.append(elements[slot(i)]);
+		}
+		return builder.append("]").toString();
+	}
+
+	// ------------------------------------------------------------------------
+
+	private int slot(int index) {
+		return (head + index) & (elements.length - 1);
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException(index + " of " + size);
+	}
+
+	private void ensureCapacity(int required) {
+		if (required <= elements.length)
+			return;
+
+		int capacity = Math.max(MINIMUM_CAPACITY, elements.length);
+		while (capacity < required)
+			capacity <<= 1;
+
+		final Object[] grown = new Object[capacity];
+		copyOut(head, grown, 0, size);
+
+		elements = grown;
+		head = 0;
+	}
+
+	/**
+	 * Copies <code>count</code> elements, starting at the given slot, into the
+	 * given array. This wraps around the end of {@linkplain #elements} if
+	 * needed.
+	 */
+	private void copyOut(int start, Object[] into, int offset, int count) {
+		final int firstRun = Math.min(count, elements.length - start);
+		System.arraycopy(elements, start, into, offset, firstRun);
+		System.arraycopy(elements, 0, into, offset + firstRun,
+				count - firstRun);
+	}
+
+	/**
+	 * The inverse of {@linkplain #copyOut(int, Object[], int, int)}.
+	 */
+	private void copyIn(Object[] from, int offset, int start, int count) {
+		final int firstRun = Math.min(count, elements.length - start);
+		System.arraycopy(from, offset, elements, start, firstRun);
+		System.arraycopy(from, offset + firstRun, elements, 0,
+				count - firstRun);
+	}
+}
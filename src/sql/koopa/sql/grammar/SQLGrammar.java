@@ -25,7 +25,7 @@ public class SQLGrammar extends SQLBaseGrammar {
     protected SQLGrammar() {
     }
     
-    public static SQLGrammar instance() {
+    public static synchronized SQLGrammar instance() {
       if (INSTANCE == null)
         INSTANCE = new SQLGrammar();
         
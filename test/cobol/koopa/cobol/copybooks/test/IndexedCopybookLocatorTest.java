@@ -0,0 +1,116 @@
+package koopa.cobol.copybooks.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import koopa.cobol.copybooks.CopybookIndex;
+import koopa.cobol.copybooks.IndexedCopybookLocator;
+
+public class IndexedCopybookLocatorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final CopybookIndex index = new CopybookIndex();
+	private final IndexedCopybookLocator locator = new IndexedCopybookLocator(
+			index);
+
+	@Test
+	public void testFindsCopybooksByName() throws IOException {
+		final File copybooks = folder.newFolder("copybooks");
+		final File a = new File(copybooks, "A.cpy");
+		a.createNewFile();
+		final File b = new File(copybooks, "B.txt");
+		b.createNewFile();
+
+		final List<File> paths = Collections.singletonList(copybooks);
+
+		assertEquals(a, locator.locate("a", null, null, paths));
+		assertEquals(a, locator.locate("\"A.CPY\"", null, null, paths));
+		assertEquals(b, locator.locate("B.TXT", null, null, paths));
+		assertNull(locator.locate("B", null, null, paths));
+		assertNull(locator.locate("C", null, null, paths));
+	}
+
+	@Test
+	public void testLooksNextToTheSourceFirst() throws IOException {
+		final File sources = folder.newFolder("sources");
+		final File source = new File(sources, "MAIN.cbl");
+		source.createNewFile();
+		final File local = new File(sources, "A.cpy");
+		local.createNewFile();
+
+		final File copybooks = folder.newFolder("copybooks");
+		final File shared = new File(copybooks, "A.cpy");
+		shared.createNewFile();
+		final File main = new File(copybooks, "MAIN.cpy");
+		main.createNewFile();
+
+		final List<File> paths = Collections.singletonList(copybooks);
+
+		assertEquals(local, locator.locate("A", null, source, paths));
+		assertEquals(shared, locator.locate("A", null, null, paths));
+
+		// A source never includes itself.
+		assertEquals(main, locator.locate("MAIN", null, source, paths));
+	}
+
+	@Test
+	public void testHonoursLibraryNames() throws IOException {
+		final File copybooks = folder.newFolder("copybooks");
+		final File lib = new File(copybooks, "LIB");
+		lib.mkdir();
+		final File a = new File(lib, "A.cpy");
+		a.createNewFile();
+
+		final List<File> paths = Arrays.asList(copybooks);
+
+		assertEquals(a, locator.locate("A", "LIB", null, paths));
+		assertNull(locator.locate("A", null, null, paths));
+		assertNull(locator.locate("A", "OTHER", null, paths));
+	}
+
+	@Test
+	public void testListsFoldersOnlyOnce() throws IOException {
+		final File copybooks = folder.newFolder("copybooks");
+		new File(copybooks, "A.cpy").createNewFile();
+
+		final List<File> paths = Collections.singletonList(copybooks);
+		for (int i = 0; i < 10; i++)
+			locator.locate("A", null, null, paths);
+
+		assertEquals(10, index.getLookups());
+		assertEquals(1, index.getScans());
+	}
+
+	@Test
+	public void testPicksUpChanges() throws IOException {
+		final File copybooks = folder.newFolder("copybooks");
+		final List<File> paths = Collections.singletonList(copybooks);
+		assertNull(locator.locate("A", null, null, paths));
+
+		final long lastModified = copybooks.lastModified();
+		final File a = new File(copybooks, "A.cpy");
+		a.createNewFile();
+		copybooks.setLastModified(lastModified + 2000);
+		assertEquals(a, locator.locate("A", null, null, paths));
+
+		final File b = new File(copybooks, "B.cpy");
+		b.createNewFile();
+		copybooks.setLastModified(lastModified + 2000);
+		assertNull(locator.locate("B", null, null, paths));
+
+		index.refresh();
+		assertEquals(b, locator.locate("B", null, null, paths));
+	}
+}
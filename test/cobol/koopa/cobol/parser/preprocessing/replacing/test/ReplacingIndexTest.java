@@ -0,0 +1,134 @@
+package koopa.cobol.parser.preprocessing.replacing.test;
+
+import static koopa.cobol.parser.preprocessing.replacing.ReplacingPhraseOperand.Type.PSEUDO;
+import static koopa.cobol.parser.preprocessing.replacing.ReplacingPhraseOperand.Type.WORD;
+import static koopa.core.data.tags.AreaTag.PROGRAM_TEXT_AREA;
+import static koopa.core.data.tags.SyntacticTag.SEPARATOR;
+import static koopa.core.data.tags.SyntacticTag.WHITESPACE;
+import static koopa.core.util.test.Util.asTokens;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+
+import org.junit.Test;
+
+import koopa.cobol.parser.preprocessing.replacing.LibraryText;
+import koopa.cobol.parser.preprocessing.replacing.ReplaceLeading;
+import koopa.cobol.parser.preprocessing.replacing.ReplaceMatching;
+import koopa.cobol.parser.preprocessing.replacing.ReplacingIndex;
+import koopa.cobol.parser.preprocessing.replacing.ReplacingPhrase;
+import koopa.cobol.parser.preprocessing.replacing.ReplacingPhraseOperand;
+import koopa.core.data.Data;
+import koopa.core.data.Token;
+import koopa.core.sources.Source;
+import koopa.core.sources.TagAll;
+import koopa.core.sources.test.HardcodedSource;
+
+public class ReplacingIndexTest {
+
+	@Test
+	public void testFindsPhraseByFirstWord() {
+		final ReplacingIndex index = index( //
+				matching(word("ADA"), word("LOVELACE")), //
+				matching(word("GRACE"), word("HOPPER")));
+
+		assertReplacedBy("HOPPER", index, input("grace"));
+	}
+
+	@Test
+	public void testFirstMatchingPhraseWins() {
+		final ReplacingIndex index = index( //
+				matching(pseudo("GRACE", SEPARATOR, WHITESPACE, " ", "HOPPER"),
+						word("ADMIRAL")), //
+				leading(pseudo("GR"), pseudo("CR")), //
+				matching(word("GRACE"), word("HOPPER")));
+
+		assertReplacedBy("ADMIRAL", index,
+				input("GRACE", SEPARATOR, WHITESPACE, " ", "HOPPER"));
+		assertReplacedBy("CRACE", index, input("GRACE"));
+	}
+
+	@Test
+	public void testSharesLookaheadBetweenPhrases() {
+		final ReplacingIndex index = index( //
+				matching(pseudo("GRACE", SEPARATOR, WHITESPACE, " ", "HOPPER"),
+						word("ADMIRAL")), //
+				matching(word("GRACE"), word("HOPPER")));
+
+		final Source library = input("GRACE", SEPARATOR, WHITESPACE, " ",
+				"MURRAY");
+		final LinkedList<Data> result = new LinkedList<>();
+
+		assertTrue(index.appliedTo(new LibraryText(library), result));
+		assertEquals("HOPPER", ((Token) result.getLast()).getText());
+
+		// Whatever the first phrase read beyond its first word must have been
+		// put back.
+		assertEquals(" ", ((Token) library.next()).getText());
+		assertEquals("MURRAY", ((Token) library.next()).getText());
+		assertNull(library.next());
+	}
+
+	@Test
+	public void testLeavesLibraryAloneWhenNothingMatches() {
+		final ReplacingIndex index = index( //
+				matching(word("GRACE"), word("HOPPER")), //
+				leading(pseudo("ADA"), pseudo("LOVELACE")));
+
+		final Source library = input("ALAN", SEPARATOR, WHITESPACE, " ",
+				"TURING");
+		final Data first = library.next();
+		library.unshift(first);
+
+		final LibraryText text = new LibraryText(library);
+		assertFalse(index.appliedTo(text, new LinkedList<Data>()));
+		text.rewind();
+
+		assertSame(first, library.next());
+	}
+
+	private static void assertReplacedBy(String expected,
+			ReplacingIndex index, Source library) {
+		final LinkedList<Data> result = new LinkedList<>();
+		assertTrue(index.appliedTo(new LibraryText(library), result));
+		assertEquals(expected, ((Token) result.getLast()).getText());
+	}
+
+	private static ReplacingIndex index(ReplacingPhrase... phrases) {
+		return new ReplacingIndex(Arrays.asList(phrases));
+	}
+
+	private static ReplacingPhraseOperand word(String word) {
+		return new ReplacingPhraseOperand(WORD, asTokens(word));
+	}
+
+	private static ReplacingPhraseOperand pseudo(Object... tagsAndTokens) {
+		final Object[] delimited = new Object[tagsAndTokens.length + 4];
+		delimited[0] = "=";
+		delimited[1] = "=";
+		System.arraycopy(tagsAndTokens, 0, delimited, 2, tagsAndTokens.length);
+		delimited[delimited.length - 2] = "=";
+		delimited[delimited.length - 1] = "=";
+		return new ReplacingPhraseOperand(PSEUDO, asTokens(delimited));
+	}
+
+	private static Source input(Object... tagsAndTokens) {
+		return new TagAll(HardcodedSource.from(tagsAndTokens),
+				PROGRAM_TEXT_AREA);
+	}
+
+	private static ReplaceMatching matching(ReplacingPhraseOperand replacing,
+			ReplacingPhraseOperand by) {
+		return new ReplaceMatching(replacing, by);
+	}
+
+	private static ReplaceLeading leading(ReplacingPhraseOperand replacing,
+			ReplacingPhraseOperand by) {
+		return new ReplaceLeading(replacing, by);
+	}
+}
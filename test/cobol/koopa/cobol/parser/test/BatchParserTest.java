@@ -0,0 +1,87 @@
+package koopa.cobol.parser.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import koopa.cobol.CobolFiles;
+import koopa.cobol.parser.BatchParser;
+import koopa.cobol.parser.BatchStatistics;
+import koopa.cobol.parser.ParseResults;
+import koopa.cobol.projects.StandardCobolProject;
+
+public class BatchParserTest {
+
+	private static final int NUMBER_OF_FILES = 12;
+	private static final int NUMBER_OF_THREADS = 3;
+
+	@Test
+	public void testParsesAllFilesAcrossWorkers() {
+		final List<File> files = getFiles();
+		final List<ParseResults> parsed = Collections
+				.synchronizedList(new ArrayList<ParseResults>());
+
+		final BatchParser batch = new BatchParser(new StandardCobolProject());
+		batch.setNumberOfThreads(NUMBER_OF_THREADS);
+
+		final BatchStatistics statistics = batch.parse(files,
+				results -> parsed.add(results));
+
+		assertEquals(files.size(), parsed.size());
+		for (ParseResults results : parsed)
+			assertTrue(results.getFile().getName(), results.isValidInput());
+
+		assertEquals(NUMBER_OF_THREADS, statistics.getNumberOfWorkers());
+		assertEquals(files.size(), statistics.getNumberOfFiles());
+		assertTrue(statistics.getNumberOfLines() > 0);
+		assertTrue(statistics.getLinesPerSecond() > 0);
+
+		int total = 0;
+		for (int w = 0; w < statistics.getNumberOfWorkers(); w++) {
+			total += statistics.getNumberOfFiles(w);
+			assertTrue(statistics.getUtilisation(w) <= 1.0);
+		}
+		assertEquals(files.size(), total);
+	}
+
+	@Test
+	public void testStartsWithTheLargestFile() {
+		final List<File> files = getFiles();
+		final List<File> parsed = new ArrayList<>();
+
+		final BatchParser batch = new BatchParser(new StandardCobolProject());
+		batch.setNumberOfThreads(1);
+		batch.parse(files, results -> parsed.add(results.getFile()));
+
+		for (int i = 1; i < parsed.size(); i++)
+			assertTrue(parsed.get(i - 1).length() >= parsed.get(i).length());
+	}
+
+	@Test
+	public void testCancelledBatchParsesNothing() {
+		final List<File> parsed = new ArrayList<>();
+
+		final BatchParser batch = new BatchParser(new StandardCobolProject());
+		batch.cancel();
+		batch.parse(getFiles(), results -> parsed.add(results.getFile()));
+
+		assertTrue(parsed.isEmpty());
+	}
+
+	private List<File> getFiles() {
+		final File folder = new File("testsuite/cobol85/");
+		final File[] sources = folder
+				.listFiles(CobolFiles.getFilenameFilter());
+		Arrays.sort(sources);
+
+		return Arrays.asList(sources).subList(0,
+				Math.min(NUMBER_OF_FILES, sources.length));
+	}
+}
@@ -0,0 +1,104 @@
+package koopa.cobol.parser.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import koopa.cobol.CobolFiles;
+import koopa.cobol.grammar.CobolGrammar;
+import koopa.cobol.parser.CobolParser;
+import koopa.cobol.parser.ParseResults;
+import koopa.cobol.projects.StandardCobolProject;
+import koopa.core.trees.KoopaTreeBuilder;
+import koopa.core.trees.XMLSerializer;
+
+/**
+ * Parses a selection of the Cobol85 test suite on several threads at once,
+ * sharing a single frozen grammar, and checks that every thread builds the
+ * exact same trees as a sequential parse does.
+ */
+public class ConcurrentParsingTest {
+
+	private static final int NUMBER_OF_FILES = 8;
+	private static final int NUMBER_OF_THREADS = 4;
+
+	@Test
+	public void testConcurrentParsesBuildIdenticalTrees() throws Exception {
+		CobolParser.freezeGrammars();
+		assertTrue(CobolGrammar.instance().isFrozen());
+
+		final List<File> files = getFiles();
+
+		final Map<File, String> expected = new HashMap<>();
+		for (File file : files)
+			expected.put(file, parse(file));
+
+		final ExecutorService pool = Executors
+				.newFixedThreadPool(NUMBER_OF_THREADS);
+
+		try {
+			final List<Future<Map<File, String>>> futures = new ArrayList<>();
+			for (int i = 0; i < NUMBER_OF_THREADS; i++) {
+				final List<File> shuffled = new ArrayList<>(files);
+				Collections.shuffle(shuffled, new Random(i));
+
+				futures.add(pool.submit(new Callable<Map<File, String>>() {
+					@Override
+					public Map<File, String> call() throws Exception {
+						final Map<File, String> actual = new HashMap<>();
+						for (File file : shuffled)
+							actual.put(file, parse(file));
+						return actual;
+					}
+				}));
+			}
+
+			for (Future<Map<File, String>> future : futures) {
+				final Map<File, String> actual = future.get();
+				for (File file : files)
+					assertEquals(file.getName(), expected.get(file),
+							actual.get(file));
+			}
+
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private List<File> getFiles() {
+		final File folder = new File("testsuite/cobol85/");
+		final File[] sources = folder
+				.listFiles(CobolFiles.getFilenameFilter());
+		Arrays.sort(sources);
+
+		return Arrays.asList(sources).subList(0,
+				Math.min(NUMBER_OF_FILES, sources.length));
+	}
+
+	private String parse(File file) throws Exception {
+		final CobolParser parser = new CobolParser();
+		parser.setProject(new StandardCobolProject());
+		parser.setBuildTrees(true);
+
+		final ParseResults results = parser.parse(file);
+		assertTrue(file.getName(), results.isValidInput());
+
+		final KoopaTreeBuilder builder = results.getParse()
+				.getTarget(KoopaTreeBuilder.class);
+		return XMLSerializer.serialize(builder.getTree());
+	}
+}
@@ -0,0 +1,166 @@
+package koopa.cobol.parser.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import koopa.cobol.parser.CobolParser;
+import koopa.cobol.parser.IncrementalState;
+import koopa.cobol.parser.ParseResults;
+import koopa.cobol.projects.StandardCobolProject;
+
+public class IncrementalStateTest {
+
+	private static final List<String> COLUMNS = Arrays.asList("File",
+			"Status");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final StandardCobolProject project = new StandardCobolProject();
+
+	private File program;
+	private File book;
+	private File nested;
+
+	@Before
+	public void setUp() throws IOException {
+		project.setDefaultPreprocessing(true);
+		project.addCopybookPath(folder.getRoot());
+
+		nested = file("NESTED.CPY", "       01 NESTED PIC X.\n");
+		book = file("BOOK.CPY", "       01 FIELD-A PIC X.\n"
+				+ "           COPY NESTED.\n");
+		program = file("P.CBL", "       IDENTIFICATION DIVISION.\n"
+				+ "       PROGRAM-ID. P.\n" //
+				+ "       DATA DIVISION.\n" //
+				+ "       WORKING-STORAGE SECTION.\n" //
+				+ "           COPY BOOK.\n" //
+				+ "           COPY MISSING.\n");
+	}
+
+	@Test
+	public void testUnknownProgramIsNotUpToDate() {
+		final IncrementalState state = new IncrementalState(COLUMNS);
+		assertFalse(state.isUpToDate(program, project));
+		assertNull(state.getSummary(program));
+	}
+
+	@Test
+	public void testUnchangedProgramIsUpToDate() throws IOException {
+		final IncrementalState state = parsed();
+
+		assertTrue(fresh(state).isUpToDate(program, project));
+		assertEquals(Arrays.asList("P.CBL", "OK"),
+				fresh(state).getSummary(program));
+	}
+
+	@Test
+	public void testChangedProgramIsNotUpToDate() throws IOException {
+		final IncrementalState state = parsed();
+		append(program, "      * Changed.\n");
+
+		assertFalse(fresh(state).isUpToDate(program, project));
+	}
+
+	@Test
+	public void testChangedNestedCopybookIsNotUpToDate() throws IOException {
+		final IncrementalState state = parsed();
+		append(nested, "       01 OTHER PIC X.\n");
+
+		assertFalse(fresh(state).isUpToDate(program, project));
+	}
+
+	@Test
+	public void testCopybookWhichShowsUpIsNotUpToDate() throws IOException {
+		final IncrementalState state = parsed();
+		file("MISSING.CPY", "       01 FOUND PIC X.\n");
+
+		assertFalse(fresh(state).isUpToDate(program, project));
+	}
+
+	@Test
+	public void testOtherSettingsAreNotUpToDate() throws IOException {
+		final IncrementalState state = parsed();
+		project.setDefaultTabLength(4);
+
+		assertFalse(fresh(state).isUpToDate(program, project));
+	}
+
+	@Test
+	public void testOtherColumnsLoadAsEmpty() throws IOException {
+		final IncrementalState state = parsed();
+		final File saved = new File(folder.getRoot(), "state");
+		state.save(saved);
+
+		final IncrementalState other = IncrementalState.load(saved,
+				Arrays.asList("File"));
+		assertTrue(other.getPrograms().isEmpty());
+	}
+
+	@Test
+	public void testRetainAllForgetsOtherPrograms() throws IOException {
+		final IncrementalState state = parsed();
+		state.retainAll(Collections.<File> emptyList());
+
+		assertNull(state.getSummary(program));
+		assertFalse(state.isUpToDate(program, project));
+	}
+
+	private IncrementalState parsed() throws IOException {
+		final CobolParser parser = new CobolParser();
+		parser.setProject(project);
+		parser.setKeepingTrackOfTokens(true);
+
+		final ParseResults results = parser.parse(program);
+		assertEquals(3, results.getCopybookLookups().size());
+
+		final IncrementalState state = new IncrementalState(COLUMNS);
+		state.update(results, project, Arrays.asList("P.CBL", "OK"));
+		return state;
+	}
+
+	/**
+	 * Hashes are only computed once per state, so we save and load to get the
+	 * state as a next run would see it.
+	 */
+	private IncrementalState fresh(IncrementalState state) throws IOException {
+		final File saved = new File(folder.getRoot(), "state");
+		state.save(saved);
+		return IncrementalState.load(saved, COLUMNS);
+	}
+
+	private File file(String name, String text) throws IOException {
+		final File file = folder.newFile(name);
+		write(file, text, false);
+		return file;
+	}
+
+	private static void append(File file, String text) throws IOException {
+		write(file, text, true);
+	}
+
+	private static void write(File file, String text, boolean append)
+			throws IOException {
+		final Writer writer = new FileWriter(file, append);
+		try {
+			writer.write(text);
+		} finally {
+			writer.close();
+		}
+	}
+}
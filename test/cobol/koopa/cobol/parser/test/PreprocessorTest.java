@@ -0,0 +1,131 @@
+package koopa.cobol.parser.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import koopa.cobol.copybooks.CopybookGraph;
+import koopa.cobol.parser.Preprocessor;
+import koopa.cobol.projects.StandardCobolProject;
+import koopa.cobol.sources.CopybookLookup;
+
+public class PreprocessorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final StandardCobolProject project = new StandardCobolProject();
+
+	private File book;
+	private File nesting;
+
+	@Before
+	public void setUp() throws IOException {
+		project.setDefaultPreprocessing(true);
+		project.addCopybookPath(folder.getRoot());
+
+		book = file("BOOK.CPY", "       01 FIELD-A PIC X.\n");
+		nesting = file("NESTING.CPY", "       01 NESTED PIC X.\n"
+				+ "           COPY BOOK.\n");
+	}
+
+	@Test
+	public void testSourceWithoutDirectivesIsLeftAlone() throws IOException {
+		final String text = "       IDENTIFICATION DIVISION.\n"
+				+ "      * A comment.\n" //
+				+ "       PROGRAM-ID. P.\n";
+
+		assertEquals(text, preprocess(file("P.CBL", text)));
+	}
+
+	@Test
+	public void testExpandsCopyAndReplace() throws IOException {
+		final File program = file("P.CBL", "       DATA DIVISION.\n"
+				+ "           COPY BOOK REPLACING ==FIELD-A== BY ==FIELD-B==.\n"
+				+ "       PROCEDURE DIVISION.\n"
+				+ "           REPLACE ==X== BY ==Y==.\n"
+				+ "           MOVE X TO Z.\n");
+
+		assertEquals("       DATA DIVISION.\n" //
+				+ blanks(58) + "\n" //
+				+ "       01 FIELD-B PIC X.\n" //
+				+ "\n" //
+				+ "       PROCEDURE DIVISION.\n" //
+				+ blanks(34) + "\n" //
+				+ "           MOVE Y TO Z.\n", //
+				preprocess(program));
+	}
+
+	@Test
+	public void testTextAfterCopyKeepsItsColumn() throws IOException {
+		final File program = file("P.CBL",
+				"       01 A PIC X. COPY BOOK. 01 B PIC X.\n");
+
+		assertEquals("       01 A PIC X." + blanks(11) + "\n" //
+				+ "       01 FIELD-A PIC X.\n" //
+				+ blanks(29) + " 01 B PIC X.\n", //
+				preprocess(program));
+	}
+
+	@Test
+	public void testRecordsNestedCopybooksInGraph() throws IOException {
+		final File program = file("P.CBL", "       DATA DIVISION.\n"
+				+ "           COPY NESTING.\n" //
+				+ "           COPY MISSING.\n");
+
+		final CopybookGraph graph = new CopybookGraph();
+		final Preprocessor preprocessor = new Preprocessor(project);
+		preprocessor.setCopybookGraph(graph);
+
+		final List<CopybookLookup> lookups = preprocessor.preprocess(program,
+				new StringWriter());
+
+		assertEquals(3, lookups.size());
+		assertEquals(program.getCanonicalFile(),
+				lookups.get(0).getIncludedFrom());
+		assertEquals(nesting.getCanonicalFile(),
+				lookups.get(1).getIncludedFrom());
+		assertNull(lookups.get(2).getCopybook());
+
+		assertEquals(Arrays.asList(program), graph.getPrograms());
+		assertEquals(2, graph.getCopybooks(program).size());
+		assertEquals(Arrays.asList(program), graph.getProgramsUsing(book));
+	}
+
+	private String preprocess(File program) throws IOException {
+		final StringWriter out = new StringWriter();
+		new Preprocessor(project).preprocess(program, out);
+		return out.toString();
+	}
+
+	private static String blanks(int count) {
+		final StringBuilder blanks = new StringBuilder();
+		for (int i = 0; i < count; i++)
+			blanks.append(' ');
+
+		return blanks.toString();
+	}
+
+	private File file(String name, String text) throws IOException {
+		final File file = folder.newFile(name);
+		final Writer writer = new FileWriter(file);
+		try {
+			writer.write(text);
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+}
@@ -0,0 +1,85 @@
+package koopa.cobol.sources.test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import koopa.cobol.CobolFiles;
+import koopa.cobol.sources.CompilerDirectives;
+import koopa.cobol.sources.DirectiveFilter;
+import koopa.cobol.sources.SourceFormat;
+import koopa.core.sources.LineSplitter;
+import koopa.core.util.Files;
+
+/**
+ * A small, hand-rolled benchmark for the {@linkplain CompilerDirectives}
+ * stage. It reads all COBOL files in a folder into memory, and then keeps
+ * running them through line splitting and directive detection, reporting time
+ * and allocations per round.
+ * <p>
+ * To compare with and without the {@linkplain DirectiveFilter}, run it once as
+ * is and once with <code>-Dkoopa.directives.filter=false</code>:
+ *
+ * <pre>
+ * java -cp build:lib/* koopa.cobol.sources.test.CompilerDirectivesBenchmark testsuite/cobol85 [rounds]
+ * </pre>
+ */
+public class CompilerDirectivesBenchmark {
+
+	public static void main(String[] args) {
+		final File folder = new File(args.length > 0 ? args[0]
+				: "testsuite/cobol85");
+		final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		final List<String> texts = new ArrayList<>();
+		for (File file : folder.listFiles(CobolFiles.getFileFilter(true)))
+			texts.add(Files.getText(file));
+
+		final com.sun.management.ThreadMXBean threads //
+				= (com.sun.management.ThreadMXBean) ManagementFactory
+						.getThreadMXBean();
+		final long thread = Thread.currentThread().getId();
+
+		long bestTime = Long.MAX_VALUE;
+		long bestBytes = Long.MAX_VALUE;
+
+		for (int r = 0; r < rounds; r++) {
+			final long bytesBefore = threads.getThreadAllocatedBytes(thread);
+			final long start = System.nanoTime();
+
+			int parsed = 0;
+			int skipped = 0;
+			int directives = 0;
+			for (String text : texts) {
+				final CompilerDirectives source = new CompilerDirectives(
+						new LineSplitter(new StringReader(text)),
+						SourceFormat.FIXED);
+
+				while (source.next() != null)
+					;
+
+				parsed += source.getLinesParsed();
+				skipped += source.getLinesSkipped();
+				directives += source.getHandledDirectives().size();
+			}
+
+			final long elapsed = System.nanoTime() - start;
+			final long bytes = threads.getThreadAllocatedBytes(thread)
+					- bytesBefore;
+
+			bestTime = Math.min(bestTime, elapsed);
+			bestBytes = Math.min(bestBytes, bytes);
+
+			System.out.printf(
+					"round %2d: %8.1f ms, %10d KB, %d lines parsed, "
+							+ "%d skipped, %d directives%n",
+					r, elapsed / 1e6, bytes / 1024, parsed, skipped,
+					directives);
+		}
+
+		System.out.printf("best    : %8.1f ms, %10d KB over %d files%n",
+				bestTime / 1e6, bestBytes / 1024, texts.size());
+	}
+}
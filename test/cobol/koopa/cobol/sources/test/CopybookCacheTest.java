@@ -0,0 +1,111 @@
+package koopa.cobol.sources.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import koopa.cobol.projects.StandardCobolProject;
+import koopa.cobol.sources.CopybookCache;
+import koopa.core.data.Data;
+import koopa.core.data.Token;
+
+public class CopybookCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final StandardCobolProject project = new StandardCobolProject();
+
+	@Test
+	public void testReusesLines() throws IOException {
+		final File copybook = copybook("A.CPY", "01 A PIC X.\n01 B PIC X.\n");
+		final CopybookCache cache = new CopybookCache(1024 * 1024);
+
+		final List<Data> first = cache.getLines(copybook, project);
+		final List<Data> second = cache.getLines(copybook, project);
+
+		assertSame(first, second);
+		assertEquals("01 A PIC X.", ((Token) first.get(0)).getText());
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getSize());
+	}
+
+	@Test
+	public void testRereadsChangedCopybooks() throws IOException {
+		final File copybook = copybook("A.CPY", "01 A PIC X.\n");
+		final CopybookCache cache = new CopybookCache(1024 * 1024);
+
+		final List<Data> before = cache.getLines(copybook, project);
+		write(copybook, "01 A PIC XX.\n");
+		final List<Data> after = cache.getLines(copybook, project);
+
+		assertNotSame(before, after);
+		assertEquals("01 A PIC XX.", ((Token) after.get(0)).getText());
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() throws IOException {
+		final File a = copybook("A.CPY", "01 A PIC X.\n");
+		final File b = copybook("B.CPY", "01 B PIC X.\n");
+		final File c = copybook("C.CPY", "01 C PIC X.\n");
+
+		final CopybookCache probe = new CopybookCache(1024 * 1024);
+		probe.getLines(a, project);
+		final long perCopybook = probe.getBytes();
+
+		final CopybookCache cache = new CopybookCache(2 * perCopybook);
+		cache.getLines(a, project);
+		cache.getLines(b, project);
+		cache.getLines(a, project);
+		cache.getLines(c, project);
+
+		assertEquals(2, cache.getSize());
+		assertEquals(1, cache.getEvictions());
+		assertEquals(2 * perCopybook, cache.getBytes());
+
+		// B was used least recently, so it should have been the one to go.
+		cache.getLines(a, project);
+		assertEquals(2, cache.getHits());
+		cache.getLines(b, project);
+		assertEquals(2, cache.getHits());
+	}
+
+	@Test
+	public void testCanBeTurnedOff() throws IOException {
+		final File copybook = copybook("A.CPY", "01 A PIC X.\n");
+		final CopybookCache cache = new CopybookCache(0);
+
+		cache.getLines(copybook, project);
+		cache.getLines(copybook, project);
+
+		assertEquals(0, cache.getHits());
+		assertEquals(0, cache.getSize());
+	}
+
+	private File copybook(String name, String text) throws IOException {
+		final File file = folder.newFile(name);
+		write(file, text);
+		return file;
+	}
+
+	private static void write(File file, String text) throws IOException {
+		final Writer writer = new FileWriter(file);
+		try {
+			writer.write(text);
+		} finally {
+			writer.close();
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package koopa.cobol.sources.test;
+
+import static koopa.cobol.sources.SourceFormat.FIXED;
+import static koopa.cobol.sources.SourceFormat.FREE;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import koopa.cobol.sources.DirectiveFilter;
+import koopa.cobol.sources.SourceFormat;
+
+public class DirectiveFilterTest {
+
+	@Test
+	public void testPassesIsoDirectives() {
+		assertPasses("       >> SOURCE FORMAT IS FREE", FIXED);
+		assertPasses("000100 >>SOURCE FIXED", FIXED);
+		assertPasses(">> source format is fixed", FREE);
+	}
+
+	@Test
+	public void testPassesIbmDirectives() {
+		assertPasses("001470     TITLE 'PBO - PRODUCT BASIS OVERRIDE'", FIXED);
+		assertPasses("       BASIS MYLIB", FIXED);
+		assertPasses("000100 CBL APOST", FIXED);
+		assertPasses("PROCESS XREF", FREE);
+		assertPasses("       *CBL SOURCE", FIXED);
+		assertPasses("       *control nolist", FIXED);
+		assertPasses("       DELETE 000100-000200", FIXED);
+		assertPasses("       INSERT 000300", FIXED);
+		assertPasses("       ENTER TAL.", FIXED);
+		assertPasses("       ready trace.", FIXED);
+		assertPasses("       RESET TRACE.", FIXED);
+	}
+
+	@Test
+	public void testPassesMicroFocusDirectives() {
+		assertPasses("-INC TEXTNAME  witty remark", FIXED);
+		assertPasses("       ++INCLUDE TEXTNAME  witty remark", FIXED);
+		assertPasses("      $set SOURCEFORMAT\"VARIABLE\"", FIXED);
+		assertPasses("$SET SOURCEFORMAT\"FIXED\"", FREE);
+	}
+
+	@Test
+	public void testPassesListingDirectives() {
+		assertPasses("       EJECT", FIXED);
+		assertPasses("       EJECT.", FIXED);
+		assertPasses("123456 SKIP2", FIXED);
+	}
+
+	@Test
+	public void testRejectsProgramText() {
+		assertRejects("", FIXED);
+		assertRejects("       IDENTIFICATION DIVISION.", FIXED);
+		assertRejects("000100 PROCEDURE DIVISION.", FIXED);
+		assertRejects("      * ENTER THE DRAGON", FIXED);
+		assertRejects("           DISPLAY 'EJECT >> THIS'.", FIXED);
+		assertRejects("       01  ENTERED-VALUE PIC X.", FIXED);
+		assertRejects("       TITLE-LINE.", FIXED);
+	}
+
+	@Test
+	public void testChecksMicroFocusIndicatorColumn() {
+		assertRejects("$SET SOURCEFORMAT\"FIXED\"", FIXED);
+		assertRejects("      $set SOURCEFORMAT\"VARIABLE\"", FREE);
+	}
+
+	private static void assertPasses(String text, SourceFormat format) {
+		assertTrue(text, DirectiveFilter.mightBeDirective(text, 1, format));
+	}
+
+	private static void assertRejects(String text, SourceFormat format) {
+		assertFalse(text, DirectiveFilter.mightBeDirective(text, 1, format));
+	}
+}
@@ -0,0 +1,88 @@
+package koopa.cobol.sources.test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import koopa.cobol.CobolTokens;
+import koopa.cobol.projects.StandardCobolProject;
+import koopa.cobol.sources.Replacing;
+import koopa.core.sources.Source;
+
+/**
+ * A small, hand-rolled benchmark for {@linkplain Replacing}, on a program
+ * which copies in a copybook with a long list of REPLACING phrases. It writes
+ * both to a temporary folder, and then keeps running the program through the
+ * full source stack.
+ *
+ * <pre>
+ * java -cp build:lib/* koopa.cobol.sources.test.ReplacingBenchmark [phrases] [lines] [rounds]
+ * </pre>
+ */
+public class ReplacingBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		final int phrases = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		final int lines = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		final int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+		final File folder = File.createTempFile("replacing", "");
+		folder.delete();
+		folder.mkdirs();
+
+		final File copybook = new File(folder, "BOOK.CPY");
+		final StringBuilder book = new StringBuilder();
+		for (int i = 0; i < lines; i++)
+			book.append("           MOVE FIELD-").append(i % phrases)
+					.append(" TO TARGET-").append(i).append(".\n");
+		write(copybook, book);
+
+		final File program = new File(folder, "PROGRAM.CBL");
+		final StringBuilder text = new StringBuilder();
+		text.append("       PROCEDURE DIVISION.\n");
+		text.append("           COPY BOOK REPLACING\n");
+		for (int i = 0; i < phrases; i++)
+			text.append("               ==FIELD-").append(i)
+					.append("== BY ==OTHER-").append(i).append("==\n");
+		text.append("               .\n");
+		write(program, text);
+
+		final StandardCobolProject project = new StandardCobolProject();
+		project.setDefaultPreprocessing(true);
+
+		long best = Long.MAX_VALUE;
+		for (int r = 0; r < rounds; r++) {
+			final long start = System.nanoTime();
+
+			final Source source = CobolTokens.getNewSource(program,
+					CobolTokens.getReader(program, project), project);
+			int tokens = 0;
+			while (source.next() != null)
+				tokens += 1;
+			source.close();
+
+			final long elapsed = System.nanoTime() - start;
+			best = Math.min(best, elapsed);
+			System.out.printf("round %2d: %8.1f ms, %d tokens%n", r,
+					elapsed / 1e6, tokens);
+		}
+
+		System.out.printf("best    : %8.1f ms for %d phrases over %d lines%n",
+				best / 1e6, phrases, lines);
+
+		copybook.delete();
+		program.delete();
+		folder.delete();
+	}
+
+	private static void write(File file, CharSequence text)
+			throws IOException {
+		final Writer writer = new FileWriter(file);
+		try {
+			writer.append(text);
+		} finally {
+			writer.close();
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package koopa.cobol.sources.test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import koopa.cobol.CobolFiles;
+import koopa.cobol.CobolTokens;
+import koopa.cobol.projects.StandardCobolProject;
+import koopa.core.data.Data;
+import koopa.core.data.Token;
+import koopa.core.sources.Source;
+import koopa.core.util.Files;
+
+/**
+ * A small, hand-rolled benchmark for the full chain of sources built by
+ * {@linkplain CobolTokens}, with preprocessing turned on. It reads all COBOL
+ * files in a folder into memory, using that same folder for copybooks, and
+ * then keeps running them through the chain, reporting time, allocations and
+ * tokens per second for each round.
+ *
+ * <pre>
+ * java -cp build:lib/* koopa.cobol.sources.test.SourceChainBenchmark testsuite/cobol85 [rounds]
+ * </pre>
+ */
+public class SourceChainBenchmark {
+
+	public static void main(String[] args) {
+		final File folder = new File(args.length > 0 ? args[0]
+				: "testsuite/cobol85");
+		final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		final StandardCobolProject project = new StandardCobolProject();
+		project.setDefaultPreprocessing(true);
+		project.addCopybookPath(folder);
+
+		final List<File> files = new ArrayList<>();
+		final List<String> texts = new ArrayList<>();
+		for (File file : folder.listFiles(CobolFiles.getFileFilter(true))) {
+			files.add(file);
+			texts.add(Files.getText(file));
+		}
+
+		final com.sun.management.ThreadMXBean threads //
+				= (com.sun.management.ThreadMXBean) ManagementFactory
+						.getThreadMXBean();
+		final long thread = Thread.currentThread().getId();
+
+		long bestTime = Long.MAX_VALUE;
+		long bestBytes = Long.MAX_VALUE;
+		long tokens = 0;
+
+		for (int r = 0; r < rounds; r++) {
+			final long bytesBefore = threads.getThreadAllocatedBytes(thread);
+			final long start = System.nanoTime();
+
+			tokens = 0;
+			for (int i = 0; i < texts.size(); i++) {
+				final Source source = CobolTokens.getNewSource(files.get(i),
+						new StringReader(texts.get(i)), project);
+
+				Data d;
+				while ((d = source.next()) != null)
+					if (d instanceof Token)
+						tokens += 1;
+
+				source.close();
+			}
+
+			final long elapsed = System.nanoTime() - start;
+			final long bytes = threads.getThreadAllocatedBytes(thread)
+					- bytesBefore;
+
+			bestTime = Math.min(bestTime, elapsed);
+			bestBytes = Math.min(bestBytes, bytes);
+
+			System.out.printf("round %2d: %8.1f ms, %10d KB, %d tokens%n", r,
+					elapsed / 1e6, bytes / 1024, tokens);
+		}
+
+		System.out.printf(
+				"best    : %8.1f ms, %10d KB, %.0f tokens/s over %d files%n",
+				bestTime / 1e6, bestBytes / 1024, tokens / (bestTime / 1e9),
+				texts.size());
+	}
+}
@@ -0,0 +1,99 @@
+package koopa.cobol.sources.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import koopa.cobol.CobolFiles;
+import koopa.cobol.CobolTokens;
+import koopa.cobol.projects.StandardCobolProject;
+import koopa.cobol.sources.TokenCache;
+import koopa.core.sources.Source;
+
+/**
+ * A small, hand-rolled benchmark for the {@linkplain TokenCache}. It runs all
+ * COBOL files in a folder through preprocessing without a cache, then once to
+ * fill a cache, and then a number of times from that cache. A last round
+ * validates all cached entries against fresh runs.
+ *
+ * <pre>
+ * java -cp build:lib/* koopa.cobol.sources.test.TokenCacheBenchmark testsuite/cobol85 [rounds]
+ * </pre>
+ */
+public class TokenCacheBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		final File folder = new File(args.length > 0 ? args[0]
+				: "testsuite/cobol85");
+		final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		final List<File> files = Arrays
+				.asList(folder.listFiles(CobolFiles.getFileFilter(true)));
+
+		final StandardCobolProject project = new StandardCobolProject();
+		project.setDefaultPreprocessing(true);
+		project.addCopybookPath(folder);
+
+		final File entries = File.createTempFile("tokens", "");
+		entries.delete();
+
+		final TokenCache cache = new TokenCache(entries, false);
+
+		long bestFresh = Long.MAX_VALUE;
+		for (int r = 0; r < rounds; r++) {
+			final long start = System.nanoTime();
+			int tokens = 0;
+			for (File file : files)
+				tokens += drain(CobolTokens.getNewSource(file,
+						CobolTokens.getReader(file, project), project));
+
+			final long elapsed = System.nanoTime() - start;
+			bestFresh = Math.min(bestFresh, elapsed);
+			System.out.printf("fresh %2d: %8.1f ms, %d data%n", r,
+					elapsed / 1e6, tokens);
+		}
+
+		final long fillStart = System.nanoTime();
+		for (File file : files)
+			drain(cache.getSource(file, project));
+		System.out.printf("filling : %8.1f ms%n",
+				(System.nanoTime() - fillStart) / 1e6);
+
+		long bestCached = Long.MAX_VALUE;
+		for (int r = 0; r < rounds; r++) {
+			final long start = System.nanoTime();
+			int tokens = 0;
+			for (File file : files)
+				tokens += drain(cache.getSource(file, project));
+
+			final long elapsed = System.nanoTime() - start;
+			bestCached = Math.min(bestCached, elapsed);
+			System.out.printf("cached %d: %8.1f ms, %d data%n", r,
+					elapsed / 1e6, tokens);
+		}
+
+		final TokenCache validating = new TokenCache(entries, true);
+		for (File file : files)
+			drain(validating.getSource(file, project));
+
+		System.out.printf("best    : %8.1f ms fresh, %8.1f ms cached, "
+				+ "over %d files%n", bestFresh / 1e6, bestCached / 1e6,
+				files.size());
+		System.out.println(cache);
+		System.out.println(validating);
+
+		for (File entry : entries.listFiles())
+			entry.delete();
+		entries.delete();
+	}
+
+	private static int drain(Source source) {
+		int count = 0;
+		while (source.next() != null)
+			count += 1;
+
+		source.close();
+		return count;
+	}
+}
@@ -0,0 +1,188 @@
+package koopa.cobol.sources.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import koopa.cobol.CobolTokens;
+import koopa.cobol.projects.StandardCobolProject;
+import koopa.cobol.sources.CopybookLookup;
+import koopa.cobol.sources.CopybookTracker;
+import koopa.cobol.sources.TokenCache;
+import koopa.core.data.Data;
+import koopa.core.data.Token;
+import koopa.core.sources.Source;
+
+public class TokenCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final StandardCobolProject project = new StandardCobolProject();
+
+	private File program;
+	private File copybook;
+
+	@Before
+	public void setUp() throws IOException {
+		project.setDefaultPreprocessing(true);
+
+		copybook = file("BOOK.CPY", "       01 FIELD-A PIC X.\n");
+		program = file("PROGRAM.CBL", "       DATA DIVISION.\n"
+				+ "           COPY BOOK REPLACING ==FIELD-A== BY ==FIELD-B==.\n"
+				+ "       PROCEDURE DIVISION.\n");
+	}
+
+	@Test
+	public void testHitGivesSameTokensAsFreshRun() throws IOException {
+		final TokenCache cache = new TokenCache(
+				folder.newFolder("cache"), false);
+
+		final List<Data> first = drain(cache.getSource(program, project));
+		final List<Data> second = drain(cache.getSource(program, project));
+
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getStores());
+		assertEquals(1, cache.getHits());
+
+		assertEquals(describe(fresh()), describe(first));
+		assertEquals(describe(first), describe(second));
+	}
+
+	@Test
+	public void testHitKnowsWhichCopybooksWereIncluded() throws IOException {
+		final TokenCache cache = new TokenCache(
+				folder.newFolder("cache"), false);
+
+		drain(cache.getSource(program, project));
+		final Source hit = cache.getSource(program, project);
+
+		final List<CopybookLookup> lookups = hit
+				.getSource(CopybookTracker.class).getCopybookLookups();
+		assertEquals(1, lookups.size());
+		assertEquals(copybook.getCanonicalFile(),
+				lookups.get(0).getCopybook().getCanonicalFile());
+		assertEquals(program.getCanonicalFile(),
+				lookups.get(0).getIncludedFrom());
+	}
+
+	@Test
+	public void testChangedCopybookIsAMiss() throws IOException {
+		final TokenCache cache = new TokenCache(
+				folder.newFolder("cache"), false);
+
+		drain(cache.getSource(program, project));
+		write(copybook, "       01 FIELD-A PIC XX.\n");
+		final List<Data> after = drain(cache.getSource(program, project));
+
+		assertEquals(2, cache.getMisses());
+		assertEquals(0, cache.getHits());
+		assertEquals(describe(fresh()), describe(after));
+	}
+
+	@Test
+	public void testChangedSettingsAreAMiss() throws IOException {
+		final TokenCache cache = new TokenCache(
+				folder.newFolder("cache"), false);
+
+		drain(cache.getSource(program, project));
+		project.setDefaultTabLength(project.getDefaultTabLength() + 1);
+		drain(cache.getSource(program, project));
+
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void testClosingEarlyStillStores() throws IOException {
+		final TokenCache cache = new TokenCache(
+				folder.newFolder("cache"), false);
+
+		final Source source = cache.getSource(program, project);
+		source.next();
+		source.close();
+
+		drain(cache.getSource(program, project));
+		assertEquals(1, cache.getHits());
+	}
+
+	@Test
+	public void testValidationFindsNoMismatches() throws IOException {
+		final TokenCache cache = new TokenCache(
+				folder.newFolder("cache"), true);
+
+		drain(cache.getSource(program, project));
+		final List<Data> validated = drain(cache.getSource(program, project));
+
+		assertEquals(1, cache.getHits());
+		assertEquals(0, cache.getMismatches());
+		assertEquals(describe(fresh()), describe(validated));
+	}
+
+	@Test
+	public void testHitsGiveNewTokens() throws IOException {
+		final TokenCache cache = new TokenCache(
+				folder.newFolder("cache"), false);
+
+		drain(cache.getSource(program, project));
+		final List<Data> first = drain(cache.getSource(program, project));
+		final List<Data> second = drain(cache.getSource(program, project));
+
+		// Tokens are mutable when it comes to being skipped, so parses must
+		// never share them.
+		assertNotSame(first.get(0), second.get(0));
+	}
+
+	private List<Data> fresh() throws IOException {
+		return drain(CobolTokens.getNewSource(program,
+				CobolTokens.getReader(program, project), project));
+	}
+
+	private static List<Data> drain(Source source) {
+		final List<Data> data = new ArrayList<>();
+		Data d;
+		while ((d = source.next()) != null)
+			data.add(d);
+
+		source.close();
+		return data;
+	}
+
+	private static List<String> describe(List<Data> data) {
+		final List<String> descriptions = new ArrayList<>(data.size());
+		for (Data d : data) {
+			if (d instanceof Token && ((Token) d).isReplacement())
+				descriptions.add(d + " for " + ((Token) d).getReplaced()
+						.getStart());
+			else
+				descriptions.add(String.valueOf(d));
+		}
+
+		return descriptions;
+	}
+
+	private File file(String name, String text) throws IOException {
+		final File file = folder.newFile(name);
+		write(file, text);
+		return file;
+	}
+
+	private static void write(File file, String text) throws IOException {
+		final Writer writer = new FileWriter(file);
+		try {
+			writer.write(text);
+		} finally {
+			writer.close();
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package koopa.core.data.test;
+
+import static koopa.core.data.tags.AreaTag.PROGRAM_TEXT_AREA;
+import static koopa.core.data.tags.SyntacticTag.WHITESPACE;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import koopa.core.data.BinaryTokens;
+import koopa.core.data.Data;
+import koopa.core.data.Position;
+import koopa.core.data.Replaced;
+import koopa.core.data.Token;
+import koopa.core.data.Tokens;
+import koopa.core.data.markers.Start;
+import koopa.core.trees.Tree;
+
+/**
+ * Tests writing and reading back {@linkplain Data} using
+ * {@linkplain BinaryTokens}.
+ */
+public class BinaryTokensTest extends TestCase {
+
+	private static final String FILE = "/some/folder/SAMPLE.cbl";
+	private static final String COPYBOOK = "/some/folder/COPYBOOK.cpy";
+
+	@Test
+	public void testTokensRoundTrip() throws IOException {
+		final Token a = new Token("MOVE", new Position(FILE, 7, 1, 8),
+				new Position(FILE, 10, 1, 11), PROGRAM_TEXT_AREA);
+		final Token b = new Token(" ", new Position(FILE, 11, 1, 12),
+				new Position(FILE, 11, 1, 12), PROGRAM_TEXT_AREA, WHITESPACE,
+				"custom");
+
+		final List<Data> back = roundTrip(Arrays.<Data> asList(a, b));
+
+		assertEquals(2, back.size());
+		assertSameToken(a, (Token) back.get(0));
+		assertSameToken(b, (Token) back.get(1));
+	}
+
+	@Test
+	public void testPositionsWhichCanNotBePacked() throws IOException {
+		final Token far = new Token("X", new Position(FILE, 1 << 30, 1, 1),
+				new Position(FILE, 1 << 30, 1, 1), PROGRAM_TEXT_AREA);
+
+		final Token joined = Tokens.join(Arrays.asList(
+				new Token("AB", new Position(FILE, 1, 1, 1),
+						new Position(FILE, 2, 1, 2)),
+				new Token("CD", new Position(FILE, 10, 2, 1),
+						new Position(FILE, 11, 2, 2))),
+				PROGRAM_TEXT_AREA);
+
+		final List<Data> back = roundTrip(Arrays.<Data> asList(far, joined));
+
+		assertSameToken(far, (Token) back.get(0));
+		assertSameToken(joined, (Token) back.get(1));
+	}
+
+	@Test
+	public void testReplacementsKeepTheirContext() throws IOException {
+		final Replaced outer = new Replaced(new Position(FILE, 1, 1, 1),
+				new Position(FILE, 10, 1, 10), null);
+		final Replaced inner = new Replaced(new Position(COPYBOOK, 1, 1, 1),
+				new Position(COPYBOOK, 10, 1, 10), outer);
+
+		final Token a = new Token("A", new Position(COPYBOOK, 20, 2, 1),
+				new Position(COPYBOOK, 20, 2, 1)).asReplacing(inner);
+		final Token b = new Token("B", new Position(COPYBOOK, 21, 2, 2),
+				new Position(COPYBOOK, 21, 2, 2)).asReplacing(inner);
+
+		final List<Data> back = roundTrip(Arrays.<Data> asList(a, b));
+		final Replaced backA = ((Token) back.get(0)).getReplaced();
+		final Replaced backB = ((Token) back.get(1)).getReplaced();
+
+		assertSame(backA, backB);
+		assertEquals(inner.getStart(), backA.getStart());
+		assertEquals(outer.getEnd(), backA.getContext().getEnd());
+		assertNull(backA.getContext().getContext());
+	}
+
+	@Test
+	public void testTrees() throws IOException {
+		final Tree copy = new Tree(Start.on("cobol", "copyStatement"));
+		final Tree name = new Tree(Start.on("cobol", "textName"));
+		name.addChild(new Tree(new Token("BOOK", new Position(FILE, 12, 1, 13),
+				new Position(FILE, 15, 1, 16), PROGRAM_TEXT_AREA)));
+		copy.addChild(name);
+
+		final Tree back = (Tree) roundTrip(Arrays.<Data> asList(copy)).get(0);
+
+		assertTrue(back.isNode("copyStatement"));
+		assertEquals("cobol", back.getNamespace());
+		assertEquals("BOOK", back.getChild("textName").getProgramText());
+	}
+
+	@Test
+	public void testRefusesOtherData() throws IOException {
+		try {
+			roundTrip(Arrays.<Data> asList(Start.on("cobol", "copyStatement")));
+			fail("Markers should not be accepted.");
+		} catch (NotSerializableException e) {
+			// Expected.
+		}
+	}
+
+	private static List<Data> roundTrip(List<Data> data) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		BinaryTokens.write(data, bytes);
+
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+		final List<Data> back = BinaryTokens.read(buffer);
+		assertFalse(buffer.hasRemaining());
+		return back;
+	}
+
+	private static void assertSameToken(Token expected, Token actual) {
+		assertEquals(expected.getText(), actual.getText());
+		assertEquals(expected.getRanges(), actual.getRanges());
+		assertEquals(expected.getTags(), actual.getTags());
+		assertSame(expected.getResource(), actual.getResource());
+	}
+}
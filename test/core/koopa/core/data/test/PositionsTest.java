@@ -0,0 +1,115 @@
+package koopa.core.data.test;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import koopa.core.data.Position;
+import koopa.core.data.Positions;
+import koopa.core.data.Range;
+import koopa.core.data.Resource;
+import koopa.core.data.Token;
+import koopa.core.data.Tokens;
+
+/**
+ * Tests packed positions, and their use in {@linkplain Token}s.
+ */
+public class PositionsTest extends TestCase {
+
+	private static final String FILE = "/some/folder/SAMPLE.cbl";
+
+	@Test
+	public void testPackingRoundTrips() {
+		final long packed = Positions.pack(123456, 789, 42);
+
+		assertTrue(packed != Positions.NONE);
+		assertEquals(123456, Positions.getPositionInFile(packed));
+		assertEquals(789, Positions.getLinenumber(packed));
+		assertEquals(42, Positions.getPositionInLine(packed));
+
+		final long max = Positions.pack((1 << 30) - 1, (1 << 20) - 1,
+				(1 << 13) - 1);
+		assertTrue(max != Positions.NONE);
+		assertEquals((1 << 30) - 1, Positions.getPositionInFile(max));
+		assertEquals((1 << 20) - 1, Positions.getLinenumber(max));
+		assertEquals((1 << 13) - 1, Positions.getPositionInLine(max));
+	}
+
+	@Test
+	public void testOutOfRangeCanNotBePacked() {
+		assertEquals(Positions.NONE, Positions.pack(-1, 1, 1));
+		assertEquals(Positions.NONE, Positions.pack(1 << 30, 1, 1));
+		assertEquals(Positions.NONE, Positions.pack(1, 1 << 20, 1));
+		assertEquals(Positions.NONE, Positions.pack(1, 1, 1 << 13));
+	}
+
+	@Test
+	public void testResourcesAreShared() {
+		final Position a = new Position(FILE, 1, 1, 1);
+		final Position b = new Position(new String(FILE), 5, 1, 5);
+
+		assertSame(a.getResource(), b.getResource());
+		assertSame(Resource.named(FILE), a.getResource());
+		assertEquals("SAMPLE.cbl", a.getResource().getShortName());
+		assertEquals("SAMPLE.cbl:1:5", b.toString());
+	}
+
+	@Test
+	public void testTokensGiveTheSamePositions() {
+		final Position start = new Position(FILE, 100, 7, 8);
+		final Position end = start.offsetBy(9);
+
+		final Token t = new Token("0123456789", start, end);
+		assertEquals(start, t.getStart());
+		assertEquals(end, t.getEnd());
+		assertEquals(FILE, t.getStart().getResourceName());
+		assertEquals(7, t.getEnd().getLinenumber());
+		assertEquals(17, t.getEnd().getPositionInLine());
+		assertEquals(100, t.getStartPositionInFile());
+		assertEquals(109, t.getEndPositionInFile());
+		assertEquals(8, t.getStartPositionInLine());
+		assertEquals(17, t.getEndPositionInLine());
+		assertEquals(Arrays.asList(new Range(start, end)), t.getRanges());
+	}
+
+	@Test
+	public void testLargePositionsStillWork() {
+		final Position start = new Position(FILE, 100, 7, 20000);
+		final Position end = start.offsetBy(9);
+
+		final Token t = new Token("0123456789", start, end);
+		assertEquals(20000, t.getStart().getPositionInLine());
+		assertEquals(20009, t.getEnd().getPositionInLine());
+
+		final Token sub = Tokens.subtoken(t, 2, 5);
+		assertEquals("234", sub.getText());
+		assertEquals(start.offsetBy(2), sub.getStart());
+		assertEquals(20004, sub.getEnd().getPositionInLine());
+	}
+
+	@Test
+	public void testSubtokensArePositionedCorrectly() {
+		final Position start = new Position(FILE, 100, 7, 8);
+		final Position end = start.offsetBy(9);
+		final Token t = new Token("0123456789", start, end);
+
+		final Token tail = Tokens.subtoken(t, 3);
+		assertEquals("3456789", tail.getText());
+		assertEquals(103, tail.getStart().getPositionInFile());
+		assertEquals(11, tail.getStart().getPositionInLine());
+		assertEquals(end, tail.getEnd());
+
+		final Token middle = Tokens.subtoken(t, 3, 6);
+		assertEquals("345", middle.getText());
+		assertEquals(start.offsetBy(3), middle.getStart());
+		assertEquals(start.offsetBy(5), middle.getEnd());
+		assertEquals(7, middle.getEnd().getLinenumber());
+		assertEquals(13, middle.getEnd().getPositionInLine());
+
+		final Token empty = Tokens.subtoken(t, 10);
+		assertEquals("", empty.getText());
+		assertEquals(end, empty.getStart());
+		assertEquals(end, empty.getEnd());
+	}
+}
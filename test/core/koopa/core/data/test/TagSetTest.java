@@ -0,0 +1,98 @@
+package koopa.core.data.test;
+
+import static koopa.core.data.tags.SyntacticTag.END_OF_LINE;
+import static koopa.core.data.tags.SyntacticTag.SEPARATOR;
+import static koopa.core.data.tags.SyntacticTag.WHITESPACE;
+import static koopa.core.data.tags.SyntacticTag.WORD;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import koopa.core.data.Position;
+import koopa.core.data.TagSet;
+import koopa.core.data.Token;
+
+/**
+ * Tests {@linkplain TagSet} functionality.
+ */
+public class TagSetTest extends TestCase {
+
+	@Test
+	public void testSetsAreInterned() {
+		assertSame(TagSet.of(WORD, SEPARATOR), TagSet.of(SEPARATOR, WORD));
+		assertSame(TagSet.of(WORD).with(SEPARATOR), TagSet.of(SEPARATOR, WORD));
+		assertSame(TagSet.EMPTY, TagSet.of());
+		assertSame(TagSet.EMPTY, TagSet.of(WORD).without(WORD));
+	}
+
+	@Test
+	public void testUnchangedSetsAreReused() {
+		final TagSet set = TagSet.of(WORD, SEPARATOR);
+
+		assertSame(set, set.with(WORD));
+		assertSame(set, set.without(WHITESPACE));
+		assertSame(set, set.without("Never seen before"));
+	}
+
+	@Test
+	public void testContains() {
+		final TagSet set = TagSet.of(WORD, "Grace Hopper", null);
+
+		assertEquals(3, set.size());
+		assertTrue(set.contains(WORD));
+		assertTrue(set.contains("Grace Hopper"));
+		assertTrue(set.contains(null));
+		assertFalse(set.contains(SEPARATOR));
+		assertFalse(set.contains("Ada Lovelace"));
+
+		assertTrue(set.containsAll(WORD, "Grace Hopper"));
+		assertFalse(set.containsAll(WORD, SEPARATOR));
+		assertTrue(set.containsAny(SEPARATOR, WORD));
+		assertFalse(set.containsAny(SEPARATOR, END_OF_LINE));
+	}
+
+	@Test
+	public void testBehavesAsASet() {
+		final TagSet set = TagSet.of(WORD, SEPARATOR, "Cobol");
+		final HashSet<Object> expected = new HashSet<>(
+				Arrays.<Object> asList(WORD, SEPARATOR, "Cobol"));
+
+		assertEquals(expected, set);
+		assertEquals(set, expected);
+		assertEquals(expected.hashCode(), set.hashCode());
+		assertEquals(expected, new HashSet<>(set));
+		assertSame(set, TagSet.of(expected));
+	}
+
+	@Test
+	public void testManyTags() {
+		TagSet set = TagSet.EMPTY;
+		for (int i = 0; i < 200; i++)
+			set = set.with("tag-" + i);
+
+		assertEquals(200, set.size());
+		for (int i = 0; i < 200; i++)
+			assertTrue(set.contains("tag-" + i));
+
+		for (int i = 0; i < 200; i++)
+			set = set.without("tag-" + i);
+
+		assertSame(TagSet.EMPTY, set);
+	}
+
+	@Test
+	public void testTokensShareTagSets() {
+		final Position start = new Position(1, 1, 1);
+		final Token a = new Token("A", start, start, WORD);
+		final Token b = new Token("B", start, start, WORD);
+
+		assertSame(a.getTags(), b.getTags());
+		assertSame(a, a.withTags(WORD));
+		assertSame(a, a.withoutTags(SEPARATOR));
+		assertSame(a.withTags(SEPARATOR).getTags(),
+				b.withTags(SEPARATOR).getTags());
+	}
+}
@@ -0,0 +1,70 @@
+package koopa.core.parsers.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import koopa.core.data.Data;
+import koopa.core.data.Position;
+import koopa.core.data.Token;
+import koopa.core.grammars.test.TestGrammar;
+import koopa.core.parsers.Lookahead;
+import koopa.core.parsers.Parse;
+import koopa.core.parsers.ParserCombinator;
+import koopa.core.sources.test.HardcodedSource;
+import koopa.core.targets.ListTarget;
+
+public class LookaheadTest {
+
+	private final TestGrammar G = new TestGrammar();
+
+	@Test
+	public void testOnlyMatchesTheSameData() {
+		final Data a = new Token("A", Position.ZERO, Position.ZERO);
+		final Data b = new Token("B", Position.ZERO, Position.ZERO);
+
+		final Lookahead lookahead = new Lookahead();
+		lookahead.put(3, a, "A");
+
+		assertEquals("A", lookahead.get(3, a));
+		assertNull(lookahead.get(3, b));
+		assertNull(lookahead.get(4, a));
+		assertEquals(1, lookahead.getHits());
+		assertEquals(2, lookahead.getMisses());
+	}
+
+	@Test
+	public void testForgetsWhatWasCommitted() {
+		final Data a = new Token("A", Position.ZERO, Position.ZERO);
+		final Data b = new Token("B", Position.ZERO, Position.ZERO);
+
+		final Lookahead lookahead = new Lookahead();
+		lookahead.put(3, a, "A");
+		lookahead.put(4, b, "B");
+		lookahead.forgetBefore(4);
+
+		assertNull(lookahead.get(3, a));
+		assertEquals("B", lookahead.get(4, b));
+	}
+
+	@Test
+	public void testDispatchReusesKeywords() {
+		final ParserCombinator a = G.dispatched(new String[] { "A" },
+				new ParserCombinator[] { G.token("A") });
+
+		final ParserCombinator choice = G.choice( //
+				G.sequence(a, G.token("X")), //
+				G.sequence(a, G.token("Y")));
+
+		final Parse parse = Parse.of(HardcodedSource.from("A", "Y"))
+				.to(new ListTarget());
+
+		// The choice gets optimized into a dispatch of its own. After that
+		// first lookup, both alternatives can reuse what it found.
+		assertTrue(choice.accepts(parse));
+		assertEquals(2, parse.getLookahead().getHits());
+		assertEquals(1, parse.getLookahead().getMisses());
+	}
+}
@@ -0,0 +1,140 @@
+package koopa.core.parsers.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import koopa.core.data.Data;
+import koopa.core.grammars.combinators.Scoped;
+import koopa.core.grammars.test.TestGrammar;
+import koopa.core.parsers.FutureParser;
+import koopa.core.parsers.Memoization;
+import koopa.core.parsers.Parse;
+import koopa.core.parsers.ParserCombinator;
+import koopa.core.sources.test.HardcodedSource;
+import koopa.core.targets.ListTarget;
+
+public class MemoizationTest {
+
+	private static final String SEP = "$SEP$";
+
+	private final TestGrammar G = new TestGrammar(SEP);
+
+	private final ParserCombinator inner;
+	private final Scoped top;
+
+	public MemoizationTest() {
+		final FutureParser ab = G.scoped("ab");
+		ab.setParser(G.sequence(G.token("A"), G.token("B")));
+		inner = ab;
+
+		top = (Scoped) G.scoped("top");
+		top.setParser(G.choice( //
+				G.sequence(inner, G.token("X")), //
+				G.sequence(inner, G.token("Y")), //
+				G.sequence(inner, G.token("Z"))));
+	}
+
+	@Test
+	public void testReplayGivesTheSameOutput() {
+		assertSameOutput(SEP, "A", SEP, "B", SEP, "Y");
+		assertSameOutput("A", "B", "Z");
+		assertSameOutput(SEP, SEP, "A", "B", SEP, "X");
+	}
+
+	@Test
+	public void testRejectionsAreRemembered() {
+		final Memoization memoization = new Memoization();
+		assertNull(parse(memoization, "A", "C", "Z"));
+
+		assertEquals(3, memoization.getLookups("ab"));
+		assertEquals(2, memoization.getHits("ab"));
+	}
+
+	@Test
+	public void testCountsHitsPerRule() {
+		final Memoization memoization = new Memoization();
+		assertTrue(parse(memoization, "A", SEP, "B", "Z") != null);
+
+		assertEquals(3, memoization.getLookups("ab"));
+		assertEquals(2, memoization.getHits("ab"));
+		assertEquals(1, memoization.getLookups("top"));
+		assertEquals(0, memoization.getHits("top"));
+		assertEquals(2.0 / 3.0, memoization.getHitRate("ab"), 0.0001);
+	}
+
+	@Test
+	public void testCommittingFreesTheTable() {
+		final Memoization memoization = new Memoization();
+		assertTrue(parse(memoization, "A", "B", "Y") != null);
+
+		assertEquals(0, memoization.getSize());
+	}
+
+	@Test
+	public void testStaysWithinBudget() {
+		final Memoization memoization = new Memoization(2);
+		assertTrue(parse(memoization, SEP, "A", "B", "Z") != null);
+
+		assertTrue(memoization.getEvictions() > 0);
+		assertEquals(0, memoization.getHits("ab"));
+	}
+
+	@Test
+	public void testResultsDependOnKeywordsInScope() {
+		// "X" is a keyword while matching "withX", but not while matching
+		// "withY". So "word" can not be replayed from one to the other.
+		final FutureParser word = G.scoped("word");
+		word.setParser(G.notAKeyword(G.any()));
+
+		final FutureParser withX = G.scoped("withX");
+		withX.setParser(G.sequence(word, G.token("X")));
+
+		final FutureParser withY = G.scoped("withY");
+		withY.setParser(G.sequence(word, G.token("Y")));
+
+		final ParserCombinator either = G.choice(withX, withY);
+
+		final Memoization memoization = new Memoization();
+		final Parse parse = Parse.of(HardcodedSource.from("X", "Y"))
+				.to(new ListTarget());
+		parse.setMemoization(memoization);
+
+		assertTrue(either.accepts(parse));
+		assertEquals(2, memoization.getLookups("word"));
+		assertEquals(0, memoization.getHits("word"));
+	}
+
+	private void assertSameOutput(Object... input) {
+		final List<Data> expected = parse(null, input);
+		final List<Data> actual = parse(new Memoization(), input);
+
+		assertTrue(expected != null);
+		assertEquals(expected.toString(), actual.toString());
+	}
+
+	private List<Data> parse(Memoization memoization, Object... input) {
+		final HardcodedSource source = HardcodedSource
+				.from(new ArrayList<Object>(Arrays.asList(input)));
+		final ListTarget target = new ListTarget();
+
+		final Parse parse = Parse.of(source).to(target);
+		parse.setMemoization(memoization);
+
+		if (!top.accepts(parse))
+			return null;
+
+		assertNull(source.next());
+
+		final List<Data> data = new ArrayList<>();
+		for (Data d : target)
+			data.add(d);
+		return data;
+	}
+}
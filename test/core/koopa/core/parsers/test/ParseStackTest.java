@@ -1,12 +1,19 @@
 package koopa.core.parsers.test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 import koopa.core.parsers.Parse;
 import koopa.core.parsers.ParserCombinator;
 import koopa.core.parsers.Stack;
+import koopa.core.parsers.Stack.Frame;
 
 import org.junit.Test;
 
@@ -30,6 +37,29 @@ public class ParseStackTest {
 		}
 	}
 
+	private static final class Keywords extends ParserCombinator {
+		private final Set<String> keywords;
+
+		public Keywords(String... keywords) {
+			this.keywords = new HashSet<>(Arrays.asList(keywords));
+		}
+
+		@Override
+		public boolean matches(Parse parse) {
+			return false;
+		}
+
+		@Override
+		public boolean isKeywordInScope(String word) {
+			return keywords.contains(word);
+		}
+
+		@Override
+		public boolean hasKeywordsInScope() {
+			return !keywords.isEmpty();
+		}
+	}
+
 	private static final ParserCombinator X = new Named("X");
 	private static final ParserCombinator Y = new Named("Y");
 	private static final ParserCombinator Z = new Named("Z");
@@ -78,4 +108,67 @@ public class ParseStackTest {
 		assertFalse(stack.isMatching("X", "Z"));
 		assertFalse(stack.isMatching("Y", "Z"));
 	}
+
+	@Test
+	public void testFramesAreSnapshots() {
+		Stack stack = new Stack();
+
+		stack.push(X);
+		stack.push(Y);
+		final Frame xy = stack.getHead();
+		assertEquals(2, xy.depth());
+		assertSame(xy, stack.getHead());
+
+		stack.pop();
+		stack.push(Z);
+		final Frame xz = stack.getHead();
+		assertSame(Z, xz.getParser());
+		assertSame(Y, xy.getParser());
+		assertSame(xy.up(), xz.up());
+		assertSame(X, xy.getFrameUpBy(1).getParser());
+		assertEquals(0, xy.getFrameUpBy(2).depth());
+
+		stack.pop();
+		stack.pop();
+		stack.setHead(xy);
+		assertEquals(2, stack.depth());
+		assertSame(xy, stack.getHead());
+		assertTrue(stack.isMatching("Y", "X"));
+
+		stack.setHead(xz);
+		assertTrue(stack.isMatching("Z", "X"));
+		assertFalse(stack.isMatching("Y"));
+	}
+
+	@Test
+	public void testKeywordsFollowTheStack() {
+		final ParserCombinator a = new Keywords("A");
+		final ParserCombinator b = new Keywords("B");
+		Stack stack = new Stack();
+
+		stack.push(a);
+		stack.push(X);
+		assertTrue(stack.isKeyword("A"));
+		assertFalse(stack.isKeyword("B"));
+		final Stack.KeywordScope scopeOfA = stack.getKeywordScope();
+
+		stack.pop();
+		stack.pop();
+		stack.push(b);
+		stack.push(X);
+		assertFalse(stack.isKeyword("A"));
+		assertTrue(stack.isKeyword("B"));
+		assertFalse(scopeOfA.equals(stack.getKeywordScope()));
+
+		stack.push(a);
+		assertTrue(stack.isKeyword("A"));
+		assertTrue(stack.isKeyword("B"));
+
+		stack.pop();
+		stack.pop();
+		stack.pop();
+		stack.push(a);
+		stack.push(X);
+		assertEquals(scopeOfA, stack.getKeywordScope());
+	}
 }
@@ -0,0 +1,106 @@
+package koopa.core.parsers.test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import koopa.core.parsers.Parse;
+import koopa.core.parsers.ParserCombinator;
+import koopa.core.parsers.Stack;
+import koopa.core.sources.test.HardcodedSource;
+
+/**
+ * A small, hand-rolled benchmark for the overhead which the
+ * {@linkplain Stack} adds to {@linkplain ParserCombinator#accepts(Parse)}.
+ * <p>
+ * It nests a number of pass-through parsers, some of which carry keywords, and
+ * has the innermost one ask the stack the same questions a scoped rule and a
+ * keyword test would. Run it with:
+ *
+ * <pre>
+ * java -cp build:lib/* koopa.core.parsers.test.StackBenchmark [depth] [rounds]
+ * </pre>
+ */
+public class StackBenchmark {
+
+	private static final int ITERATIONS = 200000;
+
+	private static final String[] WORDS = { "MOVE", "TO", "IDENTIFIER" };
+
+	public static void main(String[] args) {
+		final int depth = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+		final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		final Parse parse = Parse.of(HardcodedSource.from());
+		final ParserCombinator root = nest(depth);
+
+		// Warm up.
+		for (int i = 0; i < ITERATIONS; i++)
+			root.accepts(parse);
+
+		long best = Long.MAX_VALUE;
+		for (int r = 0; r < rounds; r++) {
+			final long start = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; i++)
+				root.accepts(parse);
+			final long elapsed = System.nanoTime() - start;
+
+			best = Math.min(best, elapsed);
+			System.out.printf("round %2d: %8.1f ns/op%n", r,
+					elapsed / (double) ITERATIONS);
+		}
+
+		System.out.printf("best    : %8.1f ns/op, %.2f ns per accepts%n",
+				best / (double) ITERATIONS,
+				best / (double) ITERATIONS / (depth + 1));
+	}
+
+	private static ParserCombinator nest(int depth) {
+		ParserCombinator p = new Leaf();
+		for (int i = depth; i > 0; i--)
+			if (i % 8 == 0)
+				p = new Level(p, "KEYWORD-" + i, "MOVE");
+			else
+				p = new Level(p);
+
+		return p;
+	}
+
+	private static final class Level extends ParserCombinator {
+		private final ParserCombinator next;
+		private final Set<String> keywords;
+
+		public Level(ParserCombinator next, String... keywords) {
+			this.next = next;
+			this.keywords = new HashSet<>(Arrays.asList(keywords));
+		}
+
+		@Override
+		protected boolean matches(Parse parse) {
+			return next.accepts(parse);
+		}
+
+		@Override
+		public boolean isKeywordInScope(String word) {
+			return keywords.contains(word);
+		}
+
+		@Override
+		public boolean hasKeywordsInScope() {
+			return !keywords.isEmpty();
+		}
+	}
+
+	private static final class Leaf extends ParserCombinator {
+		@Override
+		protected boolean matches(Parse parse) {
+			final Stack stack = parse.getStack();
+
+			boolean any = stack.getKeywordScope() != null;
+			for (String word : WORDS)
+				any |= stack.isKeyword(word);
+
+			return any;
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package koopa.core.sources.test;
+
+import static koopa.core.data.tags.SyntacticTag.END_OF_LINE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import koopa.core.data.Data;
+import koopa.core.data.Position;
+import koopa.core.data.Token;
+import koopa.core.sources.LineSplitter;
+import koopa.core.util.LineEndings;
+
+public class LineSplitterTest {
+
+	private final boolean sticky = LineEndings.areSticky();
+
+	@After
+	public void restoreStickiness() {
+		LineEndings.setSticky(sticky);
+	}
+
+	@Test
+	public void testEmptyInput() {
+		assertSplits("", "");
+	}
+
+	@Test
+	public void testLinesWithDefaultEndings() {
+		LineEndings.setSticky(true);
+		assertSplits("ab\r\nc\r\n\r\nd", //
+				"[ab]1:1:1-2:1:2 " //
+						+ "<CRLF>3:1:3-4:1:4 " //
+						+ "[c]5:2:1-5:2:1 " //
+						+ "<CRLF>6:2:2-7:2:3 " //
+						+ "<CRLF>8:3:1-9:3:2 " //
+						+ "[d]10:4:1-10:4:1");
+	}
+
+	@Test
+	public void testStickyEndings() {
+		LineEndings.setSticky(true);
+		assertSplits("a\nb\r\nc\rd\n", //
+				"[a]1:1:1-1:1:1 " //
+						+ "<LF>2:1:2-2:1:2 " //
+						+ "[b<CR>]3:2:1-4:2:2 " //
+						+ "<LF>5:2:3-5:2:3 " //
+						+ "[c<CR>d]6:3:1-8:3:3 " //
+						+ "<LF>9:3:4-9:3:4");
+	}
+
+	@Test
+	public void testNonStickyEndings() {
+		LineEndings.setSticky(false);
+		assertSplits("a\nb\r\nc\rd\n", //
+				"[a]1:1:1-1:1:1 " //
+						+ "<LF>2:1:2-2:1:2 " //
+						+ "[b]3:2:1-3:2:1 " //
+						+ "<CRLF>4:2:2-5:2:3 " //
+						+ "[c]6:3:1-6:3:1 " //
+						+ "<CR>7:3:2-7:3:2 " //
+						+ "[d]8:4:1-8:4:1 " //
+						+ "<LF>9:4:2-9:4:2");
+	}
+
+	@Test
+	public void testCustomEndings() {
+		LineEndings.setSticky(false);
+		final List<List<Character>> endings = Arrays.asList(
+				Arrays.asList('$', '$'), Arrays.asList('$'));
+
+		assertSplits(endings, "a$$b$c$", //
+				"[a]1:1:1-1:1:1 " //
+						+ "<$$>2:1:2-3:1:3 " //
+						+ "[b]4:2:1-4:2:1 " //
+						+ "<$>5:2:2-5:2:2 " //
+						+ "[c]6:3:1-6:3:1 " //
+						+ "<$>7:3:2-7:3:2");
+	}
+
+	@Test
+	public void testPartialEndingAtEndOfInput() {
+		LineEndings.setSticky(true);
+		assertSplits("a\r\nb\r", //
+				"[a]1:1:1-1:1:1 " //
+						+ "<CRLF>2:1:2-3:1:3 " //
+						+ "[b<CR>]4:2:1-5:2:2");
+	}
+
+	@Test
+	public void testLinesLongerThanTheBuffer() {
+		final StringBuilder line = new StringBuilder();
+		for (int i = 0; i < 100000; i++)
+			line.append((char) ('a' + i % 26));
+
+		final LineSplitter splitter = new LineSplitter((String) null,
+				new StringReader(line + "\n" + line),
+				LineEndings.getDefaults());
+
+		assertEquals(line.toString(), text(splitter.next()));
+		assertEquals("\n", text(splitter.next()));
+		assertEquals(line.toString(), text(splitter.next()));
+		assertNull(splitter.next());
+	}
+
+	private void assertSplits(String input, String expected) {
+		assertSplits(LineEndings.getDefaults(), input, expected);
+	}
+
+	/**
+	 * Splits the input twice: once reading from it normally, and once reading
+	 * from it a single character at a time. This makes sure that line endings
+	 * which get split across reads are handled correctly.
+	 */
+	private void assertSplits(List<List<Character>> endings, String input,
+			String expected) {
+		assertEquals(expected, split(new LineSplitter((String) null,
+				new StringReader(input), endings)));
+
+		assertEquals(expected, split(new LineSplitter((String) null,
+				new Trickle(new StringReader(input)), endings)));
+	}
+
+	private String split(LineSplitter splitter) {
+		final StringBuilder b = new StringBuilder();
+
+		Data d = null;
+		while ((d = splitter.next()) != null) {
+			assertTrue(d instanceof Token);
+			final Token t = (Token) d;
+
+			if (b.length() > 0)
+				b.append(' ');
+
+			if (t.hasTag(END_OF_LINE))
+				b.append('<').append(t.getText().replace("\r", "CR")
+						.replace("\n", "LF")).append('>');
+			else
+				b.append('[').append(t.getText().replace("\r", "<CR>")
+						.replace("\n", "<LF>")).append(']');
+
+			b.append(describe(t.getStart())).append('-')
+					.append(describe(t.getEnd()));
+		}
+
+		splitter.close();
+		return b.toString();
+	}
+
+	private static String describe(Position p) {
+		return p.getPositionInFile() + ":" + p.getLinenumber() + ":"
+				+ p.getPositionInLine();
+	}
+
+	private static String text(Data d) {
+		return ((Token) d).getText();
+	}
+
+	/**
+	 * A reader which never returns more than one character at a time.
+	 */
+	private static class Trickle extends FilterReader {
+		public Trickle(Reader in) {
+			super(in);
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			return super.read(cbuf, off, Math.min(1, len));
+		}
+	}
+}
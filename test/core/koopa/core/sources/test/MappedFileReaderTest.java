@@ -0,0 +1,129 @@
+package koopa.core.sources.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+import koopa.core.data.Data;
+import koopa.core.sources.LineSplitter;
+import koopa.core.sources.MappedFileReader;
+import koopa.core.util.LineEndings;
+
+public class MappedFileReaderTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final String TEXT = "       IDENTIFICATION DIVISION.\r\n"
+			+ "       PROGRAM-ID. CAF\u00c9.\r\n" //
+			+ "      * \u20ac \ud83d\ude00 \u00e9t\u00e9\r\n" //
+			+ "       PROCEDURE DIVISION.";
+
+	@Test
+	public void testReadsAllText() throws IOException {
+		final File file = write(TEXT);
+		try {
+			assertEquals(TEXT, readAll(new MappedFileReader(file, UTF8), 8192));
+
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testReadsOneCharacterAtATime() throws IOException {
+		final File file = write(TEXT);
+		try {
+			assertEquals(TEXT, readAll(new MappedFileReader(file, UTF8), 1));
+
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testReadsEmptyFile() throws IOException {
+		final File file = write("");
+		try {
+			assertEquals("", readAll(new MappedFileReader(file, UTF8), 16));
+
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testFeedsLineSplitter() throws IOException {
+		final File file = write(TEXT);
+		try {
+			final LineSplitter expected = new LineSplitter(file,
+					new StringReader(TEXT), LineEndings.getDefaults());
+			final LineSplitter actual = new LineSplitter(file,
+					new MappedFileReader(file, UTF8),
+					LineEndings.getDefaults());
+
+			Data d = null;
+			while ((d = expected.next()) != null)
+				assertEquals(d.toString(), actual.next().toString());
+
+			assertNull(actual.next());
+
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testCanNotBeReadOnceClosed() throws IOException {
+		final File file = write(TEXT);
+		try {
+			final MappedFileReader reader = new MappedFileReader(file, UTF8);
+			reader.close();
+			reader.close();
+
+			try {
+				reader.read(new char[16], 0, 16);
+				fail("Expected an IOException.");
+			} catch (IOException e) {
+				// As expected.
+			}
+
+			// Once unmapped we should be free to do as we like with the file.
+			assertTrue(file.delete());
+
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static String readAll(Reader reader, int chunk)
+			throws IOException {
+		final StringBuilder b = new StringBuilder();
+		final char[] buffer = new char[chunk];
+
+		int read;
+		while ((read = reader.read(buffer, 0, chunk)) >= 0)
+			b.append(buffer, 0, read);
+
+		reader.close();
+		return b.toString();
+	}
+
+	private static File write(String text) throws IOException {
+		final File file = File.createTempFile("koopa", ".cbl");
+		try (OutputStream out = new FileOutputStream(file)) {
+			out.write(text.getBytes(UTF8));
+		}
+		return file;
+	}
+}
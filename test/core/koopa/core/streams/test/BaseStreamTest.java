@@ -2,9 +2,14 @@ package koopa.core.streams.test;
 
 import org.junit.Test;
 
+import koopa.core.data.Data;
+import koopa.core.data.Token;
+import koopa.core.data.markers.Start;
 import koopa.core.parsers.Stream;
+import koopa.core.sources.BasicSource;
 import koopa.core.sources.test.HardcodedSource;
 import koopa.core.streams.BaseStream;
+import koopa.core.targets.HoldingTarget;
 import koopa.core.targets.ListTarget;
 
 /**
@@ -38,4 +43,102 @@ public class BaseStreamTest extends ParseStreamTest {
 		final Stream stream = new BaseStream(source, target);
 		assertCanBookmark(stream, WORDS, target);
 	}
+
+	@Test
+	public void testRewindDropsMarkers() {
+		assertRewindDropsMarkers(false);
+	}
+
+	@Test
+	public void testRewindNotifiesObservers() {
+		assertRewindDropsMarkers(true);
+	}
+
+	@Test
+	public void testRewindGoesThroughUnshiftOverrides() {
+		final HardcodedSource words = HardcodedSource.from(WORDS);
+		final StringBuilder unshifted = new StringBuilder();
+		final BasicSource source = new BasicSource() {
+			@Override
+			protected Data nxt1() {
+				return words.next();
+			}
+
+			@Override
+			public void unshift(Data packet) {
+				unshifted.append(((Token) packet).getText());
+				super.unshift(packet);
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+
+		final ListTarget target = new ListTarget();
+		final BaseStream stream = new BaseStream(source, target);
+
+		stream.bookmark();
+		for (int i = 0; i < 4; i++)
+			stream.forward();
+
+		stream.rewind();
+		assertEquals("foxbrownquickThe", unshifted.toString());
+		assertEquals(0, stream.getPosition());
+
+		for (int i = 0; i < WORDS.length; i++)
+			assertNextTokenMatchesWord(stream, WORDS[i]);
+
+		assertNoMoreTokens(stream);
+	}
+
+	private void assertRewindDropsMarkers(boolean observed) {
+		final HardcodedSource source = HardcodedSource.from(WORDS);
+		final ListTarget target = new ListTarget();
+		final BaseStream stream = new BaseStream(source, target);
+
+		final StringBuilder popped = new StringBuilder();
+		if (observed)
+			stream.getTarget().addObserver(new HoldingTarget.RawObserver() {
+				@Override
+				public void pushed(Data data) {
+				}
+
+				@Override
+				public void popping(Data last) {
+					if (last instanceof Token)
+						popped.append(((Token) last).getText());
+				}
+			});
+
+		stream.forward();
+		stream.bookmark();
+		for (int i = 1; i < WORDS.length; i++) {
+			stream.insert(Start.on("test", "word"));
+			if (i % 2 == 0)
+				stream.skip();
+			else
+				stream.forward();
+		}
+
+		assertEquals(WORDS.length, stream.getPosition());
+		stream.rewind();
+		assertEquals(1, stream.getPosition());
+		assertEquals(1, stream.getTarget().size());
+
+		if (observed)
+			assertEquals("doglazytheoverjumpedfoxbrownquick",
+					popped.toString());
+
+		// Skipped tokens should be back to normal.
+		for (int i = 1; i < WORDS.length; i++) {
+			assertPeekMatchesWord(stream, WORDS[i]);
+			assertFalse(((Token) stream.peek()).isSkipped());
+			assertNextTokenMatchesWord(stream, WORDS[i]);
+		}
+
+		assertNoMoreTokens(stream);
+		stream.commit();
+		assertTargetHasAllWords(target, WORDS, WORDS.length);
+	}
 }
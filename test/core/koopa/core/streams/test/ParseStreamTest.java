@@ -122,7 +122,7 @@ public abstract class ParseStreamTest extends TestCase {
 
 	// =========================================================================
 
-	private void assertPeekMatchesWord(Stream stream, Object text) {
+	protected void assertPeekMatchesWord(Stream stream, Object text) {
 		final Data d = stream.peek();
 		if (text == null)
 			assertNull(d);
@@ -133,7 +133,7 @@ public abstract class ParseStreamTest extends TestCase {
 		}
 	}
 
-	private void assertNextTokenMatchesWord(Stream stream, Object text) {
+	protected void assertNextTokenMatchesWord(Stream stream, Object text) {
 		final Data d = stream.forward();
 		if (text == null)
 			assertNull(d);
@@ -144,12 +144,12 @@ public abstract class ParseStreamTest extends TestCase {
 		}
 	}
 
-	private void assertNoMoreTokens(Stream stream) {
+	protected void assertNoMoreTokens(Stream stream) {
 		assertNull(stream.peek());
 		assertNull(stream.forward());
 	}
 
-	private void assertTargetHasAllWords(ListTarget target, Object[] words,
+	protected void assertTargetHasAllWords(ListTarget target, Object[] words,
 			int endIndex) {
 		assertEquals(endIndex, target.size());
 
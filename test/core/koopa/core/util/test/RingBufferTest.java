@@ -0,0 +1,117 @@
+package koopa.core.util.test;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import koopa.core.util.RingBuffer;
+
+public class RingBufferTest extends TestCase {
+
+	@Test
+	public void testCanActAsDeque() {
+		final RingBuffer<Integer> buffer = new RingBuffer<>();
+		assertTrue(buffer.isEmpty());
+
+		for (int i = 0; i < 100; i++) {
+			buffer.addLast(i);
+			buffer.addFirst(-i);
+		}
+
+		assertEquals(200, buffer.size());
+		assertEquals(Integer.valueOf(-99), buffer.getFirst());
+		assertEquals(Integer.valueOf(99), buffer.getLast());
+
+		for (int i = 99; i >= 0; i--) {
+			assertEquals(Integer.valueOf(-i), buffer.removeFirst());
+			assertEquals(Integer.valueOf(i), buffer.removeLast());
+		}
+
+		assertTrue(buffer.isEmpty());
+	}
+
+	@Test
+	public void testCanMoveRunsAroundTheEnd() {
+		final RingBuffer<Integer> buffer = new RingBuffer<>();
+
+		// This leaves the head close to the end of the underlying array, so
+		// that the runs below have to wrap around.
+		for (int i = 0; i < 14; i++)
+			buffer.addLast(i);
+		for (int i = 0; i < 12; i++)
+			buffer.removeFirst();
+
+		buffer.addAllFirst(new Integer[] { 7, 8, 9, 10, 11 }, 1, 4);
+		assertEquals("[8, 9, 10, 12, 13]", buffer.toString());
+
+		for (int i = 14; i < 20; i++)
+			buffer.addLast(i);
+
+		final Integer[] tail = new Integer[9];
+		buffer.removeLast(9, tail);
+		assertEquals("[8, 9]", buffer.toString());
+		for (int i = 0; i < 9; i++)
+			assertEquals(Integer.valueOf(i == 0 ? 10 : 11 + i), tail[i]);
+	}
+
+	@Test
+	public void testCanRemoveFromTheMiddle() {
+		final RingBuffer<Integer> buffer = new RingBuffer<>();
+		for (int i = 0; i < 10; i++)
+			buffer.addLast(i);
+
+		assertEquals(Integer.valueOf(2), buffer.remove(2));
+		assertEquals(Integer.valueOf(7), buffer.remove(6));
+		assertEquals("[0, 1, 3, 4, 5, 6, 8, 9]", buffer.toString());
+	}
+
+	@Test
+	public void testCanRemoveRunsFromTheMiddle() {
+		final RingBuffer<Integer> buffer = new RingBuffer<>();
+		for (int i = 0; i < 14; i++)
+			buffer.addLast(i);
+		for (int i = 0; i < 12; i++)
+			buffer.removeFirst();
+		for (int i = 14; i < 20; i++)
+			buffer.addLast(i);
+
+		// This run wraps around the end of the underlying array.
+		buffer.remove(1, 4);
+		assertEquals("[12, 16, 17, 18, 19]", buffer.toString());
+
+		buffer.remove(2, 2);
+		buffer.remove(3, 5);
+		assertEquals("[12, 16, 17]", buffer.toString());
+	}
+
+	@Test
+	public void testCanReplaceElements() {
+		final RingBuffer<Integer> buffer = new RingBuffer<>();
+		for (int i = 0; i < 5; i++)
+			buffer.addFirst(i);
+
+		buffer.set(0, 40);
+		buffer.set(4, 10);
+		assertEquals("[40, 3, 2, 1, 10]", buffer.toString());
+	}
+
+	@Test
+	public void testDescendingIteratorCanRemove() {
+		final RingBuffer<Integer> buffer = new RingBuffer<>();
+		for (int i = 0; i < 10; i++)
+			buffer.addLast(i);
+
+		final Iterator<Integer> it = buffer.descendingIterator();
+		while (it.hasNext())
+			if (it.next() % 3 == 0)
+				it.remove();
+
+		assertEquals("[1, 2, 4, 5, 7, 8]", buffer.toString());
+
+		final Iterator<Integer> from = buffer.iterator(4);
+		assertEquals(Integer.valueOf(7), from.next());
+		assertEquals(Integer.valueOf(8), from.next());
+		assertFalse(from.hasNext());
+	}
+}